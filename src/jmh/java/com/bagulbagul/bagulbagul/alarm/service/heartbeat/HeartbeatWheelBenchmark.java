@@ -0,0 +1,73 @@
+package com.bagulbagul.bagulbagul.alarm.service.heartbeat;
+
+import com.bagulbagul.bagulbagul.alarm.service.UserAlarmConnection;
+import com.bagulbagul.bagulbagul.alarm.service.buffer.UserAlarmOverflowCounter;
+import com.bagulbagul.bagulbagul.alarm.service.metrics.UserAlarmMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.Disposable;
+
+/*
+ * 연결 수에 따른 heartbeat tick 한번의 비용.
+ * 타이머 없이 tick 을 직접 호출한다. 30초 간격, 1초 tick 이므로 tick 한번에 전체 연결의 1/30 을 확인한다.
+ * idle=true : 모든 연결에 heartbeat 를 보낸다. idle=false : 최근에 알람을 보낸 연결로 보고 확인만 한다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class HeartbeatWheelBenchmark {
+
+    @Param({"10000", "100000"})
+    public int connections;
+
+    @Param({"true", "false"})
+    public boolean idle;
+
+    private UserAlarmHeartbeatWheel wheel;
+    private final List<Disposable> subscriptions = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void setUp(Blackhole blackhole) {
+        wheel = new UserAlarmHeartbeatWheel(new UserAlarmMetrics(new SimpleMeterRegistry(), new UserAlarmOverflowCounter()));
+        ReflectionTestUtils.setField(wheel, "HEARTBEAT_INTERVAL_SECOND", 30);
+        ReflectionTestUtils.setField(wheel, "HEARTBEAT_MESSAGE", "hb");
+        ReflectionTestUtils.setField(wheel, "TICK_MILLISECOND", 1000L);
+        wheel.createBuckets();
+        ReflectionTestUtils.setField(wheel, "heartbeatIntervalNanos", idle ? 0L : Long.MAX_VALUE);
+        //연결이 시간에 걸쳐 들어온 것처럼 bucket 마다 고르게 배치한다
+        int bucketCount = 30;
+        int connectionId = 0;
+        for(int bucket = 0; bucket < bucketCount; bucket++) {
+            int end = (int) ((long) connections * (bucket + 1) / bucketCount);
+            for(; connectionId < end; connectionId++) {
+                subscriptions.add(wheel.heartbeats(new UserAlarmConnection(connectionId)).subscribe(blackhole::consume));
+            }
+            wheel.tick();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        subscriptions.forEach(Disposable::dispose);
+        subscriptions.clear();
+    }
+
+    @Benchmark
+    public void tick() {
+        wheel.tick();
+    }
+}
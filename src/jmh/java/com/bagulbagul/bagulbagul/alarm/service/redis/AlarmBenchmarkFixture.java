@@ -0,0 +1,76 @@
+package com.bagulbagul.bagulbagul.alarm.service.redis;
+
+import com.bagulbagul.bagulbagul.alarm.service.buffer.DropUserAlarmBufferPolicy;
+import com.bagulbagul.bagulbagul.alarm.service.buffer.UserAlarmOverflowCounter;
+import com.bagulbagul.bagulbagul.alarm.service.buffer.UserAlarmSlowConsumerGuard;
+import com.bagulbagul.bagulbagul.alarm.service.dispatch.UserAlarmDispatcher;
+import com.bagulbagul.bagulbagul.alarm.service.group.InProcessUserAlarmGroupDirectory;
+import com.bagulbagul.bagulbagul.alarm.service.heartbeat.UserAlarmHeartbeatWheel;
+import com.bagulbagul.bagulbagul.alarm.service.metrics.UserAlarmMetrics;
+import com.bagulbagul.bagulbagul.alarm.service.presence.InProcessUserAlarmOfflineInbox;
+import com.bagulbagul.bagulbagul.alarm.service.presence.InProcessUserAlarmPresence;
+import com.bagulbagul.bagulbagul.alarm.service.replay.InProcessUserAlarmReplayLog;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.BufferOverflowStrategy;
+
+/*
+ * spring context 없이 구독 관리자를 조립한다. broker 는 redis 대신 DirectUserAlarmBroker 를 사용한다.
+ */
+public class AlarmBenchmarkFixture {
+
+    public static final String TOPIC_PREFIX = "alarm:";
+
+    private final UserAlarmOverflowCounter overflowCounter = new UserAlarmOverflowCounter();
+    private final UserAlarmMetrics metrics = new UserAlarmMetrics(new SimpleMeterRegistry(), overflowCounter);
+    private final DirectUserAlarmBroker broker = new DirectUserAlarmBroker(overflowCounter);
+    //DirectUserAlarmBroker 는 dispatcher 를 거치지 않는다. router 용으로만 둔다
+    private final UserAlarmDispatcher dispatcher = new UserAlarmDispatcher(overflowCounter);
+    private final UserAlarmHeartbeatWheel heartbeatWheel = new UserAlarmHeartbeatWheel(metrics);
+    private final UserAlarmSlowConsumerGuard slowConsumerGuard = new UserAlarmSlowConsumerGuard(metrics);
+    //redis 를 사용하는 협력 객체는 inprocess 구현을 사용한다. group 은 끈 상태로 사용한다
+    private final InProcessUserAlarmOfflineInbox offlineInbox = new InProcessUserAlarmOfflineInbox();
+    private final InProcessUserAlarmPresence presence = new InProcessUserAlarmPresence();
+    private final InProcessUserAlarmGroupDirectory groupDirectory = new InProcessUserAlarmGroupDirectory();
+    private final RedisUserAlarmSubscribeManager manager;
+
+    public AlarmBenchmarkFixture() {
+        ReflectionTestUtils.setField(heartbeatWheel, "HEARTBEAT_INTERVAL_SECOND", 30);
+        ReflectionTestUtils.setField(heartbeatWheel, "HEARTBEAT_MESSAGE", "hb");
+        ReflectionTestUtils.setField(heartbeatWheel, "TICK_MILLISECOND", 1000L);
+        ReflectionTestUtils.invokeMethod(heartbeatWheel, "init");
+        ReflectionTestUtils.setField(slowConsumerGuard, "ENABLED", false);
+        ReflectionTestUtils.setField(groupDirectory, "ENABLED", false);
+
+        manager = new RedisUserAlarmSubscribeManager(
+                broker,
+                heartbeatWheel,
+                new InProcessUserAlarmReplayLog(),
+                new DropUserAlarmBufferPolicy(64, BufferOverflowStrategy.DROP_OLDEST, overflowCounter),
+                dispatcher,
+                slowConsumerGuard,
+                metrics,
+                presence,
+                groupDirectory,
+                offlineInbox
+        );
+        ReflectionTestUtils.setField(manager, "TOPIC_PREFIX", TOPIC_PREFIX);
+        ReflectionTestUtils.setField(manager, "SUBSCRIBE_MODE", "user");
+        ReflectionTestUtils.setField(manager, "SINK_SIZE", 16);
+        ReflectionTestUtils.setField(manager, "REPLAY_ENABLED", false);
+        ReflectionTestUtils.setField(manager, "RECONNECT_GRACE_MILLISECOND", 500L);
+        ReflectionTestUtils.invokeMethod(manager, "init");
+    }
+
+    public RedisUserAlarmSubscribeManager getManager() {
+        return manager;
+    }
+
+    public DirectUserAlarmBroker getBroker() {
+        return broker;
+    }
+
+    public void close() {
+        ReflectionTestUtils.invokeMethod(heartbeatWheel, "destroy");
+    }
+}
@@ -0,0 +1,70 @@
+package com.bagulbagul.bagulbagul.alarm.service.redis;
+
+import com.bagulbagul.bagulbagul.alarm.service.broker.UserAlarmBroker;
+import com.bagulbagul.bagulbagul.alarm.service.broker.UserAlarmRouter;
+import com.bagulbagul.bagulbagul.alarm.service.buffer.UserAlarmOverflowCounter;
+import com.bagulbagul.bagulbagul.alarm.service.dispatch.UserAlarmTarget;
+import com.bagulbagul.bagulbagul.alarm.service.message.UserAlarmEnvelope;
+import com.bagulbagul.bagulbagul.alarm.service.message.UserAlarmMessage;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import reactor.core.Disposable;
+
+/*
+ * 발행한 스레드에서 바로 sink 로 전달하는 benchmark 용 broker.
+ * 리스너 컨테이너와 같이 채널별로 리스너 목록을 두고, 발행된 byte[] 를 봉투에서 꺼내 sink 로 보낸다.
+ * InProcessUserAlarmBroker 와 달리 전달 스레드와 UserAlarmDispatcher 의 lane 을 거치지 않으므로 sink 이후의 비용만 잴 수 있다.
+ */
+public class DirectUserAlarmBroker implements UserAlarmBroker {
+
+    private final ConcurrentHashMap<String, Set<UserAlarmTarget>> channels = new ConcurrentHashMap<>();
+    //shard, inbox, group 채널처럼 여러 유저가 공유하는 채널의 router
+    private final ConcurrentHashMap<String, Set<UserAlarmRouter>> routers = new ConcurrentHashMap<>();
+    private final UserAlarmOverflowCounter overflowCounter;
+
+    public DirectUserAlarmBroker(UserAlarmOverflowCounter overflowCounter) {
+        this.overflowCounter = overflowCounter;
+    }
+
+    @Override
+    public Disposable subscribe(String channel, UserAlarmTarget target) {
+        channels.computeIfAbsent(channel, key -> new CopyOnWriteArraySet<>()).add(target);
+        return () -> channels.computeIfPresent(channel, (key, targets) -> {
+            targets.remove(target);
+            return targets.isEmpty() ? null : targets;
+        });
+    }
+
+    @Override
+    public void subscribe(List<String> channels, UserAlarmRouter router) {
+        for(String channel : channels) {
+            routers.computeIfAbsent(channel, key -> new CopyOnWriteArraySet<>()).add(router);
+        }
+    }
+
+    @Override
+    public boolean isBlocking() {
+        return false;
+    }
+
+    //redis 에서 메세지를 받은 것처럼 전달
+    @Override
+    public void publish(String channel, byte[] body) {
+        Set<UserAlarmTarget> targets = channels.get(channel);
+        if(targets != null) {
+            UserAlarmMessage message = UserAlarmEnvelope.unwrap(body);
+            for(UserAlarmTarget target : targets) {
+                overflowCounter.emit(target.getUserId(), target.getSink(), message);
+            }
+        }
+        //router 는 봉투째로 받아서 직접 대상을 찾는다
+        Set<UserAlarmRouter> channelRouters = routers.get(channel);
+        if(channelRouters != null) {
+            for(UserAlarmRouter router : channelRouters) {
+                router.route(body);
+            }
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.bagulbagul.bagulbagul.alarm.service.redis;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+import reactor.core.Disposable;
+
+/*
+ * 유저 한명에게 알람 하나를 보내는 비용. 유저의 연결(탭) 수에 따라 sink 에서 연결마다 복제되는 비용을 잰다.
+ * 리스너가 메세지를 받은 시점부터 각 연결의 구독자까지 전달되는 구간이다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FanOutBenchmark {
+
+    private static final long USER_ID = 1L;
+
+    @Param({"1", "2", "8"})
+    public int subscribersPerUser;
+
+    private AlarmBenchmarkFixture fixture;
+    private final List<Disposable> subscriptions = new ArrayList<>();
+    private String channel;
+    private byte[] body;
+
+    @Setup(Level.Trial)
+    public void setUp(Blackhole blackhole) {
+        fixture = new AlarmBenchmarkFixture();
+        for(int i = 0; i < subscribersPerUser; i++) {
+            subscriptions.add(fixture.getManager().subscribe(USER_ID).subscribe(blackhole::consume));
+        }
+        channel = AlarmBenchmarkFixture.TOPIC_PREFIX + USER_ID;
+        body = "{\"type\":\"COMMENT\",\"postId\":1234,\"message\":\"새 댓글이 달렸습니다\"}".getBytes(StandardCharsets.UTF_8);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        subscriptions.forEach(Disposable::dispose);
+        subscriptions.clear();
+        fixture.close();
+    }
+
+    @Benchmark
+    public void emit() {
+        fixture.getBroker().publish(channel, body);
+    }
+}
@@ -0,0 +1,66 @@
+package com.bagulbagul.bagulbagul.alarm.service.redis;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import reactor.core.Disposable;
+
+/*
+ * 구독 후 바로 해제하는 비용. (subscribe -> createFlux -> cancel -> decreaseSubscriptionCnt)
+ * sameUser : 모든 스레드가 같은 userId 를 구독해서 구독 정보의 재사용, 경합을 잰다.
+ * distinctUsers : 스레드마다 다른 userId 를 구독해서 구독 정보 생성, 삭제를 잰다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(8)
+public class SubscribeChurnBenchmark {
+
+    private static final AtomicLong THREAD_SEQ = new AtomicLong();
+
+    private AlarmBenchmarkFixture fixture;
+    private RedisUserAlarmSubscribeManager manager;
+
+    @State(Scope.Thread)
+    public static class ThreadUsers {
+        //스레드마다 겹치지 않는 userId 범위
+        private final long base = THREAD_SEQ.incrementAndGet() << 32;
+        private long next;
+
+        long nextUserId() {
+            return base + (next++ & 0xffff);
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        fixture = new AlarmBenchmarkFixture();
+        manager = fixture.getManager();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        fixture.close();
+    }
+
+    @Benchmark
+    public void sameUser() {
+        Disposable subscription = manager.subscribe(1L).subscribe();
+        subscription.dispose();
+    }
+
+    @Benchmark
+    public void distinctUsers(ThreadUsers users) {
+        Disposable subscription = manager.subscribe(users.nextUserId()).subscribe();
+        subscription.dispose();
+    }
+}
@@ -0,0 +1,448 @@
+package com.bagulbagul.bagulbagul.alarm.service.redis;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.bagulbagul.bagulbagul.alarm.service.UserAlarmPublisher;
+import com.bagulbagul.bagulbagul.alarm.service.message.UserAlarmMessage;
+import com.bagulbagul.bagulbagul.extension.AllTestContainerExtension;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.Disposable;
+import reactor.core.Scannable;
+import reactor.core.publisher.Sinks;
+
+/*
+ * 여러 유저의 구독, 해제, 발행을 무작위로 오래 반복한 뒤 구독 자원이 모두 정리되었는지 확인한다.
+ * test_repeat 는 한 유저의 연속 연결만 보므로 여러 유저가 동시에 붙고 끊기는 동안의 누수는 잡지 못한다.
+ * redis 는 통합 테스트와 같이 로컬 컨테이너를 사용하고 sse 대신 구독 관리자의 Flux 를 직접 구독한다.
+ * 첫 연결 때 offline inbox 를 기다리는 동안 끊기는 경우도 보도록 presence, offline inbox 를 켠다.
+ *
+ * 1. 작업 스레드들이 churnRate 로 임의의 유저를 구독하고, 가진 연결 중 하나를 임의로 골라 끊는다.
+ *    연결은 첫 heartbeat 를 받은 뒤에만 끊는다(sse 연결 완료).
+ *    abortRatio 만큼은 첫 heartbeat 전에 끊는다. 절반은 구독하자마자, 절반은 abortDelayMillisecond 안의 임의 시점에 끊어
+ *    구독 스레드로 넘어가는 중이나 보관된 알람을 기다리는 중에 끊기는 경우를 만든다.
+ * 2. 발행 스레드가 publishRate 로 임의의 유저에게 알람을 발행한다.
+ * 3. 샘플링 스레드가 등록된 sink 를 weak 참조로 모으고, sampleSecond 마다 heap, 스레드, 할당량 추이를 기록한다.
+ * 4. 끝나면 모든 연결을 끊고 다음을 확인한다.
+ *    - 구독 정보 registry 와 열린 연결 수가 0
+ *    - redis 의 이 노드 presence set 과 보관된 알람을 기다리는 유저가 없음
+ *    - 붙인 리스너 수와 뗀 리스너 수가 같고, 리스너 컨테이너와 redis 에 남은 유저 채널이 없음
+ *    - 모은 sink 는 모두 닫혔고 gc 후 참조가 남지 않음
+ *
+ * 설정(-Psoak.xxx)
+ * soak.durationSecond : 반복 시간
+ * soak.users : 유저 수
+ * soak.connections : 동시에 열어둘 최대 연결 수
+ * soak.workers : 구독, 해제 스레드 수
+ * soak.churnRate : 초당 구독 수. 구독 하나마다 연결 하나를 끊는다
+ * soak.publishRate : 초당 발행 수
+ * soak.abortRatio : 첫 heartbeat 전에 끊는 비율
+ * soak.abortDelayMillisecond : 늦게 끊는 연결을 끊기까지의 최대 시간
+ * soak.sampleSecond : 추이 기록 간격
+ * soak.drainSecond : 끝난 뒤 정리를 기다리는 최대 시간
+ */
+@Tag("soak")
+@ExtendWith(AllTestContainerExtension.class)
+@SpringBootTest(properties = {
+        "alarm.realtime.presence.enabled=true",
+        "alarm.realtime.offline.enabled=true"
+})
+class UserAlarmSoakTest {
+
+    private static final Logger log = LoggerFactory.getLogger(UserAlarmSoakTest.class);
+
+    private static final int DURATION_SECOND = Integer.getInteger("soak.durationSecond", 120);
+    private static final int USERS = Integer.getInteger("soak.users", 2000);
+    private static final int CONNECTIONS = Integer.getInteger("soak.connections", 4000);
+    private static final int WORKERS = Integer.getInteger("soak.workers", 8);
+    private static final int CHURN_RATE = Integer.getInteger("soak.churnRate", 2000);
+    private static final int PUBLISH_RATE = Integer.getInteger("soak.publishRate", 500);
+    private static final double ABORT_RATIO = Double.parseDouble(System.getProperty("soak.abortRatio", "0.2"));
+    private static final int ABORT_DELAY_MILLISECOND = Integer.getInteger("soak.abortDelayMillisecond", 500);
+    private static final int SAMPLE_SECOND = Integer.getInteger("soak.sampleSecond", 10);
+    private static final int DRAIN_SECOND = Integer.getInteger("soak.drainSecond", 30);
+    //sink 를 모으는 간격
+    private static final long COLLECT_MILLISECOND = 200;
+
+    @Value("${alarm.realtime.redis.alarm_topic_prefix}")
+    private String TOPIC_PREFIX;
+
+    @Autowired
+    private RedisUserAlarmSubscribeManager subscribeManager;
+
+    @Autowired
+    private UserAlarmPublisher userAlarmPublisher;
+
+    @Autowired
+    private RedisTemplate<String, String> redisTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private RedisUserAlarmPresence presence;
+
+    @Autowired
+    private RedisUserAlarmOfflineInbox offlineInbox;
+
+    //listener=container 일 때만 있다
+    @Autowired
+    private ObjectProvider<RedisMessageListenerContainer> listenerContainer;
+
+    private final LongAdder subscribed = new LongAdder();
+    private final LongAdder cancelled = new LongAdder();
+    private final LongAdder aborted = new LongAdder();
+    private final LongAdder published = new LongAdder();
+    private final LongAdder received = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    //구독 중에 본 sink. gc 되면 저절로 빠진다. 샘플링 스레드에서만 접근한다
+    private final Set<Sinks.Many<UserAlarmMessage>> observedSinks = Collections.newSetFromMap(new WeakHashMap<>());
+    private long observedSinkCount;
+    private final List<String> trend = new ArrayList<>();
+    //늦게 끊는 연결
+    private final ScheduledExecutorService aborter = Executors.newSingleThreadScheduledExecutor();
+
+    @Test
+    @DisplayName("구독, 해제 반복 후 구독 자원 누수 확인")
+    void soak() throws Exception {
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+        ExecutorService workers = Executors.newFixedThreadPool(WORKERS + 1);
+        Trend trendRecorder = new Trend();
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(DURATION_SECOND);
+
+        sampler.scheduleAtFixedRate(this::collectSinks, 0, COLLECT_MILLISECOND, TimeUnit.MILLISECONDS);
+        sampler.scheduleAtFixedRate(() -> trendRecorder.record(start), 0, SAMPLE_SECOND, TimeUnit.SECONDS);
+
+        //1, 2. 구독, 해제와 발행
+        List<Future<List<Held>>> churns = new ArrayList<>(WORKERS);
+        for(int i = 0; i < WORKERS; i++) {
+            churns.add(workers.submit(() -> churn(end)));
+        }
+        Future<?> publisher = workers.submit(() -> publish(end));
+
+        //4. 남은 연결을 모두 끊는다
+        List<Held> remaining = new ArrayList<>();
+        for(Future<List<Held>> churn : churns) {
+            remaining.addAll(churn.get());
+        }
+        publisher.get();
+        aborter.shutdown();
+        aborter.awaitTermination(ABORT_DELAY_MILLISECOND + 10_000L, TimeUnit.MILLISECONDS);
+        long drainStart = System.nanoTime();
+        awaitUntil(() -> remaining.stream().allMatch(Held::isReady));
+        remaining.forEach(Held::dispose);
+        cancelled.add(remaining.size());
+        remaining.clear();
+        workers.shutdown();
+
+        boolean drained = awaitUntil(() -> subscribeManager.collectSubscribeInfos().isEmpty()
+                && openConnections() == 0
+                && attachedListeners() == 0
+                && redisUserChannels().isEmpty()
+                && presentUsers() == 0
+                && pendingOfflineUsers() == 0);
+        long drainMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - drainStart);
+        //마지막으로 한번 더 모은 뒤 샘플링 종료
+        sampler.submit(this::collectSinks).get();
+        sampler.submit(() -> trendRecorder.record(start)).get();
+        sampler.shutdown();
+        sampler.awaitTermination(10, TimeUnit.SECONDS);
+
+        //닫히지 않은 sink 는 gc 전에 세어둔다
+        long openSinks = observedSinks.stream().filter(sink -> !isTerminated(sink)).count();
+        int retainedSinks = retainedAfterGc();
+        report(drained, drainMillis, openSinks, retainedSinks);
+
+        assertThat(errors.sum()).isZero();
+        assertThat(subscribeManager.collectSubscribeInfos()).isEmpty();
+        assertThat(openConnections()).isZero();
+        assertThat(attachedListeners()).isZero();
+        assertThat(containerUserListeners()).isZero();
+        assertThat(redisUserChannels()).isEmpty();
+        assertThat(presentUsers()).isZero();
+        assertThat(pendingOfflineUsers()).isZero();
+        assertThat(openSinks).isZero();
+        assertThat(retainedSinks).isZero();
+    }
+
+    /*
+     * 연결 슬롯을 임의로 골라 기존 연결을 끊고 새 연결로 채운다. 끝나면 열려있는 연결을 반환한다.
+     * 첫 heartbeat 를 받기 전의 연결은 끊지 않고 다음 슬롯을 고른다.
+     */
+    private List<Held> churn(long end) {
+        Held[] slots = new Held[Math.max(1, CONNECTIONS / WORKERS)];
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) * WORKERS / CHURN_RATE;
+        long next = System.nanoTime();
+        while(System.nanoTime() < end) {
+            long wait = next - System.nanoTime();
+            if(wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int slot = random.nextInt(slots.length);
+            Held held = slots[slot];
+            if(held != null && !held.isReady()) {
+                //아직 연결 중. 잠시 후 다른 슬롯으로 다시 시도
+                LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100));
+                continue;
+            }
+            if(held != null) {
+                held.dispose();
+                cancelled.increment();
+            }
+            Held opened = open(random.nextInt(USERS));
+            if(random.nextDouble() < ABORT_RATIO) {
+                abort(opened, random);
+                opened = null;
+            }
+            slots[slot] = opened;
+            next += intervalNanos;
+        }
+        List<Held> remaining = new ArrayList<>(slots.length);
+        for(Held held : slots) {
+            if(held != null) {
+                remaining.add(held);
+            }
+        }
+        return remaining;
+    }
+
+    private Held open(long userId) {
+        Held held = new Held();
+        held.subscription = subscribeManager.subscribe(userId).subscribe(
+                message -> {
+                    //첫 메세지는 heartbeat
+                    if(!held.ready) {
+                        held.ready = true;
+                        return;
+                    }
+                    received.increment();
+                },
+                e -> {
+                    //끝난 연결은 다시 끊을 수 있게 둔다
+                    held.ready = true;
+                    errors.increment();
+                }
+        );
+        subscribed.increment();
+        return held;
+    }
+
+    //첫 heartbeat 를 받기 전에 끊는다. 늦게 끊는 연결은 그 사이에 heartbeat 를 받았을 수도 있다
+    private void abort(Held held, ThreadLocalRandom random) {
+        aborted.increment();
+        if(random.nextBoolean()) {
+            held.dispose();
+            return;
+        }
+        aborter.schedule(held::dispose, random.nextInt(ABORT_DELAY_MILLISECOND + 1), TimeUnit.MILLISECONDS);
+    }
+
+    private void publish(long end) {
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / PUBLISH_RATE;
+        long next = System.nanoTime();
+        while(next < end) {
+            long wait = next - System.nanoTime();
+            if(wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            userAlarmPublisher.publish(ThreadLocalRandom.current().nextInt(USERS), "soak");
+            published.increment();
+            next += intervalNanos;
+        }
+    }
+
+    //registry 에 등록된 sink 를 weak 참조로 모은다. 짧게 살다 간 sink 는 놓칠 수 있다
+    private void collectSinks() {
+        for(RedisUserAlarmSubscribeInfo info : subscribeManager.collectSubscribeInfos()) {
+            if(observedSinks.add(info.getSink())) {
+                observedSinkCount++;
+            }
+        }
+    }
+
+    //정리된 sink 는 어디에서도 참조하지 않아야 한다
+    private int retainedAfterGc() throws InterruptedException {
+        for(int i = 0; i < 10 && !observedSinks.isEmpty(); i++) {
+            System.gc();
+            Thread.sleep(200);
+            //WeakHashMap 은 조회할 때 gc 된 항목을 비운다
+            observedSinks.size();
+        }
+        return observedSinks.size();
+    }
+
+    private static boolean isTerminated(Sinks.Many<UserAlarmMessage> sink) {
+        return Boolean.TRUE.equals(sink.scan(Scannable.Attr.TERMINATED));
+    }
+
+    private boolean awaitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(DRAIN_SECOND);
+        while(!condition.getAsBoolean()) {
+            if(System.nanoTime() > deadline) {
+                return false;
+            }
+            Thread.sleep(100);
+        }
+        return true;
+    }
+
+    private long openConnections() {
+        return (long) meterRegistry.get("alarm.sse.connections").gauge().value();
+    }
+
+    //redis 에 기록된 이 노드의 접속 유저 수. flush 주기만큼 늦게 반영된다
+    private long presentUsers() {
+        Long size = redisTemplate.opsForSet().size(presence.getNodeKey());
+        return size == null ? 0 : size;
+    }
+
+    //보관된 알람을 기다리는 유저 수
+    private long pendingOfflineUsers() {
+        return ((Map<?, ?>) ReflectionTestUtils.getField(offlineInbox, "pending")).size();
+    }
+
+    //붙인 수 - 뗀 수
+    private long attachedListeners() {
+        double attached = meterRegistry.get("alarm.redis.listener").tag("action", "attach").counter().count();
+        double detached = meterRegistry.get("alarm.redis.listener").tag("action", "detach").counter().count();
+        return (long) (attached - detached);
+    }
+
+    //리스너 컨테이너에 남은 유저별 리스너 수. 컨테이너를 쓰지 않으면 0
+    @SuppressWarnings("unchecked")
+    private long containerUserListeners() {
+        RedisMessageListenerContainer container = listenerContainer.getIfAvailable();
+        if(container == null) {
+            return 0;
+        }
+        Object listenerTopics = ReflectionTestUtils.getField(container, "listenerTopics");
+        return ((Map<Object, ?>) listenerTopics).keySet().stream()
+                .filter(RedisUserAlarmMessageListener.class::isInstance)
+                .count();
+    }
+
+    //redis 쪽에서 아직 구독 중인 유저 채널
+    @SuppressWarnings("unchecked")
+    private List<String> redisUserChannels() {
+        byte[] pattern = (TOPIC_PREFIX + "*").getBytes(StandardCharsets.UTF_8);
+        List<byte[]> channels = redisTemplate.execute((RedisCallback<List<byte[]>>) connection ->
+                (List<byte[]>) connection.execute("PUBSUB", "CHANNELS".getBytes(StandardCharsets.UTF_8), pattern));
+        if(channels == null) {
+            return List.of();
+        }
+        return channels.stream().map(channel -> new String(channel, StandardCharsets.UTF_8)).toList();
+    }
+
+    private void report(boolean drained, long drainMillis, long openSinks, int retainedSinks) {
+        StringBuilder report = new StringBuilder();
+        report.append("\n==================== alarm soak test ====================\n");
+        report.append(String.format("config          : %ds, users %d, connections %d, workers %d, churn %d/s, publish %d/s, abort %.2f within %d ms%n",
+                DURATION_SECOND, USERS, CONNECTIONS, WORKERS, CHURN_RATE, PUBLISH_RATE, ABORT_RATIO, ABORT_DELAY_MILLISECOND));
+        report.append(String.format("subscribed      : %d (cancelled %d, aborted %d, errors %d)%n",
+                subscribed.sum(), cancelled.sum(), aborted.sum(), errors.sum()));
+        report.append(String.format("published       : %d, received %d%n", published.sum(), received.sum()));
+        report.append(String.format("drain           : %s in %d ms%n", drained ? "done" : "timeout", drainMillis));
+        report.append(String.format("sinks           : %d observed, %d open, %d retained after gc%n", observedSinkCount, openSinks, retainedSinks));
+        report.append(String.format("leftover        : %d users, %d connections, %d listeners, %d container listeners, %d redis channels, %d present, %d pending offline%n",
+                subscribeManager.collectSubscribeInfos().size(), openConnections(), attachedListeners(),
+                containerUserListeners(), redisUserChannels().size(), presentUsers(), pendingOfflineUsers()));
+        report.append(String.format("%8s %10s %8s %8s %10s %10s %8s %8s%n",
+                "second", "subscribed", "users", "conns", "heap(MB)", "alloc(MB/s)", "threads", "gc"));
+        trend.forEach(row -> report.append(row).append('\n'));
+        report.append("=========================================================");
+        log.info("{}", report);
+    }
+
+    /*
+     * heap, 스레드, 할당량 추이. 샘플링 스레드에서만 호출한다.
+     * 할당량은 살아있는 스레드의 누적 할당량 합의 차이이므로 그 사이 종료된 스레드의 할당은 빠진 근사값이다.
+     */
+    private final class Trend {
+        private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        private final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        private long lastAllocated = -1;
+        private long lastNanos;
+
+        void record(long start) {
+            long now = System.nanoTime();
+            long allocated = allocatedBytes();
+            double allocRate = 0;
+            if(lastAllocated >= 0) {
+                allocRate = Math.max(0, allocated - lastAllocated) / (double) (1 << 20)
+                        / ((now - lastNanos) / (double) TimeUnit.SECONDS.toNanos(1));
+            }
+            lastAllocated = allocated;
+            lastNanos = now;
+            long gcCount = 0;
+            for(GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+                gcCount += Math.max(0, gc.getCollectionCount());
+            }
+            trend.add(String.format("%8d %10d %8d %8d %10d %10.1f %8d %8d",
+                    TimeUnit.NANOSECONDS.toSeconds(now - start),
+                    subscribed.sum(),
+                    subscribeManager.collectSubscribeInfos().size(),
+                    openConnections(),
+                    memory.getHeapMemoryUsage().getUsed() >> 20,
+                    allocRate,
+                    threads.getThreadCount(),
+                    gcCount));
+        }
+
+        private long allocatedBytes() {
+            long sum = 0;
+            for(long bytes : threads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+                sum += Math.max(0, bytes);
+            }
+            return sum;
+        }
+    }
+
+    private static final class Held {
+        private volatile Disposable subscription;
+        //첫 heartbeat 를 받았는지
+        private volatile boolean ready;
+
+        boolean isReady() {
+            return ready;
+        }
+
+        void dispose() {
+            subscription.dispose();
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package com.bagulbagul.bagulbagul.load;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.bagulbagul.bagulbagul.alarm.service.UserAlarmPublisher;
+import com.bagulbagul.bagulbagul.extension.AllTestContainerExtension;
+import io.jsonwebtoken.Jwts;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Disposable;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+/*
+ * 노드 하나가 버티는 sse 연결 수와 발행량에 따른 전달 지연 시간을 잰다.
+ * redis 는 통합 테스트와 같이 로컬 컨테이너를 사용한다.
+ *
+ * 1. 연결 수만큼 access token 을 만들어 쿠키로 붙이고 WebClient 로 /alarm/subscribe 에 연결한다.
+ * 2. 모든 연결이 첫 heartbeat 를 받으면 발행 스레드가 publishRate 로 임의의 유저에게 알람을 발행한다.
+ * 3. 알람 본문에 발행 시각(nanoTime)을 실어 받은 쪽에서 지연 시간을 기록한다. 발행과 수신이 같은 JVM 이므로 시계 차이가 없다.
+ *
+ * 설정(-Pload.xxx)
+ * load.connections : sse 연결 수
+ * load.users : 유저 수. 연결 수보다 작으면 한 유저가 여러 연결(탭)을 가진다
+ * load.publishRate : 초당 발행 수
+ * load.durationSecond : 발행 시간
+ *
+ * 노드가 버티는 한계를 재므로 구독 요청 수 제한과 느린 연결 끊기는 설정과 상관없이 끈다.
+ * 켜져 있으면 재시도 안내만 받은 요청도 연결된 것으로 센다.
+ */
+@ExtendWith(AllTestContainerExtension.class)
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT, properties = {
+        "alarm.realtime.admission.enabled=false",
+        "alarm.realtime.slow_consumer.enabled=false"
+})
+class UserAlarmLoadTest {
+
+    private static final Logger log = LoggerFactory.getLogger(UserAlarmLoadTest.class);
+
+    private static final int CONNECTIONS = Integer.getInteger("load.connections", 1000);
+    private static final int USERS = Integer.getInteger("load.users", CONNECTIONS);
+    private static final int PUBLISH_RATE = Integer.getInteger("load.publishRate", 200);
+    private static final int DURATION_SECOND = Integer.getInteger("load.durationSecond", 30);
+
+    @LocalServerPort
+    private int port;
+
+    @Value("${jwt.secret_key}")
+    private String SECRET_KEY_STRING;
+
+    @Value("${user.login.access_token_cookie_name}")
+    private String ACCESS_TOKEN_COOKIE_NAME;
+
+    @Value("${alarm.realtime.hb_message}")
+    private String HB_MESSAGE;
+
+    @Autowired
+    private UserAlarmPublisher userAlarmPublisher;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    @DisplayName("sse 연결 부하 테스트")
+    void load() throws InterruptedException {
+        Timer setupTime = percentileTimer("load.connection.setup");
+        Timer deliveryLatency = percentileTimer("load.delivery.latency");
+        AtomicInteger connected = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        AtomicLong delivered = new AtomicLong();
+
+        WebClient webClient = createWebClient();
+        SecretKey secretKey = new SecretKeySpec(SECRET_KEY_STRING.getBytes(), "HmacSHA512");
+        ParameterizedTypeReference<ServerSentEvent<String>> eventType = new ParameterizedTypeReference<>() {};
+
+        //1. 연결
+        List<Disposable> connections = new ArrayList<>(CONNECTIONS);
+        long connectStart = System.nanoTime();
+        for(int i = 0; i < CONNECTIONS; i++) {
+            long userId = i % USERS;
+            String accessToken = createAccessToken(userId, secretKey);
+            long requestedAt = System.nanoTime();
+            AtomicInteger firstEvent = new AtomicInteger();
+            connections.add(webClient.get()
+                    .uri("/alarm/subscribe")
+                    .cookie(ACCESS_TOKEN_COOKIE_NAME, accessToken)
+                    .accept(MediaType.TEXT_EVENT_STREAM)
+                    .retrieve()
+                    .bodyToFlux(eventType)
+                    .subscribe(
+                            event -> {
+                                long now = System.nanoTime();
+                                //첫 이벤트(heartbeat)를 받으면 연결 완료
+                                if(firstEvent.getAndIncrement() == 0) {
+                                    setupTime.record(now - requestedAt, TimeUnit.NANOSECONDS);
+                                    connected.incrementAndGet();
+                                }
+                                String data = event.data();
+                                if(data == null || HB_MESSAGE.equals(data)) {
+                                    return;
+                                }
+                                deliveryLatency.record(now - Long.parseLong(data), TimeUnit.NANOSECONDS);
+                                delivered.incrementAndGet();
+                            },
+                            e -> failed.incrementAndGet()
+                    ));
+        }
+        //모든 연결이 완료되거나 실패할 때까지 대기
+        long connectDeadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+        while(connected.get() + failed.get() < CONNECTIONS && System.nanoTime() < connectDeadline) {
+            Thread.sleep(100);
+        }
+        long connectElapsedNanos = System.nanoTime() - connectStart;
+
+        //2. 발행
+        long published = publish();
+        //전달 중인 알람을 기다린다
+        Thread.sleep(2000);
+
+        report(setupTime, deliveryLatency, connected.get(), failed.get(), connectElapsedNanos, published, delivered.get());
+        connections.forEach(Disposable::dispose);
+
+        assertThat(connected.get()).isEqualTo(CONNECTIONS);
+        assertThat(delivered.get()).isPositive();
+    }
+
+    /*
+     * publishRate 간격으로 임의의 유저에게 발행한다. 본문은 발행 시각(nanoTime)
+     */
+    private long publish() {
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / PUBLISH_RATE;
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(DURATION_SECOND);
+        long next = start;
+        long published = 0;
+        while(next < end) {
+            long wait = next - System.nanoTime();
+            if(wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            long userId = ThreadLocalRandom.current().nextInt(USERS);
+            userAlarmPublisher.publish(userId, String.valueOf(System.nanoTime()));
+            published++;
+            next += intervalNanos;
+        }
+        return published;
+    }
+
+    private String createAccessToken(long userId, SecretKey secretKey) {
+        return Jwts.builder()
+                .subject(String.valueOf(userId))
+                .expiration(new Date(System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1)))
+                .signWith(secretKey)
+                .compact();
+    }
+
+    private WebClient createWebClient() {
+        //연결마다 tcp 연결 하나를 사용하므로 pool 크기를 연결 수 이상으로 둔다
+        ConnectionProvider provider = ConnectionProvider.builder("alarm-load")
+                .maxConnections(CONNECTIONS + 16)
+                .pendingAcquireMaxCount(-1)
+                .build();
+        HttpClient httpClient = HttpClient.create(provider).responseTimeout(Duration.ofMinutes(10));
+        return WebClient.builder()
+                .baseUrl("http://localhost:" + port)
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .build();
+    }
+
+    private Timer percentileTimer(String name) {
+        return Timer.builder(name)
+                .publishPercentiles(0.5, 0.99, 0.999)
+                .distributionStatisticExpiry(Duration.ofMinutes(30))
+                .distributionStatisticBufferLength(1)
+                .register(meterRegistry);
+    }
+
+    private void report(Timer setupTime, Timer deliveryLatency, int connected, int failed,
+                        long connectElapsedNanos, long published, long delivered) {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        StringBuilder report = new StringBuilder();
+        report.append("\n==================== alarm load test ====================\n");
+        report.append(String.format("connections     : %d connected, %d failed (target %d, users %d)%n", connected, failed, CONNECTIONS, USERS));
+        report.append(String.format("connect elapsed : %d ms%n", TimeUnit.NANOSECONDS.toMillis(connectElapsedNanos)));
+        report.append("connect setup   : ").append(percentiles(setupTime.takeSnapshot())).append('\n');
+        report.append(String.format("published       : %d (%.1f/s target %d/s)%n", published, published / (double) DURATION_SECOND, PUBLISH_RATE));
+        report.append(String.format("delivered       : %d (%.1f/s)%n", delivered, delivered / (double) DURATION_SECOND));
+        report.append("delivery latency: ").append(percentiles(deliveryLatency.takeSnapshot())).append('\n');
+        report.append(String.format("heap used       : %d MB / committed %d MB%n",
+                memory.getHeapMemoryUsage().getUsed() >> 20, memory.getHeapMemoryUsage().getCommitted() >> 20));
+        report.append(String.format("threads         : %d live, %d peak%n", threads.getThreadCount(), threads.getPeakThreadCount()));
+        report.append("=========================================================");
+        log.info("{}", report);
+    }
+
+    private static String percentiles(HistogramSnapshot snapshot) {
+        StringBuilder line = new StringBuilder();
+        for(ValueAtPercentile value : snapshot.percentileValues()) {
+            line.append(String.format("p%s=%.2fms ", trimPercentile(value.percentile() * 100), value.value(TimeUnit.MILLISECONDS)));
+        }
+        line.append(String.format("max=%.2fms", snapshot.max(TimeUnit.MILLISECONDS)));
+        return line.toString();
+    }
+
+    private static String trimPercentile(double percentile) {
+        return percentile == Math.rint(percentile) ? String.valueOf((long) percentile) : String.valueOf(percentile);
+    }
+}
@@ -0,0 +1,27 @@
+package com.bagulbagul.bagulbagul.alarm.controller;
+
+import com.bagulbagul.bagulbagul.alarm.service.redis.RedisUserAlarmDiagnostics;
+import com.bagulbagul.bagulbagul.alarm.service.redis.UserAlarmDiagnosticsSnapshot;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+
+/*
+ * 운영용 api. alarm.realtime.admin.user_ids 에 등록된 유저만 사용할 수 있다. (SecurityConfig)
+ */
+@RestController
+@RequestMapping("/alarm/admin")
+@RequiredArgsConstructor
+public class UserAlarmAdminController {
+
+    private final RedisUserAlarmDiagnostics redisUserAlarmDiagnostics;
+
+    //이 노드의 구독 현황
+    @GetMapping(value = "/diagnostics", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<UserAlarmDiagnosticsSnapshot> diagnostics() {
+        return redisUserAlarmDiagnostics.snapshot();
+    }
+}
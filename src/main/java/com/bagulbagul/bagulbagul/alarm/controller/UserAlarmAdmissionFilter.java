@@ -0,0 +1,49 @@
+package com.bagulbagul.bagulbagul.alarm.controller;
+
+import com.bagulbagul.bagulbagul.alarm.service.admission.UserAlarmAdmissionControl;
+import com.bagulbagul.bagulbagul.alarm.service.admission.UserAlarmReconnectDelay;
+import java.nio.charset.StandardCharsets;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+/*
+ * 구독 요청의 입장 제한. 인증보다 앞에서 실행해서 거절할 요청은 토큰 검증, 구독 등록을 하지 않는다.
+ * 거절된 요청에는 sse "retry:" 만 보내고 응답을 끝낸다.
+ * EventSource 는 200 응답이 정상 종료되면 retry 만큼 기다렸다가 재연결한다. (에러 상태 코드는 재연결하지 않는다)
+ * cors 처리 뒤에 실행되어야 하므로 security filter chain 에 등록한다.
+ */
+public class UserAlarmAdmissionFilter implements WebFilter {
+
+    private static final String SUBSCRIBE_PATH = "/alarm/subscribe";
+
+    private final UserAlarmAdmissionControl admissionControl;
+    private final UserAlarmReconnectDelay reconnectDelay;
+
+    public UserAlarmAdmissionFilter(UserAlarmAdmissionControl admissionControl, UserAlarmReconnectDelay reconnectDelay) {
+        this.admissionControl = admissionControl;
+        this.reconnectDelay = reconnectDelay;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        if(exchange.getRequest().getMethod() != HttpMethod.GET
+                || !SUBSCRIBE_PATH.equals(exchange.getRequest().getPath().pathWithinApplication().value())) {
+            return chain.filter(exchange);
+        }
+        return admissionControl.admit()
+                .flatMap(admitted -> admitted ? chain.filter(exchange) : reject(exchange.getResponse()));
+    }
+
+    private Mono<Void> reject(ServerHttpResponse response) {
+        response.setStatusCode(HttpStatus.OK);
+        response.getHeaders().setContentType(MediaType.TEXT_EVENT_STREAM);
+        byte[] frame = ("retry:" + reconnectDelay.next() + "\n\n").getBytes(StandardCharsets.US_ASCII);
+        return response.writeWith(Mono.just(response.bufferFactory().wrap(frame)));
+    }
+}
@@ -0,0 +1,132 @@
+package com.bagulbagul.bagulbagul.alarm.controller;
+
+import com.bagulbagul.bagulbagul.alarm.service.message.UserAlarmMessage;
+import java.nio.charset.StandardCharsets;
+
+/*
+ * 알람을 json 객체 하나를 담은 sse 프레임으로 쓴다. (alarm.realtime.sse.format=json)
+ * 형식 : data:{"id":<id|null>,"seq":<sequence>,"type":<type|null>,"priority":<priority>,"createdAt":<publishedAtMillis>,"payload":"<payload>"}\n\n
+ * seq 는 UserAlarmDispatcher 가 붙인 유저별 순번이다. 0 이면 순번이 없다. (dispatch 를 끈 경우, 보관된 알람 등)
+ *
+ * 필드가 고정되어 있으므로 jackson 의 reflection 을 거치지 않고 byte 단위로 바로 쓴다.
+ * - 크기를 먼저 계산해서 프레임마다 byte[] 를 한번만 만든다.
+ * - payload 는 json 문자열로 escape 한다. 줄바꿈도 escape 되므로 data 줄은 항상 하나다.
+ * - UTF-8 의 여러 byte 문자는 json 에서 그대로 쓸 수 있으므로 디코딩하지 않는다.
+ */
+final class UserAlarmJsonFrame {
+
+    private static final byte[] ID = "data:{\"id\":".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] SEQ = ",\"seq\":".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TYPE = ",\"type\":".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] PRIORITY = ",\"priority\":".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CREATED_AT = ",\"createdAt\":".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] PAYLOAD = ",\"payload\":".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] END = "}\n\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NULL = "null".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private UserAlarmJsonFrame() {
+    }
+
+    static byte[] frame(UserAlarmMessage message) {
+        byte[] id = message.getId() == null ? null : message.getId().getBytes(StandardCharsets.UTF_8);
+        byte[] type = message.getType() == null ? null : message.getType().getBytes(StandardCharsets.UTF_8);
+        byte[] seq = Long.toString(message.getSequence()).getBytes(StandardCharsets.US_ASCII);
+        byte[] priority = Integer.toString(message.getPriority()).getBytes(StandardCharsets.US_ASCII);
+        byte[] createdAt = Long.toString(message.getPublishedAtMillis()).getBytes(StandardCharsets.US_ASCII);
+        byte[] body = message.getBody();
+        int offset = message.getOffset();
+        int length = message.getLength();
+
+        int size = ID.length + stringSize(id, 0, id == null ? 0 : id.length)
+                + SEQ.length + seq.length
+                + TYPE.length + stringSize(type, 0, type == null ? 0 : type.length)
+                + PRIORITY.length + priority.length
+                + CREATED_AT.length + createdAt.length
+                + PAYLOAD.length + stringSize(body, offset, length)
+                + END.length;
+        byte[] frame = new byte[size];
+        int pos = 0;
+        pos = write(frame, pos, ID);
+        pos = writeString(frame, pos, id, 0, id == null ? 0 : id.length);
+        pos = write(frame, pos, SEQ);
+        pos = write(frame, pos, seq);
+        pos = write(frame, pos, TYPE);
+        pos = writeString(frame, pos, type, 0, type == null ? 0 : type.length);
+        pos = write(frame, pos, PRIORITY);
+        pos = write(frame, pos, priority);
+        pos = write(frame, pos, CREATED_AT);
+        pos = write(frame, pos, createdAt);
+        pos = write(frame, pos, PAYLOAD);
+        pos = writeString(frame, pos, body, offset, length);
+        write(frame, pos, END);
+        return frame;
+    }
+
+    //따옴표를 포함한 json 문자열의 크기. null 이면 "null"
+    private static int stringSize(byte[] value, int offset, int length) {
+        if(value == null) {
+            return NULL.length;
+        }
+        int size = length + 2;
+        for(int i = offset; i < offset + length; i++) {
+            int b = value[i] & 0xFF;
+            if(b == '"' || b == '\\' || b == '\n' || b == '\r' || b == '\t') {
+                size += 1;
+            }
+            else if(b < 0x20) {
+                //제어 문자는 6 byte 의 유니코드 escape 로 쓴다
+                size += 5;
+            }
+        }
+        return size;
+    }
+
+    private static int writeString(byte[] frame, int pos, byte[] value, int offset, int length) {
+        if(value == null) {
+            return write(frame, pos, NULL);
+        }
+        frame[pos++] = '"';
+        for(int i = offset; i < offset + length; i++) {
+            byte b = value[i];
+            switch (b) {
+                case '"', '\\' -> {
+                    frame[pos++] = '\\';
+                    frame[pos++] = b;
+                }
+                case '\n' -> {
+                    frame[pos++] = '\\';
+                    frame[pos++] = 'n';
+                }
+                case '\r' -> {
+                    frame[pos++] = '\\';
+                    frame[pos++] = 'r';
+                }
+                case '\t' -> {
+                    frame[pos++] = '\\';
+                    frame[pos++] = 't';
+                }
+                default -> {
+                    if(b >= 0 && b < 0x20) {
+                        frame[pos++] = '\\';
+                        frame[pos++] = 'u';
+                        frame[pos++] = '0';
+                        frame[pos++] = '0';
+                        frame[pos++] = HEX[b >>> 4];
+                        frame[pos++] = HEX[b & 0xF];
+                    }
+                    else {
+                        frame[pos++] = b;
+                    }
+                }
+            }
+        }
+        frame[pos++] = '"';
+        return pos;
+    }
+
+    private static int write(byte[] frame, int pos, byte[] value) {
+        System.arraycopy(value, 0, frame, pos, value.length);
+        return pos + value.length;
+    }
+}
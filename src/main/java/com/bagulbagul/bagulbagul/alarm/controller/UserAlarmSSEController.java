@@ -1,7 +1,8 @@
 package com.bagulbagul.bagulbagul.alarm.controller;
 
-import reactor.core.publisher.Flux;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import reactor.core.publisher.Mono;
 
 public interface UserAlarmSSEController {
-    Flux<String> subscribe(Long userId);
+    Mono<Void> subscribe(Long userId, String lastEventId, ServerHttpResponse response);
 }
@@ -1,14 +1,21 @@
 package com.bagulbagul.bagulbagul.alarm.controller;
 
 import com.bagulbagul.bagulbagul.alarm.service.UserAlarmSubscribeManager;
+import com.bagulbagul.bagulbagul.alarm.service.buffer.UserAlarmBatcher;
+import com.bagulbagul.bagulbagul.alarm.service.message.UserAlarmMessage;
+import com.bagulbagul.bagulbagul.alarm.service.metrics.UserAlarmMetrics;
 import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.buffer.DataBufferFactory;
 import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 @RestController
 @RequestMapping("/alarm")
@@ -16,14 +23,37 @@ import reactor.core.publisher.Flux;
 public class UserAlarmSSEControllerImpl implements UserAlarmSSEController {
 
     private final UserAlarmSubscribeManager userAlarmSubscribeManager;
+    private final UserAlarmSSEFrameEncoder userAlarmSSEFrameEncoder;
+    private final UserAlarmMetrics userAlarmMetrics;
+    private final UserAlarmBatcher userAlarmBatcher;
 
     @Override
     @GetMapping(value = "/subscribe", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
-    public Flux<String> subscribe(
-            @AuthenticationPrincipal Long userId
+    public Mono<Void> subscribe(
+            @AuthenticationPrincipal Long userId,
+            //재연결 시 브라우저가 마지막으로 받은 알람 id 를 보낸다
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId,
+            ServerHttpResponse response
     ) {
+        response.getHeaders().setContentType(MediaType.TEXT_EVENT_STREAM);
+        DataBufferFactory bufferFactory = response.bufferFactory();
         // 구독하고 연결된 flux 를 얻어옴.
-        return userAlarmSubscribeManager.subscribe(userId);
+        // String 으로 바꾸지 않고 메세지 byte 를 sse 프레임으로 바로 써서 메세지마다 flush 한다.
+        // writeAndFlushWith 는 앞 프레임을 flush 한 뒤에 다음 프레임을 요청하므로 여기서 잰 시각이 응답에 쓰는 시각이다.
+        Flux<UserAlarmMessage> messages = userAlarmSubscribeManager.subscribe(userId, lastEventId);
+        if(userAlarmBatcher.isEnabled()) {
+            // 몰려온 알람은 묶어서 한번만 flush 한다
+            return response.writeAndFlushWith(
+                    userAlarmBatcher.apply(messages)
+                            .doOnNext(batch -> batch.forEach(userAlarmMetrics::recordDelivered))
+                            .map(batch -> userAlarmSSEFrameEncoder.encodeBatch(batch, bufferFactory))
+            );
+        }
+        return response.writeAndFlushWith(
+                messages
+                        .doOnNext(userAlarmMetrics::recordDelivered)
+                        .map(message -> userAlarmSSEFrameEncoder.encode(message, bufferFactory))
+        );
     }
 
 }
@@ -0,0 +1,148 @@
+package com.bagulbagul.bagulbagul.alarm.controller;
+
+import com.bagulbagul.bagulbagul.alarm.service.admission.UserAlarmReconnectDelay;
+import com.bagulbagul.bagulbagul.alarm.service.message.UserAlarmMessage;
+import jakarta.annotation.PostConstruct;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import lombok.RequiredArgsConstructor;
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/*
+ * 알람 메세지를 text/event-stream 프레임("data:<body>\n\n")으로 직접 인코딩한다.
+ * 본문 byte[] 를 복사하지 않고 읽기 전용 view 로 감싸서 쓰며, "data:" 와 "\n\n" 은 미리 인코딩된 상수를 공유한다.
+ * 같은 메세지를 받는 여러 연결은 같은 byte[] 를 공유하고 연결마다 view 객체만 만든다.
+ * heap byte[] 를 공유하므로 별도의 reference counting 없이 GC 가 회수한다.
+ * alarm.realtime.sse.format=json 이면 봉투의 메타데이터를 담은 json 프레임(UserAlarmJsonFrame)으로 쓴다.
+ */
+@Component
+@RequiredArgsConstructor
+public class UserAlarmSSEFrameEncoder {
+
+    private static final byte[] DATA_PREFIX = "data:".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] FRAME_END = "\n\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] ID_PREFIX = "id:".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] LINE_END = "\n".getBytes(StandardCharsets.US_ASCII);
+    //서버가 연결을 끊기 전에 보내는 재연결 안내 이벤트. 앞에 "retry:<무작위 대기 시간>\n" 을 붙인다
+    private static final byte[] RECONNECT_EVENT = "event:reconnect\ndata:\n\n".getBytes(StandardCharsets.US_ASCII);
+
+    private final UserAlarmReconnectDelay reconnectDelay;
+
+    //HeartBeat 요청 메세지 내용
+    @Value("${alarm.realtime.hb_message}")
+    private String HEARTBEAT_MESSAGE;
+    // raw : payload 를 그대로 data 로 보낸다 | json : 봉투의 메타데이터와 payload 를 json 객체로 보낸다
+    @Value("${alarm.realtime.sse.format}")
+    private String SSE_FORMAT;
+
+    private static final String SSE_FORMAT_JSON = "json";
+    private boolean json;
+
+    //heartbeat 는 프레임 전체를 한번만 인코딩해두고 모든 연결이 공유한다
+    private ByteBuffer heartbeatFrame;
+
+    @PostConstruct
+    private void init() {
+        byte[] body = HEARTBEAT_MESSAGE.getBytes(StandardCharsets.UTF_8);
+        heartbeatFrame = ByteBuffer.wrap(frameMultiLine(body, 0, body.length)).asReadOnlyBuffer();
+        json = SSE_FORMAT_JSON.equals(SSE_FORMAT);
+    }
+
+    /*
+     * 메세지 하나를 프레임 하나로 인코딩한다. 반환된 Publisher 의 buffer 들은 한번에 쓰고 flush 한다.
+     */
+    public Publisher<DataBuffer> encode(UserAlarmMessage message, DataBufferFactory bufferFactory) {
+        if(message.isHeartbeat()) {
+            return Mono.just(bufferFactory.wrap(heartbeatFrame.duplicate()));
+        }
+        if(message.isReconnect()) {
+            byte[] retry = ("retry:" + reconnectDelay.next() + "\n").getBytes(StandardCharsets.US_ASCII);
+            return Flux.just(
+                    bufferFactory.wrap(retry),
+                    bufferFactory.wrap(ByteBuffer.wrap(RECONNECT_EVENT).asReadOnlyBuffer())
+            );
+        }
+        Publisher<DataBuffer> frame = json
+                ? Mono.just(bufferFactory.wrap(UserAlarmJsonFrame.frame(message)))
+                : encodeData(message, bufferFactory);
+        //replay 로그의 id 가 있으면 "id:<id>\n" 을 앞에 붙인다. 브라우저가 재연결 시 Last-Event-ID 로 보내준다.
+        if(message.getId() != null) {
+            byte[] id = message.getId().getBytes(StandardCharsets.US_ASCII);
+            return Flux.concat(
+                    Flux.just(
+                            bufferFactory.wrap(ByteBuffer.wrap(ID_PREFIX).asReadOnlyBuffer()),
+                            bufferFactory.wrap(id),
+                            bufferFactory.wrap(ByteBuffer.wrap(LINE_END).asReadOnlyBuffer())
+                    ),
+                    frame
+            );
+        }
+        return frame;
+    }
+
+    /*
+     * 여러 메세지를 이어붙여 한번에 쓰고 flush 한다. 프레임은 메세지마다 따로 있다.
+     */
+    public Publisher<DataBuffer> encodeBatch(List<UserAlarmMessage> messages, DataBufferFactory bufferFactory) {
+        if(messages.size() == 1) {
+            return encode(messages.get(0), bufferFactory);
+        }
+        return Flux.fromIterable(messages).concatMap(message -> encode(message, bufferFactory));
+    }
+
+    private Publisher<DataBuffer> encodeData(UserAlarmMessage message, DataBufferFactory bufferFactory) {
+        byte[] body = message.getBody();
+        int offset = message.getOffset();
+        int length = message.getLength();
+        //여러 줄 메세지는 줄마다 "data:" 를 붙여야 하므로 새로 만든다
+        if(containsLineBreak(body, offset, length)) {
+            return Mono.just(bufferFactory.wrap(frameMultiLine(body, offset, length)));
+        }
+        return Flux.just(
+                bufferFactory.wrap(ByteBuffer.wrap(DATA_PREFIX).asReadOnlyBuffer()),
+                bufferFactory.wrap(ByteBuffer.wrap(body, offset, length).asReadOnlyBuffer()),
+                bufferFactory.wrap(ByteBuffer.wrap(FRAME_END).asReadOnlyBuffer())
+        );
+    }
+
+    private static boolean containsLineBreak(byte[] body, int offset, int length) {
+        for(int i = offset; i < offset + length; i++) {
+            if(body[i] == '\n' || body[i] == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /*
+     * 줄바꿈(\n, \r\n, \r)마다 "data:" 를 붙인 프레임
+     */
+    private static byte[] frameMultiLine(byte[] body, int offset, int length) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(length + DATA_PREFIX.length * 2 + FRAME_END.length);
+        out.write(DATA_PREFIX, 0, DATA_PREFIX.length);
+        int end = offset + length;
+        for(int i = offset; i < end; i++) {
+            byte b = body[i];
+            if(b == '\r' || b == '\n') {
+                if(b == '\r' && i + 1 < end && body[i + 1] == '\n') {
+                    i++;
+                }
+                out.write('\n');
+                out.write(DATA_PREFIX, 0, DATA_PREFIX.length);
+            }
+            else {
+                out.write(b);
+            }
+        }
+        out.write(FRAME_END, 0, FRAME_END.length);
+        return out.toByteArray();
+    }
+}
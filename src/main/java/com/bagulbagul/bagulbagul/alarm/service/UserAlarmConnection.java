@@ -0,0 +1,157 @@
+package com.bagulbagul.bagulbagul.alarm.service;
+
+import com.bagulbagul.bagulbagul.alarm.service.message.UserAlarmMessage;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+/*
+ * sse 연결 하나의 상태.
+ * 마지막으로 데이터를 보낸 시각을 기록해서 최근에 알람을 보낸 연결은 heartbeat 를 생략할 수 있게 한다.
+ * 버퍼에 쌓인 메세지 수를 세서 받지 못하는 연결을 찾아 끊을 수 있게 한다.
+ */
+public class UserAlarmConnection {
+
+    private final long userId;
+    private volatile long lastWriteNanos;
+    private volatile FluxSink<UserAlarmMessage> heartbeatSink;
+    private volatile boolean closed;
+
+    //버퍼에 들어갔지만 아직 나가지 않은 메세지 수. 느린 연결 감시가 trackQueued 로 켰을 때만 센다
+    private final AtomicInteger queued = new AtomicInteger();
+    //모든 연결의 queued 합계. 세지 않는 연결이면 null
+    private volatile LongAdder queuedTotal;
+    //high watermark 를 넘은 시각. 넘은 상태가 아니면 0
+    private volatile long aboveHighWatermarkSinceNanos;
+    private final Sinks.Empty<Void> eviction = Sinks.empty();
+    private volatile boolean evicted;
+
+    public UserAlarmConnection(long userId) {
+        this.userId = userId;
+        this.lastWriteNanos = System.nanoTime();
+    }
+
+    public long getUserId() {
+        return userId;
+    }
+
+    /*
+     * 알람을 보낼 때마다 호출. volatile 쓰기 하나만 수행한다.
+     */
+    public void touch() {
+        lastWriteNanos = System.nanoTime();
+    }
+
+    public long getLastWriteNanos() {
+        return lastWriteNanos;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    public void bindHeartbeatSink(FluxSink<UserAlarmMessage> heartbeatSink) {
+        this.heartbeatSink = heartbeatSink;
+    }
+
+    /*
+     * heartbeat 를 보낸다. 요청량이 없는 연결이면 버려진다.
+     */
+    public void sendHeartbeat(UserAlarmMessage heartbeatMessage) {
+        FluxSink<UserAlarmMessage> sink = heartbeatSink;
+        if(sink != null) {
+            sink.next(heartbeatMessage);
+            touch();
+        }
+    }
+
+    public void close() {
+        closed = true;
+    }
+
+    /*
+     * 버퍼에 쌓인 메세지 수를 세기 시작한다. 느린 연결 감시를 켰을 때 메세지가 들어오기 전에 호출한다.
+     * 켜지 않은 연결은 버퍼 정책이 버린 메세지(dropped)도 세지 않아서 쌓인 수가 음수로 내려가지 않는다.
+     */
+    public void trackQueued(LongAdder total) {
+        this.queuedTotal = total;
+    }
+
+    //버퍼에 넣을 때. 쌓인 메세지 수를 반환한다
+    public int enqueued() {
+        LongAdder total = queuedTotal;
+        if(total != null) {
+            total.increment();
+        }
+        return queued.incrementAndGet();
+    }
+
+    //버퍼에서 나갈 때. 쌓인 메세지 수를 반환한다
+    public int dequeued() {
+        LongAdder total = queuedTotal;
+        if(total != null) {
+            total.decrement();
+        }
+        return queued.decrementAndGet();
+    }
+
+    //버퍼 정책이 메세지를 버리거나 대체했을 때
+    public void dropped() {
+        LongAdder total = queuedTotal;
+        if(total != null) {
+            total.decrement();
+            queued.decrementAndGet();
+        }
+    }
+
+    /*
+     * 연결이 끝날 때 버퍼에 남은 채로 버려진 메세지를 합계에서 뺀다. 이후로는 합계에 더하지 않는다.
+     */
+    public void releaseQueued() {
+        LongAdder total = queuedTotal;
+        if(total != null) {
+            queuedTotal = null;
+            total.add(-queued.getAndSet(0));
+        }
+    }
+
+    public int getQueued() {
+        return queued.get();
+    }
+
+    public long getAboveHighWatermarkSinceNanos() {
+        return aboveHighWatermarkSinceNanos;
+    }
+
+    public void setAboveHighWatermarkSinceNanos(long aboveHighWatermarkSinceNanos) {
+        this.aboveHighWatermarkSinceNanos = aboveHighWatermarkSinceNanos;
+    }
+
+    /*
+     * 연결을 끊도록 표시한다. 처음 호출한 경우에만 true
+     */
+    public boolean evict() {
+        if(evicted) {
+            return false;
+        }
+        synchronized (this) {
+            if(evicted) {
+                return false;
+            }
+            evicted = true;
+        }
+        eviction.tryEmitEmpty();
+        return true;
+    }
+
+    public boolean isEvicted() {
+        return evicted;
+    }
+
+    //evict 되면 완료되는 Mono
+    public Mono<Void> evicted() {
+        return eviction.asMono();
+    }
+}
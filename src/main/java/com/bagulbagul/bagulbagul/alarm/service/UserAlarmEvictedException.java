@@ -0,0 +1,13 @@
+package com.bagulbagul.bagulbagul.alarm.service;
+
+/*
+ * 끊기로 한 연결이 재연결 안내를 받아가지 못했을 때 응답을 끝내는 에러.
+ * 완료로 끝내면 웹 서버가 쓰지 못한 프레임을 보내려고 연결을 붙잡고 있으므로 에러로 끝내서 연결을 바로 닫게 한다.
+ * 연결마다 생기므로 stack trace 는 만들지 않는다.
+ */
+public class UserAlarmEvictedException extends RuntimeException {
+
+    public UserAlarmEvictedException(long userId) {
+        super("재연결 안내를 보내지 못한 연결 종료. userId = " + userId, null, false, false);
+    }
+}
@@ -0,0 +1,13 @@
+package com.bagulbagul.bagulbagul.alarm.service;
+
+public interface UserAlarmPublisher {
+    void publish(long userId, String message);
+    //같은 coalesceKey 의 알람은 클라이언트에 아직 전달되지 않았다면 최신 것만 전달된다
+    void publish(long userId, String message, String coalesceKey);
+    //알람 종류와 우선순위(클수록 급함)를 봉투에 싣는다. 없으면 null, 0
+    void publish(long userId, String type, int priority, String message, String coalesceKey);
+    //groupId 구성원 중 접속한 유저에게 보낸다. 노드마다 한번만 발행된다
+    void publishToGroup(String groupId, String message);
+    //접속한 모든 유저에게 보낸다
+    void broadcast(String message);
+}
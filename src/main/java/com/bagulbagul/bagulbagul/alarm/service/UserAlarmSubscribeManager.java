@@ -1,7 +1,9 @@
 package com.bagulbagul.bagulbagul.alarm.service;
 
+import com.bagulbagul.bagulbagul.alarm.service.message.UserAlarmMessage;
 import reactor.core.publisher.Flux;
 
 public interface UserAlarmSubscribeManager {
-    Flux<String> subscribe(Long userId);
+    Flux<UserAlarmMessage> subscribe(Long userId);
+    Flux<UserAlarmMessage> subscribe(Long userId, String lastEventId);
 }
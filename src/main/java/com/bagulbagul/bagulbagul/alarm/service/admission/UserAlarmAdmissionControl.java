@@ -0,0 +1,134 @@
+package com.bagulbagul.bagulbagul.alarm.service.admission;
+
+import com.bagulbagul.bagulbagul.alarm.service.metrics.UserAlarmMetrics;
+import jakarta.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+/*
+ * 노드 단위의 구독 요청 수 제한. (token bucket)
+ * 노드가 재시작되면 모든 클라이언트가 한번에 재연결해서 인증, 구독 등록, redis 구독이 한 순간에 몰린다.
+ *
+ * - 초당 rate_per_second 개의 token 이 채워지고 최대 burst 개까지 모아둘 수 있다.
+ * - token 이 없으면 다음 token 이 채워질 때까지 기다린다. 기다리는 시간이 max_wait 를 넘거나 기다리는 요청이 max_waiting 개를 넘으면 거절한다.
+ * - 기다리는 요청은 큐에 넣지 않고 자기 차례의 시각을 예약해서 그만큼 지연시킨다. 스레드를 점유하지 않는다.
+ * - 차례가 오기 전에 끊긴 요청은 예약한 token 을 돌려준다. 돌려주지 않으면 재연결 폭주 중에 끊긴 요청만큼 뒤 요청이 밀리고 거절된다.
+ * 거절된 클라이언트는 무작위 재연결 대기 시간을 받고 나중에 다시 접속한다.
+ */
+@Component
+@RequiredArgsConstructor
+public class UserAlarmAdmissionControl {
+
+    @Value("${alarm.realtime.admission.enabled}")
+    private boolean ENABLED;
+    @Value("${alarm.realtime.admission.rate_per_second}")
+    private double RATE_PER_SECOND;
+    @Value("${alarm.realtime.admission.burst}")
+    private int BURST;
+    @Value("${alarm.realtime.admission.max_wait_millisecond}")
+    private long MAX_WAIT_MILLISECOND;
+    @Value("${alarm.realtime.admission.max_waiting}")
+    private int MAX_WAITING;
+
+    private final UserAlarmMetrics metrics;
+
+    private final AtomicInteger waiting = new AtomicInteger();
+    private long intervalNanos;
+    private long maxWaitNanos;
+    //모아둔 token 수
+    private double storedPermits;
+    //다음 token 을 줄 수 있는 시각
+    private long nextFreeNanos;
+    //종료 중이면 모두 거절
+    private volatile boolean closed;
+
+    @PostConstruct
+    private void init() {
+        intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / RATE_PER_SECOND);
+        maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(MAX_WAIT_MILLISECOND);
+        storedPermits = BURST;
+        nextFreeNanos = System.nanoTime();
+    }
+
+    /*
+     * 구독을 허용하면 true, 거절하면 false. 기다려야 하면 차례가 왔을 때 true 를 낸다.
+     */
+    public Mono<Boolean> admit() {
+        if(closed) {
+            metrics.admissionRejected();
+            return Mono.just(false);
+        }
+        if(!ENABLED) {
+            return Mono.just(true);
+        }
+        long waitNanos = reserve(System.nanoTime());
+        if(waitNanos < 0) {
+            metrics.admissionRejected();
+            return Mono.just(false);
+        }
+        if(waitNanos == 0) {
+            return Mono.just(true);
+        }
+        metrics.admissionDeferred();
+        AtomicBoolean arrived = new AtomicBoolean();
+        return Mono.delay(Duration.ofNanos(waitNanos))
+                .map(tick -> {
+                    arrived.set(true);
+                    return !closed;
+                })
+                .doOnCancel(() -> {
+                    if(!arrived.get()) {
+                        refund(System.nanoTime());
+                    }
+                })
+                .doFinally(signalType -> waiting.decrementAndGet());
+    }
+
+    /*
+     * 이후의 요청을 모두 거절한다. 노드 종료 시 호출한다.
+     */
+    public void close() {
+        closed = true;
+    }
+
+    /*
+     * token 하나를 예약하고 기다려야 하는 시간을 반환한다. 거절하면 -1
+     * 모아둔 token 이 없으면 다음 token 이 채워질 시각을 미리 가져가고, 그 다음 요청이 그만큼 뒤로 밀린다.
+     */
+    private synchronized long reserve(long now) {
+        //지난 시간만큼 token 을 채운다
+        if(now > nextFreeNanos) {
+            storedPermits = Math.min(BURST, storedPermits + (double) (now - nextFreeNanos) / intervalNanos);
+            nextFreeNanos = now;
+        }
+        long waitNanos = nextFreeNanos - now;
+        if(waitNanos > maxWaitNanos) {
+            return -1;
+        }
+        if(waitNanos > 0 && waiting.incrementAndGet() > MAX_WAITING) {
+            waiting.decrementAndGet();
+            return -1;
+        }
+        double fromStored = Math.min(1, storedPermits);
+        storedPermits -= fromStored;
+        nextFreeNanos += (long) ((1 - fromStored) * intervalNanos);
+        return waitNanos;
+    }
+
+    /*
+     * 차례가 오기 전에 끊긴 요청의 token 을 돌려준다.
+     * 기다리는 요청은 모아둔 token 이 없을 때만 생기므로 token 하나(intervalNanos)를 예약했다.
+     * 뒤에서 기다리는 요청의 시각은 그대로 두고 다음 요청이 비워진 자리를 가져간다. 지금보다 앞으로 당기지는 않는다.
+     */
+    private synchronized void refund(long now) {
+        if(nextFreeNanos > now) {
+            nextFreeNanos = Math.max(now, nextFreeNanos - intervalNanos);
+        }
+    }
+}
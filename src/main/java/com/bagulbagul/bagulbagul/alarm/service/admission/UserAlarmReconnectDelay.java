@@ -0,0 +1,25 @@
+package com.bagulbagul.bagulbagul.alarm.service.admission;
+
+import java.util.concurrent.ThreadLocalRandom;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/*
+ * 클라이언트에게 sse "retry:" 로 알려줄 재연결 대기 시간.
+ * 거절하거나 끊은 연결들이 같은 순간에 다시 접속하지 않도록 min ~ max 사이에서 무작위로 고른다.
+ */
+@Component
+public class UserAlarmReconnectDelay {
+
+    @Value("${alarm.realtime.admission.retry_min_millisecond}")
+    private long RETRY_MIN_MILLISECOND;
+    @Value("${alarm.realtime.admission.retry_max_millisecond}")
+    private long RETRY_MAX_MILLISECOND;
+
+    public long next() {
+        if(RETRY_MAX_MILLISECOND <= RETRY_MIN_MILLISECOND) {
+            return RETRY_MIN_MILLISECOND;
+        }
+        return ThreadLocalRandom.current().nextLong(RETRY_MIN_MILLISECOND, RETRY_MAX_MILLISECOND + 1);
+    }
+}
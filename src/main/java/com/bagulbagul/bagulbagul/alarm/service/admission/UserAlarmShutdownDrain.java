@@ -0,0 +1,76 @@
+package com.bagulbagul.bagulbagul.alarm.service.admission;
+
+import com.bagulbagul.bagulbagul.alarm.service.heartbeat.UserAlarmHeartbeatWheel;
+import com.bagulbagul.bagulbagul.alarm.service.metrics.UserAlarmMetrics;
+import java.util.concurrent.TimeUnit;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+/*
+ * 노드 종료 시 sse 연결을 정리한다.
+ * sse 연결은 끝나지 않으므로 웹 서버의 graceful shutdown 은 시간 제한까지 기다리다가 연결을 한번에 끊는다.
+ * 그러면 모든 클라이언트가 같은 retry 값으로 동시에 다른 노드에 재연결한다.
+ *
+ * 웹 서버보다 먼저 멈추면서(SmartLifecycle 은 phase 가 큰 것부터 멈춘다)
+ * 1. 새 구독 요청을 거절하고
+ * 2. 모든 연결에 무작위 "retry:" 와 재연결 안내를 보낸 뒤 응답을 끝내고
+ * 3. 연결이 모두 닫힐 때까지 잠깐 기다린다.
+ *    재연결 안내를 받아가지 못하는 멈춘 연결은 reconnect_grace 뒤에 구독 관리자가 닫으므로 그보다 짧게 기다리지 않는다.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class UserAlarmShutdownDrain implements SmartLifecycle {
+
+    //재연결 안내를 보낸 뒤 웹 서버를 멈추기 전까지 기다리는 시간
+    @Value("${alarm.realtime.admission.drain_grace_millisecond}")
+    private long DRAIN_GRACE_MILLISECOND;
+    @Value("${alarm.realtime.admission.reconnect_grace_millisecond}")
+    private long RECONNECT_GRACE_MILLISECOND;
+
+    //닫히지 않은 연결이 남았는지 확인하는 간격
+    private static final long POLL_MILLISECOND = 50;
+
+    private final UserAlarmAdmissionControl admissionControl;
+    private final UserAlarmHeartbeatWheel heartbeatWheel;
+    private final UserAlarmMetrics metrics;
+
+    private volatile boolean running;
+
+    @Override
+    public void start() {
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        if(!running) {
+            return;
+        }
+        running = false;
+        admissionControl.close();
+        int evicted = heartbeatWheel.evictAll();
+        log.info("노드 종료. sse 연결 {}개에 재연결 안내", evicted);
+        if(evicted == 0) {
+            return;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(DRAIN_GRACE_MILLISECOND, RECONNECT_GRACE_MILLISECOND + POLL_MILLISECOND));
+        try {
+            while(metrics.getActiveConnections() > 0 && System.nanoTime() - deadline < 0) {
+                Thread.sleep(POLL_MILLISECOND);
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.info("노드 종료. 닫히지 않은 sse 연결 {}개", metrics.getActiveConnections());
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+}
@@ -0,0 +1,165 @@
+package com.bagulbagul.bagulbagul.alarm.service.broker;
+
+import com.bagulbagul.bagulbagul.alarm.service.dispatch.UserAlarmDispatcher;
+import com.bagulbagul.bagulbagul.alarm.service.dispatch.UserAlarmTarget;
+import com.bagulbagul.bagulbagul.alarm.service.message.UserAlarmEnvelope;
+import com.bagulbagul.bagulbagul.alarm.service.message.UserAlarmMessage;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Scheduler.Worker;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.concurrent.Queues;
+
+/*
+ * redis 없이 프로세스 안에서 알람을 전달하는 broker. (alarm.realtime.redis.listener=inprocess)
+ * 단일 노드 배포, redis 없는 테스트, redis 구간을 뺀 지연 시간의 기준값을 재는 데 사용한다.
+ * 다른 노드로는 전달되지 않는다. presence, replay, offline inbox, group 구성원도 redis 대신 InProcess 구현을 사용한다.
+ * (presence, replay, offline inbox 는 꺼지고 group 구성원은 메모리에 둔다)
+ *
+ * - 발행은 채널의 lane 에 있는 lock-free 큐(MPSC)에 넣기만 하고 바로 반환한다.
+ * - lane 마다 전용 스레드 하나가 큐를 비우면서 구독자에게 전달한다. 같은 채널은 항상 같은 lane 이므로 순서가 유지된다.
+ * - 구독 정보 조회는 ConcurrentHashMap, CopyOnWriteArrayList 의 lock 없는 읽기만 사용한다.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "alarm.realtime.redis.listener", havingValue = "inprocess")
+@RequiredArgsConstructor
+public class InProcessUserAlarmBroker implements UserAlarmBroker {
+
+    //전달 스레드 수. 0 이하면 cpu 수
+    @Value("${alarm.realtime.inprocess.lane_count}")
+    private int LANE_COUNT;
+
+    private final UserAlarmDispatcher dispatcher;
+
+    private final ConcurrentHashMap<String, Subscribers> channels = new ConcurrentHashMap<>();
+    private Scheduler scheduler;
+    private Lane[] lanes;
+
+    @PostConstruct
+    private void init() {
+        int laneCount = LANE_COUNT > 0 ? LANE_COUNT : Runtime.getRuntime().availableProcessors();
+        scheduler = Schedulers.newParallel("alarm-inprocess", laneCount);
+        lanes = new Lane[laneCount];
+        for(int i = 0; i < laneCount; i++) {
+            lanes[i] = new Lane(scheduler.createWorker());
+        }
+    }
+
+    @PreDestroy
+    private void destroy() {
+        scheduler.dispose();
+    }
+
+    @Override
+    public Disposable subscribe(String channel, UserAlarmTarget target) {
+        channels.computeIfAbsent(channel, key -> new Subscribers()).targets.add(target);
+        return () -> channels.computeIfPresent(channel, (key, subscribers) -> {
+            subscribers.targets.remove(target);
+            return subscribers.isEmpty() ? null : subscribers;
+        });
+    }
+
+    @Override
+    public void subscribe(List<String> channels, UserAlarmRouter router) {
+        for(String channel : channels) {
+            this.channels.computeIfAbsent(channel, key -> new Subscribers()).routers.add(router);
+        }
+    }
+
+    @Override
+    public void publish(String channel, byte[] message) {
+        lanes[Math.floorMod(channel.hashCode(), lanes.length)].offer(channel, message);
+    }
+
+    @Override
+    public boolean isBlocking() {
+        return false;
+    }
+
+    private void deliver(String channel, byte[] body) {
+        Subscribers subscribers = channels.get(channel);
+        if(subscribers == null) {
+            return;
+        }
+        if(!subscribers.targets.isEmpty()) {
+            //봉투가 있다면 헤더만 벗긴다. 모든 구독자가 같은 메세지를 공유한다
+            UserAlarmMessage message = UserAlarmEnvelope.unwrap(body);
+            if(message == null) {
+                log.warn("잘못된 형식의 알람 메세지. channel = {}", channel);
+            }
+            else {
+                for(UserAlarmTarget target : subscribers.targets) {
+                    dispatcher.dispatch(target, message);
+                }
+            }
+        }
+        for(UserAlarmRouter router : subscribers.routers) {
+            router.route(body);
+        }
+    }
+
+    private static final class Subscribers {
+        private final CopyOnWriteArrayList<UserAlarmTarget> targets = new CopyOnWriteArrayList<>();
+        private final CopyOnWriteArrayList<UserAlarmRouter> routers = new CopyOnWriteArrayList<>();
+
+        boolean isEmpty() {
+            return targets.isEmpty() && routers.isEmpty();
+        }
+    }
+
+    private record Delivery(String channel, byte[] body) {
+    }
+
+    /*
+     * 여러 스레드가 넣고 한 스레드가 비우는 큐.
+     * 비우는 작업은 wip 를 0 에서 올린 스레드만 예약하므로 큐마다 동시에 하나만 실행된다.
+     */
+    private final class Lane {
+        private final Queue<Delivery> queue = Queues.<Delivery>unboundedMultiproducer().get();
+        private final AtomicInteger wip = new AtomicInteger();
+        private final Worker worker;
+
+        Lane(Worker worker) {
+            this.worker = worker;
+        }
+
+        void offer(String channel, byte[] body) {
+            queue.offer(new Delivery(channel, body));
+            if(wip.getAndIncrement() == 0) {
+                worker.schedule(this::drain);
+            }
+        }
+
+        private void drain() {
+            int missed = 1;
+            for(;;) {
+                Delivery delivery;
+                while((delivery = queue.poll()) != null) {
+                    try {
+                        deliver(delivery.channel(), delivery.body());
+                    }
+                    catch (Exception e) {
+                        log.error("알람 전달 실패. channel = {}", delivery.channel(), e);
+                    }
+                }
+                missed = wip.addAndGet(-missed);
+                if(missed == 0) {
+                    return;
+                }
+            }
+        }
+    }
+}
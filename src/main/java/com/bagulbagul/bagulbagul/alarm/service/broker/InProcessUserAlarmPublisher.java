@@ -0,0 +1,80 @@
+package com.bagulbagul.bagulbagul.alarm.service.broker;
+
+import com.bagulbagul.bagulbagul.alarm.service.UserAlarmPublisher;
+import com.bagulbagul.bagulbagul.alarm.service.group.UserAlarmGroupDirectory;
+import com.bagulbagul.bagulbagul.alarm.service.message.UserAlarmEnvelopeFormat;
+import com.bagulbagul.bagulbagul.alarm.service.message.UserAlarmHeader;
+import com.bagulbagul.bagulbagul.alarm.service.redis.RedisUserAlarmShardMessageListener;
+import java.nio.charset.StandardCharsets;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/*
+ * inprocess broker 의 발행기. replay, presence 없이 구독 방식(user, shard)에 맞는 채널로 broker 에 바로 보낸다.
+ * 채널과 봉투의 규칙은 RedisUserAlarmPublisher 와 같다.
+ */
+@Component
+@ConditionalOnProperty(name = "alarm.realtime.redis.listener", havingValue = "inprocess")
+@RequiredArgsConstructor
+public class InProcessUserAlarmPublisher implements UserAlarmPublisher {
+
+    @Value("${alarm.realtime.redis.alarm_topic_prefix}")
+    private String TOPIC_PREFIX;
+    @Value("${alarm.realtime.redis.subscribe_mode}")
+    private String SUBSCRIBE_MODE;
+    @Value("${alarm.realtime.redis.shard_topic_prefix}")
+    private String SHARD_TOPIC_PREFIX;
+    @Value("${alarm.realtime.redis.shard_count}")
+    private int SHARD_COUNT;
+
+    private static final String SUBSCRIBE_MODE_SHARD = "shard";
+
+    private final UserAlarmBroker alarmBroker;
+    private final UserAlarmGroupDirectory groupDirectory;
+    private final UserAlarmEnvelopeFormat envelopeFormat;
+
+    @Override
+    public void publish(long userId, String message) {
+        publish(userId, null, 0, message, null);
+    }
+
+    @Override
+    public void publish(long userId, String message, String coalesceKey) {
+        publish(userId, null, 0, message, coalesceKey);
+    }
+
+    @Override
+    public void publish(long userId, String type, int priority, String message, String coalesceKey) {
+        boolean shardMode = SUBSCRIBE_MODE_SHARD.equals(SUBSCRIBE_MODE);
+        String channel = shardMode
+                ? SHARD_TOPIC_PREFIX + RedisUserAlarmShardMessageListener.shardOf(userId, SHARD_COUNT)
+                : TOPIC_PREFIX + userId;
+        UserAlarmHeader header = UserAlarmHeader.builder()
+                .userId(shardMode ? userId : null)
+                .coalesceKey(coalesceKey)
+                .createdAtMillis(System.currentTimeMillis())
+                .type(type)
+                .priority(priority)
+                .build();
+        alarmBroker.publish(channel, envelopeFormat.encode(header, message.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Override
+    public void publishToGroup(String groupId, String message) {
+        UserAlarmHeader header = UserAlarmHeader.builder()
+                .groupId(groupId)
+                .createdAtMillis(System.currentTimeMillis())
+                .build();
+        alarmBroker.publish(groupDirectory.getChannel(), envelopeFormat.encode(header, message.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Override
+    public void broadcast(String message) {
+        UserAlarmHeader header = UserAlarmHeader.builder()
+                .createdAtMillis(System.currentTimeMillis())
+                .build();
+        alarmBroker.publish(groupDirectory.getBroadcastChannel(), envelopeFormat.encode(header, message.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,38 @@
+package com.bagulbagul.bagulbagul.alarm.service.broker;
+
+import com.bagulbagul.bagulbagul.alarm.service.dispatch.UserAlarmTarget;
+import java.util.List;
+import reactor.core.Disposable;
+
+/*
+ * 알람 채널의 구독, 발행을 담당하는 broker.
+ * alarm.realtime.redis.listener 로 구현을 고른다.
+ * container : RedisMessageListenerContainer 사용. 리스너 등록/해제가 호출 스레드를 block 할 수 있다.
+ * reactive : ReactiveRedisMessageListenerContainer 사용. 등록/해제와 메세지 전달이 netty 이벤트 루프에서 non-blocking 으로 처리된다.
+ * pooled : pub/sub 연결 여러 개에 userId 의 consistent hash 로 채널을 나눈다. 수신 처리를 여러 I/O 스레드로 나눌 때 사용한다.
+ * inprocess : redis 없이 프로세스 안에서 전달한다. 단일 노드 배포와 테스트, redis 구간의 지연 시간 비교에 사용한다.
+ */
+public interface UserAlarmBroker {
+
+    /*
+     * channel 로 들어오는 메세지를 target 의 sink 로 전달한다. 반환된 Disposable 로 구독을 해제한다.
+     * sink 로 직접 보내지 않고 UserAlarmDispatcher 를 거친다.
+     */
+    Disposable subscribe(String channel, UserAlarmTarget target);
+
+    /*
+     * 여러 유저가 공유하는 채널들을 한번 구독하고 메세지를 router 로 전달한다.
+     */
+    void subscribe(List<String> channels, UserAlarmRouter router);
+
+    /*
+     * channel 로 메세지를 발행한다. 봉투가 필요하면 호출하는 쪽에서 붙인다.
+     * binary 봉투를 그대로 보낼 수 있도록 byte[] 로 받는다.
+     */
+    void publish(String channel, byte[] message);
+
+    /*
+     * 구독, 해제가 호출 스레드를 block 할 수 있다면 true. 이 경우 이벤트 루프 밖에서 호출해야 한다.
+     */
+    boolean isBlocking();
+}
@@ -0,0 +1,10 @@
+package com.bagulbagul.bagulbagul.alarm.service.broker;
+
+/*
+ * 여러 유저가 공유하는 채널(shard, inbox, group, broadcast)의 메세지를 이 노드의 sink 들로 나눠 보낸다.
+ * 채널 이름으로 수신자를 알 수 없으므로 봉투를 읽어서 수신자를 정한다.
+ */
+@FunctionalInterface
+public interface UserAlarmRouter {
+    void route(byte[] body);
+}
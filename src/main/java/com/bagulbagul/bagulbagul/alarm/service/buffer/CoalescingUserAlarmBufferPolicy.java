@@ -0,0 +1,131 @@
+package com.bagulbagul.bagulbagul.alarm.service.buffer;
+
+import com.bagulbagul.bagulbagul.alarm.service.UserAlarmConnection;
+import com.bagulbagul.bagulbagul.alarm.service.message.UserAlarmMessage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+
+/*
+ * coalesce key 가 같은 알람은 버퍼에 하나만 남긴다. (안 읽은 알람 수처럼 최신 값만 의미있는 알람)
+ * 아직 나가지 않은 같은 key 의 알람이 있으면 그 자리를 새 알람으로 바꾼다. 먼저 들어온 순서는 유지된다.
+ * heartbeat 도 하나만 남긴다. key 가 없는 알람은 각각 쌓이고 maxSize 를 넘으면 가장 오래된 것부터 버린다.
+ */
+public class CoalescingUserAlarmBufferPolicy implements UserAlarmBufferPolicy {
+
+    //heartbeat 를 하나로 합치기 위한 key
+    private static final Object HEARTBEAT_KEY = new Object();
+
+    private final int maxSize;
+    private final UserAlarmOverflowCounter overflowCounter;
+
+    public CoalescingUserAlarmBufferPolicy(int maxSize, UserAlarmOverflowCounter overflowCounter) {
+        this.maxSize = maxSize;
+        this.overflowCounter = overflowCounter;
+    }
+
+    @Override
+    public Flux<UserAlarmMessage> apply(Flux<UserAlarmMessage> connectionFlux, UserAlarmConnection connection) {
+        return Flux.create(sink -> {
+            CoalescingBuffer buffer = new CoalescingBuffer(sink, connection);
+            //upstream 은 무제한으로 받아서 버퍼에 쌓는다
+            Disposable upstream = connectionFlux.subscribe(buffer::offer, sink::error, buffer::complete);
+            sink.onRequest(n -> buffer.drain());
+            sink.onDispose(upstream);
+        });
+    }
+
+    private final class CoalescingBuffer {
+        private final FluxSink<UserAlarmMessage> sink;
+        private final UserAlarmConnection connection;
+        //key -> 알람. LinkedHashMap 은 첫 알람이 들어올 때 테이블을 만든다.
+        private final LinkedHashMap<Object, UserAlarmMessage> pending = new LinkedHashMap<>();
+        //drain 은 한번에 한 스레드만 실행한다
+        private final AtomicInteger wip = new AtomicInteger();
+        private boolean done;
+
+        CoalescingBuffer(FluxSink<UserAlarmMessage> sink, UserAlarmConnection connection) {
+            this.sink = sink;
+            this.connection = connection;
+        }
+
+        void offer(UserAlarmMessage message) {
+            synchronized (this) {
+                Object key = keyOf(message);
+                if(pending.replace(key, message) != null) {
+                    connection.dropped();
+                    overflowCounter.recordCoalesced();
+                }
+                else {
+                    pending.put(key, message);
+                    if(pending.size() > maxSize) {
+                        Iterator<UserAlarmMessage> eldest = pending.values().iterator();
+                        eldest.next();
+                        eldest.remove();
+                        connection.dropped();
+                        overflowCounter.recordDroppedOldest();
+                    }
+                }
+            }
+            drain();
+        }
+
+        void complete() {
+            synchronized (this) {
+                done = true;
+            }
+            drain();
+        }
+
+        void drain() {
+            if(wip.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            for(;;) {
+                for(;;) {
+                    if(sink.isCancelled()) {
+                        synchronized (this) {
+                            pending.clear();
+                        }
+                        return;
+                    }
+                    UserAlarmMessage next = null;
+                    boolean finished;
+                    synchronized (this) {
+                        finished = done && pending.isEmpty();
+                        if(!finished && !pending.isEmpty() && sink.requestedFromDownstream() > 0) {
+                            Iterator<UserAlarmMessage> eldest = pending.values().iterator();
+                            next = eldest.next();
+                            eldest.remove();
+                        }
+                    }
+                    if(finished) {
+                        sink.complete();
+                        return;
+                    }
+                    if(next == null) {
+                        break;
+                    }
+                    sink.next(next);
+                }
+                missed = wip.addAndGet(-missed);
+                if(missed == 0) {
+                    return;
+                }
+            }
+        }
+
+        private Object keyOf(UserAlarmMessage message) {
+            if(message.isHeartbeat()) {
+                return HEARTBEAT_KEY;
+            }
+            String coalesceKey = message.getCoalesceKey();
+            //key 가 없는 알람은 자기 자신을 key 로 사용해서 합쳐지지 않도록 한다
+            return coalesceKey != null ? coalesceKey : message;
+        }
+    }
+}
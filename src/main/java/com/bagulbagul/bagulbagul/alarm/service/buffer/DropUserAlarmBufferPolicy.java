@@ -0,0 +1,44 @@
+package com.bagulbagul.bagulbagul.alarm.service.buffer;
+
+import com.bagulbagul.bagulbagul.alarm.service.UserAlarmConnection;
+import com.bagulbagul.bagulbagul.alarm.service.message.UserAlarmMessage;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+
+/*
+ * 최대 maxSize 개까지 쌓고 넘치면 가장 오래된 알람(DROP_OLDEST) 또는 새로 들어온 알람(DROP_LATEST)을 버린다.
+ * reactor 의 onBackpressureBuffer 는 ArrayDeque 를 사용하므로 작은 크기로 시작해서 쌓인 만큼만 커진다.
+ * 알람을 받지 않는 연결은 maxSize 만큼의 공간을 미리 잡지 않는다.
+ */
+public class DropUserAlarmBufferPolicy implements UserAlarmBufferPolicy {
+
+    private final int maxSize;
+    private final BufferOverflowStrategy overflowStrategy;
+    private final UserAlarmOverflowCounter overflowCounter;
+
+    public DropUserAlarmBufferPolicy(int maxSize, BufferOverflowStrategy overflowStrategy, UserAlarmOverflowCounter overflowCounter) {
+        if(overflowStrategy == BufferOverflowStrategy.ERROR) {
+            throw new IllegalArgumentException("버퍼가 넘쳤다고 연결을 끊지 않는다");
+        }
+        this.maxSize = maxSize;
+        this.overflowStrategy = overflowStrategy;
+        this.overflowCounter = overflowCounter;
+    }
+
+    @Override
+    public Flux<UserAlarmMessage> apply(Flux<UserAlarmMessage> connectionFlux, UserAlarmConnection connection) {
+        return connectionFlux.onBackpressureBuffer(maxSize, dropped -> {
+            connection.dropped();
+            recordOverflow();
+        }, overflowStrategy);
+    }
+
+    private void recordOverflow() {
+        if(overflowStrategy == BufferOverflowStrategy.DROP_OLDEST) {
+            overflowCounter.recordDroppedOldest();
+        }
+        else {
+            overflowCounter.recordDroppedNewest();
+        }
+    }
+}
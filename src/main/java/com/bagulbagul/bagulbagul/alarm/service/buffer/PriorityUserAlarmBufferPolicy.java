@@ -0,0 +1,240 @@
+package com.bagulbagul.bagulbagul.alarm.service.buffer;
+
+import com.bagulbagul.bagulbagul.alarm.service.UserAlarmConnection;
+import com.bagulbagul.bagulbagul.alarm.service.message.UserAlarmMessage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+
+/*
+ * 알람 우선순위마다 따로 버퍼를 두고 급한 알람부터 내보낸다.
+ * 대량 발송(마케팅, 댓글 폭주 등)이 쌓여 있어도 급한 알람은 그 뒤에서 기다리지 않는다.
+ *
+ * - 우선순위 구분 : 봉투의 priority 가 0 보다 크면 HIGH, 0 이면 NORMAL, 0 보다 작으면 LOW. heartbeat 는 HIGH 에 하나만 남긴다.
+ * - 버퍼마다 최대 크기와 넘쳤을 때의 정책(Lane)을 따로 정한다.
+ * - 내보낼 때는 높은 우선순위부터 꺼낸다. 단, 낮은 우선순위 버퍼가 기다리는 동안 더 높은 우선순위 알람이
+ *   starvationLimit 개 연속으로 나갔다면 낮은 우선순위 알람을 하나 먼저 보낸다. (낮은 우선순위가 계속 밀리지 않도록)
+ * - 같은 우선순위 안에서는 들어온 순서를 유지한다.
+ */
+public class PriorityUserAlarmBufferPolicy implements UserAlarmBufferPolicy {
+
+    public static final int HIGH = 0;
+    public static final int NORMAL = 1;
+    public static final int LOW = 2;
+    private static final int LANE_COUNT = 3;
+
+    //heartbeat 를 하나로 합치기 위한 key
+    private static final Object HEARTBEAT_KEY = new Object();
+
+    private final Lane[] lanes;
+    private final int starvationLimit;
+    private final UserAlarmOverflowCounter overflowCounter;
+
+    public PriorityUserAlarmBufferPolicy(Lane high, Lane normal, Lane low, int starvationLimit, UserAlarmOverflowCounter overflowCounter) {
+        if(starvationLimit < 1) {
+            throw new IllegalArgumentException("starvationLimit 은 1 이상이어야 합니다. starvationLimit = " + starvationLimit);
+        }
+        this.lanes = new Lane[]{high, normal, low};
+        this.starvationLimit = starvationLimit;
+        this.overflowCounter = overflowCounter;
+    }
+
+    public static int laneOf(UserAlarmMessage message) {
+        if(message.isHeartbeat() || message.getPriority() > 0) {
+            return HIGH;
+        }
+        return message.getPriority() == 0 ? NORMAL : LOW;
+    }
+
+    @Override
+    public Flux<UserAlarmMessage> apply(Flux<UserAlarmMessage> connectionFlux, UserAlarmConnection connection) {
+        return Flux.create(sink -> {
+            PriorityBuffer buffer = new PriorityBuffer(sink, connection);
+            //upstream 은 무제한으로 받아서 우선순위별 버퍼에 쌓는다
+            Disposable upstream = connectionFlux.subscribe(buffer::offer, sink::error, buffer::complete);
+            sink.onRequest(n -> buffer.drain());
+            sink.onDispose(upstream);
+        });
+    }
+
+    /*
+     * 우선순위 하나의 버퍼 크기와 넘쳤을 때의 정책
+     */
+    public record Lane(int maxSize, Overflow overflow) {
+        public Lane {
+            if(maxSize < 1) {
+                throw new IllegalArgumentException("maxSize 는 1 이상이어야 합니다. maxSize = " + maxSize);
+            }
+        }
+    }
+
+    public enum Overflow {
+        //가장 오래된 알람을 버린다
+        DROP_OLDEST,
+        //새로 들어온 알람을 버린다
+        DROP_NEWEST,
+        //같은 coalesce key 의 알람은 최신 것만 남기고, 그래도 넘치면 가장 오래된 알람을 버린다
+        COALESCE;
+
+        public static Overflow of(String policy) {
+            return switch (policy) {
+                case "drop_oldest" -> DROP_OLDEST;
+                case "drop_newest" -> DROP_NEWEST;
+                case "coalesce" -> COALESCE;
+                default -> throw new IllegalArgumentException("알 수 없는 알람 버퍼 정책 : " + policy);
+            };
+        }
+    }
+
+    private final class PriorityBuffer {
+        private final FluxSink<UserAlarmMessage> sink;
+        private final UserAlarmConnection connection;
+        //우선순위별 key -> 알람. 알람이 들어올 때 만든다
+        @SuppressWarnings("unchecked")
+        private final LinkedHashMap<Object, UserAlarmMessage>[] pending = new LinkedHashMap[LANE_COUNT];
+        //우선순위별로 기다리는 동안 더 높은 우선순위 알람이 연속으로 나간 수
+        private final int[] skipped = new int[LANE_COUNT];
+        //drain 은 한번에 한 스레드만 실행한다
+        private final AtomicInteger wip = new AtomicInteger();
+        private int size;
+        private boolean done;
+
+        PriorityBuffer(FluxSink<UserAlarmMessage> sink, UserAlarmConnection connection) {
+            this.sink = sink;
+            this.connection = connection;
+        }
+
+        void offer(UserAlarmMessage message) {
+            synchronized (this) {
+                int lane = laneOf(message);
+                Lane config = lanes[lane];
+                LinkedHashMap<Object, UserAlarmMessage> queue = pending[lane];
+                if(queue == null) {
+                    queue = new LinkedHashMap<>();
+                    pending[lane] = queue;
+                }
+                Object key = keyOf(message, config.overflow());
+                if(queue.replace(key, message) != null) {
+                    connection.dropped();
+                    //밀린 heartbeat 를 새 heartbeat 로 바꾸는 것은 알람을 합친 것이 아니므로 세지 않는다
+                    if(key != HEARTBEAT_KEY) {
+                        overflowCounter.recordCoalesced();
+                    }
+                }
+                else if(queue.size() < config.maxSize()) {
+                    queue.put(key, message);
+                    size++;
+                }
+                else if(config.overflow() == Overflow.DROP_NEWEST) {
+                    connection.dropped();
+                    overflowCounter.recordDroppedNewest();
+                }
+                else {
+                    Iterator<UserAlarmMessage> eldest = queue.values().iterator();
+                    eldest.next();
+                    eldest.remove();
+                    queue.put(key, message);
+                    connection.dropped();
+                    overflowCounter.recordDroppedOldest();
+                }
+            }
+            drain();
+        }
+
+        void complete() {
+            synchronized (this) {
+                done = true;
+            }
+            drain();
+        }
+
+        void drain() {
+            if(wip.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            for(;;) {
+                for(;;) {
+                    if(sink.isCancelled()) {
+                        synchronized (this) {
+                            for(int lane = 0; lane < LANE_COUNT; lane++) {
+                                pending[lane] = null;
+                            }
+                            size = 0;
+                        }
+                        return;
+                    }
+                    UserAlarmMessage next = null;
+                    boolean finished;
+                    synchronized (this) {
+                        finished = done && size == 0;
+                        if(!finished && size > 0 && sink.requestedFromDownstream() > 0) {
+                            next = poll();
+                        }
+                    }
+                    if(finished) {
+                        sink.complete();
+                        return;
+                    }
+                    if(next == null) {
+                        break;
+                    }
+                    sink.next(next);
+                }
+                missed = wip.addAndGet(-missed);
+                if(missed == 0) {
+                    return;
+                }
+            }
+        }
+
+        //lock 을 잡고 호출한다
+        private UserAlarmMessage poll() {
+            int lane = starvedLane();
+            if(lane < 0) {
+                lane = 0;
+                while(isEmpty(lane)) {
+                    lane++;
+                }
+            }
+            skipped[lane] = 0;
+            //꺼낸 우선순위보다 낮은 우선순위에서 기다리는 알람은 한번 더 밀렸다
+            for(int lower = lane + 1; lower < LANE_COUNT; lower++) {
+                if(!isEmpty(lower)) {
+                    skipped[lower]++;
+                }
+            }
+            Iterator<UserAlarmMessage> eldest = pending[lane].values().iterator();
+            UserAlarmMessage message = eldest.next();
+            eldest.remove();
+            size--;
+            return message;
+        }
+
+        //starvationLimit 만큼 밀린 우선순위 중 가장 높은 것. 없으면 -1
+        private int starvedLane() {
+            for(int lane = 1; lane < LANE_COUNT; lane++) {
+                if(skipped[lane] >= starvationLimit && !isEmpty(lane)) {
+                    return lane;
+                }
+            }
+            return -1;
+        }
+
+        private boolean isEmpty(int lane) {
+            return pending[lane] == null || pending[lane].isEmpty();
+        }
+
+        private Object keyOf(UserAlarmMessage message, Overflow overflow) {
+            if(message.isHeartbeat()) {
+                return HEARTBEAT_KEY;
+            }
+            String coalesceKey = message.getCoalesceKey();
+            //합치지 않는 알람은 자기 자신을 key 로 사용한다
+            return overflow == Overflow.COALESCE && coalesceKey != null ? coalesceKey : message;
+        }
+    }
+}
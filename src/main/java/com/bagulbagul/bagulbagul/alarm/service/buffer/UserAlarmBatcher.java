@@ -0,0 +1,177 @@
+package com.bagulbagul.bagulbagul.alarm.service.buffer;
+
+import com.bagulbagul.bagulbagul.alarm.service.message.UserAlarmMessage;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.reactivestreams.Subscription;
+import reactor.core.Disposable;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.SignalType;
+import reactor.core.scheduler.Scheduler;
+
+/*
+ * 연결마다 몰려온 알람을 묶어서 한번에 쓰고 flush 한다.
+ * - 쉬고 있던 연결(마지막 batch 이후 maxDelay 가 지남)의 알람은 기다리지 않고 바로 보낸다. 단건 알람의 지연 시간은 그대로다.
+ * - 알람이 몰리는 동안에는 직전 batch 이후 maxDelay 까지 모아서 보낸다. maxSize 만큼 모이면 바로 보낸다.
+ * - 앞 batch 를 쓰는 중이라 요청이 없으면 그 사이 온 알람을 다음 batch 에 담는다.
+ * upstream 에는 maxSize 개까지만 요청하므로 그 이상 쌓이는 알람은 앞단의 버퍼 정책이 처리한다.
+ */
+public class UserAlarmBatcher {
+
+    private final int maxSize;
+    private final long maxDelayNanos;
+    private final Scheduler scheduler;
+
+    public UserAlarmBatcher(int maxSize, Duration maxDelay, Scheduler scheduler) {
+        this.maxSize = Math.max(1, maxSize);
+        this.maxDelayNanos = maxDelay.toNanos();
+        this.scheduler = scheduler;
+    }
+
+    //maxSize 가 1이면 묶지 않는다
+    public boolean isEnabled() {
+        return maxSize > 1;
+    }
+
+    public Flux<List<UserAlarmMessage>> apply(Flux<UserAlarmMessage> messages) {
+        return Flux.create(sink -> {
+            Batch batch = new Batch(sink);
+            sink.onRequest(n -> batch.drain());
+            sink.onDispose(batch::dispose);
+            messages.subscribe(batch);
+        });
+    }
+
+    private final class Batch extends BaseSubscriber<UserAlarmMessage> {
+        private final FluxSink<List<UserAlarmMessage>> sink;
+        private final ArrayDeque<UserAlarmMessage> pending = new ArrayDeque<>();
+        //drain 은 한번에 한 스레드만 실행한다
+        private final AtomicInteger wip = new AtomicInteger();
+        //처음 알람은 바로 나가도록 maxDelay 이전에 보낸 것으로 둔다
+        private long lastEmitNanos = System.nanoTime() - maxDelayNanos - 1;
+        private Disposable timer;
+        private boolean done;
+        private Throwable error;
+
+        Batch(FluxSink<List<UserAlarmMessage>> sink) {
+            this.sink = sink;
+        }
+
+        @Override
+        protected void hookOnSubscribe(Subscription subscription) {
+            subscription.request(maxSize);
+        }
+
+        @Override
+        protected void hookOnNext(UserAlarmMessage message) {
+            synchronized (this) {
+                pending.add(message);
+            }
+            drain();
+        }
+
+        @Override
+        protected void hookOnComplete() {
+            synchronized (this) {
+                done = true;
+            }
+            drain();
+        }
+
+        @Override
+        protected void hookOnError(Throwable throwable) {
+            synchronized (this) {
+                error = throwable;
+                done = true;
+            }
+            drain();
+        }
+
+        @Override
+        protected void hookFinally(SignalType type) {
+            cancelTimer();
+        }
+
+        void drain() {
+            if(wip.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            for(;;) {
+                for(;;) {
+                    if(sink.isCancelled()) {
+                        synchronized (this) {
+                            pending.clear();
+                        }
+                        return;
+                    }
+                    List<UserAlarmMessage> next = null;
+                    boolean finished;
+                    synchronized (this) {
+                        finished = done && pending.isEmpty();
+                        if(!finished && !pending.isEmpty() && sink.requestedFromDownstream() > 0) {
+                            long now = System.nanoTime();
+                            long wait = lastEmitNanos + maxDelayNanos - now;
+                            //알람이 몰리는 중이면 더 모은다. upstream 이 끝났으면 기다리지 않는다
+                            if(wait > 0 && pending.size() < maxSize && !done) {
+                                scheduleDrain(wait);
+                            }
+                            else {
+                                next = new ArrayList<>(Math.min(pending.size(), maxSize));
+                                while(!pending.isEmpty() && next.size() < maxSize) {
+                                    next.add(pending.poll());
+                                }
+                                lastEmitNanos = now;
+                            }
+                        }
+                    }
+                    if(finished) {
+                        if(error != null) {
+                            sink.error(error);
+                        }
+                        else {
+                            sink.complete();
+                        }
+                        return;
+                    }
+                    if(next == null) {
+                        break;
+                    }
+                    sink.next(next);
+                    //내보낸 만큼 upstream 에 다시 요청
+                    request(next.size());
+                }
+                missed = wip.addAndGet(-missed);
+                if(missed == 0) {
+                    return;
+                }
+            }
+        }
+
+        //lock 을 잡은 상태로 호출된다
+        private void scheduleDrain(long delayNanos) {
+            if(timer != null) {
+                return;
+            }
+            timer = scheduler.schedule(() -> {
+                synchronized (this) {
+                    timer = null;
+                }
+                drain();
+            }, delayNanos, TimeUnit.NANOSECONDS);
+        }
+
+        private synchronized void cancelTimer() {
+            if(timer != null) {
+                timer.dispose();
+                timer = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.bagulbagul.bagulbagul.alarm.service.buffer;
+
+import com.bagulbagul.bagulbagul.alarm.service.UserAlarmConnection;
+import com.bagulbagul.bagulbagul.alarm.service.message.UserAlarmMessage;
+import reactor.core.publisher.Flux;
+
+/*
+ * sse 연결 하나가 아직 쓰지 못한 알람을 얼마나, 어떻게 쌓아둘지 정하는 정책.
+ * 연결마다 적용되며 upstream 에는 무제한으로 요청하고 쌓인 알람은 클라이언트가 받는 속도에 맞춰 내보낸다.
+ * 버퍼가 가득 찼을 때 버린 알람, 대체된 알람은 UserAlarmOverflowCounter 와 연결(connection.dropped())에 기록한다.
+ */
+public interface UserAlarmBufferPolicy {
+    Flux<UserAlarmMessage> apply(Flux<UserAlarmMessage> connectionFlux, UserAlarmConnection connection);
+}
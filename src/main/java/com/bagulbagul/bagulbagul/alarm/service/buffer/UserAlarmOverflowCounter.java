@@ -0,0 +1,106 @@
+package com.bagulbagul.bagulbagul.alarm.service.buffer;
+
+import com.bagulbagul.bagulbagul.alarm.service.jfr.UserAlarmEmitEvent;
+import com.bagulbagul.bagulbagul.alarm.service.message.UserAlarmMessage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Sinks.EmitResult;
+import reactor.core.publisher.Sinks.Many;
+
+/*
+ * 버퍼가 넘쳐서 버리거나 합친 알람 수.
+ * 여러 이벤트 루프에서 동시에 올리므로 경합이 적은 LongAdder 를 사용한다.
+ */
+@Component
+public class UserAlarmOverflowCounter {
+
+    //FAIL_NON_SERIALIZED 를 재시도하는 최대 시간. 넘기면 알람을 세고 버린다
+    private static final long EMIT_SPIN_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    //연결 버퍼가 가득 차서 가장 오래된 알람을 버림
+    private final LongAdder droppedOldest = new LongAdder();
+    //연결 버퍼가 가득 차서 새 알람을 버림
+    private final LongAdder droppedNewest = new LongAdder();
+    //같은 coalesce key 의 새 알람으로 대체됨
+    private final LongAdder coalesced = new LongAdder();
+    //유저의 공유 sink 가 가득 차서 받지 못함
+    private final LongAdder sinkRejected = new LongAdder();
+    //다른 스레드가 계속 sink 로 보내고 있어서 재시도 시간 안에 보내지 못함
+    private final LongAdder sinkContended = new LongAdder();
+    //sink 로 보낸 결과별 횟수. EmitResult.ordinal() 로 찾는다.
+    private final LongAdder[] emitResults = new LongAdder[EmitResult.values().length];
+
+    public UserAlarmOverflowCounter() {
+        for(int i = 0; i < emitResults.length; i++) {
+            emitResults[i] = new LongAdder();
+        }
+    }
+
+    /*
+     * 유저의 공유 sink 로 알람을 보낸다.
+     * emitNext 는 sink 가 넘치면 sink 를 에러로 종료시키므로 tryEmitNext 로 보내고 넘친 알람은 세고 버린다.
+     * UserAlarmDispatcher 를 켜면 유저마다 한 스레드만 보내므로 FAIL_NON_SERIALIZED 재시도는 sink 를 닫는 쪽과 겹칠 때만 일어난다.
+     * 끄면 여러 리스너 스레드가 겹칠 수 있으므로 Sinks.EmitFailureHandler.busyLooping 처럼 정해진 시간까지만 재시도하고,
+     * 그 안에 보내지 못한 알람은 sinkContended 로 세고 버린다.
+     * userId 는 JFR 이벤트에만 사용한다.
+     */
+    public void emit(long userId, Many<UserAlarmMessage> sink, UserAlarmMessage message) {
+        UserAlarmEmitEvent event = new UserAlarmEmitEvent();
+        event.begin();
+        EmitResult result = sink.tryEmitNext(message);
+        int retries = 0;
+        if(result == EmitResult.FAIL_NON_SERIALIZED) {
+            long deadline = System.nanoTime() + EMIT_SPIN_NANOS;
+            do {
+                Thread.onSpinWait();
+                retries++;
+                result = sink.tryEmitNext(message);
+            } while(result == EmitResult.FAIL_NON_SERIALIZED && System.nanoTime() - deadline < 0);
+        }
+        emitResults[result.ordinal()].increment();
+        if(result == EmitResult.FAIL_OVERFLOW) {
+            sinkRejected.increment();
+        }
+        else if(result == EmitResult.FAIL_NON_SERIALIZED) {
+            sinkContended.increment();
+        }
+        event.commit(userId, result.name(), retries);
+    }
+
+    public void recordDroppedOldest() {
+        droppedOldest.increment();
+    }
+
+    public void recordDroppedNewest() {
+        droppedNewest.increment();
+    }
+
+    public void recordCoalesced() {
+        coalesced.increment();
+    }
+
+    public long getDroppedOldest() {
+        return droppedOldest.sum();
+    }
+
+    public long getDroppedNewest() {
+        return droppedNewest.sum();
+    }
+
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    public long getSinkRejected() {
+        return sinkRejected.sum();
+    }
+
+    public long getSinkContended() {
+        return sinkContended.sum();
+    }
+
+    public long getEmitResultCount(EmitResult result) {
+        return emitResults[result.ordinal()].sum();
+    }
+}
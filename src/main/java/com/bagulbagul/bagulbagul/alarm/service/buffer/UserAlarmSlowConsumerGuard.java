@@ -0,0 +1,88 @@
+package com.bagulbagul.bagulbagul.alarm.service.buffer;
+
+import com.bagulbagul.bagulbagul.alarm.service.UserAlarmConnection;
+import com.bagulbagul.bagulbagul.alarm.service.message.UserAlarmMessage;
+import com.bagulbagul.bagulbagul.alarm.service.metrics.UserAlarmMetrics;
+import java.util.concurrent.TimeUnit;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+/*
+ * 알람을 받아가지 못하는 연결(멈춘 모바일 클라이언트 등)을 찾아서 끊는다.
+ *
+ * 연결마다 버퍼에 쌓인 메세지 수를 세고 high, low watermark 로 상태를 나눈다.
+ * - high watermark 이상이 되면 그 시각을 기록하고, low watermark 이하로 내려가면 지운다.
+ * - high watermark 를 넘은 상태가 evict_after 이상 이어지면 재연결 안내를 보내고 연결을 끊는다.
+ * 상태는 메세지가 버퍼에 들어올 때 확인한다. 알람이 없어도 heartbeat 가 주기적으로 들어오므로 멈춘 연결도 확인된다.
+ *
+ * 연결마다 버퍼 정책이 유저의 sink 에 무제한으로 요청하므로 느린 연결이 같은 유저의 다른 연결(탭)의 요청량을 막지 않는다.
+ * 끊을 때는 버퍼보다 앞에서 구독을 끊어 쌓인 메세지를 바로 버리고 재연결 안내만 보낸다.
+ * 멈춘 연결은 재연결 안내도 받아가지 못하므로 구독 관리자는 reconnect_grace 동안만 기다린 뒤 에러로 응답을 끝내서 연결을 닫는다.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class UserAlarmSlowConsumerGuard {
+
+    @Value("${alarm.realtime.slow_consumer.enabled}")
+    private boolean ENABLED;
+    //이 이상 쌓이면 느린 연결 후보
+    @Value("${alarm.realtime.slow_consumer.high_watermark}")
+    private int HIGH_WATERMARK;
+    //이 이하로 내려가면 정상 연결
+    @Value("${alarm.realtime.slow_consumer.low_watermark}")
+    private int LOW_WATERMARK;
+    //high watermark 이상으로 이 시간(밀리초) 동안 머무르면 끊는다
+    @Value("${alarm.realtime.slow_consumer.evict_after_millisecond}")
+    private long EVICT_AFTER_MILLISECOND;
+
+    private final UserAlarmMetrics metrics;
+
+    public boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /*
+     * 버퍼에 들어가는 메세지
+     */
+    public Flux<UserAlarmMessage> inbound(UserAlarmConnection connection, Flux<UserAlarmMessage> messages) {
+        if(!ENABLED) {
+            return messages;
+        }
+        connection.trackQueued(metrics.getBufferedMessages());
+        return messages.doOnNext(message -> check(connection, connection.enqueued()));
+    }
+
+    /*
+     * 버퍼에서 나가는 메세지. 끊기로 한 연결은 구독 관리자가 재연결 안내를 보내고 끝낸다.
+     */
+    public Flux<UserAlarmMessage> outbound(UserAlarmConnection connection, Flux<UserAlarmMessage> messages) {
+        if(!ENABLED) {
+            return messages;
+        }
+        return messages.doOnNext(message -> {
+            if(connection.dequeued() <= LOW_WATERMARK) {
+                connection.setAboveHighWatermarkSinceNanos(0);
+            }
+        });
+    }
+
+    private void check(UserAlarmConnection connection, int queued) {
+        if(queued < HIGH_WATERMARK) {
+            return;
+        }
+        long now = System.nanoTime();
+        long since = connection.getAboveHighWatermarkSinceNanos();
+        if(since == 0) {
+            connection.setAboveHighWatermarkSinceNanos(now);
+            return;
+        }
+        if(now - since >= TimeUnit.MILLISECONDS.toNanos(EVICT_AFTER_MILLISECOND) && connection.evict()) {
+            metrics.streamEvicted();
+            log.info("느린 연결 종료. userId = {}, queued = {}", connection.getUserId(), queued);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.bagulbagul.bagulbagul.alarm.service.dispatch;
+
+import com.bagulbagul.bagulbagul.alarm.service.buffer.UserAlarmOverflowCounter;
+import com.bagulbagul.bagulbagul.alarm.service.message.UserAlarmMessage;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Scheduler.Worker;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.concurrent.Queues;
+
+/*
+ * 유저의 sink 로 알람을 보내는 스레드를 userId 마다 하나로 고정한다.
+ *
+ * redis 리스너는 여러 스레드(리스너 컨테이너의 executor, lettuce 이벤트 루프 등)에서 호출되므로
+ * 같은 유저의 알람이 동시에 오면 sink 에 보내는 스레드끼리 FAIL_NON_SERIALIZED 로 재시도를 반복하고 순서도 보장되지 않는다.
+ * - userId 를 hash 해서 lane 을 정하고, lane 의 lock-free 큐(MPSC)에 넣기만 하고 바로 반환한다.
+ * - lane 마다 전용 스레드 하나가 큐를 비우면서 sink 로 보낸다. 유저의 sink 는 항상 같은 스레드가 받은 순서대로 쓴다.
+ * - 보낼 때 유저별 순번을 붙인다. 클라이언트는 순번이 건너뛰면 놓친 알람이 있음을 알 수 있다. (sse.format=json 일 때 전달)
+ *   순번은 구독 정보가 새로 만들어지면 1 부터 다시 시작한다.
+ * 끄면 호출한 스레드에서 바로 보내고 순번을 붙이지 않는다.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class UserAlarmDispatcher {
+
+    @Value("${alarm.realtime.dispatch.enabled}")
+    private boolean ENABLED;
+    //전달 스레드 수. 0 이하면 cpu 수
+    @Value("${alarm.realtime.dispatch.lane_count}")
+    private int LANE_COUNT;
+
+    private final UserAlarmOverflowCounter overflowCounter;
+
+    private Scheduler scheduler;
+    private Lane[] lanes;
+
+    @PostConstruct
+    private void init() {
+        if(!ENABLED) {
+            return;
+        }
+        int laneCount = LANE_COUNT > 0 ? LANE_COUNT : Runtime.getRuntime().availableProcessors();
+        scheduler = Schedulers.newParallel("alarm-dispatch", laneCount);
+        lanes = new Lane[laneCount];
+        for(int i = 0; i < laneCount; i++) {
+            lanes[i] = new Lane(scheduler.createWorker());
+        }
+    }
+
+    @PreDestroy
+    private void destroy() {
+        if(scheduler != null) {
+            scheduler.dispose();
+        }
+    }
+
+    public void dispatch(UserAlarmTarget target, UserAlarmMessage message) {
+        if(lanes == null) {
+            overflowCounter.emit(target.getUserId(), target.getSink(), message);
+            return;
+        }
+        lanes[laneOf(target.getUserId(), lanes.length)].offer(new Dispatch(target, message));
+    }
+
+    private static int laneOf(long userId, int laneCount) {
+        //연속된 userId 가 한 lane 에 몰리지 않도록 섞는다 (murmur3 finalizer)
+        long h = userId;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return (int) Math.floorMod(h, (long) laneCount);
+    }
+
+    private void send(UserAlarmTarget target, UserAlarmMessage message) {
+        overflowCounter.emit(target.getUserId(), target.getSink(), message.withSequence(target.nextSequence()));
+    }
+
+    private record Dispatch(UserAlarmTarget target, UserAlarmMessage message) {
+    }
+
+    /*
+     * 여러 스레드가 넣고 한 스레드가 비우는 큐.
+     * 비우는 작업은 wip 를 0 에서 올린 스레드만 예약하므로 큐마다 동시에 하나만 실행된다.
+     */
+    private final class Lane {
+        private final Queue<Dispatch> queue = Queues.<Dispatch>unboundedMultiproducer().get();
+        private final AtomicInteger wip = new AtomicInteger();
+        private final Worker worker;
+
+        Lane(Worker worker) {
+            this.worker = worker;
+        }
+
+        void offer(Dispatch dispatch) {
+            queue.offer(dispatch);
+            if(wip.getAndIncrement() == 0) {
+                worker.schedule(this::drain);
+            }
+        }
+
+        private void drain() {
+            int missed = 1;
+            for(;;) {
+                Dispatch dispatch;
+                while((dispatch = queue.poll()) != null) {
+                    try {
+                        send(dispatch.target(), dispatch.message());
+                    }
+                    catch (Exception e) {
+                        log.error("알람 전달 실패. userId = {}", dispatch.target().getUserId(), e);
+                    }
+                }
+                missed = wip.addAndGet(-missed);
+                if(missed == 0) {
+                    return;
+                }
+            }
+        }
+    }
+}
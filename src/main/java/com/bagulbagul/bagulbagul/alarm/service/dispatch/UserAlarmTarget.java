@@ -0,0 +1,33 @@
+package com.bagulbagul.bagulbagul.alarm.service.dispatch;
+
+import com.bagulbagul.bagulbagul.alarm.service.message.UserAlarmMessage;
+import reactor.core.publisher.Sinks.Many;
+
+/*
+ * 알람을 받을 유저와 그 유저의 연결들이 공유하는 sink.
+ * 구독 정보마다 하나 만들어지고 broker, router 는 sink 대신 이 객체로 알람을 보낸다.
+ */
+public final class UserAlarmTarget {
+
+    private final long userId;
+    private final Many<UserAlarmMessage> sink;
+    //마지막으로 붙인 순번. userId 의 lane 스레드만 읽고 쓴다
+    private long sequence;
+
+    public UserAlarmTarget(long userId, Many<UserAlarmMessage> sink) {
+        this.userId = userId;
+        this.sink = sink;
+    }
+
+    public long getUserId() {
+        return userId;
+    }
+
+    public Many<UserAlarmMessage> getSink() {
+        return sink;
+    }
+
+    long nextSequence() {
+        return ++sequence;
+    }
+}
@@ -0,0 +1,73 @@
+package com.bagulbagul.bagulbagul.alarm.service.group;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongPredicate;
+import java.util.function.Supplier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+/*
+ * inprocess broker 의 group 구성원. 노드가 하나뿐이므로 메모리에 둔다.
+ * 구성원 목록은 노드가 재시작되면 사라진다.
+ */
+@Component
+@ConditionalOnProperty(name = "alarm.realtime.redis.listener", havingValue = "inprocess")
+public class InProcessUserAlarmGroupDirectory implements UserAlarmGroupDirectory {
+
+    @Value("${alarm.realtime.group.enabled}")
+    private boolean ENABLED;
+    @Value("${alarm.realtime.group.channel}")
+    private String CHANNEL;
+    @Value("${alarm.realtime.group.broadcast_channel}")
+    private String BROADCAST_CHANNEL;
+
+    // groupId -> 구성원 userId
+    private final ConcurrentHashMap<String, Set<Long>> members = new ConcurrentHashMap<>();
+
+    @Override
+    public boolean isEnabled() {
+        return ENABLED;
+    }
+
+    @Override
+    public String getChannel() {
+        return CHANNEL;
+    }
+
+    @Override
+    public String getBroadcastChannel() {
+        return BROADCAST_CHANNEL;
+    }
+
+    @Override
+    public void join(String groupId, long userId) {
+        //비어서 지워지는 set 에 추가하지 않도록 추가도 compute 안에서 한다
+        members.compute(groupId, (key, userIds) -> {
+            Set<Long> joined = userIds == null ? ConcurrentHashMap.newKeySet() : userIds;
+            joined.add(userId);
+            return joined;
+        });
+    }
+
+    @Override
+    public void leave(String groupId, long userId) {
+        members.computeIfPresent(groupId, (key, userIds) -> {
+            userIds.remove(userId);
+            return userIds.isEmpty() ? null : userIds;
+        });
+    }
+
+    //구성원이 메모리에 있으므로 이 노드의 유저 목록은 만들지 않는다
+    @Override
+    public Flux<Long> connectedMembers(String groupId, LongPredicate connectedHere, Supplier<List<Long>> localUserIds) {
+        Set<Long> userIds = members.get(groupId);
+        if(userIds == null) {
+            return Flux.empty();
+        }
+        return Flux.fromIterable(userIds).filter(connectedHere::test);
+    }
+}
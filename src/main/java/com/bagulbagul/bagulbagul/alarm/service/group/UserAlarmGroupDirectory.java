@@ -0,0 +1,34 @@
+package com.bagulbagul.bagulbagul.alarm.service.group;
+
+import java.util.List;
+import java.util.function.LongPredicate;
+import java.util.function.Supplier;
+import reactor.core.publisher.Flux;
+
+/*
+ * group 알람의 채널과 구성원.
+ * 노드는 group 채널과 broadcast 채널을 한번씩만 구독하고, 알람이 오면 구성원 중 이 노드에 연결된 유저에게만 보낸다.
+ * alarm.realtime.redis.listener 로 구현을 고른다.
+ * inprocess : 구성원을 메모리에 둔다.
+ * 그 외 : 구성원을 redis set 에 둔다. (RedisUserAlarmGroupDirectory)
+ */
+public interface UserAlarmGroupDirectory {
+
+    boolean isEnabled();
+
+    //모든 group 알람이 공유하는 채널. 봉투의 g 로 group 을 구분한다
+    String getChannel();
+
+    //모든 유저에게 보내는 알람의 채널
+    String getBroadcastChannel();
+
+    void join(String groupId, long userId);
+
+    void leave(String groupId, long userId);
+
+    /*
+     * group 구성원 중 이 노드에 연결된 유저. connectedHere 로 거른다.
+     * localUserIds 는 이 노드에 연결된 유저 목록으로, 구성원 전체를 읽지 않고 이 목록만 확인할 때 사용한다.
+     */
+    Flux<Long> connectedMembers(String groupId, LongPredicate connectedHere, Supplier<List<Long>> localUserIds);
+}
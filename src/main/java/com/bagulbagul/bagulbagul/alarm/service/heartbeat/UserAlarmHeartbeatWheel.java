@@ -0,0 +1,177 @@
+package com.bagulbagul.bagulbagul.alarm.service.heartbeat;
+
+import com.bagulbagul.bagulbagul.alarm.service.UserAlarmConnection;
+import com.bagulbagul.bagulbagul.alarm.service.jfr.UserAlarmHeartbeatTickEvent;
+import com.bagulbagul.bagulbagul.alarm.service.message.UserAlarmMessage;
+import com.bagulbagul.bagulbagul.alarm.service.metrics.UserAlarmMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/*
+ * 모든 sse 연결의 heartbeat 를 하나의 타이머로 보내는 hashed timing wheel.
+ *
+ * 연결마다 Flux.interval 을 두면 연결 수만큼 예약 작업이 생긴다.
+ * 대신 heartbeat 간격을 tick 단위의 bucket 으로 나누고, tick 마다 bucket 하나에 속한 연결들에게만 heartbeat 를 보낸다.
+ * 따라서 tick 당 처리량은 전체 연결 수 / bucket 수 이고 타이머는 하나뿐이다.
+ *
+ * bucket 은 tick 스레드만 접근한다. 새 연결은 lock-free 큐에 넣어두고 tick 스레드가 가져가서 bucket 에 배치한다.
+ * 닫힌 연결은 자신의 bucket 차례가 왔을 때 제거한다.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class UserAlarmHeartbeatWheel {
+
+    //HeartBeat 요청의 간격(초)
+    @Value("${alarm.realtime.hb_interval_second}")
+    private int HEARTBEAT_INTERVAL_SECOND;
+    //HeartBeat 요청 메세지 내용
+    @Value("${alarm.realtime.hb_message}")
+    private String HEARTBEAT_MESSAGE;
+    //wheel 이 한칸 움직이는 간격(밀리초)
+    @Value("${alarm.realtime.hb_tick_millisecond}")
+    private long TICK_MILLISECOND;
+
+    //모든 연결이 공유하는 heartbeat 메세지. 연결마다 새로 만들지 않는다.
+    private UserAlarmMessage heartbeatMessage;
+
+    private final UserAlarmMetrics metrics;
+
+    private final ConcurrentLinkedQueue<UserAlarmConnection> pendingConnections = new ConcurrentLinkedQueue<>();
+
+    private List<UserAlarmConnection>[] buckets;
+    private int cursor;
+    private long heartbeatIntervalNanos;
+
+    //single thread 의 이유
+    //1.같은 동작을 반복하므로 캐시 등의 효율성을 위해 한 스레드에서 실행하도록 함.
+    //2.연결 정리보다 다른 메세지 전달이 더 중요하기 때문에 다른 Flux 를 방해하지 않기 위해 스레드 제한을 뒀다.
+    private Scheduler scheduler;
+    private Disposable ticker;
+
+    @PostConstruct
+    private void init() {
+        createBuckets();
+        scheduler = Schedulers.newSingle("alarm-heartbeat");
+        ticker = scheduler.schedulePeriodically(this::tick, TICK_MILLISECOND, TICK_MILLISECOND, TimeUnit.MILLISECONDS);
+    }
+
+    //타이머 없이 wheel 만 만든다. benchmark 에서 tick 을 직접 호출하기 위해 분리
+    @SuppressWarnings("unchecked")
+    void createBuckets() {
+        heartbeatMessage = UserAlarmMessage.heartbeat(HEARTBEAT_MESSAGE);
+        long intervalMillis = TimeUnit.SECONDS.toMillis(HEARTBEAT_INTERVAL_SECOND);
+        int bucketCount = (int) Math.max(1, intervalMillis / TICK_MILLISECOND);
+        buckets = new List[bucketCount];
+        for(int i = 0; i < bucketCount; i++) {
+            buckets[i] = new ArrayList<>();
+        }
+        //tick 간격으로 나누어 떨어지지 않아도 heartbeat 간격보다 늦어지지 않도록 bucket 이 한 바퀴 도는 시간에서 반 tick 을 뺀다
+        heartbeatIntervalNanos = TimeUnit.MILLISECONDS.toNanos(bucketCount * TICK_MILLISECOND - TICK_MILLISECOND / 2);
+    }
+
+    @PreDestroy
+    private void destroy() {
+        ticker.dispose();
+        scheduler.dispose();
+    }
+
+    public UserAlarmMessage getHeartbeatMessage() {
+        return heartbeatMessage;
+    }
+
+    /*
+     * 연결의 heartbeat Flux. 구독되면 wheel 에 등록되고 구독이 끝나면 다음 차례에 wheel 에서 제거된다.
+     * 요청량이 없는 연결의 heartbeat 는 쌓지 않고 버린다.
+     */
+    public Flux<UserAlarmMessage> heartbeats(UserAlarmConnection connection) {
+        return Flux.create(sink -> {
+            connection.bindHeartbeatSink(sink);
+            sink.onDispose(connection::close);
+            pendingConnections.offer(connection);
+        }, FluxSink.OverflowStrategy.DROP);
+    }
+
+    /*
+     * wheel 에 있는 모든 연결을 끊도록 표시하고 끊은 연결 수를 반환한다. 노드 종료 시 호출한다.
+     * 표시된 연결은 구독 관리자가 재연결 안내를 보내고 끝내거나, 안내를 받아가지 못하면 reconnect_grace 뒤에 닫는다.
+     * bucket 은 tick 스레드만 접근하므로 tick 스레드에서 실행하고 끝날 때까지 기다린다.
+     */
+    public int evictAll() {
+        CompletableFuture<Integer> evicted = new CompletableFuture<>();
+        scheduler.schedule(() -> {
+            int count = 0;
+            UserAlarmConnection pending;
+            while((pending = pendingConnections.poll()) != null) {
+                buckets[cursor].add(pending);
+            }
+            for(List<UserAlarmConnection> bucket : buckets) {
+                for(UserAlarmConnection connection : bucket) {
+                    if(!connection.isClosed() && connection.evict()) {
+                        count++;
+                    }
+                }
+            }
+            evicted.complete(count);
+        });
+        return evicted.join();
+    }
+
+    void tick() {
+        UserAlarmHeartbeatTickEvent event = new UserAlarmHeartbeatTickEvent();
+        event.begin();
+        try {
+            metrics.heartbeatTick();
+            //새 연결은 방금 지나간 bucket 에 넣어서 heartbeat 간격만큼 지난 뒤 처음 차례가 오도록 한다
+            int lastBucket = (cursor + buckets.length - 1) % buckets.length;
+            UserAlarmConnection pending;
+            while((pending = pendingConnections.poll()) != null) {
+                buckets[lastBucket].add(pending);
+            }
+
+            List<UserAlarmConnection> bucket = buckets[cursor];
+            long now = System.nanoTime();
+            int i = 0;
+            int sent = 0;
+            int removed = 0;
+            while(i < bucket.size()) {
+                UserAlarmConnection connection = bucket.get(i);
+                //닫힌 연결은 마지막 원소와 자리를 바꿔서 제거
+                if(connection.isClosed()) {
+                    int last = bucket.size() - 1;
+                    bucket.set(i, bucket.get(last));
+                    bucket.remove(last);
+                    removed++;
+                    continue;
+                }
+                //heartbeat 간격 안에 알람을 보낸 연결은 생략
+                if(now - connection.getLastWriteNanos() >= heartbeatIntervalNanos) {
+                    connection.sendHeartbeat(heartbeatMessage);
+                    metrics.heartbeatSent();
+                    sent++;
+                }
+                i++;
+            }
+            event.commit(cursor, bucket.size(), sent, removed);
+            cursor = (cursor + 1) % buckets.length;
+        }
+        catch (Exception e) {
+            //예외로 주기 작업이 중단되지 않도록 한다
+            log.error("heartbeat 전송 실패", e);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.bagulbagul.bagulbagul.alarm.service.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/*
+ * 유저 채널 리스너 등록. container 모드에서는 redis 구독이 끝날 때까지 호출 스레드가 기다린다.
+ */
+@Name("com.bagulbagul.alarm.AttachListener")
+@Label("Alarm Attach Listener")
+@Description("유저 채널의 redis 리스너 등록")
+@Category({"BaGulBaGul", "Alarm"})
+@StackTrace(false)
+@Threshold("1 ms")
+public class UserAlarmAttachEvent extends Event {
+
+    @Label("User Id")
+    private long userId;
+
+    @Label("Attached")
+    @Description("리스너를 붙이기 전에 구독 정보가 정리되었으면 false")
+    private boolean attached;
+
+    public void commit(long userId, boolean attached) {
+        if(!shouldCommit()) {
+            return;
+        }
+        this.userId = userId;
+        this.attached = attached;
+        commit();
+    }
+}
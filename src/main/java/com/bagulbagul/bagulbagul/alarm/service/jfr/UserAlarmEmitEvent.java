@@ -0,0 +1,42 @@
+package com.bagulbagul.bagulbagul.alarm.service.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/*
+ * 유저의 공유 sink 로 알람 하나를 보내기까지. 다른 스레드와 겹쳐서 다시 시도한 횟수를 남긴다.
+ */
+@Name("com.bagulbagul.alarm.Emit")
+@Label("Alarm Emit")
+@Description("유저의 sink 로 알람 전달")
+@Category({"BaGulBaGul", "Alarm"})
+@StackTrace(false)
+@Threshold("1 ms")
+public class UserAlarmEmitEvent extends Event {
+
+    @Label("User Id")
+    private long userId;
+
+    @Label("Result")
+    @Description("Sinks.EmitResult")
+    private String result;
+
+    @Label("Retries")
+    @Description("FAIL_NON_SERIALIZED 로 다시 시도한 횟수")
+    private int retries;
+
+    public void commit(long userId, String result, int retries) {
+        if(!shouldCommit()) {
+            return;
+        }
+        this.userId = userId;
+        this.result = result;
+        this.retries = retries;
+        commit();
+    }
+}
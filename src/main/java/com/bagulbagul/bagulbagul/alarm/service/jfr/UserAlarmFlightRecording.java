@@ -0,0 +1,88 @@
+package com.bagulbagul.bagulbagul.alarm.service.jfr;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import jdk.jfr.Configuration;
+import jdk.jfr.Event;
+import jdk.jfr.Recording;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/*
+ * 알람 JFR 이벤트를 항상 켜두는 recording. (alarm.realtime.jfr.enabled)
+ * JVM 의 default 설정(GC, safepoint, socket 등)에 알람 이벤트를 더해서 하나의 recording 으로 남기므로
+ * 알람 지연이 튀었을 때 같은 시점의 GC, safepoint, redis 재연결과 함께 볼 수 있다.
+ *
+ * - 이벤트는 threshold 보다 오래 걸린 경우만 기록하고 stack trace 는 남기지 않는다.
+ * - 최근 max_age 동안, 최대 max_size 만큼만 디스크에 유지한다. jcmd <pid> JFR.dump name=alarm 으로 꺼낸다.
+ * - 끄고 JVM 옵션으로 기록할 때는 resources/jfr/alarm.jfc 를 함께 준다.
+ *   -XX:StartFlightRecording:settings=default,settings=alarm.jfc
+ */
+@Slf4j
+@Component
+public class UserAlarmFlightRecording {
+
+    @Value("${alarm.realtime.jfr.enabled}")
+    private boolean ENABLED;
+    //구독, 등록, 리스너 등록, 정리 이벤트의 threshold
+    @Value("${alarm.realtime.jfr.subscribe_threshold_millisecond}")
+    private long SUBSCRIBE_THRESHOLD_MILLISECOND;
+    @Value("${alarm.realtime.jfr.emit_threshold_millisecond}")
+    private long EMIT_THRESHOLD_MILLISECOND;
+    @Value("${alarm.realtime.jfr.heartbeat_threshold_millisecond}")
+    private long HEARTBEAT_THRESHOLD_MILLISECOND;
+    @Value("${alarm.realtime.jfr.max_age_minute}")
+    private long MAX_AGE_MINUTE;
+    @Value("${alarm.realtime.jfr.max_size_mb}")
+    private long MAX_SIZE_MB;
+    //비어있지 않으면 종료할 때 이 경로에 파일로 남긴다
+    @Value("${alarm.realtime.jfr.dump_path}")
+    private String DUMP_PATH;
+
+    private Recording recording;
+
+    @PostConstruct
+    private void init() throws IOException, ParseException {
+        if(!ENABLED) {
+            return;
+        }
+        recording = new Recording(Configuration.getConfiguration("default"));
+        recording.setName("alarm");
+        recording.setToDisk(true);
+        recording.setMaxAge(Duration.ofMinutes(MAX_AGE_MINUTE));
+        recording.setMaxSize(MAX_SIZE_MB * 1024 * 1024);
+        enable(UserAlarmSubscribeEvent.class, SUBSCRIBE_THRESHOLD_MILLISECOND);
+        enable(UserAlarmRegisterEvent.class, SUBSCRIBE_THRESHOLD_MILLISECOND);
+        enable(UserAlarmAttachEvent.class, SUBSCRIBE_THRESHOLD_MILLISECOND);
+        enable(UserAlarmReleaseEvent.class, SUBSCRIBE_THRESHOLD_MILLISECOND);
+        enable(UserAlarmEmitEvent.class, EMIT_THRESHOLD_MILLISECOND);
+        enable(UserAlarmHeartbeatTickEvent.class, HEARTBEAT_THRESHOLD_MILLISECOND);
+        if(!DUMP_PATH.isBlank()) {
+            recording.setDestination(Path.of(DUMP_PATH));
+            recording.setDumpOnExit(true);
+        }
+        recording.start();
+        log.info("알람 JFR recording 시작. max_age = {}분, max_size = {}MB", MAX_AGE_MINUTE, MAX_SIZE_MB);
+    }
+
+    @PreDestroy
+    private void destroy() {
+        if(recording == null) {
+            return;
+        }
+        //destination 이 있으면 stop 할 때 파일로 쓴다
+        recording.stop();
+        recording.close();
+    }
+
+    private void enable(Class<? extends Event> eventClass, long thresholdMillisecond) {
+        recording.enable(eventClass)
+                .withThreshold(Duration.ofMillis(thresholdMillisecond))
+                .withoutStackTrace();
+    }
+}
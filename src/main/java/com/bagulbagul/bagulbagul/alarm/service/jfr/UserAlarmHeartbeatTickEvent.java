@@ -0,0 +1,46 @@
+package com.bagulbagul.bagulbagul.alarm.service.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/*
+ * heartbeat wheel 의 tick 한번. 유저별이 아닌 bucket 하나를 처리한 결과를 남긴다.
+ */
+@Name("com.bagulbagul.alarm.HeartbeatTick")
+@Label("Alarm Heartbeat Tick")
+@Description("heartbeat wheel 의 bucket 하나 처리")
+@Category({"BaGulBaGul", "Alarm"})
+@StackTrace(false)
+@Threshold("10 ms")
+public class UserAlarmHeartbeatTickEvent extends Event {
+
+    @Label("Bucket")
+    private int bucket;
+
+    @Label("Connections")
+    @Description("처리 후 bucket 에 남은 연결 수")
+    private int connections;
+
+    @Label("Sent")
+    private int sent;
+
+    @Label("Removed")
+    @Description("닫혀서 bucket 에서 제거한 연결 수")
+    private int removed;
+
+    public void commit(int bucket, int connections, int sent, int removed) {
+        if(!shouldCommit()) {
+            return;
+        }
+        this.bucket = bucket;
+        this.connections = connections;
+        this.sent = sent;
+        this.removed = removed;
+        commit();
+    }
+}
@@ -0,0 +1,32 @@
+package com.bagulbagul.bagulbagul.alarm.service.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/*
+ * 구독 정보(sink, Flux) 생성.
+ */
+@Name("com.bagulbagul.alarm.Register")
+@Label("Alarm Register")
+@Description("유저의 sink 와 Flux 생성")
+@Category({"BaGulBaGul", "Alarm"})
+@StackTrace(false)
+@Threshold("1 ms")
+public class UserAlarmRegisterEvent extends Event {
+
+    @Label("User Id")
+    private long userId;
+
+    public void commit(long userId) {
+        if(!shouldCommit()) {
+            return;
+        }
+        this.userId = userId;
+        commit();
+    }
+}
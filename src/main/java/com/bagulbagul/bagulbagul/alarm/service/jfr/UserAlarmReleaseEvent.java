@@ -0,0 +1,37 @@
+package com.bagulbagul.bagulbagul.alarm.service.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/*
+ * 구독자 수 감소와 마지막 구독자가 빠졌을 때의 정리(registry 삭제, 리스너 해제, sink 종료).
+ */
+@Name("com.bagulbagul.alarm.Release")
+@Label("Alarm Release")
+@Description("구독자 수 감소와 구독 정보 정리")
+@Category({"BaGulBaGul", "Alarm"})
+@StackTrace(false)
+@Threshold("1 ms")
+public class UserAlarmReleaseEvent extends Event {
+
+    @Label("User Id")
+    private long userId;
+
+    @Label("Torn Down")
+    @Description("마지막 구독자여서 구독 정보를 정리했으면 true")
+    private boolean tornDown;
+
+    public void commit(long userId, boolean tornDown) {
+        if(!shouldCommit()) {
+            return;
+        }
+        this.userId = userId;
+        this.tornDown = tornDown;
+        commit();
+    }
+}
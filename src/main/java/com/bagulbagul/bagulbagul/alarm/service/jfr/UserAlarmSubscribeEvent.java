@@ -0,0 +1,42 @@
+package com.bagulbagul.bagulbagul.alarm.service.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/*
+ * 구독 정보를 얻고 구독자 수를 올리기까지. registry 의 교체 경쟁에서 지면 다시 시도한 횟수도 남긴다.
+ */
+@Name("com.bagulbagul.alarm.Subscribe")
+@Label("Alarm Subscribe")
+@Description("구독 정보 registry 조회, 등록")
+@Category({"BaGulBaGul", "Alarm"})
+@StackTrace(false)
+@Threshold("1 ms")
+public class UserAlarmSubscribeEvent extends Event {
+
+    @Label("User Id")
+    private long userId;
+
+    @Label("Created")
+    @Description("새 구독 정보를 만들어 등록했으면 true, 있던 정보를 사용했으면 false")
+    private boolean created;
+
+    @Label("Attempts")
+    private int attempts;
+
+    //threshold 를 넘지 않았거나 꺼져 있으면 필드를 채우지 않고 버린다
+    public void commit(long userId, boolean created, int attempts) {
+        if(!shouldCommit()) {
+            return;
+        }
+        this.userId = userId;
+        this.created = created;
+        this.attempts = attempts;
+        commit();
+    }
+}
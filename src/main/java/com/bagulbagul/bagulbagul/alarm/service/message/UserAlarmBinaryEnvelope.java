@@ -0,0 +1,225 @@
+package com.bagulbagul.bagulbagul.alarm.service.message;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/*
+ * 알람 봉투의 binary 형식(v2). 필드 구성은 text 형식(v1)과 같다.
+ * 숫자를 10진 문자열로 쓰지 않고 key 이름과 구분자가 없어서 헤더가 작고, 읽을 때 문자 단위 분기가 없다.
+ *
+ * 형식 : MARKER VERSION (field)* END payload
+ * - MARKER(0xFF) 는 UTF-8 문자열에 나올 수 없는 byte 이므로 v1 봉투, 봉투 없는 text 메세지와 구분된다.
+ * - VERSION 은 호환되지 않는 변경이 있을 때만 올린다. 모르는 버전은 읽지 않는다.
+ * - field 는 protobuf 와 같은 방식이다. key byte = (field 번호 << 3) | wire type
+ *   wire type 0 : unsigned varint, wire type 2 : varint 길이 + byte
+ *   모르는 field 번호는 wire type 으로 길이를 알 수 있으므로 건너뛴다. (v1 의 모르는 key 무시와 같음)
+ * - END(0x00) 이후는 모두 payload 이다. payload 는 복사하지 않는다.
+ *
+ * 알람 id 는 발행 스크립트가 replay 로그에 기록한 뒤 헤더 끝에 붙인다. (ALARM_ID_KEY, 1 byte 길이, id)
+ * 스크립트가 같은 규칙을 사용하므로 field 번호를 바꾸면 안된다.
+ */
+public final class UserAlarmBinaryEnvelope {
+
+    public static final byte MARKER = (byte) 0xFF;
+    public static final byte VERSION = 2;
+    public static final byte END = 0;
+
+    private static final int WIRE_VARINT = 0;
+    private static final int WIRE_BYTES = 2;
+
+    private static final int FIELD_USER_ID = 1;
+    private static final int FIELD_GROUP_ID = 2;
+    private static final int FIELD_COALESCE = 3;
+    private static final int FIELD_PUBLISHED_AT = 4;
+    private static final int FIELD_ALARM_ID = 5;
+    private static final int FIELD_TYPE = 6;
+    private static final int FIELD_PRIORITY = 7;
+
+    //발행 스크립트가 알람 id 앞에 붙이는 key byte (42)
+    public static final byte ALARM_ID_KEY = (byte) (FIELD_ALARM_ID << 3 | WIRE_BYTES);
+
+    private UserAlarmBinaryEnvelope() {
+    }
+
+    public static boolean isBinary(byte[] body) {
+        return body != null && body.length >= 2 && body[0] == MARKER;
+    }
+
+    /*
+     * END 를 제외한 헤더. 값이 없는 필드는 생략한다.
+     */
+    public static byte[] header(UserAlarmHeader fields) {
+        Writer writer = new Writer();
+        writer.raw(MARKER);
+        writer.raw(VERSION);
+        if(fields.getUserId() != null) {
+            writer.varintField(FIELD_USER_ID, fields.getUserId());
+        }
+        if(fields.getGroupId() != null) {
+            writer.bytesField(FIELD_GROUP_ID, fields.getGroupId().getBytes(StandardCharsets.UTF_8));
+        }
+        if(fields.getCoalesceKey() != null) {
+            writer.bytesField(FIELD_COALESCE, fields.getCoalesceKey().getBytes(StandardCharsets.UTF_8));
+        }
+        writer.varintField(FIELD_PUBLISHED_AT, fields.getCreatedAtMillis());
+        if(fields.getType() != null) {
+            writer.bytesField(FIELD_TYPE, fields.getType().getBytes(StandardCharsets.UTF_8));
+        }
+        if(fields.getPriority() != 0) {
+            writer.varintField(FIELD_PRIORITY, fields.getPriority());
+        }
+        return writer.toByteArray();
+    }
+
+    /*
+     * 잘못된 형식이거나 모르는 버전이면 null
+     */
+    public static UserAlarmEnvelope decode(byte[] body) {
+        if(!isBinary(body) || body[1] != VERSION) {
+            return null;
+        }
+        long userId = 0;
+        boolean hasUserId = false;
+        String alarmId = null;
+        String coalesceKey = null;
+        String groupId = null;
+        long publishedAtMillis = 0;
+        String type = null;
+        int priority = 0;
+        Reader reader = new Reader(body, 2);
+        while(true) {
+            if(reader.pos >= body.length) {
+                //END 가 없으면 잘못된 형식
+                return null;
+            }
+            int key = body[reader.pos++] & 0xFF;
+            if(key == END) {
+                break;
+            }
+            int field = key >>> 3;
+            int wireType = key & 0x7;
+            if(wireType == WIRE_VARINT) {
+                long value = reader.varint();
+                if(reader.pos < 0) {
+                    return null;
+                }
+                switch (field) {
+                    case FIELD_USER_ID -> {
+                        userId = value;
+                        hasUserId = true;
+                    }
+                    case FIELD_PUBLISHED_AT -> publishedAtMillis = value;
+                    case FIELD_PRIORITY -> {
+                        //int 로 자르면 다른 우선순위가 되므로 범위를 넘으면 봉투를 거부한다
+                        if(value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+                            return null;
+                        }
+                        priority = (int) value;
+                    }
+                    default -> {
+                        //알 수 없는 필드는 무시
+                    }
+                }
+            }
+            else if(wireType == WIRE_BYTES) {
+                long length = reader.varint();
+                if(reader.pos < 0 || length > body.length - reader.pos) {
+                    return null;
+                }
+                int start = reader.pos;
+                int len = (int) length;
+                reader.pos += len;
+                switch (field) {
+                    case FIELD_GROUP_ID -> groupId = new String(body, start, len, StandardCharsets.UTF_8);
+                    case FIELD_COALESCE -> coalesceKey = new String(body, start, len, StandardCharsets.UTF_8);
+                    case FIELD_ALARM_ID -> alarmId = new String(body, start, len, StandardCharsets.US_ASCII);
+                    case FIELD_TYPE -> type = new String(body, start, len, StandardCharsets.UTF_8);
+                    default -> {
+                        //알 수 없는 필드는 무시
+                    }
+                }
+            }
+            else {
+                //길이를 알 수 없는 wire type 은 건너뛸 수 없다
+                return null;
+            }
+        }
+        int payloadOffset = reader.pos;
+        UserAlarmMessage payload = UserAlarmMessage.builder()
+                .body(body)
+                .offset(payloadOffset)
+                .length(body.length - payloadOffset)
+                .id(alarmId)
+                .coalesceKey(coalesceKey)
+                .publishedAtMillis(publishedAtMillis)
+                .type(type)
+                .priority(priority)
+                .build();
+        return new UserAlarmEnvelope(hasUserId, userId, groupId, payload);
+    }
+
+    private static final class Writer {
+        private byte[] buffer = new byte[32];
+        private int size;
+
+        void raw(int b) {
+            if(size == buffer.length) {
+                buffer = Arrays.copyOf(buffer, size * 2);
+            }
+            buffer[size++] = (byte) b;
+        }
+
+        void varint(long value) {
+            while((value & ~0x7FL) != 0) {
+                raw((int) (value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            raw((int) value);
+        }
+
+        void varintField(int field, long value) {
+            raw(field << 3 | WIRE_VARINT);
+            varint(value);
+        }
+
+        void bytesField(int field, byte[] value) {
+            raw(field << 3 | WIRE_BYTES);
+            varint(value.length);
+            for(byte b : value) {
+                raw(b);
+            }
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, size);
+        }
+    }
+
+    private static final class Reader {
+        private final byte[] body;
+        //잘못된 varint 를 만나면 -1
+        private int pos;
+
+        Reader(byte[] body, int pos) {
+            this.body = body;
+            this.pos = pos;
+        }
+
+        long varint() {
+            long value = 0;
+            for(int shift = 0; shift < 64; shift += 7) {
+                if(pos >= body.length) {
+                    pos = -1;
+                    return 0;
+                }
+                byte b = body[pos++];
+                value |= (long) (b & 0x7F) << shift;
+                if(b >= 0) {
+                    return value;
+                }
+            }
+            pos = -1;
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package com.bagulbagul.bagulbagul.alarm.service.message;
+
+import java.nio.charset.StandardCharsets;
+import lombok.Getter;
+
+/*
+ * redis 로 발행되는 알람 메세지의 봉투.
+ * 공용 채널(shard 채널 등)은 채널 이름만으로는 수신자를 알 수 없으므로 메세지 안에 userId 를 같이 싣는다.
+ * replay 모드에서는 replay 로그에 저장된 알람 id 를 같이 싣는다.
+ * 최신 값만 의미가 있는 알람은 coalesce key 를 같이 싣는다.
+ * 발행 시각을 같이 실어서 발행부터 클라이언트에 쓰기까지의 지연 시간을 잰다.
+ * group 채널에는 userId 대신 groupId 를 싣는다.
+ * 알람 종류와 우선순위를 같이 싣는다.
+ *
+ * 형식(v1, text) : "@v1;u=<userId>;g=<groupId>;k=<coalesceKey>;t=<publishedAtMillis>;y=<type>;p=<priority>;i=<alarmId>\n<payload>"
+ * - 헤더는 '@v1;' 로 시작하고 첫 줄바꿈까지이며 key=value 쌍을 ';' 로 구분한다.
+ * - 모든 필드는 생략 가능하다. 유저별 채널에는 u 가 필요없다.
+ * - 알 수 없는 key 는 무시한다. 이후에 헤더 필드가 추가되어도 이전 버전이 읽을 수 있도록 하기 위함.
+ * - 헤더가 없는 메세지는 본문 전체를 payload 로 취급한다. (기존 발행자와의 호환)
+ * 형식(v2, binary) 은 UserAlarmBinaryEnvelope 참고. 받는 쪽은 첫 byte 로 구분하므로 두 형식을 모두 읽는다.
+ */
+@Getter
+public class UserAlarmEnvelope {
+
+    public static final String HEADER_START = "@v1;";
+
+    private static final byte[] HEADER_PREFIX = HEADER_START.getBytes(StandardCharsets.US_ASCII);
+    private static final byte HEADER_END = '\n';
+    private static final byte FIELD_SEPARATOR = ';';
+    private static final byte KEY_VALUE_SEPARATOR = '=';
+    private static final byte KEY_USER_ID = 'u';
+    private static final byte KEY_ALARM_ID = 'i';
+    private static final byte KEY_COALESCE = 'k';
+    private static final byte KEY_PUBLISHED_AT = 't';
+    private static final byte KEY_GROUP_ID = 'g';
+    private static final byte KEY_TYPE = 'y';
+    private static final byte KEY_PRIORITY = 'p';
+
+    private final boolean userIdPresent;
+    private final long userId;
+    //group 채널이 아니면 null
+    private final String groupId;
+    //payload 는 복사하지 않고 받은 byte[] 의 일부를 그대로 가리킨다
+    private final UserAlarmMessage payload;
+
+    UserAlarmEnvelope(boolean userIdPresent, long userId, String groupId, UserAlarmMessage payload) {
+        this.userIdPresent = userIdPresent;
+        this.userId = userId;
+        this.groupId = groupId;
+        this.payload = payload;
+    }
+
+    /*
+     * 줄바꿈을 제외한 헤더. 값이 없는 필드는 생략한다.
+     * 형식 : "@v1;u=<userId>;g=<groupId>;k=<coalesceKey>;t=<publishedAtMillis>;y=<type>;p=<priority>;"
+     */
+    public static String header(UserAlarmHeader fields) {
+        StringBuilder header = new StringBuilder(HEADER_START);
+        if(fields.getUserId() != null) {
+            header.append("u=").append(fields.getUserId()).append(';');
+        }
+        if(fields.getGroupId() != null) {
+            header.append("g=").append(checkValue(fields.getGroupId())).append(';');
+        }
+        if(fields.getCoalesceKey() != null) {
+            header.append("k=").append(checkValue(fields.getCoalesceKey())).append(';');
+        }
+        header.append("t=").append(fields.getCreatedAtMillis()).append(';');
+        if(fields.getType() != null) {
+            header.append("y=").append(checkValue(fields.getType())).append(';');
+        }
+        if(fields.getPriority() != 0) {
+            header.append("p=").append(fields.getPriority()).append(';');
+        }
+        return header.toString();
+    }
+
+    private static String checkValue(String value) {
+        if(value.isEmpty() || value.indexOf(';') >= 0 || value.indexOf('\n') >= 0) {
+            throw new IllegalArgumentException("봉투 헤더 값에 ';' 나 줄바꿈을 사용할 수 없습니다. value = " + value);
+        }
+        return value;
+    }
+
+    /*
+     * 받은 본문을 메세지로 바꾼다. 봉투가 있으면 헤더를 벗기고 없으면 본문 전체를 사용한다.
+     * 잘못된 봉투는 null
+     */
+    public static UserAlarmMessage unwrap(byte[] body) {
+        if(!hasHeader(body) && !UserAlarmBinaryEnvelope.isBinary(body)) {
+            return UserAlarmMessage.of(body);
+        }
+        UserAlarmEnvelope envelope = decode(body);
+        return envelope == null ? null : envelope.getPayload();
+    }
+
+    /*
+     * 봉투 형식이 아니거나 필드가 잘못되었으면 null 을 반환한다.
+     * 헤더는 String 으로 만들지 않고 byte 단위로 바로 읽고, payload 는 복사하지 않는다.
+     */
+    public static UserAlarmEnvelope decode(byte[] body) {
+        if(UserAlarmBinaryEnvelope.isBinary(body)) {
+            return UserAlarmBinaryEnvelope.decode(body);
+        }
+        if(!hasHeader(body)) {
+            return null;
+        }
+        long userId = 0;
+        boolean hasUserId = false;
+        String alarmId = null;
+        String coalesceKey = null;
+        String groupId = null;
+        long publishedAtMillis = 0;
+        String type = null;
+        int priority = 0;
+        int pos = HEADER_PREFIX.length;
+        while(pos < body.length && body[pos] != HEADER_END) {
+            //key=value 하나를 읽는다
+            int fieldEnd = pos;
+            while(fieldEnd < body.length && body[fieldEnd] != FIELD_SEPARATOR && body[fieldEnd] != HEADER_END) {
+                fieldEnd++;
+            }
+            if(fieldEnd - pos >= 2 && body[pos + 1] == KEY_VALUE_SEPARATOR) {
+                int valueStart = pos + 2;
+                switch (body[pos]) {
+                    case KEY_USER_ID -> {
+                        try {
+                            userId = parseLong(body, valueStart, fieldEnd);
+                            hasUserId = true;
+                        }
+                        catch (NumberFormatException ex) {
+                            return null;
+                        }
+                    }
+                    case KEY_ALARM_ID -> alarmId = new String(body, valueStart, fieldEnd - valueStart, StandardCharsets.US_ASCII);
+                    case KEY_PUBLISHED_AT -> {
+                        try {
+                            publishedAtMillis = parseLong(body, valueStart, fieldEnd);
+                        }
+                        catch (NumberFormatException ex) {
+                            //지연 시간 측정에만 쓰이므로 알람은 그대로 전달
+                            publishedAtMillis = 0;
+                        }
+                    }
+                    case KEY_GROUP_ID -> groupId = new String(body, valueStart, fieldEnd - valueStart, StandardCharsets.UTF_8);
+                    case KEY_COALESCE -> coalesceKey = new String(body, valueStart, fieldEnd - valueStart, StandardCharsets.UTF_8);
+                    case KEY_TYPE -> type = new String(body, valueStart, fieldEnd - valueStart, StandardCharsets.UTF_8);
+                    case KEY_PRIORITY -> {
+                        try {
+                            priority = Math.toIntExact(parseLong(body, valueStart, fieldEnd));
+                        }
+                        catch (NumberFormatException | ArithmeticException ex) {
+                            //잘못된 우선순위는 기본 우선순위로 전달
+                            priority = 0;
+                        }
+                    }
+                    default -> {
+                        //알 수 없는 필드는 무시
+                    }
+                }
+            }
+            pos = fieldEnd;
+            if(pos < body.length && body[pos] == FIELD_SEPARATOR) {
+                pos++;
+            }
+        }
+        //헤더 종료 문자가 없으면 잘못된 형식
+        if(pos >= body.length) {
+            return null;
+        }
+        int payloadOffset = pos + 1;
+        UserAlarmMessage payload = UserAlarmMessage.builder()
+                .body(body)
+                .offset(payloadOffset)
+                .length(body.length - payloadOffset)
+                .id(alarmId)
+                .coalesceKey(coalesceKey)
+                .publishedAtMillis(publishedAtMillis)
+                .type(type)
+                .priority(priority)
+                .build();
+        return new UserAlarmEnvelope(hasUserId, userId, groupId, payload);
+    }
+
+    private static boolean hasHeader(byte[] body) {
+        if(body == null || body.length < HEADER_PREFIX.length) {
+            return false;
+        }
+        for(int i = 0; i < HEADER_PREFIX.length; i++) {
+            if(body[i] != HEADER_PREFIX[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+     * 부호가 있는 10진수. 숫자가 아닌 문자가 있거나 long 범위를 넘으면 NumberFormatException
+     * Long.MIN_VALUE 까지 읽을 수 있도록 음수로 누적한다.
+     */
+    private static long parseLong(byte[] bytes, int from, int to) {
+        boolean negative = from < to && bytes[from] == '-';
+        int pos = negative ? from + 1 : from;
+        if(pos >= to) {
+            throw new NumberFormatException("empty number");
+        }
+        long value = 0;
+        for(; pos < to; pos++) {
+            int digit = bytes[pos] - '0';
+            if(digit < 0 || digit > 9) {
+                throw new NumberFormatException("invalid digit at " + pos);
+            }
+            try {
+                value = Math.subtractExact(Math.multiplyExact(value, 10), digit);
+            }
+            catch (ArithmeticException ex) {
+                throw new NumberFormatException("number out of range");
+            }
+        }
+        if(negative) {
+            return value;
+        }
+        if(value == Long.MIN_VALUE) {
+            throw new NumberFormatException("number out of range");
+        }
+        return -value;
+    }
+}
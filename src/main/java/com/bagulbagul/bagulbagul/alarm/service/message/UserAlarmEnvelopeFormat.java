@@ -0,0 +1,51 @@
+package com.bagulbagul.bagulbagul.alarm.service.message;
+
+import java.nio.charset.StandardCharsets;
+
+/*
+ * 발행할 때 사용할 봉투 형식. alarm.realtime.envelope.format 으로 고른다.
+ * 받는 쪽은 두 형식을 모두 읽으므로 모든 노드가 v2 를 읽을 수 있게 배포한 뒤에 발행 형식을 v2 로 바꾼다.
+ */
+public enum UserAlarmEnvelopeFormat {
+    V1 {
+        @Override
+        public byte[] header(UserAlarmHeader fields) {
+            return UserAlarmEnvelope.header(fields).getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public byte headerEnd() {
+            return '\n';
+        }
+    },
+    V2 {
+        @Override
+        public byte[] header(UserAlarmHeader fields) {
+            return UserAlarmBinaryEnvelope.header(fields);
+        }
+
+        @Override
+        public byte headerEnd() {
+            return UserAlarmBinaryEnvelope.END;
+        }
+    };
+
+    /*
+     * 헤더 끝 표시를 제외한 헤더. 발행 스크립트가 알람 id 를 붙인 뒤 끝 표시를 붙인다.
+     */
+    public abstract byte[] header(UserAlarmHeader fields);
+
+    public abstract byte headerEnd();
+
+    /*
+     * 헤더와 payload 를 한번에 담은 본문
+     */
+    public byte[] encode(UserAlarmHeader fields, byte[] payload) {
+        byte[] header = header(fields);
+        byte[] body = new byte[header.length + 1 + payload.length];
+        System.arraycopy(header, 0, body, 0, header.length);
+        body[header.length] = headerEnd();
+        System.arraycopy(payload, 0, body, header.length + 1, payload.length);
+        return body;
+    }
+}
@@ -0,0 +1,24 @@
+package com.bagulbagul.bagulbagul.alarm.service.message;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/*
+ * 발행할 알람 봉투의 헤더.
+ * 받는 쪽에서는 UserAlarmEnvelope(userId, groupId)와 UserAlarmMessage(나머지 필드)로 읽는다.
+ * 알람 id 는 replay 로그에 기록될 때 발행 스크립트가 붙이므로 여기에는 없다.
+ */
+@Getter
+@Builder
+public class UserAlarmHeader {
+    //공용 채널(shard, inbox)로 보낼 때만 필요하다
+    private final Long userId;
+    //group 채널로 보낼 때만 필요하다
+    private final String groupId;
+    private final String coalesceKey;
+    //발행 시각(epoch 밀리초)
+    private final long createdAtMillis;
+    private final String type;
+    //클수록 급한 알람
+    private final int priority;
+}
@@ -0,0 +1,139 @@
+package com.bagulbagul.bagulbagul.alarm.service.message;
+
+import java.nio.charset.StandardCharsets;
+import lombok.Builder;
+
+/*
+ * sink 로 전달되는 알람 메세지.
+ * redis 에서 받은 byte[] 를 복사하거나 String 으로 바꾸지 않고 그대로 들고 있다가 sse 프레임으로 바로 쓴다.
+ * 같은 유저의 여러 연결(탭)은 같은 byte[] 를 공유한다. 내용을 수정하면 안된다.
+ */
+public class UserAlarmMessage {
+
+    private final byte[] body;
+    private final int offset;
+    private final int length;
+    private final boolean heartbeat;
+    //연결을 끊기 전에 보내는 재연결 안내
+    private final boolean reconnect;
+    //replay 로그의 알람 id. replay 모드가 아니면 null
+    private final String id;
+    //같은 key 의 알람은 최신 것만 의미가 있다. (안 읽은 알람 수 등) 버퍼에서 아직 나가지 않은 이전 알람을 대체한다. 없으면 null
+    private final String coalesceKey;
+    //발행 시각(epoch 밀리초). 봉투에 없으면 0
+    private final long publishedAtMillis;
+    //알람 종류. 봉투에 없으면 null
+    private final String type;
+    //클수록 급한 알람. 봉투에 없으면 0
+    private final int priority;
+    //유저별 전달 순번. 순번을 붙이지 않았으면 0
+    private final long sequence;
+    //필요할 때만 디코딩. 경합 시 여러번 디코딩될 수 있지만 결과가 같으므로 동기화하지 않는다.
+    private String text;
+
+    private static final UserAlarmMessage RECONNECT = builder().body(new byte[0]).reconnect(true).build();
+
+    /*
+     * 봉투에서 읽은 필드가 많으므로 builder 로 만든다. body 의 일부만 가리킬 때는 offset, length 를 같이 준다.
+     * 본문 전체를 가리키는 메세지는 of(body)
+     */
+    @Builder
+    private UserAlarmMessage(byte[] body, int offset, int length, boolean heartbeat, boolean reconnect, String id, String coalesceKey,
+                             long publishedAtMillis, String type, int priority, long sequence) {
+        this.body = body;
+        this.offset = offset;
+        this.length = length;
+        this.heartbeat = heartbeat;
+        this.reconnect = reconnect;
+        this.id = id;
+        this.coalesceKey = coalesceKey;
+        this.publishedAtMillis = publishedAtMillis;
+        this.type = type;
+        this.priority = priority;
+        this.sequence = sequence;
+    }
+
+    public static UserAlarmMessage of(byte[] body) {
+        return builder().body(body).length(body.length).build();
+    }
+
+    /*
+     * 순번을 붙인 메세지. 본문은 복사하지 않고 공유한다.
+     * 여러 유저가 같은 메세지를 받을 수 있으므로(group, broadcast) 원래 메세지를 바꾸지 않고 새로 만든다.
+     */
+    public UserAlarmMessage withSequence(long sequence) {
+        return new UserAlarmMessage(body, offset, length, heartbeat, reconnect, id, coalesceKey, publishedAtMillis, type, priority, sequence);
+    }
+
+    /*
+     * replay 로그의 id 를 붙인 메세지. 본문은 복사하지 않고 공유한다.
+     */
+    public UserAlarmMessage withId(String id) {
+        return new UserAlarmMessage(body, offset, length, heartbeat, reconnect, id, coalesceKey, publishedAtMillis, type, priority, sequence);
+    }
+
+    public static UserAlarmMessage heartbeat(String heartbeatMessage) {
+        byte[] body = heartbeatMessage.getBytes(StandardCharsets.UTF_8);
+        return builder().body(body).length(body.length).heartbeat(true).build();
+    }
+
+    /*
+     * 서버가 연결을 끊을 때 마지막으로 보내는 재연결 안내. 모든 연결이 공유한다.
+     */
+    public static UserAlarmMessage reconnect() {
+        return RECONNECT;
+    }
+
+    public byte[] getBody() {
+        return body;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    public boolean isHeartbeat() {
+        return heartbeat;
+    }
+
+    public boolean isReconnect() {
+        return reconnect;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getCoalesceKey() {
+        return coalesceKey;
+    }
+
+    public long getPublishedAtMillis() {
+        return publishedAtMillis;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public String getText() {
+        String decoded = text;
+        if(decoded == null) {
+            decoded = new String(body, offset, length, StandardCharsets.UTF_8);
+            text = decoded;
+        }
+        return decoded;
+    }
+}
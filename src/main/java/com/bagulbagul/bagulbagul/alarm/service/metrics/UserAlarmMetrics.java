@@ -0,0 +1,183 @@
+package com.bagulbagul.bagulbagul.alarm.service.metrics;
+
+import com.bagulbagul.bagulbagul.alarm.service.buffer.UserAlarmOverflowCounter;
+import com.bagulbagul.bagulbagul.alarm.service.message.UserAlarmMessage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+import java.util.function.ToLongFunction;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Sinks.EmitResult;
+
+/*
+ * 알람 경로의 metric.
+ * 메세지마다 실행되는 경로에서는 미리 만들어둔 meter 의 값만 올린다. tag 로 meter 를 찾거나 객체를 만들지 않는다.
+ * 버퍼, sink 결과처럼 이미 LongAdder 로 세고 있는 값은 scrape 시점에 읽어간다.
+ */
+@Component
+public class UserAlarmMetrics {
+
+    private final AtomicInteger activeConnections = new AtomicInteger();
+    //연결별 버퍼에 쌓인 메세지 수의 합. 느린 연결 감시를 켠 연결이 넣고 빼면서 직접 더한다
+    private final LongAdder bufferedMessages = new LongAdder();
+    private final MeterRegistry meterRegistry;
+    private final Counter listenerAttached;
+    private final Counter listenerDetached;
+    private final Counter heartbeatTicks;
+    private final Counter heartbeatsSent;
+    private final Counter streamCancelled;
+    private final Counter streamErrors;
+    private final Counter streamEvicted;
+    private final Counter admissionDeferred;
+    private final Counter admissionRejected;
+    //발행부터 sse 프레임을 응답에 쓰기까지
+    private final Timer deliveryLatency;
+
+    public UserAlarmMetrics(MeterRegistry meterRegistry, UserAlarmOverflowCounter overflowCounter) {
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("alarm.sse.connections", activeConnections, AtomicInteger::get)
+                .description("열려있는 sse 연결 수")
+                .register(meterRegistry);
+        Gauge.builder("alarm.sse.buffered", bufferedMessages, LongAdder::sum)
+                .description("연결별 버퍼에 쌓인 메세지 수. slow_consumer 를 켰을 때만 센다")
+                .register(meterRegistry);
+        listenerAttached = Counter.builder("alarm.redis.listener")
+                .tag("action", "attach")
+                .register(meterRegistry);
+        listenerDetached = Counter.builder("alarm.redis.listener")
+                .tag("action", "detach")
+                .register(meterRegistry);
+        heartbeatTicks = Counter.builder("alarm.heartbeat.ticks").register(meterRegistry);
+        heartbeatsSent = Counter.builder("alarm.heartbeat.sent").register(meterRegistry);
+        streamCancelled = Counter.builder("alarm.stream.terminated")
+                .tag("reason", "cancel")
+                .register(meterRegistry);
+        streamErrors = Counter.builder("alarm.stream.terminated")
+                .tag("reason", "error")
+                .register(meterRegistry);
+        streamEvicted = Counter.builder("alarm.stream.terminated")
+                .tag("reason", "evicted")
+                .register(meterRegistry);
+        admissionDeferred = Counter.builder("alarm.admission")
+                .tag("result", "deferred")
+                .register(meterRegistry);
+        admissionRejected = Counter.builder("alarm.admission")
+                .tag("result", "rejected")
+                .register(meterRegistry);
+        deliveryLatency = Timer.builder("alarm.delivery.latency")
+                .description("발행 시각부터 sse 프레임을 응답에 쓰기까지")
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofSeconds(30))
+                .register(meterRegistry);
+
+        for(EmitResult result : EmitResult.values()) {
+            FunctionCounter.builder("alarm.sink.emit", overflowCounter, counter -> counter.getEmitResultCount(result))
+                    .tag("result", result.name())
+                    .register(meterRegistry);
+        }
+        registerOverflow("dropped_oldest", overflowCounter, UserAlarmOverflowCounter::getDroppedOldest);
+        registerOverflow("dropped_newest", overflowCounter, UserAlarmOverflowCounter::getDroppedNewest);
+        registerOverflow("coalesced", overflowCounter, UserAlarmOverflowCounter::getCoalesced);
+        registerOverflow("sink_rejected", overflowCounter, UserAlarmOverflowCounter::getSinkRejected);
+        registerOverflow("sink_contended", overflowCounter, UserAlarmOverflowCounter::getSinkContended);
+    }
+
+    private void registerOverflow(String action, UserAlarmOverflowCounter overflowCounter, ToLongFunction<UserAlarmOverflowCounter> count) {
+        FunctionCounter.builder("alarm.buffer.overflow", overflowCounter, counter -> count.applyAsLong(counter))
+                .tag("action", action)
+                .register(meterRegistry);
+    }
+
+    /*
+     * 구독 중인 유저 수. 구독 정보를 가진 쪽에서 등록한다.
+     */
+    public void bindSubscribedUsers(IntSupplier subscribedUsers) {
+        Gauge.builder("alarm.subscribed.users", subscribedUsers, IntSupplier::getAsInt)
+                .description("이 노드에서 구독 중인 유저 수")
+                .strongReference(true)
+                .register(meterRegistry);
+    }
+
+    /*
+     * pub/sub 연결의 SUBSCRIBE(재구독 포함)가 실패해서 다시 연결한 횟수. 연결을 가진 쪽에서 등록한다.
+     */
+    public <T> void bindResubscribeFailures(T owner, ToLongFunction<T> failures) {
+        FunctionCounter.builder("alarm.redis.resubscribe", owner, value -> failures.applyAsLong(value))
+                .tag("result", "failed")
+                .register(meterRegistry);
+    }
+
+    public void connectionOpened() {
+        activeConnections.incrementAndGet();
+    }
+
+    public void connectionClosed() {
+        activeConnections.decrementAndGet();
+    }
+
+    public int getActiveConnections() {
+        return activeConnections.get();
+    }
+
+    public LongAdder getBufferedMessages() {
+        return bufferedMessages;
+    }
+
+    public void listenerAttached() {
+        listenerAttached.increment();
+    }
+
+    public void listenerDetached() {
+        listenerDetached.increment();
+    }
+
+    public void heartbeatTick() {
+        heartbeatTicks.increment();
+    }
+
+    public void heartbeatSent() {
+        heartbeatsSent.increment();
+    }
+
+    public void streamCancelled() {
+        streamCancelled.increment();
+    }
+
+    public void streamError() {
+        streamErrors.increment();
+    }
+
+    //알람을 받지 못했거나 노드가 종료되어서 서버가 끊은 연결
+    public void streamEvicted() {
+        streamEvicted.increment();
+    }
+
+    public void admissionDeferred() {
+        admissionDeferred.increment();
+    }
+
+    public void admissionRejected() {
+        admissionRejected.increment();
+    }
+
+    /*
+     * 응답에 쓰기 직전에 호출한다. 발행 시각이 없는 메세지(heartbeat, replay)는 재지 않는다.
+     * 발행 노드와의 시계 차이만큼 오차가 있다.
+     */
+    public void recordDelivered(UserAlarmMessage message) {
+        long publishedAtMillis = message.getPublishedAtMillis();
+        if(publishedAtMillis <= 0) {
+            return;
+        }
+        long latencyMillis = System.currentTimeMillis() - publishedAtMillis;
+        deliveryLatency.record(Math.max(0, latencyMillis), TimeUnit.MILLISECONDS);
+    }
+}
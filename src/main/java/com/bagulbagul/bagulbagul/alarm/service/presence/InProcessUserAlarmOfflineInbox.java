@@ -0,0 +1,38 @@
+package com.bagulbagul.bagulbagul.alarm.service.presence;
+
+import com.bagulbagul.bagulbagul.alarm.service.message.UserAlarmMessage;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+/*
+ * inprocess broker 의 offline inbox. presence 가 없으므로 알람을 보관하지 않는다.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "alarm.realtime.redis.listener", havingValue = "inprocess")
+public class InProcessUserAlarmOfflineInbox implements UserAlarmOfflineInbox {
+
+    @Value("${alarm.realtime.offline.enabled}")
+    private boolean ENABLED;
+
+    @PostConstruct
+    private void init() {
+        if(ENABLED) {
+            log.warn("inprocess broker 에서는 offline inbox 를 사용하지 않습니다");
+        }
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return false;
+    }
+
+    @Override
+    public Flux<UserAlarmMessage> request(long userId) {
+        return Flux.empty();
+    }
+}
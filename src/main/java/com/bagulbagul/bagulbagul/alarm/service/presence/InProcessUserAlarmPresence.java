@@ -0,0 +1,45 @@
+package com.bagulbagul.bagulbagul.alarm.service.presence;
+
+import com.bagulbagul.bagulbagul.alarm.service.registry.LongKeyRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/*
+ * inprocess broker 의 presence. 알람이 다른 노드로 가지 않으므로 접속 정보를 기록하지 않는다.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "alarm.realtime.redis.listener", havingValue = "inprocess")
+public class InProcessUserAlarmPresence implements UserAlarmPresence {
+
+    @Value("${alarm.realtime.presence.enabled}")
+    private boolean ENABLED;
+
+    @PostConstruct
+    private void init() {
+        if(ENABLED) {
+            log.warn("inprocess broker 에서는 presence 를 사용하지 않습니다");
+        }
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return false;
+    }
+
+    @Override
+    public void start(LongKeyRegistry<?> subscribeInfoRegistry) {
+    }
+
+    @Override
+    public void changed(long userId) {
+    }
+
+    @Override
+    public String getInboxChannel() {
+        throw new UnsupportedOperationException("inprocess broker 에는 inbox 채널이 없음");
+    }
+}
@@ -0,0 +1,21 @@
+package com.bagulbagul.bagulbagul.alarm.service.presence;
+
+import com.bagulbagul.bagulbagul.alarm.service.message.UserAlarmMessage;
+import reactor.core.publisher.Flux;
+
+/*
+ * 어느 노드에도 접속하지 않은 유저의 알람을 보관하는 inbox. presence 를 사용할 때만 동작한다.
+ * alarm.realtime.redis.listener 로 구현을 고른다.
+ * inprocess : presence 가 없으므로 보관하지 않는다. 항상 꺼져 있다.
+ * 그 외 : redis list 에 보관한다. (RedisUserAlarmOfflineInbox)
+ */
+public interface UserAlarmOfflineInbox {
+
+    boolean isEnabled();
+
+    /*
+     * userId 의 보관된 알람을 요청한다. 접속 정보가 반영되기 전에 호출해야 한다.
+     * 모두 내보내고 완료된 알람만 보관소에서 지운다. 도중에 취소되면 남겨두고 다음 첫 연결 때 다시 보낸다.
+     */
+    Flux<UserAlarmMessage> request(long userId);
+}
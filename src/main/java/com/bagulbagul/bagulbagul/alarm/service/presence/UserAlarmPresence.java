@@ -0,0 +1,28 @@
+package com.bagulbagul.bagulbagul.alarm.service.presence;
+
+import com.bagulbagul.bagulbagul.alarm.service.registry.LongKeyRegistry;
+
+/*
+ * 클러스터 전체의 유저 접속 정보(presence).
+ * 켜져 있으면 발행하는 쪽이 userId 를 구독 중인 노드의 inbox 채널에만 발행한다.
+ * alarm.realtime.redis.listener 로 구현을 고른다.
+ * inprocess : 노드가 하나뿐이므로 접속 정보를 공유하지 않는다. 항상 꺼져 있다.
+ * 그 외 : redis 에 노드별 접속 유저를 기록한다. (RedisUserAlarmPresence)
+ */
+public interface UserAlarmPresence {
+
+    boolean isEnabled();
+
+    /*
+     * 이 노드의 구독 정보를 기록하기 시작한다. 구독 관리자가 시작할 때 한번 호출한다.
+     */
+    void start(LongKeyRegistry<?> subscribeInfoRegistry);
+
+    /*
+     * userId 의 구독 정보가 생기거나 없어졌다.
+     */
+    void changed(long userId);
+
+    //이 노드로 온 알람을 받는 채널
+    String getInboxChannel();
+}
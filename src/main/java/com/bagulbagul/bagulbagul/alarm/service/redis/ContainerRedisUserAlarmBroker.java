@@ -0,0 +1,56 @@
+package com.bagulbagul.bagulbagul.alarm.service.redis;
+
+import com.bagulbagul.bagulbagul.alarm.service.broker.UserAlarmBroker;
+import com.bagulbagul.bagulbagul.alarm.service.broker.UserAlarmRouter;
+import com.bagulbagul.bagulbagul.alarm.service.dispatch.UserAlarmDispatcher;
+import com.bagulbagul.bagulbagul.alarm.service.dispatch.UserAlarmTarget;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+
+@Component
+@ConditionalOnProperty(name = "alarm.realtime.redis.listener", havingValue = "container", matchIfMissing = true)
+@RequiredArgsConstructor
+public class ContainerRedisUserAlarmBroker implements UserAlarmBroker {
+
+    //레디스 메세지 리스너 관리 컨테이너
+    private final RedisMessageListenerContainer redisMessageListenerContainer;
+    private final RedisTemplate<String, String> redisTemplate;
+    private final UserAlarmDispatcher dispatcher;
+
+    @Override
+    public Disposable subscribe(String channel, UserAlarmTarget target) {
+        //리스너 생성
+        RedisUserAlarmMessageListener userUserAlarmMessageListener = new RedisUserAlarmMessageListener(target, dispatcher);
+        //리스너 등록
+        redisMessageListenerContainer.addMessageListener(userUserAlarmMessageListener, new ChannelTopic(channel));
+        //리스너 해제
+        return () -> redisMessageListenerContainer.removeMessageListener(userUserAlarmMessageListener);
+    }
+
+    @Override
+    public void subscribe(List<String> channels, UserAlarmRouter router) {
+        //모든 채널을 한번에 구독
+        List<ChannelTopic> topics = channels.stream().map(ChannelTopic::new).toList();
+        redisMessageListenerContainer.addMessageListener((message, pattern) -> router.route(message.getBody()), topics);
+    }
+
+    @Override
+    public void publish(String channel, byte[] message) {
+        //값 serializer(String)를 거치지 않고 byte[] 그대로 보낸다
+        byte[] rawChannel = channel.getBytes(StandardCharsets.UTF_8);
+        redisTemplate.execute((RedisCallback<Long>) connection -> connection.publish(rawChannel, message));
+    }
+
+    @Override
+    public boolean isBlocking() {
+        return true;
+    }
+}
@@ -0,0 +1,130 @@
+package com.bagulbagul.bagulbagul.alarm.service.redis;
+
+import com.bagulbagul.bagulbagul.alarm.service.broker.UserAlarmBroker;
+import com.bagulbagul.bagulbagul.alarm.service.broker.UserAlarmRouter;
+import com.bagulbagul.bagulbagul.alarm.service.dispatch.UserAlarmDispatcher;
+import com.bagulbagul.bagulbagul.alarm.service.dispatch.UserAlarmTarget;
+import com.bagulbagul.bagulbagul.alarm.service.metrics.UserAlarmMetrics;
+import io.lettuce.core.RedisURI;
+import io.lettuce.core.resource.ClientResources;
+import io.lettuce.core.resource.DefaultClientResources;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/*
+ * 여러 개의 pub/sub 연결로 채널을 나눠서 구독한다. (alarm.realtime.redis.listener=pooled)
+ * container, reactive 는 모든 채널을 연결 하나로 받으므로 모든 유저의 알람 수신과 봉투 디코딩이 I/O 스레드 하나에 몰린다.
+ *
+ * - 유저 채널은 userId 의 consistent hash 로 연결을 고른다. 공유 채널은 채널 이름의 hash 로 고른다.
+ *   구독, 해제는 그 채널을 가진 연결로만 보낸다.
+ * - 연결마다 전용 I/O 스레드를 하나씩 두므로 수신 처리량이 연결 수(코어 수)만큼 늘어난다.
+ * - 연결 하나가 끊기면 그 연결의 채널만 묶음 단위로 다시 구독한다. 다른 연결의 유저는 영향을 받지 않는다.
+ * 발행은 pub/sub 연결이 아닌 일반 연결(redisTemplate)로 보낸다.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "alarm.realtime.redis.listener", havingValue = "pooled")
+@RequiredArgsConstructor
+public class PooledRedisUserAlarmBroker implements UserAlarmBroker {
+
+    //pub/sub 연결 수. 0 이하면 cpu 수
+    @Value("${alarm.realtime.redis.pool.connection_count}")
+    private int CONNECTION_COUNT;
+    //연결 하나가 hash ring 에 올리는 가상 노드 수
+    @Value("${alarm.realtime.redis.pool.virtual_nodes}")
+    private int VIRTUAL_NODES;
+    //연결이 끊겼을 때 SUBSCRIBE 하나로 다시 구독하는 최대 채널 수
+    @Value("${alarm.realtime.redis.pool.restore_batch_size}")
+    private int RESTORE_BATCH_SIZE;
+    @Value("${alarm.realtime.redis.pool.reconnect_millisecond}")
+    private long RECONNECT_MILLISECOND;
+    @Value("${alarm.realtime.redis.pool.max_reconnect_millisecond}")
+    private long MAX_RECONNECT_MILLISECOND;
+
+    private final LettuceConnectionFactory redisConnectionFactory;
+    private final RedisTemplate<String, String> redisTemplate;
+    private final UserAlarmDispatcher dispatcher;
+    private final UserAlarmMetrics metrics;
+
+    private ClientResources clientResources;
+    private Scheduler reconnectScheduler;
+    private RedisUserAlarmPubSubShard[] shards;
+    private RedisUserAlarmConnectionRing ring;
+
+    @PostConstruct
+    private void init() {
+        int connectionCount = CONNECTION_COUNT > 0 ? CONNECTION_COUNT : Runtime.getRuntime().availableProcessors();
+        //netty 는 연결을 이벤트 루프에 돌아가며 배정하므로 연결마다 I/O 스레드 하나가 된다
+        clientResources = DefaultClientResources.builder()
+                .ioThreadPoolSize(connectionCount)
+                .computationThreadPoolSize(connectionCount)
+                .build();
+        reconnectScheduler = Schedulers.newSingle("alarm-pubsub-reconnect");
+        RedisURI redisUri = RedisURI.create(redisConnectionFactory.getHostName(), redisConnectionFactory.getPort());
+        ring = new RedisUserAlarmConnectionRing(connectionCount, VIRTUAL_NODES);
+        shards = new RedisUserAlarmPubSubShard[connectionCount];
+        for(int i = 0; i < connectionCount; i++) {
+            shards[i] = new RedisUserAlarmPubSubShard(i, clientResources, redisUri, dispatcher,
+                    RESTORE_BATCH_SIZE, RECONNECT_MILLISECOND, MAX_RECONNECT_MILLISECOND, reconnectScheduler);
+            shards[i].connect();
+        }
+        metrics.bindResubscribeFailures(this, PooledRedisUserAlarmBroker::resubscribeFailures);
+        log.info("알람 pub/sub 연결 {}개 사용", connectionCount);
+    }
+
+    @PreDestroy
+    private void destroy() {
+        for(RedisUserAlarmPubSubShard shard : shards) {
+            shard.close();
+        }
+        reconnectScheduler.dispose();
+        clientResources.shutdown();
+    }
+
+    //모든 연결에서 SUBSCRIBE(재구독 포함)가 실패해서 다시 연결한 횟수
+    private long resubscribeFailures() {
+        long failures = 0;
+        for(RedisUserAlarmPubSubShard shard : shards) {
+            failures += shard.getResubscribeFailures();
+        }
+        return failures;
+    }
+
+    @Override
+    public Disposable subscribe(String channel, UserAlarmTarget target) {
+        return shards[ring.connectionOf(target.getUserId())].subscribe(channel, target);
+    }
+
+    @Override
+    public void subscribe(List<String> channels, UserAlarmRouter router) {
+        for(String channel : channels) {
+            shards[ring.connectionOf(channel.hashCode())].subscribe(channel, router);
+        }
+    }
+
+    @Override
+    public void publish(String channel, byte[] message) {
+        //값 serializer(String)를 거치지 않고 byte[] 그대로 보낸다
+        byte[] rawChannel = channel.getBytes(StandardCharsets.UTF_8);
+        redisTemplate.execute((RedisCallback<Long>) connection -> connection.publish(rawChannel, message));
+    }
+
+    //구독, 해제는 명령을 비동기로 보내기만 한다
+    @Override
+    public boolean isBlocking() {
+        return false;
+    }
+}
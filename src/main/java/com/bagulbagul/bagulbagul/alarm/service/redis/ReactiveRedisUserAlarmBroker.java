@@ -0,0 +1,86 @@
+package com.bagulbagul.bagulbagul.alarm.service.redis;
+
+import com.bagulbagul.bagulbagul.alarm.service.broker.UserAlarmBroker;
+import com.bagulbagul.bagulbagul.alarm.service.broker.UserAlarmRouter;
+import com.bagulbagul.bagulbagul.alarm.service.dispatch.UserAlarmDispatcher;
+import com.bagulbagul.bagulbagul.alarm.service.dispatch.UserAlarmTarget;
+import com.bagulbagul.bagulbagul.alarm.service.message.UserAlarmEnvelope;
+import com.bagulbagul.bagulbagul.alarm.service.message.UserAlarmMessage;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.ReactiveRedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.RedisSerializationContext.SerializationPair;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.util.retry.Retry;
+
+/*
+ * lettuce reactive pub/sub 으로 채널을 구독한다.
+ * receive 는 구독 시점에 SUBSCRIBE, 구독 해제 시점에 UNSUBSCRIBE 를 비동기로 보내므로 호출 스레드를 block 하지 않는다.
+ * 메세지는 lettuce 의 이벤트 루프에서 바로 sink 로 전달된다.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "alarm.realtime.redis.listener", havingValue = "reactive")
+@RequiredArgsConstructor
+public class ReactiveRedisUserAlarmBroker implements UserAlarmBroker {
+
+    //연결이 끊겨 구독이 실패하면 재구독
+    private static final Retry RESUBSCRIBE = Retry.backoff(Long.MAX_VALUE, Duration.ofMillis(100))
+            .maxBackoff(Duration.ofSeconds(5));
+
+    private final ReactiveRedisMessageListenerContainer reactiveRedisMessageListenerContainer;
+    private final ReactiveStringRedisTemplate reactiveStringRedisTemplate;
+    private final UserAlarmDispatcher dispatcher;
+
+    @Override
+    public Disposable subscribe(String channel, UserAlarmTarget target) {
+        //본문을 String 으로 디코딩하지 않고 byte[] 그대로 받는다
+        return reactiveRedisMessageListenerContainer.receive(List.of(ChannelTopic.of(channel)), SerializationPair.byteArray(), SerializationPair.byteArray())
+                .retryWhen(RESUBSCRIBE)
+                .subscribe(
+                        message -> {
+                            //봉투가 있다면 헤더만 벗긴다
+                            UserAlarmMessage alarm = UserAlarmEnvelope.unwrap(message.getMessage());
+                            if(alarm == null) {
+                                log.warn("잘못된 형식의 알람 메세지. channel = {}", channel);
+                                return;
+                            }
+                            dispatcher.dispatch(target, alarm);
+                        },
+                        e -> log.error("redis 채널 구독 실패. channel = {}", channel, e)
+                );
+    }
+
+    @Override
+    public void subscribe(List<String> channels, UserAlarmRouter router) {
+        List<ChannelTopic> topics = channels.stream().map(ChannelTopic::of).toList();
+        //봉투의 헤더를 byte 단위로 읽기 위해 본문은 byte[] 그대로 받는다
+        reactiveRedisMessageListenerContainer.receive(topics, SerializationPair.byteArray(), SerializationPair.byteArray())
+                .retryWhen(RESUBSCRIBE)
+                .subscribe(
+                        message -> router.route(message.getMessage()),
+                        e -> log.error("redis 공용 채널 구독 실패. channels = {}", channels, e)
+                );
+    }
+
+    //발행도 호출 스레드를 block 하지 않는다
+    @Override
+    public void publish(String channel, byte[] message) {
+        ByteBuffer rawChannel = ByteBuffer.wrap(channel.getBytes(StandardCharsets.UTF_8));
+        reactiveStringRedisTemplate.execute(connection -> connection.pubSubCommands().publish(rawChannel, ByteBuffer.wrap(message)))
+                .subscribe(null, e -> log.error("redis 발행 실패. channel = {}", channel, e));
+    }
+
+    @Override
+    public boolean isBlocking() {
+        return false;
+    }
+}
@@ -0,0 +1,60 @@
+package com.bagulbagul.bagulbagul.alarm.service.redis;
+
+import java.util.Arrays;
+
+/*
+ * pub/sub 연결을 고르는 consistent hash ring.
+ * 연결마다 virtualNodes 개의 가상 노드를 ring 에 올리고, key 의 hash 이후 가장 가까운 가상 노드의 연결을 고른다.
+ * 연결 수가 바뀌어도 대부분의 key 는 같은 연결에 남으므로 연결 수를 바꿔서 배포할 때 다시 구독하는 채널이 적다.
+ * 만든 이후에는 바뀌지 않으므로 lock 없이 읽는다.
+ */
+final class RedisUserAlarmConnectionRing {
+
+    //정렬된 가상 노드의 hash 와 그 가상 노드의 연결 번호
+    private final long[] hashes;
+    private final int[] owners;
+
+    RedisUserAlarmConnectionRing(int connectionCount, int virtualNodes) {
+        if(connectionCount < 1 || virtualNodes < 1) {
+            throw new IllegalArgumentException("연결 수와 가상 노드 수는 1 이상이어야 합니다. connectionCount = "
+                    + connectionCount + ", virtualNodes = " + virtualNodes);
+        }
+        int size = connectionCount * virtualNodes;
+        long[][] nodes = new long[size][];
+        for(int connection = 0; connection < connectionCount; connection++) {
+            for(int node = 0; node < virtualNodes; node++) {
+                nodes[connection * virtualNodes + node] = new long[]{mix(((long) connection << 32) | node), connection};
+            }
+        }
+        Arrays.sort(nodes, (a, b) -> Long.compare(a[0], b[0]));
+        this.hashes = new long[size];
+        this.owners = new int[size];
+        for(int i = 0; i < size; i++) {
+            hashes[i] = nodes[i][0];
+            owners[i] = (int) nodes[i][1];
+        }
+    }
+
+    int connectionOf(long key) {
+        int index = Arrays.binarySearch(hashes, mix(key));
+        if(index < 0) {
+            //들어갈 위치. ring 의 끝을 넘으면 처음으로 돌아간다
+            index = -index - 1;
+            if(index == hashes.length) {
+                index = 0;
+            }
+        }
+        return owners[index];
+    }
+
+    //연속된 key 가 ring 의 한 구간에 몰리지 않도록 섞는다 (murmur3 finalizer)
+    private static long mix(long key) {
+        long h = key;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
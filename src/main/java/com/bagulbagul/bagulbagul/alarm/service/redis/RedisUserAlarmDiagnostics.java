@@ -0,0 +1,177 @@
+package com.bagulbagul.bagulbagul.alarm.service.redis;
+
+import com.bagulbagul.bagulbagul.alarm.service.UserAlarmConnection;
+import com.bagulbagul.bagulbagul.alarm.service.metrics.UserAlarmMetrics;
+import com.bagulbagul.bagulbagul.alarm.service.redis.UserAlarmDiagnosticsSnapshot.UserEntry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.Scannable;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/*
+ * 구독 현황 진단 정보. 장애 중에 연결이 몰린 유저, 알람이 쌓인 유저, 붙어있는 리스너 수를 확인한다.
+ *
+ * - 요청이 올 때만 만들고 min_interval 동안은 마지막 결과를 그대로 돌려준다. 몇 초마다 조회해도 계산은 그 간격 이상으로 일어나지 않는다.
+ * - 동시에 온 요청은 진행 중인 계산 하나를 같이 기다린다.
+ * - 유저 수, 구독자 수 구간, 연결 수, 리스너 수, 쌓인 알람 합계는 구독, 해제, 버퍼 경로가 갱신하는 합계를 읽는다. 순회하지 않는다.
+ * - 상위 유저만 registry 의 임의의 stripe 부터 sample_size 개의 구독 정보를 읽은 표본에서 고른다.
+ *   유저가 sample_size 보다 많으면 표본 밖의 유저는 상위 목록에 나오지 않는다. (sampledUsers 로 표본 크기를 알린다)
+ * - 계산은 전용 스레드에서 한다. registry 는 stripe 하나씩 잠깐 잠그고 구독 정보 참조만 복사하므로
+ *   구독, 해제 경로가 전체 lock 이나 긴 순회를 기다리지 않는다. 구독자 수, 쌓인 알람 수는 lock 없이 읽은 근사값이다.
+ */
+@Component
+@RequiredArgsConstructor
+public class RedisUserAlarmDiagnostics {
+
+    private static final Comparator<UserEntry> BY_SUBSCRIBERS = Comparator.comparingInt(UserEntry::subscribers);
+    private static final Comparator<UserEntry> BY_BUFFERED = Comparator.comparingInt(UserEntry::buffered);
+
+    @Value("${alarm.realtime.admin.diagnostics_min_interval_millisecond}")
+    private long MIN_INTERVAL_MILLISECOND;
+    //상위 유저를 몇 명까지 보여줄지
+    @Value("${alarm.realtime.admin.diagnostics_top_n}")
+    private int TOP_N;
+    //상위 유저를 고를 때 읽는 최대 구독 정보 수
+    @Value("${alarm.realtime.admin.diagnostics_sample_size}")
+    private int SAMPLE_SIZE;
+
+    private final RedisUserAlarmSubscribeManager subscribeManager;
+    private final UserAlarmMetrics metrics;
+
+    private final AtomicReference<Sample> latest = new AtomicReference<>();
+    private Scheduler scheduler;
+
+    @PostConstruct
+    private void init() {
+        scheduler = Schedulers.newSingle("alarm-diagnostics");
+    }
+
+    @PreDestroy
+    private void destroy() {
+        scheduler.dispose();
+    }
+
+    public Mono<UserAlarmDiagnosticsSnapshot> snapshot() {
+        for(;;) {
+            Sample current = latest.get();
+            long now = System.nanoTime();
+            if(current != null && now - current.startedAtNanos() < TimeUnit.MILLISECONDS.toNanos(MIN_INTERVAL_MILLISECOND)) {
+                return current.snapshot();
+            }
+            Sample next = new Sample(now, Mono.fromCallable(this::sample).subscribeOn(scheduler).cache());
+            if(latest.compareAndSet(current, next)) {
+                return next.snapshot();
+            }
+        }
+    }
+
+    private UserAlarmDiagnosticsSnapshot sample() {
+        long started = System.nanoTime();
+        List<RedisUserAlarmSubscribeInfo> sampled = subscribeManager.sampleSubscribeInfos(SAMPLE_SIZE);
+        return summarize(
+                subscribeManager.getSubscribeStats(),
+                metrics.getActiveConnections(),
+                metrics.getBufferedMessages().sum(),
+                sampled,
+                TOP_N,
+                System.currentTimeMillis(),
+                started
+        );
+    }
+
+    static UserAlarmDiagnosticsSnapshot summarize(
+            RedisUserAlarmSubscribeStats stats,
+            int connections,
+            long buffered,
+            List<RedisUserAlarmSubscribeInfo> sampled,
+            int topN,
+            long takenAtMillis,
+            long startedNanos
+    ) {
+        int[] histogram = stats.histogram();
+        int users = 0;
+        for(int count : histogram) {
+            users += count;
+        }
+        //상위 N 명만 남기는 min heap
+        PriorityQueue<UserEntry> bySubscribers = new PriorityQueue<>(BY_SUBSCRIBERS);
+        PriorityQueue<UserEntry> byBuffered = new PriorityQueue<>(BY_BUFFERED);
+        for(RedisUserAlarmSubscribeInfo info : sampled) {
+            int subscribers = info.getSubscribeCnt();
+            //정리 중인 구독 정보는 제외
+            if(subscribers <= 0) {
+                continue;
+            }
+            int userBuffered = info.getSink().scanOrDefault(Scannable.Attr.BUFFERED, 0);
+            int userConnections = 0;
+            for(UserAlarmConnection connection : info.getConnections()) {
+                userConnections++;
+                userBuffered += Math.max(0, connection.getQueued());
+            }
+            UserEntry entry = new UserEntry(info.getUserId(), subscribers, userConnections, userBuffered);
+            offer(bySubscribers, entry, topN, BY_SUBSCRIBERS);
+            if(userBuffered > 0) {
+                offer(byBuffered, entry, topN, BY_BUFFERED);
+            }
+        }
+        long scanMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startedNanos);
+        return new UserAlarmDiagnosticsSnapshot(
+                takenAtMillis,
+                scanMicros,
+                users,
+                connections,
+                stats.listeners(),
+                Math.max(0, buffered),
+                histogramOf(histogram),
+                sampled.size(),
+                descending(bySubscribers, BY_SUBSCRIBERS),
+                descending(byBuffered, BY_BUFFERED)
+        );
+    }
+
+    //"1", "2", "3-4", "5-8", ... , "33+"
+    private static Map<String, Integer> histogramOf(int[] histogram) {
+        int[] bounds = RedisUserAlarmSubscribeStats.SUBSCRIBER_BOUNDS;
+        Map<String, Integer> result = new LinkedHashMap<>();
+        int lower = 1;
+        for(int i = 0; i < bounds.length; i++) {
+            int upper = bounds[i];
+            result.put(lower == upper ? String.valueOf(upper) : lower + "-" + upper, histogram[i]);
+            lower = upper + 1;
+        }
+        result.put(lower + "+", histogram[bounds.length]);
+        return result;
+    }
+
+    private static void offer(PriorityQueue<UserEntry> heap, UserEntry entry, int topN, Comparator<UserEntry> order) {
+        if(heap.size() < topN) {
+            heap.add(entry);
+        }
+        else if(topN > 0 && order.compare(entry, heap.peek()) > 0) {
+            heap.poll();
+            heap.add(entry);
+        }
+    }
+
+    private static List<UserEntry> descending(PriorityQueue<UserEntry> heap, Comparator<UserEntry> order) {
+        List<UserEntry> entries = new ArrayList<>(heap);
+        entries.sort(order.reversed());
+        return entries;
+    }
+
+    private record Sample(long startedAtNanos, Mono<UserAlarmDiagnosticsSnapshot> snapshot) {
+    }
+}
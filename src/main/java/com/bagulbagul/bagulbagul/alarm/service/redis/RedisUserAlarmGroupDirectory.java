@@ -0,0 +1,99 @@
+package com.bagulbagul.bagulbagul.alarm.service.redis;
+
+import com.bagulbagul.bagulbagul.alarm.service.group.UserAlarmGroupDirectory;
+import java.util.List;
+import java.util.function.LongPredicate;
+import java.util.function.Supplier;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+/*
+ * group 알람의 채널과 구성원.
+ * 구성원은 group 마다 redis set(member_key_prefix + groupId)으로 관리한다. (예: 행사를 팔로우한 유저)
+ * 노드는 group 채널과 broadcast 채널을 한번씩만 구독하고, 알람이 오면 구성원 중 이 노드에 연결된 유저에게만 보낸다.
+ * 발행 비용과 전송량은 수신자 수가 아니라 노드 수에 비례한다.
+ */
+@Component
+@ConditionalOnExpression("'${alarm.realtime.redis.listener}' != 'inprocess'")
+@RequiredArgsConstructor
+public class RedisUserAlarmGroupDirectory implements UserAlarmGroupDirectory {
+
+    @Value("${alarm.realtime.group.enabled}")
+    private boolean ENABLED;
+    //모든 group 알람이 공유하는 채널. 봉투의 g 로 group 을 구분한다
+    @Value("${alarm.realtime.group.channel}")
+    private String CHANNEL;
+    //모든 유저에게 보내는 알람의 채널
+    @Value("${alarm.realtime.group.broadcast_channel}")
+    private String BROADCAST_CHANNEL;
+    @Value("${alarm.realtime.group.member_key_prefix}")
+    private String MEMBER_KEY_PREFIX;
+
+    //SMISMEMBER 한번에 확인할 유저 수
+    private static final int MEMBER_CHECK_BATCH_SIZE = 1000;
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final ReactiveStringRedisTemplate reactiveStringRedisTemplate;
+    private final RedisUserAlarmPresence presence;
+
+    @Override
+    public boolean isEnabled() {
+        return ENABLED;
+    }
+
+    @Override
+    public String getChannel() {
+        return CHANNEL;
+    }
+
+    @Override
+    public String getBroadcastChannel() {
+        return BROADCAST_CHANNEL;
+    }
+
+    @Override
+    public void join(String groupId, long userId) {
+        redisTemplate.opsForSet().add(memberKey(groupId), String.valueOf(userId));
+    }
+
+    @Override
+    public void leave(String groupId, long userId) {
+        redisTemplate.opsForSet().remove(memberKey(groupId), String.valueOf(userId));
+    }
+
+    /*
+     * group 구성원 중 이 노드에 연결된 유저.
+     * presence 를 사용하면 redis 에서 group set 과 이 노드의 set 의 교집합(SINTER)만 받아온다.
+     * 아니라면 group set 전체를 읽지 않고 이 노드의 유저들이 구성원인지 SMISMEMBER 로 나눠 확인한다.
+     * 비용은 group 크기가 아니라 이 노드의 연결 수에 비례하고, 연결된 유저가 없으면 redis 에 묻지 않는다.
+     * 어느 경우든 결과는 connectedHere 로 한번 더 거른다. (presence 반영 전후의 차이)
+     */
+    @Override
+    public Flux<Long> connectedMembers(String groupId, LongPredicate connectedHere, Supplier<List<Long>> localUserIds) {
+        Flux<String> members = presence.isEnabled()
+                ? reactiveStringRedisTemplate.opsForSet().intersect(memberKey(groupId), presence.getNodeKey())
+                : localMembers(memberKey(groupId), localUserIds.get());
+        return members
+                .map(Long::parseLong)
+                .filter(connectedHere::test);
+    }
+
+    private Flux<String> localMembers(String memberKey, List<Long> localUserIds) {
+        return Flux.fromIterable(localUserIds)
+                .map(String::valueOf)
+                .buffer(MEMBER_CHECK_BATCH_SIZE)
+                .concatMap(userIds -> reactiveStringRedisTemplate.opsForSet().isMember(memberKey, userIds.toArray())
+                        .flatMapIterable(results -> userIds.stream()
+                                .filter(userId -> Boolean.TRUE.equals(results.get(userId)))
+                                .toList()));
+    }
+
+    private String memberKey(String groupId) {
+        return MEMBER_KEY_PREFIX + groupId;
+    }
+}
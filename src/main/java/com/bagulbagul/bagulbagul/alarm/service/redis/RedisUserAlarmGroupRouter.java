@@ -0,0 +1,134 @@
+package com.bagulbagul.bagulbagul.alarm.service.redis;
+
+import com.bagulbagul.bagulbagul.alarm.service.broker.UserAlarmRouter;
+import com.bagulbagul.bagulbagul.alarm.service.dispatch.UserAlarmDispatcher;
+import com.bagulbagul.bagulbagul.alarm.service.dispatch.UserAlarmTarget;
+import com.bagulbagul.bagulbagul.alarm.service.group.UserAlarmGroupDirectory;
+import com.bagulbagul.bagulbagul.alarm.service.message.UserAlarmEnvelope;
+import com.bagulbagul.bagulbagul.alarm.service.message.UserAlarmMessage;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongFunction;
+import java.util.function.Supplier;
+import lombok.extern.slf4j.Slf4j;
+
+/*
+ * group, broadcast 채널의 라우터.
+ * - broadcast : 이 노드의 모든 sink 로 보낸다.
+ * - group : 봉투의 groupId 구성원 중 이 노드에 연결된 유저의 sink 로 보낸다.
+ * 알람 본문은 복사하지 않고 모든 sink 가 같은 메세지를 공유한다.
+ *
+ * group 구성원 조회는 비동기라서 알람마다 따로 조회하면 응답 순서에 따라 같은 group 의 알람 순서가 바뀔 수 있다.
+ * group 마다 조회 중인 알람이 끝나야 다음 알람을 조회해서 발행 순서대로 보낸다.
+ * 다른 group 의 알람끼리는 기다리지 않는다.
+ */
+@Slf4j
+public class RedisUserAlarmGroupRouter implements UserAlarmRouter {
+
+    // userId -> 전달 대상. 구독 정보가 없으면 null
+    private final LongFunction<UserAlarmTarget> targetLookup;
+    //이 노드의 모든 전달 대상
+    private final Supplier<List<UserAlarmTarget>> allTargets;
+    private final UserAlarmGroupDirectory groupDirectory;
+    private final UserAlarmDispatcher dispatcher;
+    // groupId -> 구성원 조회를 기다리는 알람. 맨 앞이 조회 중인 알람이고 큐는 compute 안에서만 읽고 쓴다
+    private final ConcurrentHashMap<String, Queue<UserAlarmMessage>> pendingByGroup = new ConcurrentHashMap<>();
+
+    public RedisUserAlarmGroupRouter(
+            LongFunction<UserAlarmTarget> targetLookup,
+            Supplier<List<UserAlarmTarget>> allTargets,
+            UserAlarmGroupDirectory groupDirectory,
+            UserAlarmDispatcher dispatcher
+    ) {
+        this.targetLookup = targetLookup;
+        this.allTargets = allTargets;
+        this.groupDirectory = groupDirectory;
+        this.dispatcher = dispatcher;
+    }
+
+    @Override
+    public void route(byte[] body) {
+        UserAlarmEnvelope envelope = UserAlarmEnvelope.decode(body);
+        //group 이 없으면 broadcast
+        if(envelope == null || envelope.getGroupId() == null) {
+            UserAlarmMessage message = envelope != null ? envelope.getPayload() : UserAlarmEnvelope.unwrap(body);
+            if(message == null) {
+                log.warn("잘못된 형식의 broadcast 알람 메세지");
+                return;
+            }
+            for(UserAlarmTarget target : allTargets.get()) {
+                dispatcher.dispatch(target, message);
+            }
+            return;
+        }
+        String groupId = envelope.getGroupId();
+        boolean[] idle = new boolean[1];
+        pendingByGroup.compute(groupId, (key, queue) -> {
+            Queue<UserAlarmMessage> messages = queue == null ? new ArrayDeque<>() : queue;
+            idle[0] = queue == null;
+            messages.add(envelope.getPayload());
+            return messages;
+        });
+        //조회 중인 알람이 있다면 그 알람이 끝날 때 이어서 조회한다
+        if(idle[0]) {
+            resolve(groupId, envelope.getPayload());
+        }
+    }
+
+    /*
+     * message 부터 group 의 알람을 차례로 조회해서 보낸다.
+     * 조회가 subscribe 안에서 끝나면(연결된 유저가 없는 경우 등) 재귀 없이 반복문에서 다음 알람으로 넘어가고,
+     * 비동기로 끝나면 끝날 때의 콜백이 다음 알람을 이어서 조회한다.
+     */
+    private void resolve(String groupId, UserAlarmMessage message) {
+        for(UserAlarmMessage current = message; current != null; current = next(groupId)) {
+            UserAlarmMessage resolving = current;
+            //반복문과 콜백 중 나중에 도착한 쪽이 다음 알람을 조회한다
+            AtomicBoolean handoff = new AtomicBoolean();
+            Runnable finished = () -> {
+                if(!handoff.compareAndSet(false, true)) {
+                    resolve(groupId, next(groupId));
+                }
+            };
+            groupDirectory.connectedMembers(groupId, userId -> targetLookup.apply(userId) != null, this::localUserIds)
+                    .subscribe(
+                            userId -> {
+                                UserAlarmTarget target = targetLookup.apply(userId);
+                                if(target != null) {
+                                    dispatcher.dispatch(target, resolving);
+                                }
+                            },
+                            e -> {
+                                log.error("group 구성원 조회 실패. groupId = {}", groupId, e);
+                                finished.run();
+                            },
+                            finished
+                    );
+            if(handoff.compareAndSet(false, true)) {
+                return;
+            }
+        }
+    }
+
+    //조회가 끝난 알람을 빼고 다음 알람. 없으면 group 을 지우고 null
+    private UserAlarmMessage next(String groupId) {
+        UserAlarmMessage[] next = new UserAlarmMessage[1];
+        pendingByGroup.computeIfPresent(groupId, (key, queue) -> {
+            queue.poll();
+            next[0] = queue.peek();
+            return next[0] == null ? null : queue;
+        });
+        return next[0];
+    }
+
+    private List<Long> localUserIds() {
+        List<UserAlarmTarget> targets = allTargets.get();
+        List<Long> userIds = new ArrayList<>(targets.size());
+        targets.forEach(target -> userIds.add(target.getUserId()));
+        return userIds;
+    }
+}
@@ -1,22 +1,32 @@
 package com.bagulbagul.bagulbagul.alarm.service.redis;
 
+import com.bagulbagul.bagulbagul.alarm.service.dispatch.UserAlarmDispatcher;
+import com.bagulbagul.bagulbagul.alarm.service.dispatch.UserAlarmTarget;
+import com.bagulbagul.bagulbagul.alarm.service.message.UserAlarmEnvelope;
+import com.bagulbagul.bagulbagul.alarm.service.message.UserAlarmMessage;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.redis.connection.Message;
 import org.springframework.data.redis.connection.MessageListener;
-import reactor.core.publisher.Sinks;
-import reactor.core.publisher.Sinks.EmitResult;
-import reactor.core.publisher.Sinks.Many;
 
 @Slf4j
 public class RedisUserAlarmMessageListener implements MessageListener {
-    private Many sink;
+    private UserAlarmTarget target;
+    private UserAlarmDispatcher dispatcher;
 
-    public RedisUserAlarmMessageListener(Many sink) {
-        this.sink = sink;
+    public RedisUserAlarmMessageListener(UserAlarmTarget target, UserAlarmDispatcher dispatcher) {
+        this.target = target;
+        this.dispatcher = dispatcher;
     }
 
     @Override
     public void onMessage(Message message, byte[] pattern) {
-        sink.emitNext(message.toString(), (signalType, result) -> result == EmitResult.FAIL_NON_SERIALIZED);
+        //본문을 String 으로 디코딩하지 않고 byte[] 그대로 전달. 봉투가 있다면 헤더만 벗긴다.
+        UserAlarmMessage alarm = UserAlarmEnvelope.unwrap(message.getBody());
+        if(alarm == null) {
+            log.warn("잘못된 형식의 알람 메세지");
+            return;
+        }
+        //리스너 컨테이너의 스레드에서 sink 로 바로 보내지 않고 유저의 lane 으로 넘긴다
+        dispatcher.dispatch(target, alarm);
     }
 }
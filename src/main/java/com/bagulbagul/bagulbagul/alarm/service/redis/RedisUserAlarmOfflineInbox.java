@@ -0,0 +1,201 @@
+package com.bagulbagul.bagulbagul.alarm.service.redis;
+
+import com.bagulbagul.bagulbagul.alarm.service.message.UserAlarmEnvelope;
+import com.bagulbagul.bagulbagul.alarm.service.message.UserAlarmMessage;
+import com.bagulbagul.bagulbagul.alarm.service.presence.UserAlarmOfflineInbox;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+/*
+ * 어느 노드에도 접속하지 않은 유저의 알람을 보관하는 inbox.
+ * presence 를 사용할 때만 동작한다. 구독 중인 노드가 없으면 발행 스크립트가 유저의 redis list(key_prefix + userId)에 쌓는다.
+ * list 는 max_len 개까지만 남기고 마지막 알람 이후 ttl_second 가 지나면 만료된다.
+ *
+ * 유저가 처음 연결되면 보관된 알람을 먼저 보내고 실시간 알람을 이어서 보낸다.
+ * - 연결마다 redis 명령을 보내지 않고, presence flush 가 이 노드의 접속 정보를 redis 에 반영한 직후에
+ *   그 사이 연결된 유저들의 list 를 pipeline 으로 한번에 읽는다. (배포 후 재연결 폭주에도 flush 주기당 왕복 한번)
+ * - 접속 정보가 반영된 뒤에 읽으므로 읽은 이후의 알람은 list 가 아니라 이 노드의 inbox 채널로 온다.
+ * - presence 전용 스레드에서 실행되므로 이벤트 루프를 block 하지 않는다.
+ *
+ * 읽을 때 지우지 않고 연결이 보관된 알람을 모두 내보낸 뒤에 다음 flush 에서 읽은 개수만큼 앞에서 잘라낸다. (LTRIM)
+ * 기다리던 연결이 시간 초과나 끊김으로 취소되면 요청을 지우므로 알람은 list 에 남아 다음 첫 연결 때 받는다.
+ * 보낸 뒤 잘라내기 전에 끊기면 다음 연결 때 한번 더 받을 수 있다. (at-least-once)
+ * 잘라내기 전에 stale presence 로 발행한 알람이 max_len 을 넘겨 앞쪽이 밀려나면 받지 못한 알람이 잘릴 수 있다.
+ */
+@Slf4j
+@Component
+@ConditionalOnExpression("'${alarm.realtime.redis.listener}' != 'inprocess'")
+@RequiredArgsConstructor
+public class RedisUserAlarmOfflineInbox implements UserAlarmOfflineInbox {
+
+    @Value("${alarm.realtime.offline.enabled}")
+    private boolean ENABLED;
+    @Value("${alarm.realtime.offline.key_prefix}")
+    private String KEY_PREFIX;
+    //유저마다 보관할 최대 알람 수. 넘치면 오래된 알람부터 버린다
+    @Value("${alarm.realtime.offline.max_len}")
+    private int MAX_LEN;
+    @Value("${alarm.realtime.offline.ttl_second}")
+    private long TTL_SECOND;
+
+    //한번의 pipeline 에 담을 유저 수
+    private static final int DRAIN_BATCH_SIZE = 500;
+
+    private final RedisTemplate<String, String> redisTemplate;
+
+    //보관된 알람을 기다리는 유저. 첫 연결 시 등록되고 다음 drain 에서 완료된다
+    private final Map<Long, Sinks.One<Drained>> pending = new ConcurrentHashMap<>();
+    //연결이 모두 내보낸 유저별 보관 알람 수. 다음 drain 에서 list 앞에서 잘라낸다
+    private final Map<Long, Integer> delivered = new ConcurrentHashMap<>();
+
+    @Override
+    public boolean isEnabled() {
+        return ENABLED;
+    }
+
+    public int getMaxLen() {
+        return MAX_LEN;
+    }
+
+    public long getTtlSecond() {
+        return TTL_SECOND;
+    }
+
+    /*
+     * userId 의 보관된 알람을 요청한다. 접속 정보가 redis 에 반영되기 전에 호출해야 한다.
+     * 반환된 Flux 는 다음 drain 에서 읽은 알람을 내보내고, 모두 내보내고 완료되면 그만큼 list 에서 지우도록 기록한다.
+     * 읽기 전에 취소되면 요청을 지워서 다음 drain 이 읽지 않게 한다.
+     */
+    @Override
+    public Flux<UserAlarmMessage> request(long userId) {
+        Sinks.One<Drained> sink = pending.computeIfAbsent(userId, id -> Sinks.one());
+        return sink.asMono()
+                .doOnCancel(() -> pending.remove(userId, sink))
+                .flatMapMany(drained -> Flux.fromIterable(drained.messages())
+                        .doOnComplete(() -> acknowledge(userId, drained.stored())));
+    }
+
+    private void acknowledge(long userId, int stored) {
+        if(stored > 0) {
+            delivered.merge(userId, stored, Integer::sum);
+        }
+    }
+
+    /*
+     * 이전에 내보낸 알람을 list 에서 지우고,
+     * 접속 정보가 반영된 유저들 중 요청이 있는 유저의 보관된 알람을 읽는다.
+     */
+    void drain(List<Long> onlineUserIds) {
+        trimDelivered();
+        List<Long> requested = new ArrayList<>();
+        for(Long userId : onlineUserIds) {
+            if(pending.containsKey(userId)) {
+                requested.add(userId);
+            }
+        }
+        for(int from = 0; from < requested.size(); from += DRAIN_BATCH_SIZE) {
+            drainBatch(requested.subList(from, Math.min(requested.size(), from + DRAIN_BATCH_SIZE)));
+        }
+    }
+
+    /*
+     * 보관된 알람을 받기 전에 연결이 끊긴 유저. 알람은 list 에 그대로 남겨둔다.
+     */
+    void cancel(List<Long> offlineUserIds) {
+        for(Long userId : offlineUserIds) {
+            complete(userId, Drained.EMPTY);
+        }
+    }
+
+    /*
+     * 연결이 내보낸 만큼 list 앞에서 잘라낸다. 그 뒤에 쌓인 알람은 남는다.
+     * 실패하면 다음 drain 에서 다시 시도한다. 그 전에 다시 읽으면 한번 더 받는다.
+     */
+    private void trimDelivered() {
+        if(delivered.isEmpty()) {
+            return;
+        }
+        Map<Long, Integer> trims = new HashMap<>();
+        for(Long userId : delivered.keySet()) {
+            Integer stored = delivered.remove(userId);
+            if(stored != null) {
+                trims.put(userId, stored);
+            }
+        }
+        try {
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                trims.forEach((userId, stored) -> connection.listCommands().lTrim(key(userId).getBytes(StandardCharsets.UTF_8), stored, -1));
+                return null;
+            });
+        }
+        catch (Exception e) {
+            log.error("보낸 보관 알람 삭제 실패. users = {}", trims.size(), e);
+            trims.forEach(this::acknowledge);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void drainBatch(List<Long> userIds) {
+        List<Object> results;
+        try {
+            //유저마다 LRANGE 를 이어서 보낸다. 결과는 byte[] 그대로 받아서 payload 를 복사하지 않는다
+            results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for(Long userId : userIds) {
+                    connection.listCommands().lRange(key(userId).getBytes(StandardCharsets.UTF_8), 0, -1);
+                }
+                return null;
+            }, RedisSerializer.byteArray());
+        }
+        catch (Exception e) {
+            //실패하면 보관된 알람 없이 연결을 시작한다. 알람은 list 에 남아 다음 연결 때 받는다
+            log.error("보관된 알람 조회 실패. users = {}", userIds.size(), e);
+            userIds.forEach(userId -> complete(userId, Drained.EMPTY));
+            return;
+        }
+        for(int i = 0; i < userIds.size(); i++) {
+            List<byte[]> bodies = (List<byte[]>) results.get(i);
+            List<UserAlarmMessage> messages = new ArrayList<>(bodies == null ? 0 : bodies.size());
+            if(bodies != null) {
+                for(byte[] body : bodies) {
+                    UserAlarmMessage message = UserAlarmEnvelope.unwrap(body);
+                    if(message != null) {
+                        messages.add(message);
+                    }
+                }
+            }
+            //잘라낼 개수는 해석하지 못한 알람까지 포함한 list 의 원소 수
+            complete(userIds.get(i), new Drained(messages, bodies == null ? 0 : bodies.size()));
+        }
+    }
+
+    private void complete(long userId, Drained drained) {
+        Sinks.One<Drained> sink = pending.remove(userId);
+        if(sink != null) {
+            sink.tryEmitValue(drained);
+        }
+    }
+
+    //userId 의 보관 list key. 발행 스크립트에 KEYS 로 넘긴다
+    public String key(long userId) {
+        return KEY_PREFIX + userId;
+    }
+
+    //읽은 알람과 그때 list 에 있던 원소 수
+    private record Drained(List<UserAlarmMessage> messages, int stored) {
+        private static final Drained EMPTY = new Drained(List.of(), 0);
+    }
+}
@@ -0,0 +1,296 @@
+package com.bagulbagul.bagulbagul.alarm.service.redis;
+
+import com.bagulbagul.bagulbagul.alarm.service.presence.UserAlarmPresence;
+import com.bagulbagul.bagulbagul.alarm.service.registry.LongKeyRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.GenericToStringSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/*
+ * 클러스터 전체의 유저 접속 정보(presence).
+ * 노드마다 구독 중인 userId 를 redis set(key_prefix + "node:" + nodeId)에 기록하고,
+ * 살아있는 노드 목록을 zset(key_prefix + "nodes", score = 마지막 heartbeat 시각)으로 관리한다.
+ * 발행하는 쪽은 userId 를 구독 중인 노드를 찾아 그 노드의 inbox 채널(inbox_prefix + nodeId)에만 발행한다.
+ * 스크립트는 스스로 key 를 만들지 않으므로 살아있는 노드 목록을 먼저 읽고 노드 set key 를 KEYS 로 넘긴다.
+ *
+ * - 구독 정보가 생기고 없어질 때마다 redis 에 쓰지 않고 바뀐 userId 만 모아두었다가 flush 주기마다 한번에 반영한다.
+ *   반영 시점의 구독 정보를 기준으로 쓰므로 짧은 시간 안에 연결, 해제가 반복되어도 순서가 꼬이지 않는다.
+ * - 노드가 비정상 종료되면 heartbeat 가 끊기므로 node_ttl 이후 목록에서 제외되고 노드 set 도 만료된다.
+ * - 노드 set 이 사라졌다면(redis 재시작 등) 다음 heartbeat 에 구독 정보 전체를 다시 기록한다.
+ */
+@Slf4j
+@Component
+@ConditionalOnExpression("'${alarm.realtime.redis.listener}' != 'inprocess'")
+@RequiredArgsConstructor
+public class RedisUserAlarmPresence implements UserAlarmPresence {
+
+    @Value("${alarm.realtime.presence.enabled}")
+    private boolean ENABLED;
+    //비어있으면 시작할 때 만든다
+    @Value("${alarm.realtime.presence.node_id}")
+    private String NODE_ID;
+    @Value("${alarm.realtime.presence.key_prefix}")
+    private String KEY_PREFIX;
+    @Value("${alarm.realtime.presence.inbox_prefix}")
+    private String INBOX_PREFIX;
+    //바뀐 구독 정보를 redis 에 반영하는 간격(밀리초)
+    @Value("${alarm.realtime.presence.flush_millisecond}")
+    private long FLUSH_MILLISECOND;
+    //노드가 살아있음을 알리는 간격(초)
+    @Value("${alarm.realtime.presence.heartbeat_second}")
+    private long HEARTBEAT_SECOND;
+    //이 시간 동안 heartbeat 가 없는 노드는 죽은 것으로 본다(초)
+    @Value("${alarm.realtime.presence.node_ttl_second}")
+    private long NODE_TTL_SECOND;
+
+    private static final int RESYNC_BATCH_SIZE = 1000;
+    //발행 스크립트는 발행한 노드 수(integer)를 반환한다
+    private static final RedisSerializer<Long> PUBLISHED_SERIALIZER = new GenericToStringSerializer<>(Long.class);
+
+    private final RedisTemplate<String, String> redisTemplate;
+    //접속하지 않은 유저의 알람 보관
+    private final RedisUserAlarmOfflineInbox offlineInbox;
+
+    private RedisScript<List> findPresentNodesScript;
+    private RedisScript<Long> publishToPresentNodesScript;
+
+    //redis 에 반영해야 하는 userId
+    private final Set<Long> dirtyUserIds = ConcurrentHashMap.newKeySet();
+    private LongKeyRegistry<?> subscribeInfoRegistry;
+
+    //redis 명령이 block 되므로 이벤트 루프가 아닌 전용 스레드에서 실행
+    private Scheduler scheduler;
+    private final List<Disposable> tasks = new ArrayList<>();
+
+    @PostConstruct
+    private void init() {
+        findPresentNodesScript = RedisScript.of(new ClassPathResource("redis/find_present_nodes.lua"), List.class);
+        publishToPresentNodesScript = RedisScript.of(new ClassPathResource("redis/publish_to_present_nodes.lua"), Long.class);
+        if(NODE_ID == null || NODE_ID.isBlank()) {
+            NODE_ID = UUID.randomUUID().toString();
+        }
+    }
+
+    /*
+     * 이 노드의 구독 정보를 기록하기 시작한다. 구독 관리자가 시작할 때 한번 호출한다.
+     */
+    @Override
+    public synchronized void start(LongKeyRegistry<?> subscribeInfoRegistry) {
+        if(!ENABLED || scheduler != null) {
+            return;
+        }
+        this.subscribeInfoRegistry = subscribeInfoRegistry;
+        //같은 nodeId 로 재시작했다면 이전 기록을 지운다
+        redisTemplate.delete(nodeKey(NODE_ID));
+        scheduler = Schedulers.newSingle("alarm-presence");
+        tasks.add(scheduler.schedulePeriodically(this::flush, FLUSH_MILLISECOND, FLUSH_MILLISECOND, TimeUnit.MILLISECONDS));
+        tasks.add(scheduler.schedulePeriodically(this::heartbeat, 0, HEARTBEAT_SECOND, TimeUnit.SECONDS));
+    }
+
+    @PreDestroy
+    private synchronized void destroy() {
+        if(scheduler == null) {
+            return;
+        }
+        tasks.forEach(Disposable::dispose);
+        scheduler.dispose();
+        //정상 종료라면 만료를 기다리지 않고 바로 제외한다
+        try {
+            redisTemplate.opsForZSet().remove(nodesKey(), NODE_ID);
+            redisTemplate.delete(nodeKey(NODE_ID));
+        }
+        catch (Exception e) {
+            log.warn("presence 정리 실패. nodeId = {}", NODE_ID, e);
+        }
+    }
+
+    /*
+     * userId 의 구독 정보가 생기거나 없어졌다. 다음 flush 에 반영된다.
+     */
+    @Override
+    public void changed(long userId) {
+        if(ENABLED) {
+            dirtyUserIds.add(userId);
+        }
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return ENABLED;
+    }
+
+    //이 노드로 온 알람을 받는 채널
+    @Override
+    public String getInboxChannel() {
+        return INBOX_PREFIX + NODE_ID;
+    }
+
+    //이 노드에 연결된 userId 의 set
+    public String getNodeKey() {
+        return nodeKey(NODE_ID);
+    }
+
+    /*
+     * userId 를 구독 중인 노드 목록
+     */
+    @SuppressWarnings("unchecked")
+    public List<String> findNodes(long userId) {
+        List<String> nodes = liveNodes();
+        if(nodes.isEmpty()) {
+            return List.of();
+        }
+        List<String> args = new ArrayList<>(nodes.size() + 1);
+        args.add(String.valueOf(userId));
+        args.addAll(nodes);
+        return redisTemplate.execute(findPresentNodesScript, nodeKeys(nodes), args.toArray());
+    }
+
+    /*
+     * userId 를 구독 중인 노드의 inbox 에만 발행한다. 발행한 노드 수를 반환한다.
+     * replayStreamKey 가 있으면 replay 로그에 먼저 기록한다.
+     * 구독 중인 노드가 없고 offline inbox 를 사용하면 유저의 offline inbox 에 보관한다.
+     */
+    public long publishToPresentNodes(long userId, byte[] header, byte[] message, String replayStreamKey, int replayMaxLen, long replayTtlSecond) {
+        List<String> nodes = liveNodes();
+        boolean replay = replayStreamKey != null;
+        boolean offline = offlineInbox.isEnabled();
+        if(nodes.isEmpty() && !replay && !offline) {
+            return 0;
+        }
+        List<String> keys = nodeKeys(nodes);
+        if(replay) {
+            keys.add(replayStreamKey);
+        }
+        if(offline) {
+            keys.add(offlineInbox.key(userId));
+        }
+        //binary 봉투가 깨지지 않도록 인자를 모두 byte[] 로 보낸다
+        List<byte[]> args = new ArrayList<>(List.of(
+                bytes(userId), bytes(INBOX_PREFIX), header, message,
+                bytes(replayMaxLen), bytes(replayTtlSecond), bytes(offlineInbox.getMaxLen()), bytes(offlineInbox.getTtlSecond()),
+                bytes(nodes.size()), bytes(replay ? 1 : 0), bytes(offline ? 1 : 0)
+        ));
+        nodes.forEach(node -> args.add(bytes(node)));
+        Long published = redisTemplate.execute(publishToPresentNodesScript, RedisSerializer.byteArray(), PUBLISHED_SERIALIZER, keys, args.toArray());
+        return published == null ? 0 : published;
+    }
+
+    /*
+     * node_ttl 안에 heartbeat 를 보낸 노드 목록.
+     * heartbeat 의 score 가 각 노드의 시각이므로 이 노드의 시각과 비교한다.
+     */
+    private List<String> liveNodes() {
+        long now = System.currentTimeMillis();
+        Set<String> nodes = redisTemplate.opsForZSet().rangeByScore(nodesKey(), now - TimeUnit.SECONDS.toMillis(NODE_TTL_SECOND), Double.POSITIVE_INFINITY);
+        return nodes == null ? List.of() : new ArrayList<>(nodes);
+    }
+
+    private List<String> nodeKeys(List<String> nodes) {
+        List<String> keys = new ArrayList<>(nodes.size() + 2);
+        nodes.forEach(node -> keys.add(nodeKey(node)));
+        return keys;
+    }
+
+    private static byte[] bytes(Object value) {
+        return String.valueOf(value).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void flush() {
+        if(dirtyUserIds.isEmpty()) {
+            return;
+        }
+        List<Long> online = new ArrayList<>();
+        List<Long> offline = new ArrayList<>();
+        Iterator<Long> iterator = dirtyUserIds.iterator();
+        while(iterator.hasNext()) {
+            Long userId = iterator.next();
+            iterator.remove();
+            //반영 시점의 구독 정보 기준
+            if(subscribeInfoRegistry.get(userId) != null) {
+                online.add(userId);
+            }
+            else {
+                offline.add(userId);
+            }
+        }
+        try {
+            if(!online.isEmpty()) {
+                redisTemplate.opsForSet().add(nodeKey(NODE_ID), online.stream().map(String::valueOf).toArray(String[]::new));
+            }
+            if(!offline.isEmpty()) {
+                redisTemplate.opsForSet().remove(nodeKey(NODE_ID), offline.stream().map(String::valueOf).toArray());
+            }
+        }
+        catch (Exception e) {
+            //다음 flush 에 다시 반영
+            dirtyUserIds.addAll(online);
+            dirtyUserIds.addAll(offline);
+            log.error("presence 반영 실패", e);
+            return;
+        }
+        //접속 정보가 반영된 이후로는 발행하는 쪽이 offline inbox 에 쌓지 않으므로 지금 읽으면 빠지는 알람이 없다
+        if(offlineInbox.isEnabled()) {
+            offlineInbox.drain(online);
+            offlineInbox.cancel(offline);
+        }
+    }
+
+    private void heartbeat() {
+        try {
+            String nodeKey = nodeKey(NODE_ID);
+            //노드 set 이 만료되었거나 redis 가 재시작되었다면 전체를 다시 기록
+            if(!Boolean.TRUE.equals(redisTemplate.hasKey(nodeKey)) && subscribeInfoRegistry.size() > 0) {
+                resync(nodeKey);
+            }
+            redisTemplate.expire(nodeKey, NODE_TTL_SECOND, TimeUnit.SECONDS);
+            redisTemplate.opsForZSet().add(nodesKey(), NODE_ID, System.currentTimeMillis());
+            //오래전에 죽은 노드를 목록에서 정리
+            redisTemplate.opsForZSet().removeRangeByScore(nodesKey(), 0, System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(NODE_TTL_SECOND) * 10);
+        }
+        catch (Exception e) {
+            log.error("presence heartbeat 실패", e);
+        }
+    }
+
+    private void resync(String nodeKey) {
+        List<String> batch = new ArrayList<>(RESYNC_BATCH_SIZE);
+        List<List<String>> batches = new ArrayList<>();
+        //forEach 는 stripe lock 을 잡고 순회하므로 redis 명령은 순회가 끝난 뒤에 보낸다
+        subscribeInfoRegistry.forEach((userId, info) -> batch.add(String.valueOf(userId)));
+        for(int from = 0; from < batch.size(); from += RESYNC_BATCH_SIZE) {
+            batches.add(batch.subList(from, Math.min(batch.size(), from + RESYNC_BATCH_SIZE)));
+        }
+        for(List<String> userIds : batches) {
+            redisTemplate.opsForSet().add(nodeKey, userIds.toArray(String[]::new));
+        }
+        log.info("presence 재기록. nodeId = {}, users = {}", NODE_ID, batch.size());
+    }
+
+    private String nodesKey() {
+        return KEY_PREFIX + "nodes";
+    }
+
+    private String nodeKey(String nodeId) {
+        return KEY_PREFIX + "node:" + nodeId;
+    }
+}
@@ -0,0 +1,318 @@
+package com.bagulbagul.bagulbagul.alarm.service.redis;
+
+import com.bagulbagul.bagulbagul.alarm.service.broker.UserAlarmRouter;
+import com.bagulbagul.bagulbagul.alarm.service.dispatch.UserAlarmDispatcher;
+import com.bagulbagul.bagulbagul.alarm.service.dispatch.UserAlarmTarget;
+import com.bagulbagul.bagulbagul.alarm.service.message.UserAlarmEnvelope;
+import com.bagulbagul.bagulbagul.alarm.service.message.UserAlarmMessage;
+import io.lettuce.core.ClientOptions;
+import io.lettuce.core.RedisChannelHandler;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisConnectionStateListener;
+import io.lettuce.core.RedisFuture;
+import io.lettuce.core.RedisURI;
+import io.lettuce.core.codec.ByteArrayCodec;
+import io.lettuce.core.codec.RedisCodec;
+import io.lettuce.core.codec.StringCodec;
+import io.lettuce.core.pubsub.RedisPubSubAdapter;
+import io.lettuce.core.pubsub.StatefulRedisPubSubConnection;
+import io.lettuce.core.resource.ClientResources;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.scheduler.Scheduler;
+
+/*
+ * pub/sub 연결 하나와 그 연결로 구독한 채널들. (alarm.realtime.redis.listener=pooled)
+ *
+ * - 채널의 첫 구독자가 생기면 SUBSCRIBE, 마지막 구독자가 빠지면 UNSUBSCRIBE 를 보낸다.
+ *   같은 채널의 구독, 해제 명령이 엇갈리지 않도록 ConcurrentHashMap 의 compute 안에서 보낸다. 전송은 비동기라 기다리지 않는다.
+ * - 메세지는 이 연결의 I/O 스레드에서 봉투를 벗기고 UserAlarmDispatcher 로 넘긴다.
+ * - 연결이 끊기면 lettuce 의 자동 재연결(모든 채널을 SUBSCRIBE 하나로 다시 구독) 대신 직접 다시 연결하고,
+ *   이 연결의 채널만 restoreBatchSize 개씩 나눠서 다시 구독한다. 앞의 묶음이 끝나야 다음 묶음을 보낸다.
+ * - 연결이 없는 동안 추가된 채널은 SUBSCRIBE 를 보내지 않는다. 다시 연결되면 restore 가 보내고,
+ *   restore 가 채널 목록을 읽은 뒤에 추가된 채널은 추가한 쪽이 연결이 바뀐 것을 보고 직접 보낸다.
+ * - SUBSCRIBE(묶음, 채널 하나)가 실패하면 어떤 채널이 구독됐는지 알 수 없으므로 연결을 닫고 다시 연결해서 모든 채널을 처음부터 다시 구독한다.
+ *   연결, 재구독이 연속으로 실패하면 대기 시간을 maxReconnectMillisecond 까지 두 배씩 늘린다.
+ */
+@Slf4j
+class RedisUserAlarmPubSubShard extends RedisPubSubAdapter<String, byte[]> implements RedisConnectionStateListener {
+
+    //채널은 String, 본문은 byte[] 그대로 받는다
+    private static final RedisCodec<String, byte[]> CODEC = RedisCodec.of(StringCodec.UTF8, ByteArrayCodec.INSTANCE);
+
+    private final int index;
+    private final RedisURI redisUri;
+    private final RedisClient client;
+    private final UserAlarmDispatcher dispatcher;
+    private final int restoreBatchSize;
+    private final long reconnectMillisecond;
+    private final long maxReconnectMillisecond;
+    private final Scheduler reconnectScheduler;
+    //연속으로 실패한 연결, 재구독 수. 재구독을 끝내면 0 으로 돌린다
+    private final AtomicInteger failedAttempts = new AtomicInteger();
+    private final LongAdder resubscribeFailures = new LongAdder();
+
+    private final ConcurrentHashMap<String, Subscribers> channels = new ConcurrentHashMap<>();
+    //연결되어 있지 않으면 null. 다시 연결되면 restore 에서 구독한다
+    private volatile StatefulRedisPubSubConnection<String, byte[]> connection;
+    private volatile boolean closed;
+
+    RedisUserAlarmPubSubShard(
+            int index,
+            ClientResources clientResources,
+            RedisURI redisUri,
+            UserAlarmDispatcher dispatcher,
+            int restoreBatchSize,
+            long reconnectMillisecond,
+            long maxReconnectMillisecond,
+            Scheduler reconnectScheduler
+    ) {
+        this.index = index;
+        this.redisUri = redisUri;
+        this.dispatcher = dispatcher;
+        this.restoreBatchSize = restoreBatchSize;
+        this.reconnectMillisecond = reconnectMillisecond;
+        this.maxReconnectMillisecond = maxReconnectMillisecond;
+        this.reconnectScheduler = reconnectScheduler;
+        this.client = RedisClient.create(clientResources, redisUri);
+        //재연결과 재구독은 직접 한다
+        this.client.setOptions(ClientOptions.builder().autoReconnect(false).build());
+        this.client.addListener(this);
+    }
+
+    void connect() {
+        if(closed) {
+            return;
+        }
+        client.connectPubSubAsync(CODEC, redisUri).whenComplete((connected, e) -> {
+            if(e != null) {
+                log.warn("알람 pub/sub 연결 실패. shard = {}", index, e);
+                failedAttempts.incrementAndGet();
+                scheduleReconnect();
+                return;
+            }
+            if(closed) {
+                connected.closeAsync();
+                return;
+            }
+            connected.addListener(this);
+            //연결을 먼저 보이게 한 다음 채널 목록을 읽는다. 목록에 없는 채널은 추가한 쪽이 바뀐 연결을 보고 직접 보낸다 (addSubscriber)
+            connection = connected;
+            List<String> pending = new ArrayList<>(channels.keySet());
+            if(!pending.isEmpty()) {
+                log.info("알람 pub/sub 재구독 시작. shard = {}, 채널 수 = {}", index, pending.size());
+            }
+            restore(connected, pending, 0);
+        });
+    }
+
+    void close() {
+        closed = true;
+        StatefulRedisPubSubConnection<String, byte[]> current = connection;
+        connection = null;
+        if(current != null) {
+            current.closeAsync();
+        }
+        client.shutdownAsync();
+    }
+
+    Disposable subscribe(String channel, UserAlarmTarget target) {
+        addSubscriber(channel, subscribers -> subscribers.targets.add(target));
+        return () -> channels.computeIfPresent(channel, (key, subscribers) -> {
+            subscribers.targets.remove(target);
+            if(!subscribers.isEmpty()) {
+                return subscribers;
+            }
+            send(channel, false);
+            return null;
+        });
+    }
+
+    void subscribe(String channel, UserAlarmRouter router) {
+        addSubscriber(channel, subscribers -> subscribers.routers.add(router));
+    }
+
+    /*
+     * 채널의 첫 구독자면 SUBSCRIBE 를 보낸다.
+     * compute 안에서 연결이 없어서 보내지 못했는데 그 사이 connect 가 연결을 열고 채널 목록을 먼저 읽었다면 restore 도 이 채널을 보내지 않는다.
+     * 채널을 추가한 뒤에 연결을 다시 읽으므로 둘 중 하나는 반드시 새 연결을 본다. 새 연결을 봤다면 여기서 보낸다. (중복 SUBSCRIBE 는 무해하다)
+     */
+    private void addSubscriber(String channel, Consumer<Subscribers> add) {
+        Subscribers added = channels.compute(channel, (key, subscribers) -> {
+            if(subscribers == null) {
+                subscribers = new Subscribers();
+                subscribers.subscribedOn = send(channel, true);
+            }
+            add.accept(subscribers);
+            return subscribers;
+        });
+        if(added.subscribedOn != connection) {
+            channels.computeIfPresent(channel, (key, subscribers) -> {
+                StatefulRedisPubSubConnection<String, byte[]> current = connection;
+                if(current != null && subscribers.subscribedOn != current) {
+                    subscribers.subscribedOn = send(channel, true);
+                }
+                return subscribers;
+            });
+        }
+    }
+
+    int channelCount() {
+        return channels.size();
+    }
+
+    long getResubscribeFailures() {
+        return resubscribeFailures.sum();
+    }
+
+    @Override
+    public void message(String channel, byte[] body) {
+        Subscribers subscribers = channels.get(channel);
+        if(subscribers == null) {
+            return;
+        }
+        if(!subscribers.targets.isEmpty()) {
+            //봉투가 있다면 헤더만 벗긴다. 모든 구독자가 같은 메세지를 공유한다
+            UserAlarmMessage message = UserAlarmEnvelope.unwrap(body);
+            if(message == null) {
+                log.warn("잘못된 형식의 알람 메세지. channel = {}", channel);
+            }
+            else {
+                for(UserAlarmTarget target : subscribers.targets) {
+                    dispatcher.dispatch(target, message);
+                }
+            }
+        }
+        for(UserAlarmRouter router : subscribers.routers) {
+            router.route(body);
+        }
+    }
+
+    @Override
+    public void onRedisDisconnected(RedisChannelHandler<?, ?> disconnected) {
+        //직접 닫은 이전 연결이나 종료 중에 끊긴 것은 무시
+        if(closed || disconnected != connection) {
+            return;
+        }
+        connection = null;
+        disconnected.closeAsync();
+        log.warn("알람 pub/sub 연결 끊김. shard = {}, 채널 수 = {}", index, channels.size());
+        scheduleReconnect();
+    }
+
+    private void scheduleReconnect() {
+        if(closed) {
+            return;
+        }
+        reconnectScheduler.schedule(this::connect, reconnectDelay(failedAttempts.get()), TimeUnit.MILLISECONDS);
+    }
+
+    //실패할 때마다 두 배씩 늘린다
+    private long reconnectDelay(int failures) {
+        long delay = reconnectMillisecond;
+        for(int i = 0; i < failures && delay < maxReconnectMillisecond; i++) {
+            delay <<= 1;
+        }
+        return Math.min(delay, maxReconnectMillisecond);
+    }
+
+    /*
+     * pending[from, from + restoreBatchSize) 를 SUBSCRIBE 하고 응답을 받으면 다음 묶음을 보낸다.
+     * 그 사이 연결이 다시 끊기거나 SUBSCRIBE 가 실패하면 멈추고 다음 재연결에서 처음부터 다시 구독한다.
+     */
+    private void restore(StatefulRedisPubSubConnection<String, byte[]> target, List<String> pending, int from) {
+        if(target != connection) {
+            return;
+        }
+        if(from >= pending.size()) {
+            if(from > 0) {
+                log.info("알람 pub/sub 재구독 완료. shard = {}, 채널 수 = {}", index, pending.size());
+            }
+            failedAttempts.set(0);
+            return;
+        }
+        int to = Math.min(from + restoreBatchSize, pending.size());
+        //그 사이 구독이 해제된 채널은 건너뛴다
+        List<String> batchChannels = new ArrayList<>(to - from);
+        for(String channel : pending.subList(from, to)) {
+            Subscribers subscribers = channels.get(channel);
+            if(subscribers != null) {
+                subscribers.subscribedOn = target;
+                batchChannels.add(channel);
+            }
+        }
+        String[] batch = batchChannels.toArray(String[]::new);
+        if(batch.length == 0) {
+            restore(target, pending, to);
+            return;
+        }
+        target.async().subscribe(batch).whenComplete((ignored, e) -> {
+            if(e != null) {
+                log.warn("알람 pub/sub 재구독 실패. 다시 연결한다. shard = {}, 완료한 채널 수 = {}", index, from, e);
+                reconnectAfterSubscribeFailure(target);
+                return;
+            }
+            restore(target, pending, to);
+        });
+    }
+
+    /*
+     * SUBSCRIBE 에 실패한 연결을 버린다. 연결을 먼저 비워서 onRedisDisconnected 가 한번 더 재연결하지 않게 하고,
+     * 그 사이 들어온 구독은 send 에서 건너뛰었다가 다음 연결의 restore 에서 함께 구독한다.
+     */
+    private void reconnectAfterSubscribeFailure(StatefulRedisPubSubConnection<String, byte[]> target) {
+        if(closed || target != connection) {
+            return;
+        }
+        connection = null;
+        target.closeAsync();
+        resubscribeFailures.increment();
+        failedAttempts.incrementAndGet();
+        scheduleReconnect();
+    }
+
+    /*
+     * compute 안에서 호출한다. 보낸 연결을 반환하고 연결이 없으면 null
+     * SUBSCRIBE 가 실패하면 채널이 알람을 받지 못하므로 다시 연결해서 모든 채널을 다시 구독한다.
+     * UNSUBSCRIBE 가 실패하면 구독자가 없는 채널의 알람을 받아서 버릴 뿐이므로 기록만 한다.
+     */
+    private StatefulRedisPubSubConnection<String, byte[]> send(String channel, boolean subscribe) {
+        StatefulRedisPubSubConnection<String, byte[]> current = connection;
+        if(current == null) {
+            return null;
+        }
+        RedisFuture<Void> result = subscribe ? current.async().subscribe(channel) : current.async().unsubscribe(channel);
+        result.whenComplete((ignored, e) -> {
+            if(e == null) {
+                return;
+            }
+            if(subscribe) {
+                log.warn("알람 pub/sub 구독 실패. 다시 연결한다. shard = {}, channel = {}", index, channel, e);
+                reconnectAfterSubscribeFailure(current);
+            }
+            else {
+                log.warn("알람 pub/sub 해제 실패. shard = {}, channel = {}", index, channel, e);
+            }
+        });
+        return current;
+    }
+
+    private static final class Subscribers {
+        //SUBSCRIBE 를 보낸 연결. 보내지 못했으면 null
+        private volatile StatefulRedisPubSubConnection<String, byte[]> subscribedOn;
+        private final CopyOnWriteArrayList<UserAlarmTarget> targets = new CopyOnWriteArrayList<>();
+        private final CopyOnWriteArrayList<UserAlarmRouter> routers = new CopyOnWriteArrayList<>();
+
+        boolean isEmpty() {
+            return targets.isEmpty() && routers.isEmpty();
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.bagulbagul.bagulbagul.alarm.service.redis;
+
+import com.bagulbagul.bagulbagul.alarm.service.UserAlarmPublisher;
+import com.bagulbagul.bagulbagul.alarm.service.broker.UserAlarmBroker;
+import com.bagulbagul.bagulbagul.alarm.service.message.UserAlarmEnvelopeFormat;
+import com.bagulbagul.bagulbagul.alarm.service.message.UserAlarmHeader;
+import jakarta.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Component;
+
+/*
+ * 알람 발행 규칙을 구현한 발행기.
+ * 구독 방식(user, shard)과 replay 여부에 따라 채널과 봉투 형식이 달라지므로 발행하는 쪽은 이 규칙을 따라야 한다.
+ */
+@Component
+@ConditionalOnExpression("'${alarm.realtime.redis.listener}' != 'inprocess'")
+@RequiredArgsConstructor
+public class RedisUserAlarmPublisher implements UserAlarmPublisher {
+
+    @Value("${alarm.realtime.redis.alarm_topic_prefix}")
+    private String TOPIC_PREFIX;
+    @Value("${alarm.realtime.redis.subscribe_mode}")
+    private String SUBSCRIBE_MODE;
+    @Value("${alarm.realtime.redis.shard_topic_prefix}")
+    private String SHARD_TOPIC_PREFIX;
+    @Value("${alarm.realtime.redis.shard_count}")
+    private int SHARD_COUNT;
+
+    @Value("${alarm.realtime.replay.enabled}")
+    private boolean REPLAY_ENABLED;
+    @Value("${alarm.realtime.replay.max_len}")
+    private int REPLAY_MAX_LEN;
+    @Value("${alarm.realtime.replay.ttl_second}")
+    private long REPLAY_TTL_SECOND;
+
+    private static final String SUBSCRIBE_MODE_SHARD = "shard";
+
+    private final RedisTemplate<String, String> redisTemplate;
+    //replay, presence 를 사용하지 않는 발행은 broker 로 보낸다
+    private final UserAlarmBroker alarmBroker;
+    private final RedisUserAlarmReplayLog replayLog;
+    private final RedisUserAlarmPresence presence;
+    private final RedisUserAlarmGroupDirectory groupDirectory;
+    private final UserAlarmEnvelopeFormat envelopeFormat;
+
+    private RedisScript<String> publishWithReplayScript;
+
+    @PostConstruct
+    private void init() {
+        publishWithReplayScript = RedisScript.of(new ClassPathResource("redis/publish_with_replay.lua"), String.class);
+    }
+
+    @Override
+    public void publish(long userId, String message) {
+        publish(userId, null, 0, message, null);
+    }
+
+    @Override
+    public void publish(long userId, String message, String coalesceKey) {
+        publish(userId, null, 0, message, coalesceKey);
+    }
+
+    @Override
+    public void publish(long userId, String type, int priority, String message, String coalesceKey) {
+        boolean shardMode = SUBSCRIBE_MODE_SHARD.equals(SUBSCRIBE_MODE);
+        String channel = shardMode
+                ? SHARD_TOPIC_PREFIX + RedisUserAlarmShardMessageListener.shardOf(userId, SHARD_COUNT)
+                : TOPIC_PREFIX + userId;
+        byte[] payload = message.getBytes(StandardCharsets.UTF_8);
+        //구독 중인 노드의 inbox 에만 보낸다. 접속하지 않은 유저에게는 발행하지 않는다.
+        //inbox 는 여러 유저가 공유하므로 봉투에 userId 를 싣는다.
+        if(presence.isEnabled()) {
+            presence.publishToPresentNodes(
+                    userId,
+                    envelopeFormat.header(header(userId, type, priority, coalesceKey)),
+                    payload,
+                    REPLAY_ENABLED ? replayLog.streamKey(userId) : null,
+                    REPLAY_MAX_LEN,
+                    REPLAY_TTL_SECOND
+            );
+            return;
+        }
+        UserAlarmHeader header = header(shardMode ? userId : null, type, priority, coalesceKey);
+        //replay 로그에 기록하고 기록된 id 를 봉투에 실어 발행하는 것을 한번에 수행
+        if(REPLAY_ENABLED) {
+            //binary 봉투가 깨지지 않도록 인자를 byte[] 로 보낸다
+            redisTemplate.execute(
+                    publishWithReplayScript,
+                    RedisSerializer.byteArray(),
+                    RedisSerializer.string(),
+                    List.of(replayLog.streamKey(userId)),
+                    bytes(channel), envelopeFormat.header(header), payload, bytes(REPLAY_MAX_LEN), bytes(REPLAY_TTL_SECOND)
+            );
+            return;
+        }
+        alarmBroker.publish(channel, envelopeFormat.encode(header, payload));
+    }
+
+    @Override
+    public void publishToGroup(String groupId, String message) {
+        UserAlarmHeader header = UserAlarmHeader.builder()
+                .groupId(groupId)
+                .createdAtMillis(System.currentTimeMillis())
+                .build();
+        alarmBroker.publish(groupDirectory.getChannel(), envelopeFormat.encode(header, message.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Override
+    public void broadcast(String message) {
+        UserAlarmHeader header = UserAlarmHeader.builder()
+                .createdAtMillis(System.currentTimeMillis())
+                .build();
+        alarmBroker.publish(groupDirectory.getBroadcastChannel(), envelopeFormat.encode(header, message.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    //발행 시각을 실어서 전달까지의 지연 시간을 잰다
+    private static UserAlarmHeader header(Long userId, String type, int priority, String coalesceKey) {
+        return UserAlarmHeader.builder()
+                .userId(userId)
+                .coalesceKey(coalesceKey)
+                .createdAtMillis(System.currentTimeMillis())
+                .type(type)
+                .priority(priority)
+                .build();
+    }
+
+    private static byte[] bytes(Object value) {
+        return String.valueOf(value).getBytes(StandardCharsets.UTF_8);
+    }
+}
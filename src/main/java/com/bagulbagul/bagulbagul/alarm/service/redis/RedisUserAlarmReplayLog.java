@@ -0,0 +1,163 @@
+package com.bagulbagul.bagulbagul.alarm.service.redis;
+
+import com.bagulbagul.bagulbagul.alarm.service.message.UserAlarmEnvelope;
+import com.bagulbagul.bagulbagul.alarm.service.message.UserAlarmMessage;
+import com.bagulbagul.bagulbagul.alarm.service.replay.UserAlarmReplayLog;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.regex.Pattern;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.Limit;
+import org.springframework.data.redis.connection.ReactiveRedisConnection;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+/*
+ * 유저별 알람 replay 로그. redis stream 을 사용한다.
+ * 발행 시 stream 에 먼저 기록하고(XADD) 기록된 id 를 봉투에 실어서 pub/sub 으로 보낸다. (publish_with_replay.lua)
+ * 재연결한 클라이언트가 Last-Event-ID 를 보내면 그 이후의 알람을 stream 에서 읽어 먼저 보내고 실시간 알람을 이어 붙인다.
+ * stream 에는 알람 id 를 제외한 봉투 전체를 저장하고 실시간 알람과 같은 codec 으로 읽으므로 종류, 우선순위, coalesce key, 발행 시각이 그대로 유지된다.
+ */
+@Slf4j
+@Component
+@ConditionalOnExpression("'${alarm.realtime.redis.listener}' != 'inprocess'")
+@RequiredArgsConstructor
+public class RedisUserAlarmReplayLog implements UserAlarmReplayLog {
+
+    //stream 에 봉투를 저장하는 필드명
+    public static final String ENVELOPE_FIELD = "e";
+    //봉투 전체를 저장하기 전에 payload 만 저장하던 필드명. 배포 중에 남아있는 기록을 읽기 위해 둔다
+    public static final String PAYLOAD_FIELD = "m";
+    private static final ByteBuffer ENVELOPE_KEY = ByteBuffer.wrap(ENVELOPE_FIELD.getBytes(StandardCharsets.US_ASCII)).asReadOnlyBuffer();
+    private static final ByteBuffer PAYLOAD_KEY = ByteBuffer.wrap(PAYLOAD_FIELD.getBytes(StandardCharsets.US_ASCII)).asReadOnlyBuffer();
+    //redis stream id 형식 : <밀리초>-<순번>
+    private static final Pattern STREAM_ID_PATTERN = Pattern.compile("\\d+-\\d+");
+
+    //유저별 replay stream key 의 prefix
+    @Value("${alarm.realtime.replay.stream_prefix}")
+    private String STREAM_PREFIX;
+    //유저별로 보관하는 최대 알람 수
+    @Value("${alarm.realtime.replay.max_len}")
+    private int MAX_LEN;
+
+    //binary 봉투를 그대로 읽도록 serializer 없이 byte 단위로 읽는다
+    private final ReactiveRedisConnectionFactory reactiveRedisConnectionFactory;
+
+    public String streamKey(long userId) {
+        return STREAM_PREFIX + userId;
+    }
+
+    /*
+     * lastEventId 이후의 알람을 오래된 순서로 읽는다.
+     * 누락된 알람 전체를 XRANGE 한번으로 읽는다. 동시에 재연결한 요청들의 명령은 lettuce 의 공유 연결 하나에 파이프라인으로 전송되므로
+     * 재연결이 몰려도 유저당 한번의 명령이고 요청마다 왕복을 기다리지 않는다.
+     */
+    public Flux<UserAlarmMessage> readAfter(long userId, String lastEventId) {
+        if(!STREAM_ID_PATTERN.matcher(lastEventId).matches()) {
+            log.debug("잘못된 Last-Event-ID 형식. userId = {}, id = {}", userId, lastEventId);
+            return Flux.empty();
+        }
+        ByteBuffer key = ByteBuffer.wrap(streamKey(userId).getBytes(StandardCharsets.UTF_8));
+        Range<String> range = Range.rightUnbounded(Range.Bound.exclusive(lastEventId));
+        return Flux.usingWhen(
+                        Mono.fromSupplier(reactiveRedisConnectionFactory::getReactiveConnection),
+                        connection -> connection.streamCommands().xRange(key, range, Limit.limit().count(MAX_LEN)),
+                        ReactiveRedisConnection::closeLater
+                )
+                .<UserAlarmMessage>handle((record, sink) -> {
+                    UserAlarmMessage message = toMessage(record.getId().getValue(), record.getValue());
+                    if(message == null) {
+                        log.warn("잘못된 형식의 replay 기록. userId = {}, id = {}", userId, record.getId().getValue());
+                        return;
+                    }
+                    sink.next(message);
+                })
+                //replay 에 실패해도 실시간 알람은 받을 수 있도록 한다
+                .onErrorResume(e -> {
+                    log.error("알람 replay 실패. userId = {}", userId, e);
+                    return Flux.empty();
+                });
+    }
+
+    /*
+     * lastEventId 이후의 알람을 먼저 보내고 실시간 알람을 이어 붙인다.
+     * replay 를 읽는 동안 도착한 실시간 알람을 놓치지 않도록 live 를 먼저 구독해서 버퍼에 쌓아둔다.
+     * live 는 연결 버퍼 앞의 유저 알람이므로 이 버퍼에는 XRANGE 한번을 기다리는 동안 도착한 알람만 쌓이고,
+     * 이후의 알람과 replay 한 알람은 연결의 버퍼 정책과 느린 연결 감시를 거친다.
+     * 버퍼의 알람 중 replay 로 이미 보낸 id 까지는 건너뛴다.
+     * 형식이 잘못된 id 는 비교할 수 없으므로 replay 없이 실시간 알람만 보낸다. 걸러내면 모든 알람이 그 id 보다 앞으로 비교되어 버려진다.
+     */
+    @Override
+    public Flux<UserAlarmMessage> replayThenLive(long userId, String lastEventId, Flux<UserAlarmMessage> live) {
+        if(!STREAM_ID_PATTERN.matcher(lastEventId).matches()) {
+            log.debug("잘못된 Last-Event-ID 형식. replay 없이 구독한다. userId = {}, id = {}", userId, lastEventId);
+            return live;
+        }
+        return Flux.defer(() -> {
+            Sinks.Many<UserAlarmMessage> pending = Sinks.many().unicast().onBackpressureBuffer();
+            Disposable liveSubscription = live.subscribe(pending::tryEmitNext, pending::tryEmitError, pending::tryEmitComplete);
+            //replay 로 마지막으로 보낸 id. 구독 하나 안에서 순서대로만 접근한다.
+            String[] lastSentId = {lastEventId};
+            Flux<UserAlarmMessage> replay = readAfter(userId, lastEventId)
+                    .doOnNext(message -> lastSentId[0] = message.getId());
+            Flux<UserAlarmMessage> rest = pending.asFlux()
+                    .filter(message -> message.getId() == null || compareStreamIds(message.getId(), lastSentId[0]) > 0);
+            return Flux.concat(replay, rest)
+                    .doFinally(signalType -> liveSubscription.dispose());
+        });
+    }
+
+    /*
+     * stream 기록 하나를 메세지로 바꾼다. 봉투가 잘못되었으면 null
+     * 봉투는 실시간 알람과 같은 codec 으로 읽고 stream id 를 알람 id 로 붙인다.
+     */
+    static UserAlarmMessage toMessage(String id, Map<ByteBuffer, ByteBuffer> fields) {
+        ByteBuffer envelope = fields.get(ENVELOPE_KEY);
+        if(envelope != null) {
+            UserAlarmEnvelope decoded = UserAlarmEnvelope.decode(toBytes(envelope));
+            return decoded == null ? null : decoded.getPayload().withId(id);
+        }
+        ByteBuffer payload = fields.get(PAYLOAD_KEY);
+        byte[] body = payload == null ? new byte[0] : toBytes(payload);
+        return UserAlarmMessage.builder().body(body).length(body.length).id(id).build();
+    }
+
+    private static byte[] toBytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+
+    /*
+     * 두 stream id 의 순서를 비교한다. 형식이 잘못된 id 는 가장 뒤로 취급한다.
+     */
+    static int compareStreamIds(String left, String right) {
+        long[] l = parseStreamId(left);
+        long[] r = parseStreamId(right);
+        if(l == null || r == null) {
+            return l == r ? 0 : (l == null ? 1 : -1);
+        }
+        int result = Long.compare(l[0], r[0]);
+        return result != 0 ? result : Long.compare(l[1], r[1]);
+    }
+
+    private static long[] parseStreamId(String id) {
+        if(id == null || !STREAM_ID_PATTERN.matcher(id).matches()) {
+            return null;
+        }
+        int separator = id.indexOf('-');
+        return new long[] {
+                Long.parseLong(id.substring(0, separator)),
+                Long.parseLong(id.substring(separator + 1))
+        };
+    }
+}
@@ -0,0 +1,47 @@
+package com.bagulbagul.bagulbagul.alarm.service.redis;
+
+import com.bagulbagul.bagulbagul.alarm.service.broker.UserAlarmRouter;
+import com.bagulbagul.bagulbagul.alarm.service.dispatch.UserAlarmDispatcher;
+import com.bagulbagul.bagulbagul.alarm.service.dispatch.UserAlarmTarget;
+import com.bagulbagul.bagulbagul.alarm.service.message.UserAlarmEnvelope;
+import java.util.function.LongFunction;
+import lombok.extern.slf4j.Slf4j;
+
+/*
+ * shard 채널(inbox 채널) 전체에 대해 노드당 하나만 등록되는 라우터.
+ * 메세지 봉투에서 userId 를 읽고 이 노드에 등록된 sink 를 찾아 전달한다.
+ * 이 노드에 구독자가 없는 userId 의 메세지는 버린다.
+ */
+@Slf4j
+public class RedisUserAlarmShardMessageListener implements UserAlarmRouter {
+    // userId -> 전달 대상. 구독 정보가 없으면 null
+    private final LongFunction<UserAlarmTarget> targetLookup;
+    private final UserAlarmDispatcher dispatcher;
+
+    public RedisUserAlarmShardMessageListener(LongFunction<UserAlarmTarget> targetLookup, UserAlarmDispatcher dispatcher) {
+        this.targetLookup = targetLookup;
+        this.dispatcher = dispatcher;
+    }
+
+    @Override
+    public void route(byte[] body) {
+        UserAlarmEnvelope envelope = UserAlarmEnvelope.decode(body);
+        if(envelope == null || !envelope.isUserIdPresent()) {
+            log.warn("잘못된 형식의 shard 알람 메세지");
+            return;
+        }
+        UserAlarmTarget target = targetLookup.apply(envelope.getUserId());
+        if(target == null) {
+            return;
+        }
+        dispatcher.dispatch(target, envelope.getPayload());
+    }
+
+    /*
+     * userId 가 속한 shard 번호. 발행하는 쪽도 같은 규칙으로 채널을 정해야 한다.
+     * channel = shard_topic_prefix + shardOf(userId, shard_count)
+     */
+    public static int shardOf(long userId, int shardCount) {
+        return (int) Math.floorMod(userId, (long) shardCount);
+    }
+}
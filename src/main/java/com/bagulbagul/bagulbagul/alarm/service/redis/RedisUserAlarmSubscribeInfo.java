@@ -1,23 +1,111 @@
 package com.bagulbagul.bagulbagul.alarm.service.redis;
 
-import lombok.AllArgsConstructor;
-import lombok.Builder;
+import com.bagulbagul.bagulbagul.alarm.service.UserAlarmConnection;
+import com.bagulbagul.bagulbagul.alarm.service.dispatch.UserAlarmTarget;
+import com.bagulbagul.bagulbagul.alarm.service.message.UserAlarmMessage;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReference;
+import lombok.AccessLevel;
 import lombok.Getter;
-import lombok.NoArgsConstructor;
-import lombok.Setter;
-import org.springframework.data.redis.connection.MessageListener;
+import reactor.core.Disposable;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Sinks;
 
+/*
+ * userId 하나에 대한 구독 정보.
+ * 구독자 수는 atomic 하게 관리하며 0이 된 뒤 정리(retire)되면 다시 사용할 수 없다.
+ * 정리된 정보를 본 요청은 새 구독 정보를 만들어 registry 에서 교체한다.
+ */
 @Getter
-@Setter
-@AllArgsConstructor
-@NoArgsConstructor
-@Builder
 public class RedisUserAlarmSubscribeInfo {
-    private Long userId;
-    private MessageListener messageListener;
-    private Sinks.Many<String> sink;
-    private Flux<String> flux;
-    private int subscribeCnt;
+
+    private static final AtomicIntegerFieldUpdater<RedisUserAlarmSubscribeInfo> SUBSCRIBE_CNT =
+            AtomicIntegerFieldUpdater.newUpdater(RedisUserAlarmSubscribeInfo.class, "subscribeCnt");
+    //정리된 구독 정보의 구독자 수
+    private static final int RETIRED = -1;
+
+    private final long userId;
+    private final Sinks.Many<UserAlarmMessage> sink;
+    private final Flux<UserAlarmMessage> flux;
+    //broker, router 가 알람을 보내는 대상. 유저별 순번을 가진다
+    private final UserAlarmTarget target;
+    //열려있는 sse 연결. 연결이 열리고 닫힐 때만 바뀌고 진단 정보를 만들 때 읽는다
+    private final List<UserAlarmConnection> connections;
+    //redis 채널 구독 해제용. attach, detach 는 이 객체의 monitor 를 잡고 수행한다
+    private Disposable binding;
+    private volatile int subscribeCnt;
+    //offline inbox 에 보관된 알람. 첫 연결이 한번만 가져간다
+    @Getter(AccessLevel.NONE)
+    private final AtomicReference<Flux<UserAlarmMessage>> offlineMessages = new AtomicReference<>();
+    //구독자 수가 바뀔 때 진단 정보의 구간별 유저 수를 옮긴다
+    @Getter(AccessLevel.NONE)
+    private final RedisUserAlarmSubscribeStats stats;
+
+    /*
+     * 생성한 요청의 구독자 1명을 포함한 상태로 만든다.
+     * registry 에 등록되기 전이므로 이 1명은 등록한 쪽이 stats 에 반영한다.
+     */
+    public RedisUserAlarmSubscribeInfo(
+            long userId,
+            Sinks.Many<UserAlarmMessage> sink,
+            Flux<UserAlarmMessage> flux,
+            List<UserAlarmConnection> connections,
+            RedisUserAlarmSubscribeStats stats
+    ) {
+        this.userId = userId;
+        this.sink = sink;
+        this.flux = flux;
+        this.target = new UserAlarmTarget(userId, sink);
+        this.connections = connections;
+        this.stats = stats;
+        this.subscribeCnt = 1;
+    }
+
+    /*
+     * 정리되지 않은 구독 정보라면 구독자 수를 1 증가시키고 true.
+     * 구독자 수가 0이어도 아직 정리되지 않았다면 다시 살려서 사용한다.
+     */
+    public boolean tryAcquire() {
+        for(;;) {
+            int cnt = subscribeCnt;
+            if(cnt == RETIRED) {
+                return false;
+            }
+            if(SUBSCRIBE_CNT.compareAndSet(this, cnt, cnt + 1)) {
+                stats.subscribersChanged(cnt, cnt + 1);
+                return true;
+            }
+        }
+    }
+
+    /*
+     * 구독자 수를 1 감소시킨다.
+     * 0이 되었고 그 사이 다른 요청이 다시 살리지 않았다면 정리 상태로 바꾸고 true.
+     * true 를 받은 호출자만 자원을 정리한다.
+     */
+    public boolean release() {
+        int cnt = SUBSCRIBE_CNT.decrementAndGet(this);
+        stats.subscribersChanged(cnt + 1, cnt);
+        return cnt == 0 && SUBSCRIBE_CNT.compareAndSet(this, 0, RETIRED);
+    }
+
+    public boolean isRetired() {
+        return subscribeCnt == RETIRED;
+    }
+
+    void setOfflineMessages(Flux<UserAlarmMessage> offlineMessages) {
+        this.offlineMessages.set(offlineMessages);
+    }
+
+    /*
+     * 보관된 알람을 가져간다. 이미 가져갔거나 없으면 null
+     */
+    Flux<UserAlarmMessage> takeOfflineMessages() {
+        return offlineMessages.getAndSet(null);
+    }
+
+    void setBinding(Disposable binding) {
+        this.binding = binding;
+    }
 }
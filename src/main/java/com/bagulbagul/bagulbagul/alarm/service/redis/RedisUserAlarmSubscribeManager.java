@@ -1,22 +1,43 @@
 package com.bagulbagul.bagulbagul.alarm.service.redis;
 
+import com.bagulbagul.bagulbagul.alarm.service.UserAlarmConnection;
+import com.bagulbagul.bagulbagul.alarm.service.UserAlarmEvictedException;
 import com.bagulbagul.bagulbagul.alarm.service.UserAlarmSubscribeManager;
+import com.bagulbagul.bagulbagul.alarm.service.broker.UserAlarmBroker;
+import com.bagulbagul.bagulbagul.alarm.service.buffer.UserAlarmBufferPolicy;
+import com.bagulbagul.bagulbagul.alarm.service.buffer.UserAlarmSlowConsumerGuard;
+import com.bagulbagul.bagulbagul.alarm.service.dispatch.UserAlarmDispatcher;
+import com.bagulbagul.bagulbagul.alarm.service.dispatch.UserAlarmTarget;
+import com.bagulbagul.bagulbagul.alarm.service.group.UserAlarmGroupDirectory;
+import com.bagulbagul.bagulbagul.alarm.service.heartbeat.UserAlarmHeartbeatWheel;
+import com.bagulbagul.bagulbagul.alarm.service.jfr.UserAlarmAttachEvent;
+import com.bagulbagul.bagulbagul.alarm.service.jfr.UserAlarmRegisterEvent;
+import com.bagulbagul.bagulbagul.alarm.service.jfr.UserAlarmReleaseEvent;
+import com.bagulbagul.bagulbagul.alarm.service.jfr.UserAlarmSubscribeEvent;
+import com.bagulbagul.bagulbagul.alarm.service.message.UserAlarmMessage;
+import com.bagulbagul.bagulbagul.alarm.service.metrics.UserAlarmMetrics;
+import com.bagulbagul.bagulbagul.alarm.service.presence.UserAlarmOfflineInbox;
+import com.bagulbagul.bagulbagul.alarm.service.presence.UserAlarmPresence;
+import com.bagulbagul.bagulbagul.alarm.service.registry.LongKeyRegistry;
+import com.bagulbagul.bagulbagul.alarm.service.replay.UserAlarmReplayLog;
 import jakarta.annotation.PostConstruct;
 import java.time.Duration;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.data.redis.connection.MessageListener;
-import org.springframework.data.redis.listener.ChannelTopic;
-import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
-import reactor.core.publisher.Sinks;
+import reactor.core.publisher.Sinks.EmitResult;
 import reactor.core.publisher.Sinks.Many;
+import reactor.core.publisher.Sinks;
 import reactor.core.scheduler.Schedulers;
-import reactor.util.concurrent.Queues;
 
 @Slf4j
 @Service
@@ -27,30 +48,86 @@ public class RedisUserAlarmSubscribeManager implements UserAlarmSubscribeManager
     @Value("${alarm.realtime.redis.alarm_topic_prefix}")
     private String TOPIC_PREFIX;
 
-    //HeartBeat 요청의 간격(초)
-    @Value("${alarm.realtime.hb_interval_second}")
-    private int HEARTBEAT_INTERVAL_SECOND;
-    //HeartBeat 요청 메세지 내용
-    @Value("${alarm.realtime.hb_message}")
-    private String HEARTBEAT_MESSAGE;
+    //redis 채널 구독 방식
+    //user : userId 마다 TOPIC_PREFIX + userId 채널을 구독
+    //shard : 고정된 shard 채널들을 노드 시작 시 한번만 구독하고 메세지 봉투의 userId 로 라우팅
+    @Value("${alarm.realtime.redis.subscribe_mode}")
+    private String SUBSCRIBE_MODE;
+    //shard 채널명의 prefix
+    @Value("${alarm.realtime.redis.shard_topic_prefix}")
+    private String SHARD_TOPIC_PREFIX;
+    //shard 채널 수
+    @Value("${alarm.realtime.redis.shard_count}")
+    private int SHARD_COUNT;
+
+    private static final String SUBSCRIBE_MODE_SHARD = "shard";
+
+    //유저의 연결들이 공유하는 sink 의 크기
+    @Value("${alarm.realtime.buffer.sink_size}")
+    private int SINK_SIZE;
+
+    //재연결 시 Last-Event-ID 이후의 알람을 replay 로그에서 다시 보낼지
+    @Value("${alarm.realtime.replay.enabled}")
+    private boolean REPLAY_ENABLED;
 
-    //레디스 메세지 리스너 관리 컨테이너
-    private final RedisMessageListenerContainer redisMessageListenerContainer;
+    //끊기로 한 연결이 재연결 안내를 받아가기를 기다리는 최대 시간
+    @Value("${alarm.realtime.admission.reconnect_grace_millisecond}")
+    private long RECONNECT_GRACE_MILLISECOND;
+
+    //알람 채널과 sink 연결 방식 (container | reactive | inprocess)
+    private final UserAlarmBroker alarmBroker;
 
     // user Id -> 등록정보
-    private final ConcurrentHashMap<Long, RedisUserAlarmSubscribeInfo> subscribeInfoMap = new ConcurrentHashMap<>();
+    private final LongKeyRegistry<RedisUserAlarmSubscribeInfo> subscribeInfoRegistry =
+            new LongKeyRegistry<>(Runtime.getRuntime().availableProcessors() * 4);
+    //진단 정보용 구독 현황 합계. 구독, 해제 경로에서 갱신한다
+    private final RedisUserAlarmSubscribeStats subscribeStats = new RedisUserAlarmSubscribeStats();
 
     //주기적으로 heartbeat 를 보내서 연결이 끊겼는지 확인한다
-    //single thread 의 이유
-    //1.같은 동작을 반복하므로 캐시 등의 효율성을 위해 한 스레드에서 실행하도록 함.
-    //2.연결 정리보다 다른 메세지 전달이 더 중요하기 때문에 다른 Flux 를 방해하지 않기 위해 스레드 제한을 뒀다.
-    private Flux<String> heartbeatFlux;
+    private final UserAlarmHeartbeatWheel heartbeatWheel;
+
+    //유저별 replay 로그
+    private final UserAlarmReplayLog replayLog;
+
+    //연결마다 쌓아둘 알람의 양과 넘쳤을 때의 처리
+    private final UserAlarmBufferPolicy bufferPolicy;
+    //유저의 sink 로 보내는 스레드를 userId 마다 하나로 고정
+    private final UserAlarmDispatcher dispatcher;
+    private final UserAlarmSlowConsumerGuard slowConsumerGuard;
+
+    private final UserAlarmMetrics metrics;
+
+    //클러스터 전체의 유저 접속 정보
+    private final UserAlarmPresence presence;
 
+    //group, broadcast 알람
+    private final UserAlarmGroupDirectory groupDirectory;
+
+    //접속하지 않은 동안 보관된 알람
+    private final UserAlarmOfflineInbox offlineInbox;
+
+    //보관된 알람 조회를 기다리는 최대 시간. 넘으면 보관된 알람 없이 시작한다
+    private static final Duration OFFLINE_DRAIN_TIMEOUT = Duration.ofSeconds(5);
 
     @PostConstruct
     private void init() {
-        heartbeatFlux = Flux.interval(Duration.ofSeconds(HEARTBEAT_INTERVAL_SECOND), Schedulers.single())
-                .map(i -> HEARTBEAT_MESSAGE);
+        metrics.bindSubscribedUsers(subscribeInfoRegistry::size);
+        //shard 모드라면 shard 채널들을 한번만 구독해둔다. 이후 유저의 연결, 해제는 redis 에 명령을 보내지 않는다.
+        if(isShardMode()) {
+            attachRedisShardListener();
+        }
+        //presence 를 사용하면 발행하는 쪽이 이 노드의 inbox 채널로 보낸다
+        if(presence.isEnabled()) {
+            presence.start(subscribeInfoRegistry);
+            alarmBroker.subscribe(List.of(presence.getInboxChannel()), createRoutingListener());
+        }
+        //group, broadcast 채널은 노드마다 한번만 구독하고 이 노드의 sink 들로 나눠 보낸다
+        if(groupDirectory.isEnabled()) {
+            alarmBroker.subscribe(
+                    List.of(groupDirectory.getChannel(), groupDirectory.getBroadcastChannel()),
+                    new RedisUserAlarmGroupRouter(this::findTarget, this::collectTargets, groupDirectory, dispatcher)
+            );
+        }
     }
 
     /*
@@ -60,129 +137,353 @@ public class RedisUserAlarmSubscribeManager implements UserAlarmSubscribeManager
      * 3. 구독자 수가 1 이상에서 0이 되면 레디스 리스너 해제, 구독 정보 삭제.
      */
     @Override
-    public Flux<String> subscribe(final Long userId) {
+    public Flux<UserAlarmMessage> subscribe(final Long userId) {
+        return open(userId, null);
+    }
+
+    /*
+     * 재연결한 클라이언트가 마지막으로 받은 알람 id 를 보내면 그 이후의 알람을 먼저 보내고 실시간 알람을 이어서 보낸다.
+     * replay 가 꺼져 있거나 id 가 없으면 일반 구독과 같다.
+     */
+    @Override
+    public Flux<UserAlarmMessage> subscribe(final Long userId, final String lastEventId) {
+        if(!REPLAY_ENABLED || lastEventId == null || lastEventId.isBlank()) {
+            return open(userId, null);
+        }
+        return open(userId, lastEventId.trim());
+    }
+
+    //replayFrom 이 null 이 아니면 그 이후의 알람을 replay 로그에서 먼저 보낸다
+    private Flux<UserAlarmMessage> open(final long userId, final String replayFrom) {
 
         /*
          * userId에 대한 구독 정보가 없다면 등록. 구독 정보를 가져온다.
-         * 등록 과정에서 이벤트 루프의 block을 방지하기 위해 작업 스레드에서 처리
+         * 등록 과정에서 redis 리스너 등록이 block 될 수 있다면 이벤트 루프의 block을 방지하기 위해 작업 스레드에서 처리
+         * reactive 리스너나 shard 모드는 block 되지 않으므로 현재 스레드에서 바로 처리한다.
          *
          * 구독자 수는 동기화된 코드 내에서 구독 정보 반환 직전에 즉시 올려줘야 한다.
          * 만약 doOnSubscribe에서 구독자 수를 증가시키면 기존 연결이 닫히면서 구독자가 0이 되고 자원이 정리될 수 있다.
-         * req1 : subscribe -> subscribeInfoMap[userId] : absent -> register -> add RedisListener -> return subscribeInfoMap[userId].getFlux()
+         * req1 : subscribe -> subscribeInfoRegistry[userId] : absent -> register -> add RedisListener -> return subscribeInfoRegistry[userId].getFlux()
          * req1 : doOnSubscribe -> cnt=1
-         * req2 : subscribe -> subscribeInfoMap[userId] : present -> return subscribeInfoMap[userId].getFlux()
-         * req1 : doOnCancle -> subscribeInfoMap[userId] : present -> cnt=0 -> subscribeInfoMap[userId]=null -> remove RedisListener
-         * req2 : doOnSubscribe -> subscribeInfoMap[userId] : absent -> doNothing
+         * req2 : subscribe -> subscribeInfoRegistry[userId] : present -> return subscribeInfoRegistry[userId].getFlux()
+         * req1 : doOnCancle -> subscribeInfoRegistry[userId] : present -> cnt=0 -> subscribeInfoRegistry[userId]=null -> remove RedisListener
+         * req2 : doOnSubscribe -> subscribeInfoRegistry[userId] : absent -> doNothing
+         *
+         * 올린 구독자 수는 이 요청의 구독이 끝날 때 한번만 내린다.
+         * 구독 정보를 얻는 중(작업 스레드로 넘어가는 중)이나 보관된 알람을 기다리는 중에 끊겨도
+         * 공유 Flux 를 구독하기 전이므로 공유 Flux 의 cancel 에 맡기면 등록 정보, 리스너, presence 가 남는다.
          */
-        Mono<RedisUserAlarmSubscribeInfo> infoMono = Mono.fromCallable(() ->
-                        subscribeInfoMap.compute(userId, (key, redisUserAlarmSubscribeInfo) -> {
-                            //userId에 대해 구독 정보 등록
-                            if(redisUserAlarmSubscribeInfo == null) {
-                                redisUserAlarmSubscribeInfo = register(key);
-                            }
-                            //구독자 수 증가
-                            redisUserAlarmSubscribeInfo.setSubscribeCnt(redisUserAlarmSubscribeInfo.getSubscribeCnt() + 1);
-                            //구독 정보 반환
-                            return redisUserAlarmSubscribeInfo;
-                        }))
-                .subscribeOn(Schedulers.boundedElastic());
-
-        //연결된 Flux 반환
-        return infoMono.flatMapMany(RedisUserAlarmSubscribeInfo::getFlux);
+        return Flux.defer(() -> {
+            SubscriptionLease lease = new SubscriptionLease(userId);
+            Mono<RedisUserAlarmSubscribeInfo> infoMono = Mono.fromCallable(lease::acquire);
+            if(isBindingBlocking()) {
+                infoMono = infoMono.subscribeOn(Schedulers.boundedElastic());
+            }
+
+            //연결된 Flux 반환. 처음 연결되었다면 보관된 알람을 먼저 보낸다
+            return infoMono.flatMapMany(info -> {
+                Flux<UserAlarmMessage> offlineMessages = info.takeOfflineMessages();
+                if(offlineMessages == null) {
+                    return connect(info, replayFrom);
+                }
+                //읽어오기까지만 기다린다. 시간이 지나거나 끊기면 보관된 알람은 inbox 에 남아 다음 첫 연결 때 받는다
+                return offlineMessages
+                        .timeout(Mono.delay(OFFLINE_DRAIN_TIMEOUT), message -> Mono.never(), Flux.empty())
+                        .concatWith(connect(info, replayFrom));
+            }).doFinally(signalType -> lease.release());
+        });
+    }
+
+    /*
+     * userId 의 구독 정보를 얻고 구독자 수를 1 증가시킨다. (resurrect or retire)
+     * 1. 등록된 정보가 있고 아직 정리되지 않았다면 구독자 수를 올려서 그대로 사용한다.
+     *    구독자 수가 0이 되었더라도 정리되기 전이라면 다시 살아나고, 정리하려던 쪽은 정리를 포기한다.
+     * 2. 정보가 없거나 이미 정리된 정보라면 새로 만들어 교체를 시도한다.
+     *    registry 의 값이 그 사이 바뀌었다면 교체에 실패하므로 처음부터 다시 시도한다.
+     * 맵 전체나 bin 에 대한 lock 없이 userId 가 속한 stripe 만 짧게 잠근다.
+     */
+    private RedisUserAlarmSubscribeInfo acquireSubscribeInfo(long userId) {
+        UserAlarmSubscribeEvent event = new UserAlarmSubscribeEvent();
+        event.begin();
+        for(int attempts = 1; ; attempts++) {
+            RedisUserAlarmSubscribeInfo info = subscribeInfoRegistry.get(userId);
+            if(info != null && info.tryAcquire()) {
+                event.commit(userId, false, attempts);
+                return info;
+            }
+            RedisUserAlarmSubscribeInfo created = register(userId);
+            if(subscribeInfoRegistry.replace(userId, info, created)) {
+                subscribeStats.subscribersChanged(0, 1);
+                //registry 에 노출된 이후에 redis 리스너를 등록한다. stripe lock 을 잡은 채로 redis 명령을 보내지 않기 위함.
+                attachRedisTopicListener(created);
+                //보관된 알람은 접속 정보가 반영된 직후에 읽으므로 presence 에 알리기 전에 요청해둔다
+                if(isOfflineInboxEnabled()) {
+                    created.setOfflineMessages(offlineInbox.request(userId));
+                }
+                presence.changed(userId);
+                event.commit(userId, true, attempts);
+                return created;
+            }
+            //경쟁에서 졌다면 만든 sink 를 닫고 다시 시도
+            created.getSink().tryEmitComplete();
+        }
     }
 
     /*
      * userId에 대한 구독 정보를 생성한다.
-     * userId에 대한 동기화를 고려해야 한다.
-     * 레디스 메세지 리스너를 등록하고 메세지을 읽어 sink 에서 Flux 로 보내도록 만든다.
+     * 메세지를 sink 에서 Flux 로 보내도록 만든다. redis 리스너는 registry 에 등록된 이후 붙인다.
      * 생성된 구독 정보를 반환한다.
      */
-    private RedisUserAlarmSubscribeInfo register(Long userId) {
+    private RedisUserAlarmSubscribeInfo register(long userId) {
+        UserAlarmRegisterEvent event = new UserAlarmRegisterEvent();
+        event.begin();
         /*
          * sink 생성, Hot Stream
          * 자체 구독자 관리 로직이 sink의 구독자 관리 위에서 돌아가므로 동시 요청 시 순간적으로 구독자가 0이 될 수가 있다.
          * req1 subscribe flux(sink 1, 자체 1) -> req2 get flux(sink 1, 자체 2)
          * -> req1 cancle(sink 0, 자체 1) -> sink autocancle -> req2 subscribe flux
          * 따라서 autoCancle은 false로 하고 자체 구독자 0명이 되면 직접 sink를 닫는다.
+         *
+         * 연결마다 버퍼 정책이 upstream 에 무제한으로 요청하므로 sink 의 큐는 구독자가 없는 잠깐 동안만 사용된다.
+         * 연결별 버퍼는 정책에서 두고 sink 는 작게 만든다.
+         * 우선순위 버퍼를 사용하면 연결마다 우선순위별 버퍼를 두므로 sink 의 순서는 같은 우선순위 안에서만 유지된다.
          */
-        Many sink = Sinks.many().multicast().onBackpressureBuffer(Queues.SMALL_BUFFER_SIZE, false);
-        // sink 에서 데이터를 받고 연결, 구독 관리 설정을 추가한 Flux 생성
-        Flux<String> flux = createFlux(userId, sink);
-        //redis pub sub 리스너를 추가
-        MessageListener redisUserAlarmMessageListener = attachRedisTopicListener(userId, sink);
-        //정보 생성해서 반환
-        return RedisUserAlarmSubscribeInfo.builder()
-                .userId(userId)
-                .subscribeCnt(0)
-                .sink(sink)
-                .flux(flux)
-                .messageListener(redisUserAlarmMessageListener)
-                .build();
-    }
-
-    private Flux<String> createFlux(Long userId, Many<String> sink) {
+        Many<UserAlarmMessage> sink = Sinks.many().multicast().onBackpressureBuffer(SINK_SIZE, false);
+        List<UserAlarmConnection> connections = new CopyOnWriteArrayList<>();
+        // sink 에서 데이터를 받고 구독 관리 설정을 추가한 Flux 생성. 연결마다의 설정은 connect 에서 추가한다
+        Flux<UserAlarmMessage> flux = createFlux(sink);
+        //정보 생성해서 반환. 생성한 요청의 구독자 1명이 포함되어 있다.
+        RedisUserAlarmSubscribeInfo info = new RedisUserAlarmSubscribeInfo(userId, sink, flux, connections, subscribeStats);
+        event.commit(userId);
+        return info;
+    }
+
+    private Flux<UserAlarmMessage> createFlux(Many<UserAlarmMessage> sink) {
         // sink 에서 FLux 를 얻어오고 설정 추가. sink.asFlux()는 항상 같은 객체를 반환하고 데이터스트림을 공유.
         // 다만 Flux 는 immutable 하고 retry, doOnError, doOnCancel 호출 시마다 decorator 패턴으로 새로운 Flux 객체가 만들어 진다는 점을 참고.
         // 그리고 Flux 는 가벼운 객체로 비용은 크지 않다.
-        Flux<String> messageFlux = sink.asFlux()
+        return sink.asFlux()
                 //1번까지는 에러가 나도 재시도
                 .retry(1)
                 //서버 측 에러
                 .doOnError(e -> {
+                    metrics.streamError();
                     log.error("실시간 알람 전송 실패", e);
                 })
                 //클라이언트가 연결을 종료하면 구독 해제(명시적인 종료 요청에 해당)
                 //heartbeat 메세지를 주기적으로 보내서 비정상적인 종료에 의해 남은 연결도 주기적으로 정리.
-                .doOnCancel(() -> {
-                    // 구독자 수 -1
-                    // 이벤트 루프가 잠시 block될수 있으므로 작업 스레드에서 처리
-                    Mono.fromRunnable(() -> decreaseSubscriptionCnt(userId))
-                            .subscribeOn(Schedulers.boundedElastic())
-                            .subscribe();
-                });
-        //메세지 Flux 와 heartbeat Flux 를 묶어서 반환
-        messageFlux = Flux.merge(messageFlux, heartbeatFlux);
+                //구독자 수는 subscribe 에서 요청의 구독이 끝날 때 내린다
+                .doOnCancel(metrics::streamCancelled);
+    }
+
+    /*
+     * 연결마다 상태를 만들고 메세지 Flux 와 heartbeat Flux 를 묶어서 반환
+     * 알람을 보낸 시각을 기록해서 heartbeat 간격 안에 알람이 나간 연결은 heartbeat 를 생략한다
+     * 클라이언트가 느려서 쌓이는 알람은 버퍼 정책에 따라 연결마다 쌓거나 버린다
+     * replay 는 버퍼 앞에서 이어 붙인다. replay 로 보내는 알람과 replay 를 읽는 동안 도착한 알람도 버퍼 정책과 느린 연결 감시를 거친다.
+     */
+    private Flux<UserAlarmMessage> connect(RedisUserAlarmSubscribeInfo info, String replayFrom) {
+        long userId = info.getUserId();
+        List<UserAlarmConnection> connections = info.getConnections();
+        Flux<UserAlarmMessage> alarmFlux = replayFrom == null ? info.getFlux() : replayLog.replayThenLive(userId, replayFrom, info.getFlux());
+        Flux<UserAlarmMessage> connectionFlux = Flux.defer(() -> {
+            UserAlarmConnection connection = new UserAlarmConnection(userId);
+            metrics.connectionOpened();
+            connections.add(connection);
+            Flux<UserAlarmMessage> inbound = slowConsumerGuard.inbound(connection, Flux.merge(
+                    alarmFlux.doOnNext(message -> connection.touch()),
+                    heartbeatWheel.heartbeats(connection)
+            ));
+            //느린 연결이거나 노드가 종료되어 끊기로 한 연결은 버퍼보다 앞에서 구독을 끊고 재연결 안내만 보낸다
+            return slowConsumerGuard.outbound(connection, bufferPolicy.apply(inbound, connection))
+                    .takeUntilOther(connection.evicted())
+                    .concatWith(Mono.defer(() -> connection.isEvicted() ? reconnectThenClose(connection) : Mono.empty()))
+                    .doFinally(signalType -> {
+                        connections.remove(connection);
+                        connection.releaseQueued();
+                        metrics.connectionClosed();
+                    });
+        });
         //sse 준비 완료 즉시 HB 메세지를 한번 방출
-        messageFlux = Flux.concat(Mono.just(HEARTBEAT_MESSAGE), messageFlux);
-        return messageFlux;
+        return Flux.concat(Mono.just(heartbeatWheel.getHeartbeatMessage()), connectionFlux);
+    }
+
+    /*
+     * 끊기로 한 연결에 재연결 안내를 보내고 응답을 끝낸다.
+     * 느린 연결은 요청량이 없어서 안내를 받아가지 못할 수 있다. 요청을 기다리면 응답이 끝나지 않아서 구독 정보와 리스너가 남으므로
+     * RECONNECT_GRACE 동안만 기다리고, 그래도 보내지 못하면 에러로 끝내서 웹 서버가 연결과 쓰지 못한 프레임을 버리게 한다.
+     */
+    private Mono<UserAlarmMessage> reconnectThenClose(UserAlarmConnection connection) {
+        return Mono.just(UserAlarmMessage.reconnect())
+                .timeout(
+                        Duration.ofMillis(RECONNECT_GRACE_MILLISECOND),
+                        Mono.error(() -> new UserAlarmEvictedException(connection.getUserId()))
+                );
+    }
+
+    //구독자 수 -1. 리스너 해제로 이벤트 루프가 잠시 block될수 있다면 작업 스레드에서 처리
+    private void releaseSubscription(long userId) {
+        if(isBindingBlocking()) {
+            Mono.fromRunnable(() -> decreaseSubscriptionCnt(userId))
+                    .subscribeOn(Schedulers.boundedElastic())
+                    .subscribe();
+        }
+        else {
+            decreaseSubscriptionCnt(userId);
+        }
     }
 
     /*
      * userId에 대해 구독자 수를 감소시킴.
-     * userId에 대해 동기화된 처리 수행
-     * 구독자 수가 0이 되면 redis pub sub 에 등록된 listener 해제, 연결된 sink 삭제 등 관련 자원 정리
+     * 구독자 수가 0이 되고 정리 권한을 얻은 경우에만 redis pub sub 에 등록된 listener 해제, 연결된 sink 삭제 등 관련 자원 정리
+     * 구독 중인 요청이 있는 동안은 구독 정보가 정리되지 않으므로 registry 에서 찾은 정보가 이 요청이 구독한 정보이다.
      */
-    private void decreaseSubscriptionCnt(Long userId) {
-        // 각 userId에 대해 동기화된 작업 수행
-        subscribeInfoMap.computeIfPresent(userId, (key, redisUserAlarmSubscribeInfo) -> {
-            //구독자 수 1 감소
-            redisUserAlarmSubscribeInfo.setSubscribeCnt(redisUserAlarmSubscribeInfo.getSubscribeCnt() - 1);
-            // 구독자 수가 0이 되면 리스너를 해제하고 연결된 자원 삭제
-            if(redisUserAlarmSubscribeInfo.getSubscribeCnt() == 0) {
-                //리스너 해제
-                detachRedisTopicListener(redisUserAlarmSubscribeInfo.getMessageListener());
-                //sink를 닫는다. 재시도는 true(닫는 중에도 sink가 데이터를 보낼 수 있으므로 스레드 경합에 의한 오류 가능)
-                redisUserAlarmSubscribeInfo.getSink().emitComplete((signalType, emitResult) -> true);
-                //map 에서 info 삭제
-                redisUserAlarmSubscribeInfo = null;
-            }
-            return redisUserAlarmSubscribeInfo;
-        });
+    private void decreaseSubscriptionCnt(long userId) {
+        UserAlarmReleaseEvent event = new UserAlarmReleaseEvent();
+        event.begin();
+        RedisUserAlarmSubscribeInfo info = subscribeInfoRegistry.get(userId);
+        if(info == null || !info.release()) {
+            event.commit(userId, false);
+            return;
+        }
+        //registry 에서 삭제. 이미 새 정보로 교체되었다면 아무것도 하지 않는다.
+        if(subscribeInfoRegistry.remove(userId, info)) {
+            presence.changed(userId);
+        }
+        //리스너 해제
+        synchronized (info) {
+            detachRedisTopicListener(info.getBinding());
+            info.setBinding(null);
+        }
+        //sink를 닫는다. 재시도는 true(닫는 중에도 sink가 데이터를 보낼 수 있으므로 스레드 경합에 의한 오류 가능)
+        info.getSink().emitComplete((signalType, emitResult) -> emitResult == EmitResult.FAIL_NON_SERIALIZED);
+        event.commit(userId, true);
     }
 
-    private RedisUserAlarmMessageListener attachRedisTopicListener(Long userId, Sinks.Many<String> sink) {
-        //리스너 생성
-        RedisUserAlarmMessageListener userUserAlarmMessageListener = new RedisUserAlarmMessageListener(sink);
-        //채널 토픽 생성
-        ChannelTopic topic = new ChannelTopic(TOPIC_PREFIX + userId);
-        //리스너 등록
-        redisMessageListenerContainer.addMessageListener(userUserAlarmMessageListener, topic);
-        return userUserAlarmMessageListener;
+    private void attachRedisTopicListener(RedisUserAlarmSubscribeInfo info) {
+        //shard 모드에서는 subscribeInfoRegistry 가 라우팅 테이블 역할을 하므로 유저별 리스너가 필요없다
+        if(isShardMode()) {
+            return;
+        }
+        UserAlarmAttachEvent event = new UserAlarmAttachEvent();
+        event.begin();
+        synchronized (info) {
+            //리스너를 붙이기 전에 정리되었다면 붙이지 않는다
+            if(info.isRetired()) {
+                event.commit(info.getUserId(), false);
+                return;
+            }
+            //리스너 등록
+            info.setBinding(alarmBroker.subscribe(TOPIC_PREFIX + info.getUserId(), info.getTarget()));
+            metrics.listenerAttached();
+            subscribeStats.listenerAttached();
+        }
+        event.commit(info.getUserId(), true);
     }
 
-    private void detachRedisTopicListener(MessageListener listener) {
+    private void detachRedisTopicListener(Disposable binding) {
+        //shard 모드에서는 등록된 유저별 리스너가 없음
+        if(binding == null) {
+            return;
+        }
         // 리스너 해제
-        redisMessageListenerContainer.removeMessageListener(listener);
+        binding.dispose();
+        metrics.listenerDetached();
+        subscribeStats.listenerDetached();
+    }
+
+    private void attachRedisShardListener() {
+        RedisUserAlarmShardMessageListener shardMessageListener = createRoutingListener();
+        //모든 shard 채널을 한번에 구독
+        List<String> channels = new ArrayList<>(SHARD_COUNT);
+        for(int shard = 0; shard < SHARD_COUNT; shard++) {
+            channels.add(SHARD_TOPIC_PREFIX + shard);
+        }
+        alarmBroker.subscribe(channels, shardMessageListener);
+    }
+
+    //봉투의 userId 로 구독 정보를 찾아 sink 로 전달하는 리스너. shard 채널과 inbox 채널에서 사용한다.
+    private RedisUserAlarmShardMessageListener createRoutingListener() {
+        return new RedisUserAlarmShardMessageListener(this::findTarget, dispatcher);
+    }
+
+    private UserAlarmTarget findTarget(long userId) {
+        RedisUserAlarmSubscribeInfo info = subscribeInfoRegistry.get(userId);
+        return info == null ? null : info.getTarget();
+    }
+
+    //registry 의 stripe lock 을 잡은 채로 sink 에 보내지 않도록 목록을 먼저 만든다
+    private List<UserAlarmTarget> collectTargets() {
+        List<UserAlarmTarget> targets = new ArrayList<>(subscribeInfoRegistry.size());
+        subscribeInfoRegistry.forEach((userId, info) -> targets.add(info.getTarget()));
+        return targets;
+    }
+
+    //진단 정보용 목록. 마찬가지로 stripe lock 을 잡은 동안에는 복사만 한다
+    List<RedisUserAlarmSubscribeInfo> collectSubscribeInfos() {
+        List<RedisUserAlarmSubscribeInfo> infos = new ArrayList<>(subscribeInfoRegistry.size());
+        subscribeInfoRegistry.forEach((userId, info) -> infos.add(info));
+        return infos;
+    }
+
+    //진단 정보용 표본. 임의의 stripe 부터 최대 limit 개만 복사한다
+    List<RedisUserAlarmSubscribeInfo> sampleSubscribeInfos(int limit) {
+        List<RedisUserAlarmSubscribeInfo> infos = new ArrayList<>(Math.min(limit, subscribeInfoRegistry.size()));
+        subscribeInfoRegistry.forEach(ThreadLocalRandom.current().nextInt(), limit, (userId, info) -> infos.add(info));
+        return infos;
     }
-}
 
+    RedisUserAlarmSubscribeStats getSubscribeStats() {
+        return subscribeStats;
+    }
+
+    /*
+     * 요청 하나가 올린 구독자 수. 구독 정보를 얻는 것과 요청이 끝나는 것이 서로 다른 스레드에서 경쟁해도 한번만 내린다.
+     * 얻기 전에 끝난 요청은 얻지 않고, 얻는 동안 끝난 요청은 얻은 즉시 돌려준다.
+     */
+    private final class SubscriptionLease {
+        private static final int PENDING = 0;
+        private static final int ACQUIRED = 1;
+        private static final int RELEASED = 2;
+
+        private final long userId;
+        private final AtomicInteger state = new AtomicInteger(PENDING);
+
+        SubscriptionLease(long userId) {
+            this.userId = userId;
+        }
+
+        //이미 끝난 요청이면 null (빈 Mono)
+        RedisUserAlarmSubscribeInfo acquire() {
+            if(state.get() == RELEASED) {
+                return null;
+            }
+            RedisUserAlarmSubscribeInfo info = acquireSubscribeInfo(userId);
+            if(!state.compareAndSet(PENDING, ACQUIRED)) {
+                releaseSubscription(userId);
+                return null;
+            }
+            return info;
+        }
+
+        void release() {
+            if(state.getAndSet(RELEASED) == ACQUIRED) {
+                releaseSubscription(userId);
+            }
+        }
+    }
+
+    //offline inbox 는 presence 로 접속 여부를 알 수 있을 때만 사용한다
+    private boolean isOfflineInboxEnabled() {
+        return offlineInbox.isEnabled() && presence.isEnabled();
+    }
+
+    private boolean isShardMode() {
+        return SUBSCRIBE_MODE_SHARD.equals(SUBSCRIBE_MODE);
+    }
+
+    //유저별 리스너 등록, 해제가 호출 스레드를 block 할 수 있는지
+    private boolean isBindingBlocking() {
+        return !isShardMode() && alarmBroker.isBlocking();
+    }
+}
@@ -0,0 +1,70 @@
+package com.bagulbagul.bagulbagul.alarm.service.redis;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * 진단 정보용 구독 현황 합계.
+ * 구독자 수가 바뀌거나 리스너를 붙이고 뗄 때 갱신해서 진단 정보가 모든 구독 정보를 순회하지 않게 한다.
+ * 구독, 해제 경로에서는 LongAdder 하나, 둘만 올리고 내린다.
+ */
+class RedisUserAlarmSubscribeStats {
+
+    //구독자 수 구간의 상한. 2의 거듭제곱으로 늘어나고 마지막 구간은 상한이 없다
+    static final int[] SUBSCRIBER_BOUNDS = {1, 2, 4, 8, 16, 32};
+
+    //구간별 유저 수. 구독자 수가 0 인 구독 정보(정리 중)는 세지 않는다
+    private final LongAdder[] histogram = new LongAdder[SUBSCRIBER_BOUNDS.length + 1];
+    private final LongAdder listeners = new LongAdder();
+
+    RedisUserAlarmSubscribeStats() {
+        for(int i = 0; i < histogram.length; i++) {
+            histogram[i] = new LongAdder();
+        }
+    }
+
+    /*
+     * 구독 정보 하나의 구독자 수가 from 에서 to 로 바뀌었다
+     */
+    void subscribersChanged(int from, int to) {
+        int fromBucket = from > 0 ? bucketOf(from) : -1;
+        int toBucket = to > 0 ? bucketOf(to) : -1;
+        if(fromBucket == toBucket) {
+            return;
+        }
+        if(fromBucket >= 0) {
+            histogram[fromBucket].decrement();
+        }
+        if(toBucket >= 0) {
+            histogram[toBucket].increment();
+        }
+    }
+
+    void listenerAttached() {
+        listeners.increment();
+    }
+
+    void listenerDetached() {
+        listeners.decrement();
+    }
+
+    //구간별 유저 수. 갱신 중에 읽으면 구간 사이를 옮기는 유저가 잠깐 빠지거나 두번 셀 수 있다
+    int[] histogram() {
+        int[] counts = new int[histogram.length];
+        for(int i = 0; i < histogram.length; i++) {
+            counts[i] = (int) Math.max(0, histogram[i].sum());
+        }
+        return counts;
+    }
+
+    int listeners() {
+        return (int) Math.max(0, listeners.sum());
+    }
+
+    //1 -> 0, 2 -> 1, 3~4 -> 2, ... , 33 이상 -> 6
+    static int bucketOf(int subscribers) {
+        if(subscribers <= 1) {
+            return 0;
+        }
+        return Math.min(SUBSCRIBER_BOUNDS.length, Integer.SIZE - Integer.numberOfLeadingZeros(subscribers - 1));
+    }
+}
@@ -0,0 +1,38 @@
+package com.bagulbagul.bagulbagul.alarm.service.redis;
+
+import java.util.List;
+import java.util.Map;
+
+/*
+ * 한 시점의 구독 현황. 관리용 api 로 json 으로 내보낸다.
+ *
+ * takenAtMillis : 만든 시각
+ * scanMicros : 표본을 읽고 계산하는 데 걸린 시간
+ * users : 구독 중인 유저 수
+ * connections : 열려있는 sse 연결 수
+ * listeners : 유저 채널 리스너가 붙어있는 유저 수. shard 모드에서는 0
+ * buffered : 연결별 버퍼에 쌓인 알람 수의 합. slow_consumer 를 켰을 때만 센다
+ * subscriberHistogram : 구독자 수 구간 -> 유저 수
+ * sampledUsers : 상위 유저를 고를 때 읽은 구독 정보 수. users 보다 작으면 표본에서 고른 상위 유저이다
+ * topBySubscribers, topByBuffered : 구독자 수, 쌓인 알람 수 상위 유저
+ */
+public record UserAlarmDiagnosticsSnapshot(
+        long takenAtMillis,
+        long scanMicros,
+        int users,
+        int connections,
+        int listeners,
+        long buffered,
+        Map<String, Integer> subscriberHistogram,
+        int sampledUsers,
+        List<UserEntry> topBySubscribers,
+        List<UserEntry> topByBuffered
+) {
+
+    /*
+     * buffered : 공유 sink 에 남은 알람 수 + 연결별 버퍼에 쌓인 알람 수.
+     * 연결별 버퍼는 slow_consumer 를 켰을 때만 센다.
+     */
+    public record UserEntry(long userId, int subscribers, int connections, int buffered) {
+    }
+}
@@ -0,0 +1,258 @@
+package com.bagulbagul.bagulbagul.alarm.service.registry;
+
+import java.util.concurrent.locks.StampedLock;
+
+/*
+ * long 키를 박싱하지 않고 저장하는 동시성 맵.
+ *
+ * 키 공간을 stripe 로 나누고 stripe 마다 open addressing(linear probing) 테이블과 StampedLock 을 둔다.
+ * - 조회 : optimistic read 로 lock 없이 읽고, 그 사이 쓰기가 있었으면 read lock 으로 다시 읽는다.
+ * - 갱신 : 해당 키가 속한 stripe 하나만 잠근다. 갱신은 compare-and-set 형태로만 제공한다.
+ * ConcurrentHashMap<Long, V> 대비 키 박싱과 엔트리 노드 객체가 없어 엔트리당 메모리가 작다.
+ */
+public class LongKeyRegistry<V> {
+
+    private static final int MIN_STRIPE_CAPACITY = 16;
+
+    private final Stripe<V>[] stripes;
+    private final int stripeMask;
+
+    @SuppressWarnings("unchecked")
+    public LongKeyRegistry(int stripeCount) {
+        int count = stripeCount <= 1 ? 1 : Integer.highestOneBit((stripeCount - 1) << 1);
+        this.stripes = new Stripe[count];
+        for(int i = 0; i < count; i++) {
+            stripes[i] = new Stripe<>();
+        }
+        this.stripeMask = count - 1;
+    }
+
+    public V get(long key) {
+        long hash = mix(key);
+        return stripeOf(hash).get(key, (int) hash);
+    }
+
+    /*
+     * 현재 값이 expected 와 같은 객체일 때만 update 로 바꾼다.
+     * expected 가 null 이면 키가 없을 때만 추가, update 가 null 이면 삭제를 뜻한다.
+     */
+    public boolean replace(long key, V expected, V update) {
+        long hash = mix(key);
+        return stripeOf(hash).replace(key, (int) hash, expected, update);
+    }
+
+    public boolean remove(long key, V expected) {
+        return replace(key, expected, null);
+    }
+
+    /*
+     * lock 없이 stripe 별 크기를 더한 근사값
+     */
+    public int size() {
+        int size = 0;
+        for(Stripe<V> stripe : stripes) {
+            size += stripe.size;
+        }
+        return size;
+    }
+
+    /*
+     * stripe 를 하나씩 read lock 으로 잡고 순회한다. 전체를 한번에 잠그지는 않는다.
+     * lock 을 잡은 채로 consumer 를 호출하므로 consumer 안에서 registry 를 갱신하면 안된다.
+     */
+    public void forEach(EntryConsumer<? super V> consumer) {
+        for(Stripe<V> stripe : stripes) {
+            stripe.forEach(consumer, Integer.MAX_VALUE);
+        }
+    }
+
+    /*
+     * from 번째 stripe 부터 돌아가며 최대 limit 개만 순회하고 순회한 수를 반환한다.
+     * 키는 섞인 hash 위치에 놓이므로 호출마다 from 을 바꾸면 읽은 항목은 전체에서 고르게 뽑은 표본에 가깝다.
+     */
+    public int forEach(int from, int limit, EntryConsumer<? super V> consumer) {
+        int visited = 0;
+        for(int i = 0; i < stripes.length && visited < limit; i++) {
+            visited += stripes[(from + i) & stripeMask].forEach(consumer, limit - visited);
+        }
+        return visited;
+    }
+
+    private Stripe<V> stripeOf(long hash) {
+        //테이블 내 위치는 하위 32비트, stripe 선택은 상위 비트를 사용
+        return stripes[(int) (hash >>> 32) & stripeMask];
+    }
+
+    // murmur3 finalizer
+    private static long mix(long key) {
+        long h = key;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    @FunctionalInterface
+    public interface EntryConsumer<V> {
+        void accept(long key, V value);
+    }
+
+    private static final class Stripe<V> {
+        private final StampedLock lock = new StampedLock();
+        // values[i] == null 이면 빈 슬롯
+        private long[] keys = new long[MIN_STRIPE_CAPACITY];
+        private Object[] values = new Object[MIN_STRIPE_CAPACITY];
+        private volatile int size;
+
+        V get(long key, int hash) {
+            long stamp = lock.tryOptimisticRead();
+            if(stamp != 0) {
+                long[] k = keys;
+                Object[] v = values;
+                //resize 중에 읽어서 두 배열의 세대가 다를 수 있음
+                if(k.length == v.length) {
+                    V found = find(k, v, key, hash);
+                    if(lock.validate(stamp)) {
+                        return found;
+                    }
+                }
+            }
+            stamp = lock.readLock();
+            try {
+                return find(keys, values, key, hash);
+            }
+            finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        boolean replace(long key, int hash, V expected, V update) {
+            long stamp = lock.writeLock();
+            try {
+                int index = indexOf(keys, values, key, hash);
+                Object current = index < 0 ? null : values[index];
+                if(current != expected) {
+                    return false;
+                }
+                if(update == null) {
+                    if(index >= 0) {
+                        deleteAt(index);
+                        shrinkIfSparse();
+                    }
+                }
+                else if(index >= 0) {
+                    values[index] = update;
+                }
+                else {
+                    growIfFull();
+                    insert(keys, values, key, hash, update);
+                    size = size + 1;
+                }
+                return true;
+            }
+            finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        int forEach(EntryConsumer<? super V> consumer, int limit) {
+            int visited = 0;
+            long stamp = lock.readLock();
+            try {
+                for(int i = 0; i < values.length && visited < limit; i++) {
+                    if(values[i] != null) {
+                        consumer.accept(keys[i], (V) values[i]);
+                        visited++;
+                    }
+                }
+                return visited;
+            }
+            finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <V> V find(long[] keys, Object[] values, long key, int hash) {
+            int index = indexOf(keys, values, key, hash);
+            return index < 0 ? null : (V) values[index];
+        }
+
+        private static int indexOf(long[] keys, Object[] values, long key, int hash) {
+            int mask = keys.length - 1;
+            int index = hash & mask;
+            //optimistic read 중 테이블이 바뀌어도 무한 루프가 없도록 최대 탐색 횟수를 제한
+            for(int probe = 0; probe <= mask; probe++) {
+                if(values[index] == null) {
+                    return -1;
+                }
+                if(keys[index] == key) {
+                    return index;
+                }
+                index = (index + 1) & mask;
+            }
+            return -1;
+        }
+
+        private static void insert(long[] keys, Object[] values, long key, int hash, Object value) {
+            int mask = keys.length - 1;
+            int index = hash & mask;
+            while(values[index] != null) {
+                index = (index + 1) & mask;
+            }
+            keys[index] = key;
+            values[index] = value;
+        }
+
+        /*
+         * linear probing 의 backward shift 삭제. tombstone 을 남기지 않는다.
+         */
+        private void deleteAt(int index) {
+            int mask = keys.length - 1;
+            int hole = index;
+            values[hole] = null;
+            int cursor = (hole + 1) & mask;
+            while(values[cursor] != null) {
+                int home = (int) mix(keys[cursor]) & mask;
+                //cursor 의 원래 위치에서 hole 까지가 cursor 까지보다 가깝거나 같으면 hole 로 당긴다
+                if(((cursor - home) & mask) >= ((cursor - hole) & mask)) {
+                    keys[hole] = keys[cursor];
+                    values[hole] = values[cursor];
+                    values[cursor] = null;
+                    hole = cursor;
+                }
+                cursor = (cursor + 1) & mask;
+            }
+            size = size - 1;
+        }
+
+        //load factor 0.5
+        private void growIfFull() {
+            if((size + 1) * 2 > keys.length) {
+                rehash(keys.length * 2);
+            }
+        }
+
+        //재연결 폭주 이후 빈 테이블이 메모리를 계속 잡고 있지 않도록 줄인다
+        private void shrinkIfSparse() {
+            if(keys.length > MIN_STRIPE_CAPACITY && size * 8 < keys.length) {
+                rehash(keys.length / 2);
+            }
+        }
+
+        private void rehash(int capacity) {
+            long[] newKeys = new long[capacity];
+            Object[] newValues = new Object[capacity];
+            for(int i = 0; i < values.length; i++) {
+                if(values[i] != null) {
+                    insert(newKeys, newValues, keys[i], (int) mix(keys[i]), values[i]);
+                }
+            }
+            keys = newKeys;
+            values = newValues;
+        }
+    }
+}
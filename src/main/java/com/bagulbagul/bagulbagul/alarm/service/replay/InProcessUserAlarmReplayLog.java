@@ -0,0 +1,33 @@
+package com.bagulbagul.bagulbagul.alarm.service.replay;
+
+import com.bagulbagul.bagulbagul.alarm.service.message.UserAlarmMessage;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+/*
+ * inprocess broker 의 replay 로그. 알람을 기록하지 않으므로 재연결해도 실시간 알람만 받는다.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "alarm.realtime.redis.listener", havingValue = "inprocess")
+public class InProcessUserAlarmReplayLog implements UserAlarmReplayLog {
+
+    @Value("${alarm.realtime.replay.enabled}")
+    private boolean ENABLED;
+
+    @PostConstruct
+    private void init() {
+        if(ENABLED) {
+            log.warn("inprocess broker 에서는 replay 를 사용하지 않습니다");
+        }
+    }
+
+    @Override
+    public Flux<UserAlarmMessage> replayThenLive(long userId, String lastEventId, Flux<UserAlarmMessage> live) {
+        return live;
+    }
+}
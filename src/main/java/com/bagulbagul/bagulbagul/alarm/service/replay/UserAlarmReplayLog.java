@@ -0,0 +1,19 @@
+package com.bagulbagul.bagulbagul.alarm.service.replay;
+
+import com.bagulbagul.bagulbagul.alarm.service.message.UserAlarmMessage;
+import reactor.core.publisher.Flux;
+
+/*
+ * 유저별 알람 replay 로그.
+ * alarm.realtime.redis.listener 로 구현을 고른다.
+ * inprocess : 기록하지 않는다. 실시간 알람만 보낸다.
+ * 그 외 : redis stream 에 기록한다. (RedisUserAlarmReplayLog)
+ */
+public interface UserAlarmReplayLog {
+
+    /*
+     * lastEventId 이후의 알람을 먼저 보내고 실시간 알람을 이어 붙인다.
+     * live 는 연결 버퍼 앞의 유저 알람이다. 결과는 구독 관리자가 연결의 버퍼 정책과 느린 연결 감시에 넘긴다.
+     */
+    Flux<UserAlarmMessage> replayThenLive(long userId, String lastEventId, Flux<UserAlarmMessage> live);
+}
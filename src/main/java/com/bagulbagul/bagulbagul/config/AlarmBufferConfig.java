@@ -0,0 +1,66 @@
+package com.bagulbagul.bagulbagul.config;
+
+import com.bagulbagul.bagulbagul.alarm.service.buffer.CoalescingUserAlarmBufferPolicy;
+import com.bagulbagul.bagulbagul.alarm.service.buffer.PriorityUserAlarmBufferPolicy;
+import com.bagulbagul.bagulbagul.alarm.service.buffer.PriorityUserAlarmBufferPolicy.Lane;
+import com.bagulbagul.bagulbagul.alarm.service.buffer.PriorityUserAlarmBufferPolicy.Overflow;
+import com.bagulbagul.bagulbagul.alarm.service.buffer.UserAlarmBatcher;
+import com.bagulbagul.bagulbagul.alarm.service.buffer.DropUserAlarmBufferPolicy;
+import com.bagulbagul.bagulbagul.alarm.service.buffer.UserAlarmBufferPolicy;
+import com.bagulbagul.bagulbagul.alarm.service.buffer.UserAlarmOverflowCounter;
+import java.time.Duration;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.scheduler.Schedulers;
+
+@Configuration
+public class AlarmBufferConfig {
+
+    //연결마다 쌓아둘 수 있는 최대 알람 수
+    @Value("${alarm.realtime.buffer.max_size}")
+    private int MAX_SIZE;
+
+    // drop_oldest | drop_newest | coalesce
+    // 우선순위 버퍼를 켜면 우선순위마다 따로 정한 크기와 정책을 사용한다
+    @Bean
+    UserAlarmBufferPolicy userAlarmBufferPolicy(
+            @Value("${alarm.realtime.buffer.policy}") String policy,
+            @Value("${alarm.realtime.priority.enabled}") boolean priorityEnabled,
+            @Value("${alarm.realtime.priority.starvation_limit}") int starvationLimit,
+            @Value("${alarm.realtime.priority.high.max_size}") int highMaxSize,
+            @Value("${alarm.realtime.priority.high.policy}") String highPolicy,
+            @Value("${alarm.realtime.priority.normal.max_size}") int normalMaxSize,
+            @Value("${alarm.realtime.priority.normal.policy}") String normalPolicy,
+            @Value("${alarm.realtime.priority.low.max_size}") int lowMaxSize,
+            @Value("${alarm.realtime.priority.low.policy}") String lowPolicy,
+            UserAlarmOverflowCounter userAlarmOverflowCounter
+    ) {
+        if(priorityEnabled) {
+            return new PriorityUserAlarmBufferPolicy(
+                    new Lane(highMaxSize, Overflow.of(highPolicy)),
+                    new Lane(normalMaxSize, Overflow.of(normalPolicy)),
+                    new Lane(lowMaxSize, Overflow.of(lowPolicy)),
+                    starvationLimit,
+                    userAlarmOverflowCounter
+            );
+        }
+        return switch (policy) {
+            case "drop_oldest" -> new DropUserAlarmBufferPolicy(MAX_SIZE, BufferOverflowStrategy.DROP_OLDEST, userAlarmOverflowCounter);
+            case "drop_newest" -> new DropUserAlarmBufferPolicy(MAX_SIZE, BufferOverflowStrategy.DROP_LATEST, userAlarmOverflowCounter);
+            case "coalesce" -> new CoalescingUserAlarmBufferPolicy(MAX_SIZE, userAlarmOverflowCounter);
+            default -> throw new IllegalArgumentException("알 수 없는 알람 버퍼 정책 : " + policy);
+        };
+    }
+
+    //몰려온 알람을 묶어서 쓰는 단계. 끄면 알람마다 flush 한다
+    @Bean
+    UserAlarmBatcher userAlarmBatcher(
+            @Value("${alarm.realtime.batch.enabled}") boolean enabled,
+            @Value("${alarm.realtime.batch.max_size}") int maxSize,
+            @Value("${alarm.realtime.batch.max_delay_millisecond}") long maxDelayMillisecond
+    ) {
+        return new UserAlarmBatcher(enabled ? maxSize : 1, Duration.ofMillis(maxDelayMillisecond), Schedulers.parallel());
+    }
+}
@@ -1,7 +1,9 @@
 package com.bagulbagul.bagulbagul.config;
 
+import com.bagulbagul.bagulbagul.security.jwt.CachingJwtProvider;
 import com.bagulbagul.bagulbagul.security.jwt.JwtProvider;
 import com.bagulbagul.bagulbagul.security.jwt.JwtProviderImpl;
+import java.time.Duration;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -13,11 +15,20 @@ public class JwtConfig {
 
     private String SECRET_KEY_ALGORITHM = "HmacSHA512";
 
+    //검증 결과 캐시의 최대 토큰 수
+    @Value("${jwt.cache.max_size}")
+    private long CACHE_MAX_SIZE;
+
+    //검증에 실패한 토큰을 다시 검증하지 않는 시간(초)
+    @Value("${jwt.cache.invalid_ttl_second}")
+    private long CACHE_INVALID_TTL_SECOND;
+
     @Bean
     public JwtProvider jwtProvider() {
-        return JwtProviderImpl.builder()
+        JwtProviderImpl jwtProvider = JwtProviderImpl.builder()
                 .SECRET_KEY_STRING(SECRET_KEY_STRING)
                 .SECRET_KEY_ALGORITHM(SECRET_KEY_ALGORITHM)
                 .build();
+        return new CachingJwtProvider(jwtProvider, CACHE_MAX_SIZE, Duration.ofSeconds(CACHE_INVALID_TTL_SECOND));
     }
 }
\ No newline at end of file
@@ -1,14 +1,18 @@
 package com.bagulbagul.bagulbagul.config;
 
+import com.bagulbagul.bagulbagul.alarm.service.message.UserAlarmEnvelopeFormat;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ReactiveRedisMessageListenerContainer;
 import org.springframework.data.redis.listener.RedisMessageListenerContainer;
-import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
 @Configuration
@@ -18,9 +22,10 @@ public class RedisConfig {
     @Value("${spring.redis.port}")
     private int port;
 
+    // reactive 연결도 같은 factory 에서 얻을 수 있도록 구현 타입으로 등록
     @Bean
     @Primary
-    RedisConnectionFactory redisConnectionFactory() {
+    LettuceConnectionFactory redisConnectionFactory() {
         return new LettuceConnectionFactory(host, port);
     }
 
@@ -36,16 +41,10 @@ public class RedisConfig {
         return redisTemplate;
     }
 
+    // 이벤트 루프에서 block 없이 사용하는 명령용 (알람 replay 조회 등)
     @Bean
-    @Primary
-    RedisTemplate<String, Object> jsonRedisTemplate(RedisConnectionFactory redisConnectionFactory) {
-        RedisTemplate<String, Object> redisTemplate = new RedisTemplate<>();
-        redisTemplate.setConnectionFactory(redisConnectionFactory);
-        redisTemplate.setKeySerializer(stringRedisSerializer());
-        redisTemplate.setValueSerializer(jackson2JsonRedisSerializer());
-        redisTemplate.setHashKeySerializer(stringRedisSerializer());
-        redisTemplate.setHashValueSerializer(jackson2JsonRedisSerializer());
-        return redisTemplate;
+    ReactiveStringRedisTemplate reactiveStringRedisTemplate(ReactiveRedisConnectionFactory reactiveRedisConnectionFactory) {
+        return new ReactiveStringRedisTemplate(reactiveRedisConnectionFactory);
     }
 
     @Bean
@@ -53,17 +52,30 @@ public class RedisConfig {
         return new StringRedisSerializer();
     }
 
+    // 알람을 발행할 때 사용하는 봉투 형식. 받는 쪽은 두 형식을 모두 읽는다
     @Bean
-    Jackson2JsonRedisSerializer jackson2JsonRedisSerializer() {
-        return new Jackson2JsonRedisSerializer(Object.class);
+    UserAlarmEnvelopeFormat userAlarmEnvelopeFormat(@Value("${alarm.realtime.envelope.format}") String format) {
+        return switch (format) {
+            case "v1" -> UserAlarmEnvelopeFormat.V1;
+            case "v2" -> UserAlarmEnvelopeFormat.V2;
+            default -> throw new IllegalArgumentException("알 수 없는 알람 봉투 형식 : " + format);
+        };
     }
 
     // note: RedisMessageListenerContainer 는 thread-safe 하다.
     @Bean
+    @ConditionalOnProperty(name = "alarm.realtime.redis.listener", havingValue = "container", matchIfMissing = true)
     public RedisMessageListenerContainer redisMessageListener(RedisConnectionFactory redisConnectionFactory) {
         RedisMessageListenerContainer container = new RedisMessageListenerContainer();
         container.setConnectionFactory(redisConnectionFactory);
         return container;
     }
+
+    // alarm.realtime.redis.listener=reactive 일 때 사용하는 non-blocking 리스너 컨테이너
+    @Bean
+    @ConditionalOnProperty(name = "alarm.realtime.redis.listener", havingValue = "reactive")
+    public ReactiveRedisMessageListenerContainer reactiveRedisMessageListener(ReactiveRedisConnectionFactory reactiveRedisConnectionFactory) {
+        return new ReactiveRedisMessageListenerContainer(reactiveRedisConnectionFactory);
+    }
 }
 
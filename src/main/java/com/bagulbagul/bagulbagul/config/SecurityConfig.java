@@ -1,10 +1,17 @@
 package com.bagulbagul.bagulbagul.config;
 
+import com.bagulbagul.bagulbagul.alarm.controller.UserAlarmAdmissionFilter;
+import com.bagulbagul.bagulbagul.alarm.service.admission.UserAlarmAdmissionControl;
+import com.bagulbagul.bagulbagul.alarm.service.admission.UserAlarmReconnectDelay;
 import com.bagulbagul.bagulbagul.security.filter.JwtAuthenticationFilter;
+import java.util.Set;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.autoconfigure.security.reactive.EndpointRequest;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
+import org.springframework.security.authorization.AuthorizationDecision;
 import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.method.configuration.EnableReactiveMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
@@ -25,6 +32,12 @@ import org.springframework.web.filter.CorsFilter;
 public class SecurityConfig {
 
     private final JwtAuthenticationFilter jwtAuthenticationFilter;
+    private final UserAlarmAdmissionControl userAlarmAdmissionControl;
+    private final UserAlarmReconnectDelay userAlarmReconnectDelay;
+
+    //운영용 api(/alarm/admin/**)를 사용할 수 있는 userId. 비어있으면 아무도 사용할 수 없다
+    @Value("${alarm.realtime.admin.user_ids}")
+    private Set<Long> ADMIN_USER_IDS;
 
     @Bean
     public SecurityWebFilterChain filterChain(ServerHttpSecurity http) {
@@ -34,11 +47,21 @@ public class SecurityConfig {
         // 기본 인증(아이디 비밀번호 BASE64인코딩) 비활성화
         http.httpBasic(httpSecurityHttpBasicConfigurer -> httpSecurityHttpBasicConfigurer.disable());
 
+        // 구독 요청 수 제한. cors 처리 후, 인증 전에 실행
+        http.addFilterAfter(
+                new UserAlarmAdmissionFilter(userAlarmAdmissionControl, userAlarmReconnectDelay),
+                SecurityWebFiltersOrder.CORS
+        );
         http.addFilterAt(jwtAuthenticationFilter, SecurityWebFiltersOrder.AUTHENTICATION);
         // 경로별 인증 설정
         http.authorizeExchange(authorizeExchangeSpec -> {
                 authorizeExchangeSpec
                         .pathMatchers(HttpMethod.GET, "/").permitAll()
+                        // actuator 는 management 포트로만 열려있다
+                        .matchers(EndpointRequest.toAnyEndpoint()).permitAll()
+                        .pathMatchers("/alarm/admin/**").access((authentication, context) -> authentication
+                                .map(auth -> new AuthorizationDecision(auth.getPrincipal() instanceof Long userId && ADMIN_USER_IDS.contains(userId)))
+                                .defaultIfEmpty(new AuthorizationDecision(false)))
                         .anyExchange().authenticated();
             }
         );
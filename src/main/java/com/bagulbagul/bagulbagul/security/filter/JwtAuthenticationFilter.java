@@ -1,7 +1,5 @@
 package com.bagulbagul.bagulbagul.security.filter;
 
-import com.bagulbagul.bagulbagul.security.exception.AccessTokenException;
-import com.bagulbagul.bagulbagul.security.exception.RefreshTokenException;
 import com.bagulbagul.bagulbagul.security.jwt.JwtCookieService;
 import com.bagulbagul.bagulbagul.security.jwt.JwtProvider;
 import lombok.RequiredArgsConstructor;
@@ -47,35 +45,21 @@ public class JwtAuthenticationFilter implements WebFilter {
         return filter;
     }
 
+    /*
+     * access token, refresh token 순서로 검증해서 userId 를 얻는다. 둘 다 실패하면 null
+     * 검증 결과는 JwtProvider 가 캐시하므로 재연결 시 같은 토큰의 검증을 반복하지 않는다.
+     */
     private Long authenticate(ServerHttpRequest request, ServerHttpResponse response) {
-        //AccessToken 추출
+        //AccessToken 검증 후 userId 추출 시도
         String accessToken = jwtCookieService.getAccessToken(request);
         log.debug("access token = {}", accessToken);
-
-        //AccessToken 검증 후 userId 추출 시도
-        try {
-            //access token이 없음
-            if(accessToken == null) {
-                throw new AccessTokenException();
-            }
-            //access token에서 userId를 추출해 반환
-            return jwtProvider.getUserIdFromAccessToken(accessToken);
+        Long userId = jwtProvider.findUserId(accessToken);
+        if(userId != null) {
+            return userId;
         }
         //실패 시 RefreshToken 검증 후 userId 추출 시도
-        catch (AccessTokenException ae) {
-            String refreshToken = jwtCookieService.getRefreshToken(request);
-            log.debug("refresh token = {}", refreshToken);
-            //RefreshToken 검증 후 userId 추출 시도
-            try {
-                if(refreshToken == null) {
-                    throw new RefreshTokenException();
-                }
-                return jwtProvider.getUserIdFromRefreshToken(refreshToken);
-            }
-            //RefreshToken도 없다면 인증 실패
-            catch (RefreshTokenException re) {
-                return null;
-            }
-        }
+        String refreshToken = jwtCookieService.getRefreshToken(request);
+        log.debug("refresh token = {}", refreshToken);
+        return jwtProvider.findUserId(refreshToken);
     }
 }
\ No newline at end of file
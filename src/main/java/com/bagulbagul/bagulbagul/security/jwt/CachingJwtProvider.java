@@ -0,0 +1,147 @@
+package com.bagulbagul.bagulbagul.security.jwt;
+
+import com.bagulbagul.bagulbagul.security.exception.AccessTokenException;
+import com.bagulbagul.bagulbagul.security.exception.RefreshTokenException;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.jsonwebtoken.JwtException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * 검증 결과를 캐시하는 JwtProvider.
+ * 재연결마다 같은 토큰을 다시 검증(HMAC, base64, json 파싱)하지 않도록 토큰의 SHA-256 digest 를 key 로 결과를 보관한다.
+ * - 성공한 결과는 토큰 만료 시각까지만 보관한다. 만료된 토큰을 캐시로 통과시키지 않는다.
+ * - 실패한 결과도 짧게 보관해서 잘못된 토큰으로 반복 요청해도 검증과 예외 생성을 반복하지 않는다.
+ * - 크기는 maxSize 로 제한하고 caffeine 의 W-TinyLFU 로 교체한다.
+ */
+public class CachingJwtProvider implements JwtProvider {
+
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private final JwtProviderImpl delegate;
+    private final Cache<TokenDigest, JwtVerification> verifications;
+
+    public CachingJwtProvider(JwtProviderImpl delegate, long maxSize, Duration invalidTtl) {
+        this.delegate = delegate;
+        long invalidTtlNanos = invalidTtl.toNanos();
+        this.verifications = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new Expiry<TokenDigest, JwtVerification>() {
+                    @Override
+                    public long expireAfterCreate(TokenDigest key, JwtVerification value, long currentTime) {
+                        if(!value.isValid()) {
+                            return invalidTtlNanos;
+                        }
+                        long remainMillis = value.getExpiresAtMillis() - System.currentTimeMillis();
+                        return TimeUnit.MILLISECONDS.toNanos(Math.max(0, remainMillis));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(TokenDigest key, JwtVerification value, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, value, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(TokenDigest key, JwtVerification value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
+
+    @Override
+    public Long findUserId(String token) {
+        if(token == null) {
+            return null;
+        }
+        JwtVerification verification = verifications.get(TokenDigest.of(token), key -> delegate.verify(token));
+        //캐시의 만료 처리는 다음 접근 시점까지 늦어질 수 있으므로 만료 시각을 한번 더 확인한다
+        if(!verification.isValid() || verification.getExpiresAtMillis() <= System.currentTimeMillis()) {
+            return null;
+        }
+        return verification.getUserId();
+    }
+
+    @Override
+    public Long getUserIdFromAccessToken(String accessToken) throws AccessTokenException {
+        if(accessToken == null) {
+            return null;
+        }
+        Long userId = findUserId(accessToken);
+        if(userId == null) {
+            throw new AccessTokenException();
+        }
+        return userId;
+    }
+
+    @Override
+    public Long getUserIdFromRefreshToken(String refreshToken) throws RefreshTokenException {
+        if(refreshToken == null) {
+            return null;
+        }
+        Long userId = findUserId(refreshToken);
+        if(userId == null) {
+            throw new RefreshTokenException();
+        }
+        return userId;
+    }
+
+    @Override
+    public String getSubject(String token) throws JwtException {
+        return delegate.getSubject(token);
+    }
+
+    /*
+     * 토큰 원문 대신 SHA-256 의 앞 128비트를 key 로 사용한다. 원문을 메모리에 들고 있지 않고 key 크기가 일정하다.
+     */
+    private static final class TokenDigest {
+        private final long high;
+        private final long low;
+
+        private TokenDigest(long high, long low) {
+            this.high = high;
+            this.low = low;
+        }
+
+        static TokenDigest of(String token) {
+            byte[] digest = SHA_256.get().digest(token.getBytes(StandardCharsets.US_ASCII));
+            return new TokenDigest(toLong(digest, 0), toLong(digest, 8));
+        }
+
+        private static long toLong(byte[] bytes, int offset) {
+            long value = 0;
+            for(int i = offset; i < offset + 8; i++) {
+                value = (value << 8) | (bytes[i] & 0xff);
+            }
+            return value;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(this == o) {
+                return true;
+            }
+            if(!(o instanceof TokenDigest other)) {
+                return false;
+            }
+            return high == other.high && low == other.low;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(high * 31 + low);
+        }
+    }
+}
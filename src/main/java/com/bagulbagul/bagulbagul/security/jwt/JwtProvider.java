@@ -8,5 +8,7 @@ public interface JwtProvider {
     Long getUserIdFromAccessToken(String accessToken) throws AccessTokenException;
     Long getUserIdFromRefreshToken(String refreshToken) throws RefreshTokenException;
     String getSubject(String token) throws JwtException;
+    //검증에 실패하면 예외 대신 null
+    Long findUserId(String token);
 }
 
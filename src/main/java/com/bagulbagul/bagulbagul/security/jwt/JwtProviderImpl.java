@@ -3,6 +3,7 @@ package com.bagulbagul.bagulbagul.security.jwt;
 import com.bagulbagul.bagulbagul.security.exception.AccessTokenException;
 import com.bagulbagul.bagulbagul.security.exception.RefreshTokenException;
 import io.jsonwebtoken.*;
+import java.util.Date;
 import javax.crypto.SecretKey;
 import javax.crypto.spec.SecretKeySpec;
 import lombok.Builder;
@@ -15,6 +16,8 @@ public class JwtProviderImpl implements JwtProvider {
     private final String SECRET_KEY_ALGORITHM;
 
     private SecretKey secretKey;
+    //parser 는 불변이고 thread-safe 하므로 한번만 만든다
+    private final JwtParser parser;
 
     @Builder
     private JwtProviderImpl(
@@ -25,6 +28,9 @@ public class JwtProviderImpl implements JwtProvider {
         this.SECRET_KEY_ALGORITHM = SECRET_KEY_ALGORITHM;
         byte[] decodedKey = SECRET_KEY_STRING.getBytes();
         this.secretKey = new SecretKeySpec(decodedKey, 0, decodedKey.length, SECRET_KEY_ALGORITHM);
+        this.parser = Jwts.parser()
+                .verifyWith(secretKey)
+                .build();
     }
 
     @Override
@@ -55,13 +61,45 @@ public class JwtProviderImpl implements JwtProvider {
         }
     }
 
+    @Override
+    public Long findUserId(String token) {
+        return verify(token).getUserId();
+    }
+
+    /*
+     * 토큰을 검증하고 userId 와 만료 시각을 반환한다. 실패해도 예외를 던지지 않는다.
+     * 점이 2개가 아닌 값은 jjwt 에 넘기지 않고 바로 실패 처리해서 예외 생성 비용을 피한다.
+     */
+    public JwtVerification verify(String token) {
+        if(token == null || !hasJwsShape(token)) {
+            return JwtVerification.INVALID;
+        }
+        try {
+            Claims claims = parser.parseSignedClaims(token).getPayload();
+            Date expiration = claims.getExpiration();
+            return JwtVerification.valid(
+                    Long.parseLong(claims.getSubject()),
+                    expiration == null ? Long.MAX_VALUE : expiration.getTime()
+            );
+        }
+        catch (JwtException | IllegalArgumentException ex) {
+            log.debug("Token Parse Error => {}", ex.toString());
+            return JwtVerification.INVALID;
+        }
+    }
+
     @Override
     public String getSubject(String token) throws JwtException {
-        Claims claims = Jwts.parser()
-                .verifyWith(secretKey)
-                .build()
-                .parseClaimsJws(token)
-                .getPayload();
+        Claims claims = parser.parseSignedClaims(token).getPayload();
         return claims.getSubject();
     }
+
+    private static boolean hasJwsShape(String token) {
+        int first = token.indexOf('.');
+        if(first <= 0) {
+            return false;
+        }
+        int second = token.indexOf('.', first + 1);
+        return second > first + 1 && second < token.length() - 1 && token.indexOf('.', second + 1) < 0;
+    }
 }
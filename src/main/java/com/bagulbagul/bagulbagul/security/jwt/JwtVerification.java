@@ -0,0 +1,35 @@
+package com.bagulbagul.bagulbagul.security.jwt;
+
+/*
+ * 토큰 검증 결과. 예외 대신 값으로 돌려준다.
+ */
+public class JwtVerification {
+
+    //검증 실패. 만료, 서명 불일치, 형식 오류를 구분하지 않는다.
+    public static final JwtVerification INVALID = new JwtVerification(null, 0);
+
+    private final Long userId;
+    //토큰 만료 시각(epoch 밀리초). 만료 시각이 없는 토큰은 Long.MAX_VALUE
+    private final long expiresAtMillis;
+
+    private JwtVerification(Long userId, long expiresAtMillis) {
+        this.userId = userId;
+        this.expiresAtMillis = expiresAtMillis;
+    }
+
+    public static JwtVerification valid(long userId, long expiresAtMillis) {
+        return new JwtVerification(userId, expiresAtMillis);
+    }
+
+    public boolean isValid() {
+        return userId != null;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public long getExpiresAtMillis() {
+        return expiresAtMillis;
+    }
+}
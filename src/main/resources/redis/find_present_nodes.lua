@@ -0,0 +1,12 @@
+-- 주어진 살아있는 노드들 중 userId 를 구독 중인 노드 목록을 반환한다.
+-- 살아있는 노드 목록은 호출하는 쪽이 먼저 읽고, 스크립트가 접근하는 key 는 모두 KEYS 로 받는다.
+-- KEYS[i] : i 번째 노드의 유저 set
+-- ARGV[1] : userId
+-- ARGV[1 + i] : i 번째 노드 id
+local present = {}
+for i, key in ipairs(KEYS) do
+    if redis.call('SISMEMBER', key, ARGV[1]) == 1 then
+        table.insert(present, ARGV[1 + i])
+    end
+end
+return present
@@ -0,0 +1,51 @@
+-- userId 를 구독 중인 노드의 inbox 채널에만 알람을 발행한다. 구독 중인 노드가 없으면 발행하지 않는다.
+-- offline inbox 가 주어지면 구독 중인 노드가 없을 때 봉투째로 유저의 list 에 보관한다.
+-- replay stream 이 주어지면 먼저 replay 로그에 id 를 제외한 봉투 전체를 기록하고 기록된 id 를 봉투에 싣는다.
+-- 살아있는 노드 목록은 호출하는 쪽이 먼저 읽고, 스크립트가 접근하는 key 는 모두 KEYS 로 받는다.
+-- KEYS[1..n] : 살아있는 노드별 유저 set (n = ARGV[9])
+-- KEYS[n + 1] : (ARGV[10] == '1') 유저의 replay stream key
+-- KEYS[#KEYS] : (ARGV[11] == '1') 유저의 offline inbox list key. 구독 중인 노드가 없으면 여기에 보관한다
+-- ARGV[1] : userId
+-- ARGV[2] : 노드 inbox 채널의 prefix
+-- ARGV[3] : 헤더 끝 표시를 제외한 봉투 헤더. text("@v1;u=<userId>;...;") 또는 binary(0xFF 0x02 ...)
+-- ARGV[4] : payload
+-- ARGV[5] : replay stream 최대 길이
+-- ARGV[6] : replay stream 만료 시간(초)
+-- ARGV[7] : offline inbox 최대 길이
+-- ARGV[8] : offline inbox 만료 시간(초)
+-- ARGV[9] : 노드 수 n
+-- ARGV[10] : replay 로그 기록 여부
+-- ARGV[11] : offline inbox 보관 여부
+-- ARGV[11 + i] : i 번째 노드 id
+local node_count = tonumber(ARGV[9])
+local header = ARGV[3]
+-- binary 봉투는 첫 byte 가 0xFF 이고 헤더 끝 표시는 0, text 봉투는 줄바꿈이다
+local binary = string.byte(header, 1) == 255
+local header_end = binary and string.char(0) or '\n'
+if ARGV[10] == '1' then
+    local stream = KEYS[node_count + 1]
+    local id = redis.call('XADD', stream, 'MAXLEN', '~', ARGV[5], '*', 'e', header .. header_end .. ARGV[4])
+    redis.call('EXPIRE', stream, ARGV[6])
+    if binary then
+        -- 알람 id 필드(key 42). stream id 는 128 byte 보다 짧으므로 길이는 1 byte
+        header = header .. string.char(42, #id) .. id
+    else
+        header = header .. 'i=' .. id
+    end
+end
+local message = header .. header_end .. ARGV[4]
+
+local published = 0
+for i = 1, node_count do
+    if redis.call('SISMEMBER', KEYS[i], ARGV[1]) == 1 then
+        redis.call('PUBLISH', ARGV[2] .. ARGV[11 + i], message)
+        published = published + 1
+    end
+end
+if published == 0 and ARGV[11] == '1' then
+    local inbox = KEYS[#KEYS]
+    redis.call('RPUSH', inbox, message)
+    redis.call('LTRIM', inbox, -tonumber(ARGV[7]), -1)
+    redis.call('EXPIRE', inbox, ARGV[8])
+end
+return published
@@ -0,0 +1,20 @@
+-- 알람을 유저의 replay stream 에 기록하고 기록된 id 를 봉투에 실어 pub/sub 으로 발행한다.
+-- stream 에는 id 를 제외한 봉투 전체를 저장해서 replay 할 때도 실시간 알람과 같은 필드(종류, 우선순위, coalesce key, 발행 시각)를 읽는다.
+-- KEYS[1] : 유저의 replay stream key
+-- ARGV[1] : 발행할 채널
+-- ARGV[2] : 헤더 끝 표시를 제외한 봉투 헤더. text("@v1;...;") 또는 binary(0xFF 0x02 ...)
+-- ARGV[3] : payload
+-- ARGV[4] : stream 최대 길이
+-- ARGV[5] : stream 만료 시간(초)
+-- binary 봉투는 첫 byte 가 0xFF 이고 헤더 끝 표시는 0, text 봉투는 줄바꿈이다
+local binary = string.byte(ARGV[2], 1) == 255
+local header_end = binary and string.char(0) or '\n'
+local id = redis.call('XADD', KEYS[1], 'MAXLEN', '~', ARGV[4], '*', 'e', ARGV[2] .. header_end .. ARGV[3])
+redis.call('EXPIRE', KEYS[1], ARGV[5])
+-- 알람 id 필드(key 42)의 길이는 1 byte 로 충분하다
+if binary then
+    redis.call('PUBLISH', ARGV[1], ARGV[2] .. string.char(42, #id) .. id .. header_end .. ARGV[3])
+else
+    redis.call('PUBLISH', ARGV[1], ARGV[2] .. 'i=' .. id .. header_end .. ARGV[3])
+end
+return id
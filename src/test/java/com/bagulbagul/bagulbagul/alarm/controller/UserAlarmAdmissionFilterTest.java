@@ -0,0 +1,95 @@
+package com.bagulbagul.bagulbagul.alarm.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.bagulbagul.bagulbagul.alarm.service.admission.UserAlarmAdmissionControl;
+import com.bagulbagul.bagulbagul.alarm.service.admission.UserAlarmReconnectDelay;
+import com.bagulbagul.bagulbagul.alarm.service.buffer.UserAlarmOverflowCounter;
+import com.bagulbagul.bagulbagul.alarm.service.metrics.UserAlarmMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+class UserAlarmAdmissionFilterTest {
+
+    private UserAlarmAdmissionControl admissionControl;
+    private UserAlarmAdmissionFilter filter;
+    private final AtomicBoolean passed = new AtomicBoolean();
+    private final WebFilterChain chain = exchange -> Mono.fromRunnable(() -> passed.set(true));
+
+    @BeforeEach
+    void setUp() {
+        admissionControl = new UserAlarmAdmissionControl(new UserAlarmMetrics(new SimpleMeterRegistry(), new UserAlarmOverflowCounter()));
+        ReflectionTestUtils.setField(admissionControl, "ENABLED", true);
+        ReflectionTestUtils.setField(admissionControl, "RATE_PER_SECOND", 1.0);
+        ReflectionTestUtils.setField(admissionControl, "BURST", 1);
+        ReflectionTestUtils.setField(admissionControl, "MAX_WAIT_MILLISECOND", 0L);
+        ReflectionTestUtils.setField(admissionControl, "MAX_WAITING", 0);
+        ReflectionTestUtils.invokeMethod(admissionControl, "init");
+        UserAlarmReconnectDelay reconnectDelay = new UserAlarmReconnectDelay();
+        ReflectionTestUtils.setField(reconnectDelay, "RETRY_MIN_MILLISECOND", 500L);
+        ReflectionTestUtils.setField(reconnectDelay, "RETRY_MAX_MILLISECOND", 500L);
+        filter = new UserAlarmAdmissionFilter(admissionControl, reconnectDelay);
+    }
+
+    @Test
+    @DisplayName("허용된 구독 요청은 다음 필터로 넘긴다")
+    void admit() {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/alarm/subscribe"));
+
+        filter.filter(exchange, chain).block();
+
+        assertThat(passed).isTrue();
+    }
+
+    @Test
+    @DisplayName("거절된 구독 요청은 다음 필터로 넘기지 않고 200 응답에 retry 프레임만 쓴다")
+    void reject() {
+        admissionControl.close();
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/alarm/subscribe"));
+
+        filter.filter(exchange, chain).block();
+
+        assertThat(passed).isFalse();
+        //에러 상태 코드를 받은 EventSource 는 재연결하지 않는다
+        assertThat(exchange.getResponse().getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(exchange.getResponse().getHeaders().getContentType()).isEqualTo(MediaType.TEXT_EVENT_STREAM);
+        assertThat(exchange.getResponse().getBodyAsString().block()).isEqualTo("retry:500\n\n");
+    }
+
+    @Test
+    @DisplayName("token 을 다 쓰면 다음 구독 요청은 거절한다")
+    void reject_after_burst() {
+        //모아둔 token 하나와 미리 가져가는 다음 token 하나
+        filter.filter(MockServerWebExchange.from(MockServerHttpRequest.get("/alarm/subscribe")), chain).block();
+        filter.filter(MockServerWebExchange.from(MockServerHttpRequest.get("/alarm/subscribe")), chain).block();
+        passed.set(false);
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/alarm/subscribe"));
+
+        filter.filter(exchange, chain).block();
+
+        assertThat(passed).isFalse();
+        assertThat(exchange.getResponse().getBodyAsString().block()).isEqualTo("retry:500\n\n");
+    }
+
+    @Test
+    @DisplayName("구독 요청이 아니면 token 을 쓰지 않고 넘긴다")
+    void skip_other_requests() {
+        admissionControl.close();
+
+        filter.filter(MockServerWebExchange.from(MockServerHttpRequest.get("/alarm/list")), chain).block();
+        assertThat(passed).isTrue();
+        passed.set(false);
+        filter.filter(MockServerWebExchange.from(MockServerHttpRequest.post("/alarm/subscribe")), chain).block();
+        assertThat(passed).isTrue();
+    }
+}
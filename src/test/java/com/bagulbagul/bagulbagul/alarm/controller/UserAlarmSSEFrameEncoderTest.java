@@ -0,0 +1,121 @@
+package com.bagulbagul.bagulbagul.alarm.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.bagulbagul.bagulbagul.alarm.service.admission.UserAlarmReconnectDelay;
+import com.bagulbagul.bagulbagul.alarm.service.message.UserAlarmMessage;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Publisher;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+
+class UserAlarmSSEFrameEncoderTest {
+
+    @Test
+    @DisplayName("한 줄 메세지는 data 줄 하나로 쓰고 본문의 일부만 가리키는 메세지는 그 부분만 쓴다")
+    void single_line() {
+        UserAlarmSSEFrameEncoder encoder = encoder("raw");
+        byte[] body = "xx새 알람yy".getBytes(StandardCharsets.UTF_8);
+        UserAlarmMessage message = UserAlarmMessage.builder()
+                .body(body)
+                .offset(2)
+                .length(body.length - 4)
+                .build();
+
+        assertThat(write(encoder.encode(message, DefaultDataBufferFactory.sharedInstance))).isEqualTo("data:새 알람\n\n");
+    }
+
+    @Test
+    @DisplayName("여러 줄 메세지는 \\n, \\r\\n, \\r 마다 data 줄을 나눈다")
+    void multi_line() {
+        UserAlarmSSEFrameEncoder encoder = encoder("raw");
+
+        String frame = write(encoder.encode(message("a\nb\r\nc\rd\n"), DefaultDataBufferFactory.sharedInstance));
+
+        assertThat(frame).isEqualTo("data:a\ndata:b\ndata:c\ndata:d\ndata:\n\n");
+    }
+
+    @Test
+    @DisplayName("replay id 가 있으면 id 줄을 프레임 앞에 쓴다")
+    void id_line() {
+        UserAlarmSSEFrameEncoder encoder = encoder("raw");
+        byte[] body = "a".getBytes(StandardCharsets.UTF_8);
+        UserAlarmMessage message = UserAlarmMessage.builder().body(body).length(body.length).id("1700000000000-0").build();
+
+        assertThat(write(encoder.encode(message, DefaultDataBufferFactory.sharedInstance))).isEqualTo("id:1700000000000-0\ndata:a\n\n");
+    }
+
+    @Test
+    @DisplayName("heartbeat 는 미리 인코딩한 프레임을 쓰고, 재연결 안내는 retry 와 reconnect 이벤트를 쓴다")
+    void heartbeat_and_reconnect() {
+        UserAlarmSSEFrameEncoder encoder = encoder("raw");
+
+        assertThat(write(encoder.encode(UserAlarmMessage.heartbeat("hb"), DefaultDataBufferFactory.sharedInstance))).isEqualTo("data:hb\n\n");
+        assertThat(write(encoder.encode(UserAlarmMessage.reconnect(), DefaultDataBufferFactory.sharedInstance)))
+                .isEqualTo("retry:500\nevent:reconnect\ndata:\n\n");
+    }
+
+    @Test
+    @DisplayName("json 형식은 payload 의 따옴표, 역슬래시, 줄바꿈, 제어 문자를 escape 해서 data 줄 하나로 쓴다")
+    void json_escape() {
+        UserAlarmSSEFrameEncoder encoder = encoder("json");
+        byte[] body = "say \"hi\"\\\n\t\u0001끝".getBytes(StandardCharsets.UTF_8);
+        UserAlarmMessage message = UserAlarmMessage.builder()
+                .body(body)
+                .length(body.length)
+                .id("1-0")
+                .type("COMMENT")
+                .priority(2)
+                .publishedAtMillis(1_700_000_000_000L)
+                .build()
+                .withSequence(7);
+
+        String frame = write(encoder.encode(message, DefaultDataBufferFactory.sharedInstance));
+
+        assertThat(frame).isEqualTo("id:1-0\n"
+                + "data:{\"id\":\"1-0\",\"seq\":7,\"type\":\"COMMENT\",\"priority\":2,\"createdAt\":1700000000000,"
+                + "\"payload\":\"say \\\"hi\\\"\\\\\\n\\t\\u0001끝\"}\n\n");
+    }
+
+    @Test
+    @DisplayName("여러 메세지를 묶으면 메세지마다 프레임을 이어 쓴다")
+    void batch() {
+        UserAlarmSSEFrameEncoder encoder = encoder("raw");
+
+        String frames = write(encoder.encodeBatch(List.of(message("a"), message("b\nc")), DefaultDataBufferFactory.sharedInstance));
+
+        assertThat(frames).isEqualTo("data:a\n\ndata:b\ndata:c\n\n");
+    }
+
+    private static UserAlarmSSEFrameEncoder encoder(String format) {
+        UserAlarmReconnectDelay reconnectDelay = new UserAlarmReconnectDelay();
+        ReflectionTestUtils.setField(reconnectDelay, "RETRY_MIN_MILLISECOND", 500L);
+        ReflectionTestUtils.setField(reconnectDelay, "RETRY_MAX_MILLISECOND", 500L);
+        UserAlarmSSEFrameEncoder encoder = new UserAlarmSSEFrameEncoder(reconnectDelay);
+        ReflectionTestUtils.setField(encoder, "HEARTBEAT_MESSAGE", "hb");
+        ReflectionTestUtils.setField(encoder, "SSE_FORMAT", format);
+        ReflectionTestUtils.invokeMethod(encoder, "init");
+        return encoder;
+    }
+
+    private static UserAlarmMessage message(String text) {
+        return UserAlarmMessage.of(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    //응답에 쓰이는 순서대로 이어붙인 프레임
+    private static String write(Publisher<DataBuffer> frame) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for(DataBuffer buffer : Flux.from(frame).collectList().block()) {
+            byte[] bytes = new byte[buffer.readableByteCount()];
+            buffer.read(bytes);
+            out.writeBytes(bytes);
+        }
+        return out.toString(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,132 @@
+package com.bagulbagul.bagulbagul.alarm.service.admission;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.bagulbagul.bagulbagul.alarm.service.buffer.UserAlarmOverflowCounter;
+import com.bagulbagul.bagulbagul.alarm.service.metrics.UserAlarmMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class UserAlarmAdmissionControlTest {
+
+    //초당 10개 -> token 하나에 100ms
+    private static final long INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private SimpleMeterRegistry meterRegistry;
+    private UserAlarmAdmissionControl admissionControl;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        admissionControl = admissionControl(true, 2, 250, 10);
+    }
+
+    @Test
+    @DisplayName("모아둔 token 을 다 쓰면 다음 token 이 채워지는 시각만큼 차례로 기다린다")
+    void burst_then_wait() {
+        assertThat(reserve(0)).isZero();
+        assertThat(reserve(0)).isZero();
+        //모아둔 token 이 없으면 다음 token 을 미리 가져가고 그 다음 요청이 밀린다
+        assertThat(reserve(0)).isZero();
+        assertThat(reserve(0)).isEqualTo(INTERVAL_NANOS);
+        assertThat(reserve(0)).isEqualTo(INTERVAL_NANOS * 2);
+    }
+
+    @Test
+    @DisplayName("기다려야 하는 시간이 max_wait 를 넘으면 거절한다")
+    void reject_over_max_wait() {
+        for(int i = 0; i < 5; i++) {
+            reserve(0);
+        }
+
+        //300ms 를 기다려야 한다
+        assertThat(reserve(0)).isEqualTo(-1);
+        //거절된 요청은 token 을 가져가지 않는다
+        assertThat(reserve(INTERVAL_NANOS)).isEqualTo(INTERVAL_NANOS * 2);
+    }
+
+    @Test
+    @DisplayName("기다리는 요청이 max_waiting 개를 넘으면 거절한다")
+    void reject_over_max_waiting() {
+        admissionControl = admissionControl(true, 0, 10_000, 2);
+        reserve(0);
+
+        assertThat(reserve(0)).isPositive();
+        assertThat(reserve(0)).isPositive();
+        assertThat(reserve(0)).isEqualTo(-1);
+    }
+
+    @Test
+    @DisplayName("지난 시간만큼 token 이 채워지고 burst 개를 넘게 모으지 않는다")
+    void refill_up_to_burst() {
+        for(int i = 0; i < 3; i++) {
+            reserve(0);
+        }
+
+        //1초 동안 10개가 채워지지만 2개까지만 모은다
+        long now = TimeUnit.SECONDS.toNanos(1);
+        assertThat(reserve(now)).isZero();
+        assertThat(reserve(now)).isZero();
+        assertThat(reserve(now)).isZero();
+        assertThat(reserve(now)).isEqualTo(INTERVAL_NANOS);
+    }
+
+    @Test
+    @DisplayName("꺼져 있으면 모두 허용하고 종료 중이면 모두 거절한다")
+    void disabled_and_closed() {
+        admissionControl = admissionControl(false, 0, 0, 0);
+        assertThat(admissionControl.admit().block()).isTrue();
+        assertThat(admissionControl.admit().block()).isTrue();
+
+        admissionControl.close();
+
+        assertThat(admissionControl.admit().block()).isFalse();
+        assertThat(meterRegistry.get("alarm.admission").tag("result", "rejected").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("차례가 오기 전에 끊긴 요청은 예약한 token 을 돌려준다")
+    void refund_cancelled() {
+        admissionControl = admissionControl(true, 0, 10_000, 10);
+        long now = System.nanoTime();
+        ReflectionTestUtils.setField(admissionControl, "nextFreeNanos", now + INTERVAL_NANOS * 10);
+
+        admissionControl.admit().subscribe().dispose();
+
+        assertThat((long) ReflectionTestUtils.getField(admissionControl, "nextFreeNanos")).isEqualTo(now + INTERVAL_NANOS * 10);
+        assertThat(ReflectionTestUtils.getField(admissionControl, "waiting")).hasToString("0");
+    }
+
+    @Test
+    @DisplayName("기다린 요청은 차례가 오면 허용된다")
+    void admit_after_wait() {
+        admissionControl = admissionControl(true, 0, 1000, 10);
+        ReflectionTestUtils.setField(admissionControl, "nextFreeNanos", System.nanoTime());
+
+        assertThat(admissionControl.admit().block()).isTrue();
+        assertThat(admissionControl.admit().block()).isTrue();
+        assertThat(meterRegistry.get("alarm.admission").tag("result", "deferred").counter().count()).isEqualTo(1);
+    }
+
+    private UserAlarmAdmissionControl admissionControl(boolean enabled, int burst, long maxWaitMillisecond, int maxWaiting) {
+        UserAlarmAdmissionControl control = new UserAlarmAdmissionControl(new UserAlarmMetrics(meterRegistry, new UserAlarmOverflowCounter()));
+        ReflectionTestUtils.setField(control, "ENABLED", enabled);
+        ReflectionTestUtils.setField(control, "RATE_PER_SECOND", 10.0);
+        ReflectionTestUtils.setField(control, "BURST", burst);
+        ReflectionTestUtils.setField(control, "MAX_WAIT_MILLISECOND", maxWaitMillisecond);
+        ReflectionTestUtils.setField(control, "MAX_WAITING", maxWaiting);
+        ReflectionTestUtils.invokeMethod(control, "init");
+        //시각을 직접 넘기는 테스트는 0 에서 시작한다
+        ReflectionTestUtils.setField(control, "nextFreeNanos", 0L);
+        return control;
+    }
+
+    //now 시각에 token 하나를 예약하고 기다려야 하는 시간을 받는다. 거절하면 -1
+    private long reserve(long now) {
+        return ReflectionTestUtils.<Long>invokeMethod(admissionControl, "reserve", now);
+    }
+}
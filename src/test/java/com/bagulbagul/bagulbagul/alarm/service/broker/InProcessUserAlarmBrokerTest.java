@@ -0,0 +1,86 @@
+package com.bagulbagul.bagulbagul.alarm.service.broker;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.bagulbagul.bagulbagul.alarm.service.buffer.UserAlarmOverflowCounter;
+import com.bagulbagul.bagulbagul.alarm.service.dispatch.UserAlarmDispatcher;
+import com.bagulbagul.bagulbagul.alarm.service.dispatch.UserAlarmTarget;
+import com.bagulbagul.bagulbagul.alarm.service.message.UserAlarmEnvelopeFormat;
+import com.bagulbagul.bagulbagul.alarm.service.message.UserAlarmHeader;
+import com.bagulbagul.bagulbagul.alarm.service.message.UserAlarmMessage;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.Disposable;
+import reactor.core.publisher.Sinks;
+import reactor.core.publisher.Sinks.Many;
+
+class InProcessUserAlarmBrokerTest {
+
+    private InProcessUserAlarmBroker broker;
+
+    @BeforeEach
+    void setUp() {
+        broker = new InProcessUserAlarmBroker(new UserAlarmDispatcher(new UserAlarmOverflowCounter()));
+        ReflectionTestUtils.setField(broker, "LANE_COUNT", 2);
+        ReflectionTestUtils.invokeMethod(broker, "init");
+    }
+
+    @AfterEach
+    void tearDown() {
+        ReflectionTestUtils.invokeMethod(broker, "destroy");
+    }
+
+    @Test
+    @DisplayName("채널의 구독자에게 봉투를 벗긴 메세지를 발행 순서대로 전달한다")
+    void publish_to_subscribers_in_order() {
+        Many<UserAlarmMessage> sink = Sinks.many().multicast().onBackpressureBuffer(16, false);
+        broker.subscribe("alarm:1", new UserAlarmTarget(1L, sink));
+
+        broker.publish("alarm:1", UserAlarmEnvelopeFormat.V2.encode(UserAlarmHeader.builder().build(), bytes("a")));
+        broker.publish("alarm:1", bytes("b"));
+        broker.publish("alarm:2", bytes("c"));
+
+        List<String> received = sink.asFlux()
+                .map(UserAlarmMessage::getText)
+                .take(2)
+                .collectList()
+                .block(Duration.ofSeconds(5));
+        assertThat(received).containsExactly("a", "b");
+    }
+
+    @Test
+    @DisplayName("구독을 해제하면 더 이상 전달하지 않고, 공유 채널은 router 로 본문을 그대로 전달한다")
+    void unsubscribe_and_route() throws InterruptedException {
+        Many<UserAlarmMessage> sink = Sinks.many().multicast().onBackpressureBuffer(16, false);
+        Disposable subscription = broker.subscribe("alarm:1", new UserAlarmTarget(1L, sink));
+        subscription.dispose();
+
+        CountDownLatch routed = new CountDownLatch(1);
+        List<String> bodies = new CopyOnWriteArrayList<>();
+        broker.subscribe(List.of("alarm_shard:0"), body -> {
+            bodies.add(new String(body, StandardCharsets.UTF_8));
+            routed.countDown();
+        });
+
+        broker.publish("alarm:1", bytes("dropped"));
+        broker.publish("alarm_shard:0", bytes("routed"));
+
+        assertThat(routed.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(bodies).containsExactly("routed");
+        sink.tryEmitComplete();
+        assertThat(sink.asFlux().collectList().block(Duration.ofSeconds(5))).isEmpty();
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
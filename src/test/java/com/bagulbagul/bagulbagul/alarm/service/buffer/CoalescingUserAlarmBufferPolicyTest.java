@@ -0,0 +1,55 @@
+package com.bagulbagul.bagulbagul.alarm.service.buffer;
+
+import static com.bagulbagul.bagulbagul.alarm.service.buffer.UserAlarmBufferTestSupport.message;
+import static com.bagulbagul.bagulbagul.alarm.service.buffer.UserAlarmBufferTestSupport.texts;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.bagulbagul.bagulbagul.alarm.service.UserAlarmConnection;
+import com.bagulbagul.bagulbagul.alarm.service.buffer.UserAlarmBufferTestSupport.RequestingSubscriber;
+import com.bagulbagul.bagulbagul.alarm.service.message.UserAlarmMessage;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Sinks;
+import reactor.core.publisher.Sinks.Many;
+
+class CoalescingUserAlarmBufferPolicyTest {
+
+    @Test
+    @DisplayName("전달되지 않은 같은 key 의 알람은 최신 것으로 대체되고 순서는 유지된다")
+    void coalesce_same_key() {
+        UserAlarmOverflowCounter counter = new UserAlarmOverflowCounter();
+        Many<UserAlarmMessage> source = Sinks.many().unicast().onBackpressureBuffer();
+        RequestingSubscriber<UserAlarmMessage> subscriber = new RequestingSubscriber<>();
+        new CoalescingUserAlarmBufferPolicy(16, counter).apply(source.asFlux(), new UserAlarmConnection(1L)).subscribe(subscriber);
+
+        source.tryEmitNext(message("count=1", "unread"));
+        source.tryEmitNext(message("hello", null));
+        source.tryEmitNext(message("count=2", "unread"));
+        source.tryEmitNext(message("count=3", "unread"));
+        subscriber.request(10);
+
+        assertThat(texts(subscriber.received)).containsExactly("count=3", "hello");
+        assertThat(counter.getCoalesced()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("버퍼가 가득 차면 가장 오래된 알람을 버리고 센다")
+    void drop_oldest_on_overflow() {
+        UserAlarmOverflowCounter counter = new UserAlarmOverflowCounter();
+        Many<UserAlarmMessage> source = Sinks.many().unicast().onBackpressureBuffer();
+        RequestingSubscriber<UserAlarmMessage> subscriber = new RequestingSubscriber<>();
+        new CoalescingUserAlarmBufferPolicy(2, counter).apply(source.asFlux(), new UserAlarmConnection(1L)).subscribe(subscriber);
+
+        source.tryEmitNext(message("a", null));
+        source.tryEmitNext(message("b", null));
+        source.tryEmitNext(message("c", null));
+        subscriber.request(10);
+        //요청이 남아있으면 버퍼를 거치지 않고 바로 전달된다
+        source.tryEmitNext(message("d", null));
+        source.tryEmitComplete();
+
+        assertThat(texts(subscriber.received)).containsExactly("b", "c", "d");
+        assertThat(subscriber.completed).isTrue();
+        assertThat(counter.getDroppedOldest()).isEqualTo(1);
+    }
+}
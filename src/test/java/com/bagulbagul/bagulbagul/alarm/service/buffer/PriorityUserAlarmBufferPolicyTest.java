@@ -0,0 +1,82 @@
+package com.bagulbagul.bagulbagul.alarm.service.buffer;
+
+import static com.bagulbagul.bagulbagul.alarm.service.buffer.UserAlarmBufferTestSupport.message;
+import static com.bagulbagul.bagulbagul.alarm.service.buffer.UserAlarmBufferTestSupport.texts;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.bagulbagul.bagulbagul.alarm.service.UserAlarmConnection;
+import com.bagulbagul.bagulbagul.alarm.service.buffer.PriorityUserAlarmBufferPolicy.Lane;
+import com.bagulbagul.bagulbagul.alarm.service.buffer.PriorityUserAlarmBufferPolicy.Overflow;
+import com.bagulbagul.bagulbagul.alarm.service.buffer.UserAlarmBufferTestSupport.RequestingSubscriber;
+import com.bagulbagul.bagulbagul.alarm.service.message.UserAlarmMessage;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Sinks;
+import reactor.core.publisher.Sinks.Many;
+
+class PriorityUserAlarmBufferPolicyTest {
+
+    @Test
+    @DisplayName("급한 알람은 먼저 쌓인 대량 알람보다 먼저 나가고, 밀린 알람은 starvationLimit 마다 하나씩 나간다")
+    void high_first_without_starvation() {
+        UserAlarmOverflowCounter counter = new UserAlarmOverflowCounter();
+        Many<UserAlarmMessage> source = Sinks.many().unicast().onBackpressureBuffer();
+        RequestingSubscriber<UserAlarmMessage> subscriber = new RequestingSubscriber<>();
+        PriorityUserAlarmBufferPolicy policy = new PriorityUserAlarmBufferPolicy(
+                new Lane(16, Overflow.DROP_OLDEST), new Lane(16, Overflow.DROP_OLDEST), new Lane(16, Overflow.DROP_OLDEST), 2, counter);
+        policy.apply(source.asFlux(), new UserAlarmConnection(1L)).subscribe(subscriber);
+
+        source.tryEmitNext(message("bulk1", -1, null));
+        source.tryEmitNext(message("bulk2", -1, null));
+        source.tryEmitNext(message("normal", 0, null));
+        source.tryEmitNext(message("urgent1", 1, null));
+        source.tryEmitNext(message("urgent2", 1, null));
+        source.tryEmitNext(message("urgent3", 1, null));
+        subscriber.request(10);
+
+        assertThat(texts(subscriber.received)).containsExactly("urgent1", "urgent2", "normal", "bulk1", "urgent3", "bulk2");
+    }
+
+    @Test
+    @DisplayName("우선순위마다 정한 정책으로 넘친 알람을 버린다")
+    void overflow_per_lane() {
+        UserAlarmOverflowCounter counter = new UserAlarmOverflowCounter();
+        Many<UserAlarmMessage> source = Sinks.many().unicast().onBackpressureBuffer();
+        RequestingSubscriber<UserAlarmMessage> subscriber = new RequestingSubscriber<>();
+        PriorityUserAlarmBufferPolicy policy = new PriorityUserAlarmBufferPolicy(
+                new Lane(1, Overflow.DROP_NEWEST), new Lane(4, Overflow.DROP_OLDEST), new Lane(1, Overflow.COALESCE), 8, counter);
+        policy.apply(source.asFlux(), new UserAlarmConnection(1L)).subscribe(subscriber);
+
+        source.tryEmitNext(message("urgent1", 1, null));
+        source.tryEmitNext(message("urgent2", 1, null));
+        source.tryEmitNext(message("count=1", -1, "unread"));
+        source.tryEmitNext(message("count=2", -1, "unread"));
+        source.tryEmitNext(message("normal", 0, null));
+        subscriber.request(10);
+        source.tryEmitComplete();
+
+        assertThat(texts(subscriber.received)).containsExactly("urgent1", "normal", "count=2");
+        assertThat(subscriber.completed).isTrue();
+        assertThat(counter.getDroppedNewest()).isEqualTo(1);
+        assertThat(counter.getCoalesced()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("밀린 heartbeat 는 하나로 합치고 버린 알람으로 세지 않는다")
+    void heartbeat_is_not_counted_as_coalesced() {
+        UserAlarmOverflowCounter counter = new UserAlarmOverflowCounter();
+        Many<UserAlarmMessage> source = Sinks.many().unicast().onBackpressureBuffer();
+        RequestingSubscriber<UserAlarmMessage> subscriber = new RequestingSubscriber<>();
+        PriorityUserAlarmBufferPolicy policy = new PriorityUserAlarmBufferPolicy(
+                new Lane(4, Overflow.DROP_OLDEST), new Lane(4, Overflow.DROP_OLDEST), new Lane(4, Overflow.COALESCE), 8, counter);
+        policy.apply(source.asFlux(), new UserAlarmConnection(1L)).subscribe(subscriber);
+
+        source.tryEmitNext(UserAlarmMessage.heartbeat("hb"));
+        source.tryEmitNext(message("normal", 0, null));
+        source.tryEmitNext(UserAlarmMessage.heartbeat("hb"));
+        subscriber.request(10);
+
+        assertThat(texts(subscriber.received)).containsExactly("hb", "normal");
+        assertThat(counter.getCoalesced()).isZero();
+    }
+}
@@ -0,0 +1,67 @@
+package com.bagulbagul.bagulbagul.alarm.service.buffer;
+
+import static com.bagulbagul.bagulbagul.alarm.service.buffer.UserAlarmBufferTestSupport.message;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.bagulbagul.bagulbagul.alarm.service.buffer.UserAlarmBufferTestSupport.RequestingSubscriber;
+import com.bagulbagul.bagulbagul.alarm.service.message.UserAlarmMessage;
+import java.time.Duration;
+import java.util.List;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Sinks;
+import reactor.core.publisher.Sinks.Many;
+import reactor.core.scheduler.Schedulers;
+
+class UserAlarmBatcherTest {
+
+    @Test
+    @DisplayName("쉬고 있던 연결의 알람은 기다리지 않고 바로 나간다")
+    void lone_message_is_not_delayed() {
+        Many<UserAlarmMessage> source = Sinks.many().unicast().onBackpressureBuffer();
+        RequestingSubscriber<List<UserAlarmMessage>> subscriber = new RequestingSubscriber<>();
+        new UserAlarmBatcher(8, Duration.ofMinutes(1), Schedulers.immediate()).apply(source.asFlux()).subscribe(subscriber);
+        subscriber.request(10);
+
+        source.tryEmitNext(message("a"));
+
+        assertThat(subscriber.received).extracting(UserAlarmBufferTestSupport::texts).containsExactly(List.of("a"));
+    }
+
+    @Test
+    @DisplayName("알람이 몰리면 maxSize 만큼 모아서 한번에 내보낸다")
+    void burst_is_batched_up_to_max_size() {
+        Many<UserAlarmMessage> source = Sinks.many().unicast().onBackpressureBuffer();
+        RequestingSubscriber<List<UserAlarmMessage>> subscriber = new RequestingSubscriber<>();
+        new UserAlarmBatcher(3, Duration.ofMinutes(1), Schedulers.parallel()).apply(source.asFlux()).subscribe(subscriber);
+        subscriber.request(10);
+
+        source.tryEmitNext(message("a"));
+        source.tryEmitNext(message("b"));
+        source.tryEmitNext(message("c"));
+        source.tryEmitNext(message("d"));
+        //maxDelay 가 남아있어도 upstream 이 끝나면 남은 알람을 내보낸다
+        source.tryEmitNext(message("e"));
+        source.tryEmitComplete();
+
+        assertThat(subscriber.received).extracting(UserAlarmBufferTestSupport::texts).containsExactly(List.of("a"), List.of("b", "c", "d"), List.of("e"));
+        assertThat(subscriber.completed).isTrue();
+    }
+
+    @Test
+    @DisplayName("요청이 없는 동안 온 알람은 다음 요청에 한번에 나간다")
+    void pending_messages_are_batched_on_next_request() {
+        Many<UserAlarmMessage> source = Sinks.many().unicast().onBackpressureBuffer();
+        RequestingSubscriber<List<UserAlarmMessage>> subscriber = new RequestingSubscriber<>();
+        new UserAlarmBatcher(8, Duration.ZERO, Schedulers.immediate()).apply(source.asFlux()).subscribe(subscriber);
+
+        source.tryEmitNext(message("a"));
+        source.tryEmitNext(message("b"));
+        source.tryEmitNext(message("c"));
+        subscriber.request(1);
+        source.tryEmitNext(message("d"));
+        subscriber.request(1);
+
+        assertThat(subscriber.received).extracting(UserAlarmBufferTestSupport::texts).containsExactly(List.of("a", "b", "c"), List.of("d"));
+    }
+}
@@ -0,0 +1,54 @@
+package com.bagulbagul.bagulbagul.alarm.service.buffer;
+
+import com.bagulbagul.bagulbagul.alarm.service.message.UserAlarmMessage;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.reactivestreams.Subscription;
+import reactor.core.publisher.BaseSubscriber;
+
+/*
+버퍼 정책 테스트에서 같이 쓰는 알람 생성, 구독자
+ */
+final class UserAlarmBufferTestSupport {
+
+    private UserAlarmBufferTestSupport() {
+    }
+
+    static UserAlarmMessage message(String text) {
+        return UserAlarmMessage.of(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static UserAlarmMessage message(String text, String coalesceKey) {
+        return message(text, 0, coalesceKey);
+    }
+
+    static UserAlarmMessage message(String text, int priority, String coalesceKey) {
+        byte[] body = text.getBytes(StandardCharsets.UTF_8);
+        return UserAlarmMessage.builder().body(body).length(body.length).coalesceKey(coalesceKey).priority(priority).build();
+    }
+
+    static List<String> texts(List<UserAlarmMessage> messages) {
+        return messages.stream().map(UserAlarmMessage::getText).toList();
+    }
+
+    //처음에는 요청하지 않고 request 를 호출할 때만 요청하는 구독자
+    static class RequestingSubscriber<T> extends BaseSubscriber<T> {
+        final List<T> received = new ArrayList<>();
+        boolean completed;
+
+        @Override
+        protected void hookOnSubscribe(Subscription subscription) {
+        }
+
+        @Override
+        protected void hookOnNext(T value) {
+            received.add(value);
+        }
+
+        @Override
+        protected void hookOnComplete() {
+            completed = true;
+        }
+    }
+}
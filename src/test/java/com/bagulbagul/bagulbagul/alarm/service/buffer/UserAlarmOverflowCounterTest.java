@@ -0,0 +1,116 @@
+package com.bagulbagul.bagulbagul.alarm.service.buffer;
+
+import static com.bagulbagul.bagulbagul.alarm.service.buffer.UserAlarmBufferTestSupport.message;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.bagulbagul.bagulbagul.alarm.service.message.UserAlarmMessage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.core.publisher.Sinks.EmitFailureHandler;
+import reactor.core.publisher.Sinks.EmitResult;
+import reactor.core.publisher.Sinks.Many;
+
+class UserAlarmOverflowCounterTest {
+
+    @Test
+    @DisplayName("다른 스레드와 겹쳐서 실패하면 다시 보낸다")
+    void retry_non_serialized() {
+        UserAlarmOverflowCounter counter = new UserAlarmOverflowCounter();
+        ContendedSink sink = new ContendedSink(3);
+
+        counter.emit(1L, sink, message("a"));
+
+        assertThat(sink.emitted).containsExactly("a");
+        assertThat(counter.getEmitResultCount(EmitResult.OK)).isEqualTo(1);
+        assertThat(counter.getSinkContended()).isZero();
+    }
+
+    @Test
+    @DisplayName("계속 겹치면 정해진 시간 뒤에 알람을 세고 버린다")
+    void give_up_when_contended() {
+        UserAlarmOverflowCounter counter = new UserAlarmOverflowCounter();
+        ContendedSink sink = new ContendedSink(Integer.MAX_VALUE);
+
+        counter.emit(1L, sink, message("a"));
+
+        assertThat(sink.emitted).isEmpty();
+        assertThat(counter.getEmitResultCount(EmitResult.FAIL_NON_SERIALIZED)).isEqualTo(1);
+        assertThat(counter.getSinkContended()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("sink 가 넘치면 재시도 없이 세고 버린다")
+    void overflow() {
+        UserAlarmOverflowCounter counter = new UserAlarmOverflowCounter();
+        Many<UserAlarmMessage> sink = Sinks.many().unicast().onBackpressureBuffer(new ArrayBlockingQueue<>(1));
+
+        counter.emit(1L, sink, message("a"));
+        counter.emit(1L, sink, message("b"));
+
+        assertThat(counter.getSinkRejected()).isEqualTo(1);
+        assertThat(counter.getSinkContended()).isZero();
+    }
+
+    //처음 failures 번은 FAIL_NON_SERIALIZED 를 돌려주는 sink
+    private static class ContendedSink implements Many<UserAlarmMessage> {
+        private final List<String> emitted = new ArrayList<>();
+        private int failures;
+
+        ContendedSink(int failures) {
+            this.failures = failures;
+        }
+
+        @Override
+        public EmitResult tryEmitNext(UserAlarmMessage message) {
+            if(failures > 0) {
+                failures--;
+                return EmitResult.FAIL_NON_SERIALIZED;
+            }
+            emitted.add(message.getText());
+            return EmitResult.OK;
+        }
+
+        @Override
+        public EmitResult tryEmitComplete() {
+            return EmitResult.OK;
+        }
+
+        @Override
+        public EmitResult tryEmitError(Throwable error) {
+            return EmitResult.OK;
+        }
+
+        @Override
+        public void emitNext(UserAlarmMessage message, EmitFailureHandler failureHandler) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void emitComplete(EmitFailureHandler failureHandler) {
+        }
+
+        @Override
+        public void emitError(Throwable error, EmitFailureHandler failureHandler) {
+        }
+
+        @Override
+        public int currentSubscriberCount() {
+            return 1;
+        }
+
+        @Override
+        public Flux<UserAlarmMessage> asFlux() {
+            return Flux.empty();
+        }
+
+        @Override
+        public Object scanUnsafe(Attr key) {
+            return null;
+        }
+    }
+}
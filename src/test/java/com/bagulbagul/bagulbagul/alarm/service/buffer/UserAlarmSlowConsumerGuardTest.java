@@ -0,0 +1,75 @@
+package com.bagulbagul.bagulbagul.alarm.service.buffer;
+
+import static com.bagulbagul.bagulbagul.alarm.service.buffer.UserAlarmBufferTestSupport.message;
+import static com.bagulbagul.bagulbagul.alarm.service.buffer.UserAlarmBufferTestSupport.texts;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.bagulbagul.bagulbagul.alarm.service.UserAlarmConnection;
+import com.bagulbagul.bagulbagul.alarm.service.buffer.UserAlarmBufferTestSupport.RequestingSubscriber;
+import com.bagulbagul.bagulbagul.alarm.service.message.UserAlarmMessage;
+import com.bagulbagul.bagulbagul.alarm.service.metrics.UserAlarmMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Sinks;
+import reactor.core.publisher.Sinks.Many;
+
+class UserAlarmSlowConsumerGuardTest {
+
+    @Test
+    @DisplayName("high watermark 를 넘은 채로 머무르는 연결은 끊도록 표시된다")
+    void evict_slow_consumer() {
+        UserAlarmConnection connection = new UserAlarmConnection(1L);
+        Many<UserAlarmMessage> source = Sinks.many().unicast().onBackpressureBuffer();
+        subscribe(guard(2, 0, 0), connection, source);
+        AtomicBoolean evicted = new AtomicBoolean();
+        connection.evicted().subscribe(null, null, () -> evicted.set(true));
+
+        source.tryEmitNext(message("a"));
+        source.tryEmitNext(message("b"));
+        assertThat(evicted).isFalse();
+        source.tryEmitNext(message("c"));
+
+        assertThat(connection.isEvicted()).isTrue();
+        assertThat(evicted).isTrue();
+    }
+
+    @Test
+    @DisplayName("low watermark 아래로 내려가면 다시 정상 연결로 본다")
+    void recover_below_low_watermark() {
+        UserAlarmConnection connection = new UserAlarmConnection(1L);
+        Many<UserAlarmMessage> source = Sinks.many().unicast().onBackpressureBuffer();
+        RequestingSubscriber<UserAlarmMessage> subscriber = subscribe(guard(2, 0, 60_000), connection, source);
+
+        source.tryEmitNext(message("a"));
+        source.tryEmitNext(message("b"));
+        assertThat(connection.getAboveHighWatermarkSinceNanos()).isPositive();
+        subscriber.request(10);
+
+        assertThat(texts(subscriber.received)).containsExactly("a", "b");
+        assertThat(connection.getQueued()).isZero();
+        assertThat(connection.getAboveHighWatermarkSinceNanos()).isZero();
+        assertThat(connection.isEvicted()).isFalse();
+    }
+
+    private static UserAlarmSlowConsumerGuard guard(int highWatermark, int lowWatermark, long evictAfterMillisecond) {
+        UserAlarmSlowConsumerGuard guard = new UserAlarmSlowConsumerGuard(
+                new UserAlarmMetrics(new SimpleMeterRegistry(), new UserAlarmOverflowCounter())
+        );
+        ReflectionTestUtils.setField(guard, "ENABLED", true);
+        ReflectionTestUtils.setField(guard, "HIGH_WATERMARK", highWatermark);
+        ReflectionTestUtils.setField(guard, "LOW_WATERMARK", lowWatermark);
+        ReflectionTestUtils.setField(guard, "EVICT_AFTER_MILLISECOND", evictAfterMillisecond);
+        return guard;
+    }
+
+    private static RequestingSubscriber<UserAlarmMessage> subscribe(UserAlarmSlowConsumerGuard guard, UserAlarmConnection connection, Many<UserAlarmMessage> source) {
+        UserAlarmBufferPolicy bufferPolicy = new DropUserAlarmBufferPolicy(8, BufferOverflowStrategy.DROP_OLDEST, new UserAlarmOverflowCounter());
+        RequestingSubscriber<UserAlarmMessage> subscriber = new RequestingSubscriber<>();
+        guard.outbound(connection, bufferPolicy.apply(guard.inbound(connection, source.asFlux()), connection)).subscribe(subscriber);
+        return subscriber;
+    }
+}
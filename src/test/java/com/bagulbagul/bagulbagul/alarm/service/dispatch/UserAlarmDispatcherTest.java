@@ -0,0 +1,104 @@
+package com.bagulbagul.bagulbagul.alarm.service.dispatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.bagulbagul.bagulbagul.alarm.service.buffer.UserAlarmOverflowCounter;
+import com.bagulbagul.bagulbagul.alarm.service.message.UserAlarmMessage;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Sinks;
+import reactor.core.publisher.Sinks.EmitResult;
+import reactor.core.publisher.Sinks.Many;
+
+class UserAlarmDispatcherTest {
+
+    private UserAlarmOverflowCounter counter;
+    private UserAlarmDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() {
+        counter = new UserAlarmOverflowCounter();
+        dispatcher = new UserAlarmDispatcher(counter);
+        ReflectionTestUtils.setField(dispatcher, "ENABLED", true);
+        ReflectionTestUtils.setField(dispatcher, "LANE_COUNT", 2);
+        ReflectionTestUtils.invokeMethod(dispatcher, "init");
+    }
+
+    @AfterEach
+    void tearDown() {
+        ReflectionTestUtils.invokeMethod(dispatcher, "destroy");
+    }
+
+    @Test
+    @DisplayName("한 스레드가 보낸 알람은 보낸 순서대로 1 부터 순번을 붙여 전달한다")
+    void ordered_with_sequence() {
+        Many<UserAlarmMessage> sink = Sinks.many().multicast().onBackpressureBuffer(16, false);
+        UserAlarmTarget target = new UserAlarmTarget(1L, sink);
+
+        dispatcher.dispatch(target, message("a"));
+        dispatcher.dispatch(target, message("b"));
+        dispatcher.dispatch(target, message("c"));
+
+        List<String> received = sink.asFlux()
+                .map(message -> message.getSequence() + ":" + message.getText())
+                .take(3)
+                .collectList()
+                .block(Duration.ofSeconds(5));
+        assertThat(received).containsExactly("1:a", "2:b", "3:c");
+    }
+
+    @Test
+    @DisplayName("여러 스레드가 같은 유저에게 동시에 보내도 sink 에 겹쳐 쓰지 않고 순번이 빠지지 않는다")
+    void concurrent_producers_serialized() throws InterruptedException {
+        int producers = 4;
+        int perProducer = 500;
+        Many<UserAlarmMessage> sink = Sinks.many().multicast().onBackpressureBuffer(producers * perProducer, false);
+        UserAlarmTarget target = new UserAlarmTarget(1L, sink);
+
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        CountDownLatch start = new CountDownLatch(1);
+        for(int p = 0; p < producers; p++) {
+            executor.execute(() -> {
+                try {
+                    start.await();
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for(int i = 0; i < perProducer; i++) {
+                    dispatcher.dispatch(target, message("m"));
+                }
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertThat(executor.awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+
+        List<Long> sequences = sink.asFlux()
+                .map(UserAlarmMessage::getSequence)
+                .take(producers * perProducer)
+                .collectList()
+                .block(Duration.ofSeconds(5));
+        assertThat(sequences).hasSize(producers * perProducer);
+        for(int i = 0; i < sequences.size(); i++) {
+            assertThat(sequences.get(i)).isEqualTo(i + 1L);
+        }
+        assertThat(counter.getEmitResultCount(EmitResult.OK)).isEqualTo(producers * perProducer);
+    }
+
+    private static UserAlarmMessage message(String text) {
+        byte[] body = text.getBytes(StandardCharsets.UTF_8);
+        return UserAlarmMessage.of(body);
+    }
+}
@@ -0,0 +1,37 @@
+package com.bagulbagul.bagulbagul.alarm.service.group;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class InProcessUserAlarmGroupDirectoryTest {
+
+    @Test
+    @DisplayName("구성원 중 이 노드에 연결된 유저만 찾고 탈퇴한 유저는 제외한다")
+    void connected_members() {
+        InProcessUserAlarmGroupDirectory groupDirectory = new InProcessUserAlarmGroupDirectory();
+        groupDirectory.join("event1", 1L);
+        groupDirectory.join("event1", 2L);
+        groupDirectory.join("event1", 3L);
+        groupDirectory.join("event2", 4L);
+        groupDirectory.leave("event1", 2L);
+
+        assertThat(groupDirectory.connectedMembers("event1", userId -> userId != 3L, List::of).collectList().block()).containsExactly(1L);
+        assertThat(groupDirectory.connectedMembers("none", userId -> true, List::of).collectList().block()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("구성원이 모두 탈퇴한 group 은 지운다")
+    void remove_empty_group() {
+        InProcessUserAlarmGroupDirectory groupDirectory = new InProcessUserAlarmGroupDirectory();
+        groupDirectory.join("event1", 1L);
+        groupDirectory.leave("event1", 1L);
+        groupDirectory.leave("event1", 1L);
+
+        assertThat((Map<?, ?>) ReflectionTestUtils.getField(groupDirectory, "members")).isEmpty();
+    }
+}
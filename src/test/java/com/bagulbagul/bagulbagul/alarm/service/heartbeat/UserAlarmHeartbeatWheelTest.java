@@ -0,0 +1,109 @@
+package com.bagulbagul.bagulbagul.alarm.service.heartbeat;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.bagulbagul.bagulbagul.alarm.service.UserAlarmConnection;
+import com.bagulbagul.bagulbagul.alarm.service.buffer.UserAlarmOverflowCounter;
+import com.bagulbagul.bagulbagul.alarm.service.message.UserAlarmMessage;
+import com.bagulbagul.bagulbagul.alarm.service.metrics.UserAlarmMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.Disposable;
+
+class UserAlarmHeartbeatWheelTest {
+
+    //3초 간격, 1초 tick -> bucket 3개
+    private static final int BUCKETS = 3;
+
+    private UserAlarmHeartbeatWheel wheel;
+
+    @BeforeEach
+    void setUp() {
+        wheel = new UserAlarmHeartbeatWheel(new UserAlarmMetrics(new SimpleMeterRegistry(), new UserAlarmOverflowCounter()));
+        ReflectionTestUtils.setField(wheel, "HEARTBEAT_INTERVAL_SECOND", BUCKETS);
+        ReflectionTestUtils.setField(wheel, "HEARTBEAT_MESSAGE", "hb");
+        ReflectionTestUtils.setField(wheel, "TICK_MILLISECOND", 1000L);
+        //타이머 없이 tick 을 직접 호출한다
+        wheel.createBuckets();
+    }
+
+    @Test
+    @DisplayName("새 연결은 한 바퀴가 지난 뒤 자기 bucket 차례마다 heartbeat 를 받는다")
+    void tick_once_per_round() {
+        List<UserAlarmMessage> received = new CopyOnWriteArrayList<>();
+        wheel.heartbeats(new IdleConnection()).subscribe(received::add);
+
+        tick(BUCKETS - 1);
+        assertThat(received).isEmpty();
+        tick(1);
+        assertThat(received).hasSize(1);
+        assertThat(received.get(0).isHeartbeat()).isTrue();
+        assertThat(received.get(0)).isSameAs(wheel.getHeartbeatMessage());
+
+        tick(BUCKETS);
+        assertThat(received).hasSize(2);
+    }
+
+    @Test
+    @DisplayName("구독을 끊은 연결은 heartbeat 를 받지 않고 자기 차례에 wheel 에서 빠진다")
+    void cancel() {
+        List<UserAlarmMessage> received = new CopyOnWriteArrayList<>();
+        UserAlarmConnection connection = new IdleConnection();
+        Disposable subscription = wheel.heartbeats(connection).subscribe(received::add);
+        tick(1);
+        assertThat(connectionsInWheel()).isEqualTo(1);
+
+        subscription.dispose();
+        assertThat(connection.isClosed()).isTrue();
+        tick(BUCKETS);
+
+        assertThat(received).isEmpty();
+        assertThat(connectionsInWheel()).isZero();
+    }
+
+    @Test
+    @DisplayName("heartbeat 간격 안에 알람을 보낸 연결은 heartbeat 를 생략한다")
+    void skip_recently_written() {
+        List<UserAlarmMessage> received = new CopyOnWriteArrayList<>();
+        wheel.heartbeats(new UserAlarmConnection(1L)).subscribe(received::add);
+
+        tick(BUCKETS);
+
+        assertThat(received).isEmpty();
+    }
+
+    private void tick(int count) {
+        for(int i = 0; i < count; i++) {
+            wheel.tick();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private int connectionsInWheel() {
+        List<UserAlarmConnection>[] buckets = (List<UserAlarmConnection>[]) ReflectionTestUtils.getField(wheel, "buckets");
+        int count = 0;
+        for(List<UserAlarmConnection> bucket : buckets) {
+            count += bucket.size();
+        }
+        return count;
+    }
+
+    //마지막으로 보낸 시각이 오래 전인 연결. 실제 시간을 기다리지 않고 heartbeat 대상이 되게 한다
+    private static class IdleConnection extends UserAlarmConnection {
+
+        IdleConnection() {
+            super(1L);
+        }
+
+        @Override
+        public long getLastWriteNanos() {
+            return System.nanoTime() - TimeUnit.HOURS.toNanos(1);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.bagulbagul.bagulbagul.alarm.service.message;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+class UserAlarmEnvelopeTest {
+
+    private static final UserAlarmHeader HEADER = UserAlarmHeader.builder()
+            .userId(1234567890123L)
+            .coalesceKey("unread")
+            .createdAtMillis(1_700_000_000_000L)
+            .type("COMMENT")
+            .priority(2)
+            .build();
+
+    @ParameterizedTest
+    @EnumSource(UserAlarmEnvelopeFormat.class)
+    @DisplayName("두 형식 모두 헤더 필드와 payload 를 그대로 읽는다")
+    void round_trip(UserAlarmEnvelopeFormat format) {
+        byte[] body = format.encode(HEADER, "새 댓글\n이 달렸습니다".getBytes(StandardCharsets.UTF_8));
+
+        UserAlarmEnvelope envelope = UserAlarmEnvelope.decode(body);
+
+        assertThat(envelope).isNotNull();
+        assertThat(envelope.isUserIdPresent()).isTrue();
+        assertThat(envelope.getUserId()).isEqualTo(1234567890123L);
+        UserAlarmMessage message = envelope.getPayload();
+        assertThat(message.getText()).isEqualTo("새 댓글\n이 달렸습니다");
+        assertThat(message.getCoalesceKey()).isEqualTo("unread");
+        assertThat(message.getPublishedAtMillis()).isEqualTo(1_700_000_000_000L);
+        assertThat(message.getType()).isEqualTo("COMMENT");
+        assertThat(message.getPriority()).isEqualTo(2);
+        assertThat(message.getId()).isNull();
+    }
+
+    @Test
+    @DisplayName("binary 봉투는 text 봉투보다 작다")
+    void binary_is_smaller() {
+        assertThat(UserAlarmEnvelopeFormat.V2.header(HEADER).length)
+                .isLessThan(UserAlarmEnvelopeFormat.V1.header(HEADER).length);
+    }
+
+    @Test
+    @DisplayName("발행 스크립트가 붙인 알람 id 를 읽고, 모르는 필드는 건너뛴다")
+    void script_alarm_id_and_unknown_field() {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        body.writeBytes(UserAlarmEnvelopeFormat.V2.header(HEADER));
+        //field 15, wire type 2, 길이 3
+        body.write(15 << 3 | 2);
+        body.write(3);
+        body.writeBytes(new byte[]{1, 2, 3});
+        //발행 스크립트와 같은 방식으로 알람 id 를 붙인다
+        byte[] id = "1700000000000-0".getBytes(StandardCharsets.US_ASCII);
+        body.write(UserAlarmBinaryEnvelope.ALARM_ID_KEY);
+        body.write(id.length);
+        body.writeBytes(id);
+        body.write(UserAlarmBinaryEnvelope.END);
+        body.writeBytes("a".getBytes(StandardCharsets.UTF_8));
+
+        UserAlarmMessage message = UserAlarmEnvelope.unwrap(body.toByteArray());
+
+        assertThat(message).isNotNull();
+        assertThat(message.getId()).isEqualTo("1700000000000-0");
+        assertThat(message.getType()).isEqualTo("COMMENT");
+        assertThat(message.getText()).isEqualTo("a");
+    }
+
+    @Test
+    @DisplayName("잘린 binary 봉투와 모르는 버전은 읽지 않고, 봉투 없는 메세지는 본문 전체가 payload 이다")
+    void invalid_and_plain() {
+        byte[] header = UserAlarmEnvelopeFormat.V2.header(HEADER);
+        assertThat(UserAlarmEnvelope.unwrap(header)).isNull();
+
+        byte[] unknownVersion = UserAlarmEnvelopeFormat.V2.encode(HEADER, new byte[]{'a'});
+        unknownVersion[1] = 3;
+        assertThat(UserAlarmEnvelope.unwrap(unknownVersion)).isNull();
+
+        UserAlarmMessage plain = UserAlarmEnvelope.unwrap("{\"a\":1}".getBytes(StandardCharsets.UTF_8));
+        assertThat(plain.getText()).isEqualTo("{\"a\":1}");
+        assertThat(plain.getPriority()).isZero();
+    }
+
+    @Test
+    @DisplayName("long 범위를 넘거나 숫자가 없는 userId 는 봉투를 거부한다")
+    void user_id_out_of_range() {
+        assertThat(UserAlarmEnvelope.decode(text("@v1;u=9223372036854775807;\na")).getUserId()).isEqualTo(Long.MAX_VALUE);
+        assertThat(UserAlarmEnvelope.decode(text("@v1;u=-9223372036854775808;\na")).getUserId()).isEqualTo(Long.MIN_VALUE);
+        assertThat(UserAlarmEnvelope.decode(text("@v1;u=9223372036854775808;\na"))).isNull();
+        assertThat(UserAlarmEnvelope.decode(text("@v1;u=99999999999999999999;\na"))).isNull();
+        assertThat(UserAlarmEnvelope.decode(text("@v1;u=-;\na"))).isNull();
+    }
+
+    @Test
+    @DisplayName("int 범위를 넘는 우선순위는 기본 우선순위로 읽는다")
+    void priority_out_of_range() {
+        UserAlarmMessage message = UserAlarmEnvelope.unwrap(text("@v1;u=1;p=4294967298;\na"));
+
+        assertThat(message).isNotNull();
+        assertThat(message.getPriority()).isZero();
+    }
+
+    @Test
+    @DisplayName("binary 봉투의 우선순위가 int 범위를 넘으면 봉투를 거부하고, 음수 우선순위는 그대로 읽는다")
+    void binary_priority_out_of_range() {
+        UserAlarmHeader header = UserAlarmHeader.builder().userId(1L).createdAtMillis(1L).build();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        body.writeBytes(UserAlarmEnvelopeFormat.V2.header(header));
+        //field 7(priority), wire type 0, 값 2^32 + 2
+        body.write(7 << 3);
+        body.writeBytes(new byte[]{(byte) 0x82, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x10});
+        body.write(UserAlarmBinaryEnvelope.END);
+        body.writeBytes("a".getBytes(StandardCharsets.UTF_8));
+
+        assertThat(UserAlarmEnvelope.decode(body.toByteArray())).isNull();
+
+        UserAlarmHeader negative = UserAlarmHeader.builder().userId(1L).createdAtMillis(1L).priority(-1).build();
+        UserAlarmMessage message = UserAlarmEnvelope.unwrap(UserAlarmEnvelopeFormat.V2.encode(negative, new byte[]{'a'}));
+        assertThat(message).isNotNull();
+        assertThat(message.getPriority()).isEqualTo(-1);
+    }
+
+    private static byte[] text(String body) {
+        return body.getBytes(StandardCharsets.UTF_8);
+    }
+}
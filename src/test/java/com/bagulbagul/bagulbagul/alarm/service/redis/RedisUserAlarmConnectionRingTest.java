@@ -0,0 +1,43 @@
+package com.bagulbagul.bagulbagul.alarm.service.redis;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class RedisUserAlarmConnectionRingTest {
+
+    private static final int USERS = 100_000;
+
+    @Test
+    @DisplayName("연속된 userId 를 모든 연결에 고르게 나눈다")
+    void balanced() {
+        RedisUserAlarmConnectionRing ring = new RedisUserAlarmConnectionRing(8, 160);
+        int[] counts = new int[8];
+        for(long userId = 1; userId <= USERS; userId++) {
+            counts[ring.connectionOf(userId)]++;
+        }
+        for(int count : counts) {
+            //평균(12500)에서 크게 벗어나지 않는다
+            assertThat(count).isBetween(USERS / 8 * 7 / 10, USERS / 8 * 13 / 10);
+        }
+    }
+
+    @Test
+    @DisplayName("연결을 하나 늘리면 새 연결로 옮겨가는 userId 만 바뀐다")
+    void minimal_movement() {
+        RedisUserAlarmConnectionRing before = new RedisUserAlarmConnectionRing(8, 160);
+        RedisUserAlarmConnectionRing after = new RedisUserAlarmConnectionRing(9, 160);
+        int moved = 0;
+        for(long userId = 1; userId <= USERS; userId++) {
+            int from = before.connectionOf(userId);
+            int to = after.connectionOf(userId);
+            if(from != to) {
+                assertThat(to).isEqualTo(8);
+                moved++;
+            }
+        }
+        //약 1/9 만 옮겨간다
+        assertThat(moved).isBetween(USERS / 9 / 2, USERS / 9 * 2);
+    }
+}
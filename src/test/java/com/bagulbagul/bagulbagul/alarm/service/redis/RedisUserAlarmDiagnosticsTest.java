@@ -0,0 +1,102 @@
+package com.bagulbagul.bagulbagul.alarm.service.redis;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.bagulbagul.bagulbagul.alarm.service.UserAlarmConnection;
+import com.bagulbagul.bagulbagul.alarm.service.message.UserAlarmMessage;
+import com.bagulbagul.bagulbagul.alarm.service.redis.UserAlarmDiagnosticsSnapshot.UserEntry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+class RedisUserAlarmDiagnosticsTest {
+
+    private final RedisUserAlarmSubscribeStats stats = new RedisUserAlarmSubscribeStats();
+    private final LongAdder bufferedTotal = new LongAdder();
+
+    @Test
+    @DisplayName("구독자 수 구간별 유저 수는 구독, 해제 때 갱신한 합계로, 상위 유저는 표본에서 계산하고 정리된 구독 정보는 제외한다")
+    void summarize() {
+        List<RedisUserAlarmSubscribeInfo> infos = new ArrayList<>();
+        infos.add(info(1L, 1, 0));
+        infos.add(info(2L, 3, 5));
+        infos.add(info(3L, 40, 1));
+        infos.add(info(4L, 2, 9));
+        RedisUserAlarmSubscribeInfo retired = info(5L, 1, 0);
+        retired.release();
+        infos.add(retired);
+        stats.listenerAttached();
+
+        UserAlarmDiagnosticsSnapshot snapshot = RedisUserAlarmDiagnostics.summarize(stats, 4, bufferedTotal.sum(), infos, 2, 0, System.nanoTime());
+
+        assertThat(snapshot.users()).isEqualTo(4);
+        assertThat(snapshot.connections()).isEqualTo(4);
+        assertThat(snapshot.listeners()).isEqualTo(1);
+        assertThat(snapshot.buffered()).isEqualTo(15);
+        assertThat(snapshot.sampledUsers()).isEqualTo(5);
+        assertThat(snapshot.subscriberHistogram())
+                .containsEntry("1", 1)
+                .containsEntry("2", 1)
+                .containsEntry("3-4", 1)
+                .containsEntry("33+", 1);
+        assertThat(snapshot.topBySubscribers()).extracting(UserEntry::userId).containsExactly(3L, 2L);
+        assertThat(snapshot.topByBuffered()).extracting(UserEntry::userId).containsExactly(4L, 2L);
+    }
+
+    @Test
+    @DisplayName("표본에 없는 유저도 구간별 유저 수에는 포함된다")
+    void histogram_without_sample() {
+        info(1L, 1, 0);
+        info(2L, 5, 0);
+
+        UserAlarmDiagnosticsSnapshot snapshot = RedisUserAlarmDiagnostics.summarize(stats, 2, 0, List.of(), 2, 0, System.nanoTime());
+
+        assertThat(snapshot.users()).isEqualTo(2);
+        assertThat(snapshot.subscriberHistogram()).containsEntry("1", 1).containsEntry("5-8", 1);
+        assertThat(snapshot.topBySubscribers()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("느린 연결 감시가 세지 않는 연결은 버퍼 정책이 버린 알람을 빼지 않고, 끝난 연결의 남은 알람은 합계에서 뺀다")
+    void queued_only_when_tracked() {
+        UserAlarmConnection untracked = new UserAlarmConnection(1L);
+        untracked.dropped();
+        assertThat(untracked.getQueued()).isZero();
+
+        UserAlarmConnection tracked = new UserAlarmConnection(2L);
+        tracked.trackQueued(bufferedTotal);
+        tracked.enqueued();
+        tracked.enqueued();
+        tracked.enqueued();
+        tracked.dropped();
+        assertThat(tracked.getQueued()).isEqualTo(2);
+        assertThat(bufferedTotal.sum()).isEqualTo(2);
+
+        tracked.releaseQueued();
+        tracked.dequeued();
+        assertThat(bufferedTotal.sum()).isZero();
+    }
+
+    //구독자 수가 subscribers 이고 연결 하나에 buffered 개가 쌓인 구독 정보. 구독 관리자처럼 등록한 1명을 stats 에 반영한다
+    private RedisUserAlarmSubscribeInfo info(long userId, int subscribers, int buffered) {
+        List<UserAlarmConnection> connections = new CopyOnWriteArrayList<>();
+        RedisUserAlarmSubscribeInfo info = new RedisUserAlarmSubscribeInfo(
+                userId, Sinks.many().multicast().<UserAlarmMessage>onBackpressureBuffer(16, false), Flux.empty(), connections, stats);
+        stats.subscribersChanged(0, 1);
+        for(int i = 1; i < subscribers; i++) {
+            info.tryAcquire();
+        }
+        UserAlarmConnection connection = new UserAlarmConnection(userId);
+        connection.trackQueued(bufferedTotal);
+        for(int i = 0; i < buffered; i++) {
+            connection.enqueued();
+        }
+        connections.add(connection);
+        return info;
+    }
+}
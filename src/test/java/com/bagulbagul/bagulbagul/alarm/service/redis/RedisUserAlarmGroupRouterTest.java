@@ -0,0 +1,118 @@
+package com.bagulbagul.bagulbagul.alarm.service.redis;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.bagulbagul.bagulbagul.alarm.service.buffer.UserAlarmOverflowCounter;
+import com.bagulbagul.bagulbagul.alarm.service.dispatch.UserAlarmDispatcher;
+import com.bagulbagul.bagulbagul.alarm.service.dispatch.UserAlarmTarget;
+import com.bagulbagul.bagulbagul.alarm.service.group.UserAlarmGroupDirectory;
+import com.bagulbagul.bagulbagul.alarm.service.message.UserAlarmEnvelope;
+import com.bagulbagul.bagulbagul.alarm.service.message.UserAlarmHeader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongPredicate;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+class RedisUserAlarmGroupRouterTest {
+
+    private static final long USER_ID = 1L;
+
+    private final ManualGroupDirectory groupDirectory = new ManualGroupDirectory();
+    private final UserAlarmTarget target = new UserAlarmTarget(USER_ID, Sinks.many().unicast().onBackpressureBuffer());
+    private final RedisUserAlarmGroupRouter router = new RedisUserAlarmGroupRouter(
+            userId -> userId == USER_ID ? target : null,
+            () -> List.of(target),
+            groupDirectory,
+            new UserAlarmDispatcher(new UserAlarmOverflowCounter())
+    );
+
+    @Test
+    @DisplayName("같은 group 의 알람은 앞선 알람의 구성원 조회가 끝난 뒤에 조회해서 발행 순서대로 보낸다")
+    void keep_group_order() {
+        List<String> received = new ArrayList<>();
+        target.getSink().asFlux().subscribe(message -> received.add(message.getText()));
+
+        router.route(body("g1", "a"));
+        router.route(body("g1", "b"));
+        router.route(body("g2", "c"));
+        //g1 의 두번째 알람은 기다리고 다른 group 은 바로 조회한다
+        assertThat(groupDirectory.lookups).extracting(Lookup::groupId).containsExactly("g1", "g2");
+
+        groupDirectory.lookups.get(1).complete(USER_ID);
+        groupDirectory.lookups.get(0).complete(USER_ID);
+        assertThat(groupDirectory.lookups).extracting(Lookup::groupId).containsExactly("g1", "g2", "g1");
+        groupDirectory.lookups.get(2).complete(USER_ID);
+
+        assertThat(received).containsExactly("c", "a", "b");
+        assertThat((Map<?, ?>) ReflectionTestUtils.getField(router, "pendingByGroup")).isEmpty();
+    }
+
+    @Test
+    @DisplayName("구성원 조회가 실패해도 같은 group 의 다음 알람을 조회한다")
+    void continue_after_failure() {
+        List<String> received = new ArrayList<>();
+        target.getSink().asFlux().subscribe(message -> received.add(message.getText()));
+
+        router.route(body("g1", "a"));
+        router.route(body("g1", "b"));
+        groupDirectory.lookups.get(0).members.tryEmitError(new IllegalStateException("redis"));
+        groupDirectory.lookups.get(1).complete(USER_ID);
+
+        assertThat(received).containsExactly("b");
+        assertThat((Map<?, ?>) ReflectionTestUtils.getField(router, "pendingByGroup")).isEmpty();
+    }
+
+    private static byte[] body(String groupId, String payload) {
+        UserAlarmHeader header = UserAlarmHeader.builder().groupId(groupId).createdAtMillis(1L).build();
+        return (UserAlarmEnvelope.header(header) + "\n" + payload).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private record Lookup(String groupId, Sinks.Many<Long> members) {
+        void complete(long userId) {
+            members.tryEmitNext(userId);
+            members.tryEmitComplete();
+        }
+    }
+
+    //조회마다 테스트가 직접 구성원을 보내고 끝내는 directory
+    private static class ManualGroupDirectory implements UserAlarmGroupDirectory {
+        private final List<Lookup> lookups = new ArrayList<>();
+
+        @Override
+        public boolean isEnabled() {
+            return true;
+        }
+
+        @Override
+        public String getChannel() {
+            return "group";
+        }
+
+        @Override
+        public String getBroadcastChannel() {
+            return "broadcast";
+        }
+
+        @Override
+        public void join(String groupId, long userId) {
+        }
+
+        @Override
+        public void leave(String groupId, long userId) {
+        }
+
+        @Override
+        public Flux<Long> connectedMembers(String groupId, LongPredicate connectedHere, Supplier<List<Long>> localUserIds) {
+            Lookup lookup = new Lookup(groupId, Sinks.many().unicast().onBackpressureBuffer());
+            lookups.add(lookup);
+            return lookup.members().asFlux().filter(connectedHere::test);
+        }
+    }
+}
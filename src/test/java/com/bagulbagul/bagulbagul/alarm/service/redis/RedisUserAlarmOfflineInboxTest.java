@@ -0,0 +1,111 @@
+package com.bagulbagul.bagulbagul.alarm.service.redis;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.bagulbagul.bagulbagul.extension.RedisTestContainerExtension;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.Disposable;
+
+@ExtendWith(RedisTestContainerExtension.class)
+class RedisUserAlarmOfflineInboxTest {
+
+    //테스트마다 다른 유저를 사용해서 list 가 섞이지 않게 한다
+    private static final AtomicLong USER_IDS = new AtomicLong();
+
+    private static LettuceConnectionFactory connectionFactory;
+    private static StringRedisTemplate redisTemplate;
+
+    private RedisUserAlarmOfflineInbox offlineInbox;
+    private long userId;
+
+    @BeforeAll
+    static void connect() {
+        connectionFactory = new LettuceConnectionFactory(System.getProperty("spring.redis.host"), Integer.getInteger("spring.redis.port"));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        redisTemplate = new StringRedisTemplate(connectionFactory);
+    }
+
+    @AfterAll
+    static void disconnect() {
+        connectionFactory.destroy();
+    }
+
+    @BeforeEach
+    void setUp() {
+        offlineInbox = new RedisUserAlarmOfflineInbox(redisTemplate);
+        ReflectionTestUtils.setField(offlineInbox, "ENABLED", true);
+        ReflectionTestUtils.setField(offlineInbox, "KEY_PREFIX", "test_offline:");
+        userId = USER_IDS.incrementAndGet();
+        redisTemplate.delete(offlineInbox.key(userId));
+    }
+
+    @Test
+    @DisplayName("보낸 알람만 다음 drain 에서 지우고 그 사이 쌓인 알람은 남긴다")
+    void trim_delivered() {
+        store("a", "b");
+
+        List<String> received = new ArrayList<>();
+        offlineInbox.request(userId).subscribe(message -> received.add(message.getText()));
+        offlineInbox.drain(List.of(userId));
+
+        assertThat(received).containsExactly("a", "b");
+        store("c");
+        offlineInbox.drain(List.of());
+
+        assertThat(stored()).containsExactly("c");
+    }
+
+    @Test
+    @DisplayName("읽기 전에 취소된 요청은 지워서 알람을 list 에 남긴다")
+    void keep_cancelled() {
+        store("a", "b");
+
+        Disposable request = offlineInbox.request(userId).subscribe();
+        request.dispose();
+        offlineInbox.drain(List.of(userId));
+        offlineInbox.drain(List.of());
+
+        assertThat(pending()).isEmpty();
+        assertThat(stored()).containsExactly("a", "b");
+    }
+
+    @Test
+    @DisplayName("읽은 뒤 모두 보내기 전에 끊기면 알람을 list 에 남긴다")
+    void keep_undelivered() {
+        store("a", "b");
+
+        List<String> received = new ArrayList<>();
+        offlineInbox.request(userId).take(1).subscribe(message -> received.add(message.getText()));
+        offlineInbox.drain(List.of(userId));
+        offlineInbox.drain(List.of());
+
+        assertThat(received).containsExactly("a");
+
+        assertThat(stored()).containsExactly("a", "b");
+    }
+
+    private void store(String... messages) {
+        redisTemplate.opsForList().rightPushAll(offlineInbox.key(userId), messages);
+    }
+
+    private List<String> stored() {
+        return redisTemplate.opsForList().range(offlineInbox.key(userId), 0, -1);
+    }
+
+    private Map<?, ?> pending() {
+        return (Map<?, ?>) ReflectionTestUtils.getField(offlineInbox, "pending");
+    }
+}
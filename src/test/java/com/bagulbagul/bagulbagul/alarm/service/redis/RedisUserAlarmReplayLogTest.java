@@ -0,0 +1,187 @@
+package com.bagulbagul.bagulbagul.alarm.service.redis;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.bagulbagul.bagulbagul.alarm.service.message.UserAlarmEnvelopeFormat;
+import com.bagulbagul.bagulbagul.alarm.service.message.UserAlarmHeader;
+import com.bagulbagul.bagulbagul.alarm.service.message.UserAlarmMessage;
+import com.bagulbagul.bagulbagul.extension.RedisTestContainerExtension;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+
+@ExtendWith(RedisTestContainerExtension.class)
+class RedisUserAlarmReplayLogTest {
+
+    private static final int MAX_LEN = 3;
+    private static final RedisScript<String> PUBLISH_WITH_REPLAY =
+            RedisScript.of(new ClassPathResource("redis/publish_with_replay.lua"), String.class);
+    //테스트마다 다른 유저를 사용해서 stream 이 섞이지 않게 한다
+    private static final AtomicLong USER_IDS = new AtomicLong();
+
+    private static LettuceConnectionFactory connectionFactory;
+    private static StringRedisTemplate redisTemplate;
+
+    private RedisUserAlarmReplayLog replayLog;
+    private long userId;
+
+    @BeforeAll
+    static void connect() {
+        connectionFactory = new LettuceConnectionFactory(System.getProperty("spring.redis.host"), Integer.getInteger("spring.redis.port"));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        redisTemplate = new StringRedisTemplate(connectionFactory);
+    }
+
+    @AfterAll
+    static void disconnect() {
+        connectionFactory.destroy();
+    }
+
+    @BeforeEach
+    void setUp() {
+        replayLog = new RedisUserAlarmReplayLog(connectionFactory);
+        ReflectionTestUtils.setField(replayLog, "STREAM_PREFIX", "test_replay:");
+        ReflectionTestUtils.setField(replayLog, "MAX_LEN", MAX_LEN);
+        userId = USER_IDS.incrementAndGet();
+        redisTemplate.delete(replayLog.streamKey(userId));
+    }
+
+    @ParameterizedTest
+    @EnumSource(UserAlarmEnvelopeFormat.class)
+    @DisplayName("replay 한 알람은 실시간 알람과 같은 종류, 우선순위, coalesce key, 발행 시각을 가진다")
+    void keep_envelope(UserAlarmEnvelopeFormat format) {
+        UserAlarmHeader header = UserAlarmHeader.builder()
+                .coalesceKey("unread")
+                .createdAtMillis(1_700_000_000_000L)
+                .type("COMMENT")
+                .priority(2)
+                .build();
+        String id = publish(format, header, "새 댓글\n두 줄");
+
+        List<UserAlarmMessage> replayed = replayLog.readAfter(userId, "0-0").collectList().block();
+
+        assertThat(replayed).hasSize(1);
+        UserAlarmMessage message = replayed.get(0);
+        assertThat(message.getId()).isEqualTo(id);
+        assertThat(message.getText()).isEqualTo("새 댓글\n두 줄");
+        assertThat(message.getType()).isEqualTo("COMMENT");
+        assertThat(message.getPriority()).isEqualTo(2);
+        assertThat(message.getCoalesceKey()).isEqualTo("unread");
+        assertThat(message.getPublishedAtMillis()).isEqualTo(1_700_000_000_000L);
+    }
+
+    @Test
+    @DisplayName("Last-Event-ID 이후의 알람만 오래된 순서로 읽고, 형식이 잘못된 id 는 읽지 않는다")
+    void range() {
+        List<String> ids = publish(MAX_LEN);
+
+        assertThat(idsOf(replayLog.readAfter(userId, ids.get(0)))).containsExactly(ids.get(1), ids.get(2));
+        assertThat(idsOf(replayLog.readAfter(userId, ids.get(2)))).isEmpty();
+        assertThat(idsOf(replayLog.readAfter(userId, "abc"))).isEmpty();
+    }
+
+    @Test
+    @DisplayName("한번에 max_len 개까지 읽고 stream 에는 만료 시간을 둔다")
+    void bounded() {
+        List<String> ids = publish(MAX_LEN + 2);
+
+        assertThat(idsOf(replayLog.readAfter(userId, "0-0"))).containsExactlyElementsOf(ids.subList(0, MAX_LEN));
+        assertThat(redisTemplate.getExpire(replayLog.streamKey(userId))).isPositive();
+    }
+
+    @Test
+    @DisplayName("replay 로 보낸 알람은 실시간 알람에서 다시 보내지 않는다")
+    void skip_replayed_live() {
+        List<String> ids = publish(3);
+        Flux<UserAlarmMessage> live = Flux.just(
+                message(ids.get(1)),
+                message(ids.get(2)),
+                message("9999999999999-0"),
+                message(null)
+        );
+
+        List<UserAlarmMessage> received = replayLog.replayThenLive(userId, ids.get(0), live).collectList().block();
+
+        //id 가 없는 실시간 알람은 그대로 보낸다
+        assertThat(received).extracting(UserAlarmMessage::getId).containsExactly(ids.get(1), ids.get(2), "9999999999999-0", null);
+        assertThat(received).extracting(UserAlarmMessage::getText).containsExactly("alarm1", "alarm2", "live", "live");
+    }
+
+    @Test
+    @DisplayName("형식이 잘못된 Last-Event-ID 로 재연결하면 replay 없이 모든 실시간 알람을 보낸다")
+    void malformed_last_event_id() {
+        List<String> ids = publish(1);
+        Flux<UserAlarmMessage> live = Flux.just(message(ids.get(0)), message(null));
+
+        List<UserAlarmMessage> received = replayLog.replayThenLive(userId, "abc", live).collectList().block();
+
+        assertThat(received).extracting(UserAlarmMessage::getId).containsExactly(ids.get(0), null);
+    }
+
+    @Test
+    @DisplayName("payload 만 저장하던 이전 기록도 읽는다")
+    void legacy_payload() {
+        Map<ByteBuffer, ByteBuffer> fields = Map.of(buffer(RedisUserAlarmReplayLog.PAYLOAD_FIELD), buffer("a"));
+
+        UserAlarmMessage message = RedisUserAlarmReplayLog.toMessage("1-0", fields);
+
+        assertThat(message.getId()).isEqualTo("1-0");
+        assertThat(message.getText()).isEqualTo("a");
+        assertThat(RedisUserAlarmReplayLog.toMessage("1-0", Map.of(buffer(RedisUserAlarmReplayLog.ENVELOPE_FIELD), buffer("a")))).isNull();
+    }
+
+    //발행기와 같은 방식으로 스크립트를 호출한다
+    private String publish(UserAlarmEnvelopeFormat format, UserAlarmHeader header, String payload) {
+        return redisTemplate.execute(
+                PUBLISH_WITH_REPLAY,
+                RedisSerializer.byteArray(),
+                RedisSerializer.string(),
+                List.of(replayLog.streamKey(userId)),
+                bytes("test_channel"), format.header(header), bytes(payload), bytes(MAX_LEN), bytes(60)
+        );
+    }
+
+    private List<String> publish(int count) {
+        List<String> ids = new ArrayList<>();
+        for(int i = 0; i < count; i++) {
+            UserAlarmHeader header = UserAlarmHeader.builder().createdAtMillis(System.currentTimeMillis()).build();
+            ids.add(publish(UserAlarmEnvelopeFormat.V1, header, "alarm" + i));
+        }
+        return ids;
+    }
+
+    private static List<String> idsOf(Flux<UserAlarmMessage> messages) {
+        return messages.map(UserAlarmMessage::getId).collectList().block();
+    }
+
+    private static UserAlarmMessage message(String id) {
+        return UserAlarmMessage.of(bytes("live")).withId(id);
+    }
+
+    private static ByteBuffer buffer(String value) {
+        return ByteBuffer.wrap(bytes(value));
+    }
+
+    private static byte[] bytes(Object value) {
+        return String.valueOf(value).getBytes(StandardCharsets.UTF_8);
+    }
+}
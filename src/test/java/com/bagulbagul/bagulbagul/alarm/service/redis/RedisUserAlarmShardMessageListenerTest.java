@@ -0,0 +1,40 @@
+package com.bagulbagul.bagulbagul.alarm.service.redis;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class RedisUserAlarmShardMessageListenerTest {
+
+    private static final int SHARD_COUNT = 16;
+
+    @Test
+    @DisplayName("userId 의 shard 는 발행하는 쪽과 맞춘 고정된 규칙으로 정해진다")
+    void stable() {
+        //발행하는 쪽(다른 노드, 다른 버전)과 맞춰야 하므로 값 자체가 바뀌면 안 된다
+        assertThat(RedisUserAlarmShardMessageListener.shardOf(0, SHARD_COUNT)).isEqualTo(0);
+        assertThat(RedisUserAlarmShardMessageListener.shardOf(17, SHARD_COUNT)).isEqualTo(1);
+        assertThat(RedisUserAlarmShardMessageListener.shardOf(1234567890123L, SHARD_COUNT)).isEqualTo(11);
+    }
+
+    @Test
+    @DisplayName("음수와 극단값 userId 도 0 ~ shard_count-1 사이의 shard 를 고른다")
+    void in_range() {
+        long[] userIds = {-1, -17, Long.MIN_VALUE, Long.MAX_VALUE, Integer.MAX_VALUE + 1L};
+        for(long userId : userIds) {
+            assertThat(RedisUserAlarmShardMessageListener.shardOf(userId, SHARD_COUNT)).isBetween(0, SHARD_COUNT - 1);
+        }
+        assertThat(RedisUserAlarmShardMessageListener.shardOf(-1, SHARD_COUNT)).isEqualTo(15);
+    }
+
+    @Test
+    @DisplayName("연속된 userId 는 모든 shard 에 고르게 나뉜다")
+    void balanced() {
+        int[] counts = new int[SHARD_COUNT];
+        for(long userId = 1; userId <= SHARD_COUNT * 1000; userId++) {
+            counts[RedisUserAlarmShardMessageListener.shardOf(userId, SHARD_COUNT)]++;
+        }
+        assertThat(counts).containsOnly(1000);
+    }
+}
@@ -0,0 +1,198 @@
+package com.bagulbagul.bagulbagul.alarm.service.redis;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.bagulbagul.bagulbagul.alarm.service.UserAlarmEvictedException;
+import com.bagulbagul.bagulbagul.alarm.service.broker.InProcessUserAlarmBroker;
+import com.bagulbagul.bagulbagul.alarm.service.buffer.DropUserAlarmBufferPolicy;
+import com.bagulbagul.bagulbagul.alarm.service.buffer.UserAlarmOverflowCounter;
+import com.bagulbagul.bagulbagul.alarm.service.buffer.UserAlarmSlowConsumerGuard;
+import com.bagulbagul.bagulbagul.alarm.service.dispatch.UserAlarmDispatcher;
+import com.bagulbagul.bagulbagul.alarm.service.group.InProcessUserAlarmGroupDirectory;
+import com.bagulbagul.bagulbagul.alarm.service.heartbeat.UserAlarmHeartbeatWheel;
+import com.bagulbagul.bagulbagul.alarm.service.message.UserAlarmMessage;
+import com.bagulbagul.bagulbagul.alarm.service.metrics.UserAlarmMetrics;
+import com.bagulbagul.bagulbagul.alarm.service.presence.InProcessUserAlarmOfflineInbox;
+import com.bagulbagul.bagulbagul.alarm.service.presence.InProcessUserAlarmPresence;
+import com.bagulbagul.bagulbagul.alarm.service.replay.UserAlarmReplayLog;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscription;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.SignalType;
+
+/*
+ * spring context 없이 inprocess 협력 객체로 구독 관리자를 조립한다.
+ */
+class RedisUserAlarmSubscribeManagerTest {
+
+    private static final String TOPIC_PREFIX = "alarm:";
+    private static final int HIGH_WATERMARK = 2;
+    //Last-Event-ID 이후에 남아있는 알람이 high watermark 보다 많은 replay 로그
+    private static final UserAlarmReplayLog REPLAY_LOG = (userId, lastEventId, live) -> Flux.concat(
+            Flux.range(0, HIGH_WATERMARK + 1).map(i -> UserAlarmMessage.of(bytes("replay" + i))),
+            live
+    );
+
+    private final UserAlarmOverflowCounter overflowCounter = new UserAlarmOverflowCounter();
+    private final UserAlarmMetrics metrics = new UserAlarmMetrics(new SimpleMeterRegistry(), overflowCounter);
+    private final UserAlarmDispatcher dispatcher = new UserAlarmDispatcher(overflowCounter);
+    private InProcessUserAlarmBroker broker;
+    private UserAlarmHeartbeatWheel heartbeatWheel;
+    private RedisUserAlarmSubscribeManager manager;
+
+    @BeforeEach
+    void setUp() {
+        broker = new InProcessUserAlarmBroker(dispatcher);
+        ReflectionTestUtils.setField(broker, "LANE_COUNT", 1);
+        ReflectionTestUtils.invokeMethod(broker, "init");
+
+        heartbeatWheel = new UserAlarmHeartbeatWheel(metrics);
+        ReflectionTestUtils.setField(heartbeatWheel, "HEARTBEAT_INTERVAL_SECOND", 30);
+        ReflectionTestUtils.setField(heartbeatWheel, "HEARTBEAT_MESSAGE", "hb");
+        ReflectionTestUtils.setField(heartbeatWheel, "TICK_MILLISECOND", 1000L);
+        ReflectionTestUtils.invokeMethod(heartbeatWheel, "init");
+
+        //두번째 알람부터 high watermark 에 머무르면 바로 끊는다
+        UserAlarmSlowConsumerGuard slowConsumerGuard = new UserAlarmSlowConsumerGuard(metrics);
+        ReflectionTestUtils.setField(slowConsumerGuard, "ENABLED", true);
+        ReflectionTestUtils.setField(slowConsumerGuard, "HIGH_WATERMARK", HIGH_WATERMARK);
+        ReflectionTestUtils.setField(slowConsumerGuard, "LOW_WATERMARK", 0);
+        ReflectionTestUtils.setField(slowConsumerGuard, "EVICT_AFTER_MILLISECOND", 0L);
+
+        manager = new RedisUserAlarmSubscribeManager(
+                broker,
+                heartbeatWheel,
+                REPLAY_LOG,
+                new DropUserAlarmBufferPolicy(64, BufferOverflowStrategy.DROP_OLDEST, overflowCounter),
+                dispatcher,
+                slowConsumerGuard,
+                metrics,
+                new InProcessUserAlarmPresence(),
+                new InProcessUserAlarmGroupDirectory(),
+                new InProcessUserAlarmOfflineInbox()
+        );
+        ReflectionTestUtils.setField(manager, "TOPIC_PREFIX", TOPIC_PREFIX);
+        ReflectionTestUtils.setField(manager, "SUBSCRIBE_MODE", "user");
+        ReflectionTestUtils.setField(manager, "SINK_SIZE", 16);
+        ReflectionTestUtils.setField(manager, "REPLAY_ENABLED", true);
+        ReflectionTestUtils.setField(manager, "RECONNECT_GRACE_MILLISECOND", 100L);
+        ReflectionTestUtils.invokeMethod(manager, "init");
+    }
+
+    @AfterEach
+    void tearDown() {
+        ReflectionTestUtils.invokeMethod(heartbeatWheel, "destroy");
+        ReflectionTestUtils.invokeMethod(broker, "destroy");
+    }
+
+    @Test
+    @DisplayName("더 요청하지 않는 느린 연결은 재연결 안내를 기다리지 않고 에러로 끝나고 구독 정보를 정리한다")
+    void close_stalled_consumer() throws InterruptedException {
+        StalledSubscriber subscriber = new StalledSubscriber();
+        manager.subscribe(1L).subscribe(subscriber);
+        assertThat(manager.collectSubscribeInfos()).hasSize(1);
+
+        for(int i = 0; i <= HIGH_WATERMARK; i++) {
+            broker.publish(TOPIC_PREFIX + 1, bytes("alarm" + i));
+        }
+
+        assertThat(subscriber.terminated.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(subscriber.error).isInstanceOf(UserAlarmEvictedException.class);
+        //첫 heartbeat 만 받고 재연결 안내는 요청량이 없어서 받지 못했다
+        assertThat(subscriber.received).extracting(UserAlarmMessage::isHeartbeat).containsExactly(true);
+        assertReleased();
+    }
+
+    @Test
+    @DisplayName("replay 한 알람도 연결 버퍼와 느린 연결 감시를 거친다")
+    void replay_through_buffer() throws InterruptedException {
+        StalledSubscriber subscriber = new StalledSubscriber();
+        manager.subscribe(1L, "1-0").subscribe(subscriber);
+
+        assertThat(subscriber.terminated.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(subscriber.error).isInstanceOf(UserAlarmEvictedException.class);
+        assertThat(subscriber.received).extracting(UserAlarmMessage::isHeartbeat).containsExactly(true);
+        assertReleased();
+    }
+
+    @Test
+    @DisplayName("노드 종료 시 요청하고 있는 연결은 재연결 안내를 받고 끝나고, 멈춘 연결은 grace 뒤에 닫힌다")
+    void drain_on_shutdown() throws InterruptedException {
+        StalledSubscriber requesting = new StalledSubscriber();
+        manager.subscribe(1L).subscribe(requesting);
+        requesting.request(Long.MAX_VALUE);
+        StalledSubscriber stalled = new StalledSubscriber();
+        manager.subscribe(1L).subscribe(stalled);
+
+        assertThat(heartbeatWheel.evictAll()).isEqualTo(2);
+
+        assertThat(requesting.terminated.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(requesting.error).isNull();
+        assertThat(requesting.received).last().isSameAs(UserAlarmMessage.reconnect());
+        assertThat(stalled.terminated.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(stalled.error).isInstanceOf(UserAlarmEvictedException.class);
+        assertReleased();
+    }
+
+    //구독자 수는 구독자에게 종료 신호를 보낸 뒤에 내리므로 잠깐 기다린다
+    private void assertReleased() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while((!manager.collectSubscribeInfos().isEmpty() || hasListener() || metrics.getActiveConnections() > 0)
+                && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(manager.collectSubscribeInfos()).isEmpty();
+        assertThat(hasListener()).isFalse();
+        assertThat(metrics.getActiveConnections()).isZero();
+    }
+
+    //유저 채널에 붙은 리스너가 남아있는지
+    private boolean hasListener() {
+        Map<?, ?> channels = (Map<?, ?>) ReflectionTestUtils.getField(broker, "channels");
+        return channels.containsKey(TOPIC_PREFIX + 1);
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    //sse 준비 완료 heartbeat 하나만 요청하고 더 요청하지 않는 구독자 (멈춘 클라이언트)
+    private static class StalledSubscriber extends BaseSubscriber<UserAlarmMessage> {
+        private final List<UserAlarmMessage> received = new CopyOnWriteArrayList<>();
+        private final CountDownLatch terminated = new CountDownLatch(1);
+        private volatile Throwable error;
+
+        @Override
+        protected void hookOnSubscribe(Subscription subscription) {
+            subscription.request(1);
+        }
+
+        @Override
+        protected void hookOnNext(UserAlarmMessage value) {
+            received.add(value);
+        }
+
+        @Override
+        protected void hookOnError(Throwable throwable) {
+            error = throwable;
+        }
+
+        @Override
+        protected void hookFinally(SignalType type) {
+            terminated.countDown();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.bagulbagul.bagulbagul.alarm.service.registry;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class LongKeyRegistryTest {
+
+    @Test
+    @DisplayName("expected 가 일치할 때만 추가, 교체, 삭제된다")
+    void replace() {
+        LongKeyRegistry<String> registry = new LongKeyRegistry<>(4);
+
+        assertThat(registry.replace(1L, null, "a")).isTrue();
+        assertThat(registry.replace(1L, null, "b")).isFalse();
+        assertThat(registry.get(1L)).isEqualTo("a");
+
+        assertThat(registry.replace(1L, "a", "b")).isTrue();
+        assertThat(registry.get(1L)).isEqualTo("b");
+
+        assertThat(registry.remove(1L, "a")).isFalse();
+        assertThat(registry.remove(1L, "b")).isTrue();
+        assertThat(registry.get(1L)).isNull();
+        assertThat(registry.size()).isZero();
+    }
+
+    @Test
+    @DisplayName("테이블이 커지고 줄어들어도 남은 키를 모두 찾을 수 있다")
+    void grow_and_shrink() {
+        LongKeyRegistry<Long> registry = new LongKeyRegistry<>(2);
+        int count = 10_000;
+        List<Long> values = new ArrayList<>(count);
+        for(long key = 0; key < count; key++) {
+            Long value = key;
+            values.add(value);
+            assertThat(registry.replace(key, null, value)).isTrue();
+        }
+        assertThat(registry.size()).isEqualTo(count);
+
+        //짝수 키만 삭제
+        for(int key = 0; key < count; key += 2) {
+            assertThat(registry.remove(key, values.get(key))).isTrue();
+        }
+        assertThat(registry.size()).isEqualTo(count / 2);
+        for(int key = 0; key < count; key++) {
+            if(key % 2 == 0) {
+                assertThat(registry.get(key)).isNull();
+            }
+            else {
+                assertThat(registry.get(key)).isSameAs(values.get(key));
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("여러 스레드가 같은 키에 동시에 추가, 삭제해도 한번에 하나만 성공한다")
+    void concurrent_replace() throws Exception {
+        LongKeyRegistry<Object> registry = new LongKeyRegistry<>(8);
+        int threadCnt = 8;
+        int repeatCnt = 10_000;
+        CountDownLatch startLatch = new CountDownLatch(1);
+        ExecutorService executorService = Executors.newFixedThreadPool(threadCnt);
+
+        List<Future<Integer>> futures = new ArrayList<>();
+        for(int i = 0; i < threadCnt; i++) {
+            futures.add(executorService.submit(() -> {
+                startLatch.await();
+                int success = 0;
+                for(int r = 0; r < repeatCnt; r++) {
+                    Object value = new Object();
+                    if(registry.replace(1L, null, value)) {
+                        //추가에 성공한 스레드만 삭제할 수 있어야 한다
+                        assertThat(registry.remove(1L, value)).isTrue();
+                        success++;
+                    }
+                }
+                return success;
+            }));
+        }
+        startLatch.countDown();
+
+        int totalSuccess = 0;
+        for(Future<Integer> future : futures) {
+            totalSuccess += future.get(30, TimeUnit.SECONDS);
+        }
+        executorService.shutdown();
+
+        assertThat(totalSuccess).isPositive();
+        assertThat(registry.get(1L)).isNull();
+        assertThat(registry.size()).isZero();
+    }
+}
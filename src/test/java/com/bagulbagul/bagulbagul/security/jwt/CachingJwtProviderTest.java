@@ -0,0 +1,71 @@
+package com.bagulbagul.bagulbagul.security.jwt;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.bagulbagul.bagulbagul.security.exception.AccessTokenException;
+import io.jsonwebtoken.Jwts;
+import java.time.Duration;
+import java.util.Date;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class CachingJwtProviderTest {
+
+    private static final String SECRET = "test-secret-key-test-secret-key-test-secret-key-test-secret-key-0123456789";
+    private static final String ALGORITHM = "HmacSHA512";
+
+    private final CachingJwtProvider jwtProvider = new CachingJwtProvider(
+            JwtProviderImpl.builder()
+                    .SECRET_KEY_STRING(SECRET)
+                    .SECRET_KEY_ALGORITHM(ALGORITHM)
+                    .build(),
+            100,
+            Duration.ofSeconds(10)
+    );
+
+    @Test
+    @DisplayName("유효한 토큰은 반복해서 검증해도 같은 userId 를 반환한다")
+    void valid_token() {
+        String token = token(SECRET, 7L, System.currentTimeMillis() + 60_000);
+
+        assertThat(jwtProvider.findUserId(token)).isEqualTo(7L);
+        assertThat(jwtProvider.findUserId(token)).isEqualTo(7L);
+        assertThat(jwtProvider.getUserIdFromAccessToken(token)).isEqualTo(7L);
+    }
+
+    @Test
+    @DisplayName("잘못된 토큰은 예외 대신 null 을 반환한다")
+    void invalid_token() {
+        assertThat(jwtProvider.findUserId(null)).isNull();
+        assertThat(jwtProvider.findUserId("not-a-jwt")).isNull();
+        assertThat(jwtProvider.findUserId("a.b.c")).isNull();
+        String otherKeyToken = token(SECRET.replace('0', '1'), 7L, System.currentTimeMillis() + 60_000);
+        assertThat(jwtProvider.findUserId(otherKeyToken)).isNull();
+        assertThat(jwtProvider.findUserId(otherKeyToken)).isNull();
+        //기존 메서드는 예외를 유지한다
+        assertThatThrownBy(() -> jwtProvider.getUserIdFromAccessToken(otherKeyToken)).isInstanceOf(AccessTokenException.class);
+    }
+
+    @Test
+    @DisplayName("캐시된 토큰도 만료 시각이 지나면 통과하지 않는다")
+    void expired_after_cached() throws InterruptedException {
+        String token = token(SECRET, 7L, System.currentTimeMillis() + 1_500);
+        assertThat(jwtProvider.findUserId(token)).isEqualTo(7L);
+
+        Thread.sleep(2_000);
+
+        assertThat(jwtProvider.findUserId(token)).isNull();
+    }
+
+    private static String token(String secret, long userId, long expiresAtMillis) {
+        SecretKey key = new SecretKeySpec(secret.getBytes(), ALGORITHM);
+        return Jwts.builder()
+                .subject(String.valueOf(userId))
+                .expiration(new Date(expiresAtMillis))
+                .signWith(key)
+                .compact();
+    }
+}